@@ -12,6 +12,7 @@
 import java.awt.Event;
 import java.awt.Font;
 import java.awt.Frame;
+import java.awt.GraphicsEnvironment;
 import java.awt.Image;
 import java.awt.Insets;
 import java.awt.KeyboardFocusManager;
@@ -35,6 +36,7 @@
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Locale;
@@ -63,6 +65,7 @@
 import javax.swing.filechooser.FileFilter;
 import javax.swing.plaf.FontUIResource;
 
+import org.infinity.check.StrrefUsage;
 import org.infinity.datatype.ProRef;
 import org.infinity.gui.BrowserMenuBar;
 import org.infinity.gui.ButtonPopupWindow;
@@ -87,11 +90,15 @@
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.Viewable;
 import org.infinity.resource.ViewableContainer;
+import org.infinity.resource.bcs.BatchCompiler;
+import org.infinity.resource.bcs.DecompilerCache;
 import org.infinity.resource.bcs.Signatures;
 import org.infinity.resource.key.FileResourceEntry;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.resource.key.ResourceTreeModel;
 import org.infinity.resource.text.PlainTextResource;
+import org.infinity.search.AttributeStore;
+import org.infinity.search.ReferenceIndex;
 import org.infinity.search.SearchFrame;
 import org.infinity.updater.UpdateCheck;
 import org.infinity.updater.UpdateInfo;
@@ -114,7 +121,8 @@ public final class NearInfinity extends JFrame implements ActionListener, Viewab
 {
   private static final int[] JAVA_VERSION = {1, 8};   // the minimum java version supported
 
-  private static final InfinityTextArea consoletext = new InfinityTextArea(true);
+  // not available without display, e.g. in batch mode
+  private static final InfinityTextArea consoletext = GraphicsEnvironment.isHeadless() ? null : new InfinityTextArea(true);
   private static final String KEYFILENAME         = "chitin.key";
   private static final String WINDOW_SIZEX        = "WindowSizeX";
   private static final String WINDOW_SIZEY        = "WindowSizeY";
@@ -205,6 +213,9 @@ public static void printHelp(String jarFile)
     System.out.println("\nOptions:");
     System.out.println("  -v, -version    Display version information.");
     System.out.println("  -h, -help       Display this help.");
+    System.out.println("  -compile        Compile all BAF files of a directory without user interface.");
+    System.out.println("  -decompile      Decompile all BCS files of a directory without user interface.");
+    System.out.println("                  Use -compile -help for details.");
     System.out.println("  -t type         Force the current or specified game to be of");
     System.out.println("                  specific type. (Use with care!)");
     System.out.println("                  Supported game types:");
@@ -214,6 +225,7 @@ public static void printHelp(String jarFile)
     System.out.println("\nExamples:");
     System.out.format("Specify game path: java -jar %s \"C:\\Games\\Baldurs Gate II\"", jarFile).println();
     System.out.format("Force game type:   java -jar %s -t bg2tob", jarFile).println();
+    System.out.format("Compile scripts:   java -jar %s -compile \"C:\\Games\\Baldurs Gate II\" baf bcs", jarFile).println();
     System.out.format("Display version:   java -jar %s -v", jarFile).println();
     System.out.format("Display help:      java -jar %s -help", jarFile).println();
   }
@@ -243,6 +255,10 @@ public static void main(String args[])
         }
         printHelp(jarFile);
         System.exit(0);
+      } else if (args[idx].equalsIgnoreCase("-compile") || args[idx].equalsIgnoreCase("-decompile")) {
+        BatchCompiler.Mode mode = args[idx].equalsIgnoreCase("-compile") ? BatchCompiler.Mode.COMPILE
+                                                                         : BatchCompiler.Mode.DECOMPILE;
+        System.exit(BatchCompiler.run(mode, forcedGame, Arrays.copyOfRange(args, idx + 1, args.length)));
       } else if (args[idx].equalsIgnoreCase("-t") && idx+1 < args.length) {
         idx++;
         String type = args[idx];
@@ -998,11 +1014,15 @@ private static void clearCache(boolean refreshOnly)
     }
     DlcManager.close();
     FileManager.reset();
+    DecompilerCache.clearCache();   // stores cached scripts, must precede IDS and signature reset
     IdsMapCache.clearCache();
     IniMapCache.clearCache();
     Table2daCache.clearCache();
     CreMapCache.clearCache();
     SearchFrame.clearCache();
+    ReferenceIndex.clearCache();
+    AttributeStore.clearCache();
+    StrrefUsage.clearCache();
     StringTable.resetAll();
     ProRef.clearCache();
     Signatures.clearCache();
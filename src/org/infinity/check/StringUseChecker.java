@@ -9,7 +9,7 @@
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
-import java.util.regex.Matcher;
+import java.util.BitSet;
 
 import javax.swing.BorderFactory;
 import javax.swing.JLabel;
@@ -25,7 +25,6 @@
 
 import org.infinity.NearInfinity;
 import org.infinity.datatype.Bestiary;
-import org.infinity.datatype.StringRef;
 import org.infinity.gui.BrowserMenuBar;
 import org.infinity.gui.Center;
 import org.infinity.gui.ChildFrame;
@@ -33,39 +32,31 @@
 import org.infinity.gui.TableItem;
 import org.infinity.gui.WindowBlocker;
 import org.infinity.icon.Icons;
-import org.infinity.resource.AbstractStruct;
 import org.infinity.resource.Profile;
-import org.infinity.resource.Resource;
 import org.infinity.resource.ResourceFactory;
-import org.infinity.resource.StructEntry;
-import org.infinity.resource.bcs.BcsResource;
-import org.infinity.resource.bcs.Compiler;
-import org.infinity.resource.bcs.Decompiler;
-import org.infinity.resource.bcs.ScriptType;
-import org.infinity.resource.dlg.AbstractCode;
-import org.infinity.resource.dlg.Action;
-import org.infinity.resource.dlg.DlgResource;
 import org.infinity.resource.key.ResourceEntry;
-import org.infinity.resource.text.PlainTextResource;
-import org.infinity.search.AbstractSearcher;
 import org.infinity.search.SearchClient;
 import org.infinity.search.SearchMaster;
 import org.infinity.search.StringReferenceSearcher;
 import org.infinity.util.Misc;
 import org.infinity.util.StringTable;
 
-public final class StringUseChecker extends AbstractSearcher implements Runnable, ListSelectionListener, SearchClient, ActionListener
+public final class StringUseChecker implements Runnable, ListSelectionListener, SearchClient, ActionListener
 {
+  private final Component parent;
   private ChildFrame resultFrame;
   private JTextArea textArea;
   /** List of the {@link UnusedStringTableItem} objects. */
   private SortableTable table;
-  private boolean[] strUsed;
+  /** Bitmap of string references used by any resource. */
+  private BitSet strUsed;
+  /** Number of strings in the {@link StringTable talk table}. */
+  private int strCount;
   private JMenuItem save;
 
   public StringUseChecker(Component parent)
   {
-    super(CHECK_MULTI_TYPE_FORMAT, parent);
+    this.parent = parent;
     new Thread(this).start();
   }
 
@@ -100,21 +91,27 @@ public void run()
         files.addAll(ResourceFactory.getResources(fileType));
       }
 
-      strUsed = new boolean[StringTable.getNumEntries()];
-      if (Profile.getGame() == Profile.Game.PST || Profile.getGame() == Profile.Game.PSTEE) {
-        Bestiary.markUsedStrings(strUsed);
-      }
-      if (runSearch("Searching", files)) {
+      final StrrefUsage usage = StrrefUsage.getInstance();
+      if (usage.scan(files, parent)) {
         return;
       }
+      strCount = StringTable.getNumEntries();
+      strUsed = usage.getUsedStrrefs(files, strCount);
+      if (Profile.getGame() == Profile.Game.PST || Profile.getGame() == Profile.Game.PSTEE) {
+        final boolean[] used = new boolean[strCount];
+        Bestiary.markUsedStrings(used);
+        for (int i = 0; i < used.length; i++) {
+          if (used[i]) {
+            strUsed.set(i);
+          }
+        }
+      }
 
       table = new SortableTable(new String[]{"String", "StrRef"},
                                 new Class<?>[]{String.class, Integer.class},
                                 new Integer[]{450, 20});
-      for (int i = 0; i < strUsed.length; i++) {
-        if (!strUsed[i]) {
-          table.addTableItem(new UnusedStringTableItem(i));
-        }
+      for (int i = strUsed.nextClearBit(0); i < strCount; i = strUsed.nextClearBit(i + 1)) {
+        table.addTableItem(new UnusedStringTableItem(i));
       }
       if (table.getRowCount() == 0) {
         resultFrame.close();
@@ -164,31 +161,13 @@ public void run()
 
 // --------------------- End Interface Runnable ---------------------
 
-  @Override
-  protected Runnable newWorker(ResourceEntry entry)
-  {
-    return () -> {
-      final Resource resource = ResourceFactory.getResource(entry);
-      if (resource instanceof DlgResource) {
-        checkDialog((DlgResource)resource);
-      } else if (resource instanceof BcsResource) {
-        checkScript((BcsResource)resource);
-      } else if (resource instanceof PlainTextResource) {
-        checkTextfile((PlainTextResource)resource);
-      } else if (resource instanceof AbstractStruct) {
-        checkStruct((AbstractStruct)resource);
-      }
-      advanceProgress();
-    };
-  }
-
 // --------------------- Begin Interface ActionListener ---------------------
 
   @Override
   public void actionPerformed(ActionEvent e)
   {
     if (e.getSource() == save) {
-      table.saveCheckResult(resultFrame, "Unused strings (maximum " + strUsed.length + ")");
+      table.saveCheckResult(resultFrame, "Unused strings (maximum " + strCount + ")");
     }
   }
 
@@ -213,102 +192,6 @@ public void hitFound(int nr)
 
 // --------------------- End Interface SearchClient ---------------------
 
-  private void checkDialog(DlgResource dialog)
-  {
-    for (final StructEntry entry : dialog.getFlatFields()) {
-      if (entry instanceof StringRef) {
-        checkStringRef((StringRef)entry);
-      }
-      else if (entry instanceof AbstractCode) {
-        final AbstractCode code = (AbstractCode)entry;
-        try {
-          final ScriptType type = code instanceof Action ? ScriptType.ACTION : ScriptType.TRIGGER;
-          final Compiler compiler = new Compiler(code.getText(), type);
-
-          checkCode(compiler.getCode(), type);
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      }
-    }
-  }
-
-  private void checkScript(BcsResource script)
-  {
-    try {
-      checkCode(script.getCode(), ScriptType.BCS);
-    } catch (Exception e) {
-      e.printStackTrace();
-    }
-  }
-
-  private void checkStruct(AbstractStruct struct)
-  {
-    for (final StructEntry entry : struct.getFlatFields()) {
-      if (entry instanceof StringRef) {
-        checkStringRef((StringRef)entry);
-      }
-    }
-  }
-
-  private void checkTextfile(PlainTextResource text)
-  {
-    final Matcher m = StringReferenceSearcher.NUMBER_PATTERN.matcher(text.getText());
-    while (m.find()) {
-      final long nr = Long.parseLong(m.group());
-      if (nr >= 0 && nr < strUsed.length) {
-        synchronized (strUsed) {
-          strUsed[(int)nr] = true;
-        }
-      }
-    }
-  }
-
-  /**
-   * Mark all strings from {@link StringTable string table} to which the script
-   * code refers, as used.
-   * <p>
-   * This method can be called from several threads
-   *
-   * @param compiledCode Compiled code from BCS, dialog action or trigger.
-   *        Must not be {@code null}
-   *
-   * @throws Exception If {@code compiledCode} contains invalid code
-   */
-  private void checkCode(String compiledCode, ScriptType type) throws Exception
-  {
-    final Decompiler decompiler = new Decompiler(compiledCode, type, true);
-    decompiler.setGenerateComments(false);
-    decompiler.setGenerateResourcesUsed(true);
-    decompiler.decompile();
-
-    synchronized (strUsed) {
-      for (final Integer stringRef : decompiler.getStringRefsUsed()) {
-        final int index = stringRef.intValue();
-        if (index >= 0 && index < strUsed.length) {
-          strUsed[index] = true;
-        }
-      }
-    }
-  }
-
-  /**
-   * Mark specified string as used.
-   * <p>
-   * This method can be called from several threads
-   *
-   * @param ref Rererence to string in the {@link StringTable string table}
-   */
-  private void checkStringRef(StringRef ref)
-  {
-    final int index = ref.getValue();
-    if (index >= 0 && index < strUsed.length) {
-      synchronized (strUsed) {
-        strUsed[index] = true;
-      }
-    }
-  }
-
 // -------------------------- INNER CLASSES --------------------------
 
   private static final class UnusedStringTableItem implements TableItem
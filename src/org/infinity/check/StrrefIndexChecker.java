@@ -114,7 +114,9 @@ public void valueChanged(ListSelectionEvent event)
   public void run()
   {
     strrefCount = StringTable.getNumEntries();
-    if (runCheck(files)) {
+    // only resources with out-of-range string references have to be checked in detail
+    final StrrefUsage usage = StrrefUsage.getInstance();
+    if (usage.scan(files, parent) || runCheck(usage.getInvalidStrrefResources(files, strrefCount))) {
       resultFrame.close();
       return;
     }
@@ -0,0 +1,319 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2019 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.check;
+
+import java.awt.Component;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+
+import org.infinity.datatype.StringRef;
+import org.infinity.resource.AbstractStruct;
+import org.infinity.resource.Resource;
+import org.infinity.resource.ResourceFactory;
+import org.infinity.resource.StructEntry;
+import org.infinity.resource.bcs.BcsResource;
+import org.infinity.resource.bcs.Compiler;
+import org.infinity.resource.bcs.Decompiler;
+import org.infinity.resource.bcs.ScriptType;
+import org.infinity.resource.dlg.AbstractCode;
+import org.infinity.resource.dlg.Action;
+import org.infinity.resource.dlg.DlgResource;
+import org.infinity.resource.key.ResourceEntry;
+import org.infinity.resource.text.PlainTextResource;
+import org.infinity.search.AbstractSearcher;
+import org.infinity.search.StringReferenceSearcher;
+import org.infinity.util.io.FileWatcher;
+import org.infinity.util.io.FileWatcher.FileWatchEvent;
+import org.infinity.util.io.FileWatcher.FileWatchListener;
+
+/**
+ * Collects the string references used by dialog, script, text and structured resources.
+ * <p>
+ * Resources are scanned in parallel and only once. The string references found in each
+ * resource are cached until the resource is modified, so that subsequent checks only
+ * need to scan new or modified resources.
+ */
+public final class StrrefUsage implements FileWatchListener
+{
+  private static final int[] EMPTY = new int[0];
+  /** Resource types whose string references are collected from decompiled script code. */
+  private static final String[] SCRIPT_TYPES = { ".BCS", ".BS", ".DLG" };
+
+  private static StrrefUsage instance;
+
+  /** Maps upper-cased resource names to the sorted list of string references used by the resource. */
+  private final ConcurrentHashMap<String, int[]> strrefs = new ConcurrentHashMap<>();
+
+  /** Returns the string reference cache of the current game. */
+  public static synchronized StrrefUsage getInstance()
+  {
+    if (instance == null) {
+      instance = new StrrefUsage();
+      FileWatcher.getInstance().addFileWatchListener(instance);
+    }
+    return instance;
+  }
+
+  /** Discards all cached string references. */
+  public static synchronized void clearCache()
+  {
+    if (instance != null) {
+      FileWatcher.getInstance().removeFileWatchListener(instance);
+      instance = null;
+    }
+  }
+
+  /**
+   * Removes the specified resource from the cache. It will be scanned again by the next check.
+   * @param resourceName Name of the resource (including extension).
+   */
+  public static synchronized void invalidate(String resourceName)
+  {
+    if (instance != null && resourceName != null) {
+      instance.strrefs.remove(resourceName.toUpperCase(Locale.ENGLISH));
+    }
+  }
+
+  /**
+   * Removes all resources containing script code from the cache, because IDS maps or function
+   * signatures have been reloaded. They will be scanned again by the next check.
+   */
+  public static synchronized void invalidateScripts()
+  {
+    if (instance != null) {
+      instance.strrefs.keySet().removeIf(StrrefUsage::isScript);
+    }
+  }
+
+  private StrrefUsage()
+  {
+  }
+
+//--------------------- Begin Interface FileWatchListener ---------------------
+
+  @Override
+  public void fileChanged(FileWatchEvent e)
+  {
+    if (e.getKind() == StandardWatchEventKinds.ENTRY_CREATE ||
+        e.getKind() == StandardWatchEventKinds.ENTRY_DELETE ||
+        e.getKind() == StandardWatchEventKinds.ENTRY_MODIFY) {
+      final Path name = e.getPath().getFileName();
+      if (name != null) {
+        strrefs.remove(name.toString().toUpperCase(Locale.ENGLISH));
+      }
+    }
+  }
+
+//--------------------- End Interface FileWatchListener ---------------------
+
+  /**
+   * Scans all resources from the list which are not yet cached.
+   * @param entries The resources to scan.
+   * @param parent Parent component of the progress dialog.
+   * @return {@code true} if the operation has been cancelled, {@code false} otherwise.
+   */
+  public boolean scan(List<ResourceEntry> entries, Component parent)
+  {
+    final List<ResourceEntry> pending = new ArrayList<>();
+    for (final ResourceEntry entry : entries) {
+      if (entry != null && !strrefs.containsKey(getKey(entry))) {
+        pending.add(entry);
+      }
+    }
+    return new Scanner(parent).run(pending);
+  }
+
+  /**
+   * Returns a bitmap of all string references used by the specified resources.
+   * Resources have to be {@link #scan(List, Component) scanned} first.
+   * @param entries The resources to consider.
+   * @param numStrrefs Number of string references covered by the bitmap.
+   * @return Bitmap with one bit per string reference.
+   */
+  public BitSet getUsedStrrefs(List<ResourceEntry> entries, int numStrrefs)
+  {
+    final BitSet retVal = new BitSet(numStrrefs);
+    for (final ResourceEntry entry : entries) {
+      final int[] list = (entry != null) ? strrefs.get(getKey(entry)) : null;
+      if (list != null) {
+        for (int i = firstIndexOf(list, 0); i < list.length && list[i] < numStrrefs; i++) {
+          retVal.set(list[i]);
+        }
+      }
+    }
+    return retVal;
+  }
+
+  /**
+   * Returns all resources referencing string references out of the range [-1, numStrrefs).
+   * Resources have to be {@link #scan(List, Component) scanned} first. Resources which have
+   * not been scanned are always included.
+   * @param entries The resources to consider.
+   * @param numStrrefs Number of available string references.
+   * @return List of resources with potentially invalid string references.
+   */
+  public List<ResourceEntry> getInvalidStrrefResources(List<ResourceEntry> entries, int numStrrefs)
+  {
+    final List<ResourceEntry> retVal = new ArrayList<>();
+    for (final ResourceEntry entry : entries) {
+      if (entry != null) {
+        final int[] list = strrefs.get(getKey(entry));
+        if (list == null ||
+            (list.length > 0 && (list[0] < -1 || list[list.length - 1] >= numStrrefs))) {
+          retVal.add(entry);
+        }
+      }
+    }
+    return retVal;
+  }
+
+  // Returns the index of the first element >= value in the sorted array
+  private static int firstIndexOf(int[] list, int value)
+  {
+    final int idx = Arrays.binarySearch(list, value);
+    return (idx >= 0) ? idx : -idx - 1;
+  }
+
+  private static boolean isScript(String key)
+  {
+    for (final String ext : SCRIPT_TYPES) {
+      if (key.endsWith(ext)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String getKey(ResourceEntry entry)
+  {
+    return entry.getResourceName().toUpperCase(Locale.ENGLISH);
+  }
+
+  // Returns the sorted list of unique string references used by the specified resource
+  private static int[] collect(ResourceEntry entry)
+  {
+    final StrrefList list = new StrrefList();
+    final Resource resource = ResourceFactory.getResource(entry);
+    if (resource instanceof DlgResource) {
+      for (final StructEntry field : ((DlgResource)resource).getFlatFields()) {
+        if (field instanceof StringRef) {
+          list.add(((StringRef)field).getValue());
+        } else if (field instanceof AbstractCode) {
+          final AbstractCode code = (AbstractCode)field;
+          try {
+            final ScriptType type = code instanceof Action ? ScriptType.ACTION : ScriptType.TRIGGER;
+            final Compiler compiler = new Compiler(code.getText(), type);
+            collectCode(compiler.getCode(), type, list);
+          } catch (Exception e) {
+            e.printStackTrace();
+          }
+        }
+      }
+    } else if (resource instanceof BcsResource) {
+      try {
+        collectCode(((BcsResource)resource).getCode(), ScriptType.BCS, list);
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    } else if (resource instanceof PlainTextResource) {
+      final Matcher m = StringReferenceSearcher.NUMBER_PATTERN.matcher(((PlainTextResource)resource).getText());
+      while (m.find()) {
+        try {
+          final long nr = Long.parseLong(m.group());
+          // skip values out of integer range
+          if (nr >= Integer.MIN_VALUE && nr <= Integer.MAX_VALUE) {
+            list.add((int)nr);
+          }
+        } catch (NumberFormatException e) {
+        }
+      }
+    } else if (resource instanceof AbstractStruct) {
+      for (final StructEntry field : ((AbstractStruct)resource).getFlatFields()) {
+        if (field instanceof StringRef) {
+          list.add(((StringRef)field).getValue());
+        }
+      }
+    }
+    return list.toSortedArray();
+  }
+
+  private static void collectCode(String compiledCode, ScriptType type, StrrefList list) throws Exception
+  {
+    final Decompiler decompiler = new Decompiler(compiledCode, type, true);
+    decompiler.setGenerateComments(false);
+    decompiler.setGenerateResourcesUsed(true);
+    decompiler.decompile();
+    for (final Integer stringRef : decompiler.getStringRefsUsed()) {
+      list.add(stringRef.intValue());
+    }
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Growable list of primitive int values. */
+  private static final class StrrefList
+  {
+    private int[] data = new int[16];
+    private int size;
+
+    void add(int value)
+    {
+      if (size == data.length) {
+        data = Arrays.copyOf(data, size * 2);
+      }
+      data[size++] = value;
+    }
+
+    int[] toSortedArray()
+    {
+      if (size == 0) {
+        return EMPTY;
+      }
+      Arrays.sort(data, 0, size);
+      int count = 1;
+      for (int i = 1; i < size; i++) {
+        if (data[i] != data[count - 1]) {
+          data[count++] = data[i];
+        }
+      }
+      return Arrays.copyOf(data, count);
+    }
+  }
+
+  /** Scans a list of resources in parallel. */
+  private final class Scanner extends AbstractSearcher
+  {
+    Scanner(Component parent)
+    {
+      super(CHECK_MULTI_TYPE_FORMAT, parent);
+    }
+
+    /** Returns {@code true} if scanning has been cancelled. */
+    boolean run(List<ResourceEntry> entries)
+    {
+      return runSearch("Collecting string references", entries);
+    }
+
+    @Override
+    protected Runnable newWorker(ResourceEntry entry)
+    {
+      return () -> {
+        try {
+          strrefs.put(getKey(entry), collect(entry));
+        } catch (Exception e) {
+          e.printStackTrace();
+        }
+        advanceProgress();
+      };
+    }
+  }
+}
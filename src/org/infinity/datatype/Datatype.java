@@ -97,6 +97,9 @@ public void setName(String newName)
   {
     if (newName != null) {
       name = newName;
+      if (parent != null) {
+        parent.invalidateFieldIndex();
+      }
     } else {
       throw new NullPointerException("Name of struct field must not be null");
     }
@@ -134,12 +137,18 @@ public List<StructEntry> getStructChain()
   public void setOffset(int newoffset)
   {
     offset = newoffset;
+    if (parent != null) {
+      parent.invalidateFieldIndex();
+    }
   }
 
   @Override
   public void setParent(AbstractStruct parent)
   {
     this.parent = parent;
+    if (parent != null) {
+      parent.invalidateFieldIndex();
+    }
   }
 
   @Override
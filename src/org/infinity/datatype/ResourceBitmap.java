@@ -16,7 +16,9 @@
 import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import javax.swing.JButton;
@@ -73,6 +75,11 @@ public class ResourceBitmap extends Datatype
   /** Print resource value only. */
   public static final String FMT_VALUE_ONLY       = "%3$s";
 
+  /** Number of sorted resource lists kept for reuse by subsequently created instances. */
+  private static final int MAX_SORTED_LISTS = 16;
+  /** Recently used sorted resource lists, most recent first. */
+  private static final List<SortedList> sortedLists = new ArrayList<>();
+
   private final List<RefEntry> resources;
   private final String defaultLabel;
   private final String formatString;
@@ -87,14 +94,7 @@ public ResourceBitmap(ByteBuffer buffer, int offset, int length, String name,
     this.formatString = (fmt != null) ? fmt : FMT_REF_VALUE;
     this.defaultLabel = (defLabel != null) ? defLabel : "Unknown";
 
-    this.resources = new ArrayList<>((resources != null) ? resources.size() : 10);
-    if (resources != null) {
-      for (final RefEntry entry: resources) {
-        entry.setFormatString(this.formatString);
-        this.resources.add(entry);
-      }
-    }
-    Collections.sort(this.resources);
+    this.resources = getSortedList(resources, this.formatString);
 
     read(buffer, offset);
   }
@@ -305,6 +305,37 @@ public String getFormatString()
     return formatString;
   }
 
+  // Returns a sorted unmodifiable copy of the given list with all entries set to the specified format.
+  // Instances created from the same unmodified list with the same format share the copy, which
+  // avoids formatting and sorting the whole list for every field of a resource.
+  private static List<RefEntry> getSortedList(List<RefEntry> resources, String fmt)
+  {
+    if (resources == null || resources.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    synchronized (sortedLists) {
+      for (final Iterator<SortedList> iter = sortedLists.iterator(); iter.hasNext(); ) {
+        final SortedList sl = iter.next();
+        if (sl.source == resources) {
+          iter.remove();
+          if (sl.isValid(fmt)) {
+            sortedLists.add(0, sl);
+            return sl.sorted;
+          }
+          break;
+        }
+      }
+
+      final SortedList sl = new SortedList(resources, fmt);
+      sortedLists.add(0, sl);
+      if (sortedLists.size() > MAX_SORTED_LISTS) {
+        sortedLists.remove(sortedLists.size() - 1);
+      }
+      return sl.sorted;
+    }
+  }
+
   private RefEntry getRefEntry(long value)
   {
     for (final RefEntry entry : resources) {
@@ -416,4 +447,43 @@ public void setFormatString(String fmt)
       this.desc = String.format(fmt, getResourceName(), getSearchString(), Long.toString(value));
     }
   }
+  // Sorted copy of a resource list together with the list content it was created from
+  private static final class SortedList
+  {
+    private final List<RefEntry> source;
+    private final RefEntry[] elements;
+    private final String fmt;
+    private final List<RefEntry> sorted;
+
+    public SortedList(List<RefEntry> source, String fmt)
+    {
+      this.source = source;
+      this.elements = source.toArray(new RefEntry[source.size()]);
+      this.fmt = fmt;
+      for (final RefEntry entry : elements) {
+        entry.setFormatString(fmt);
+      }
+      final RefEntry[] items = elements.clone();
+      Arrays.sort(items);
+      this.sorted = Collections.unmodifiableList(Arrays.asList(items));
+    }
+
+    /**
+     * Returns whether the source list is unchanged and all entries still use the
+     * specified format. Entries may be shared by lists with different formats.
+     */
+    public boolean isValid(String fmt)
+    {
+      if (!this.fmt.equals(fmt) || source.size() != elements.length) {
+        return false;
+      }
+      int idx = 0;
+      for (final RefEntry entry : source) {
+        if (entry != elements[idx++] || !fmt.equals(entry.getFormatString())) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
 }
@@ -114,7 +114,7 @@ public JComponent edit(final ActionListener container)
     final List<List<ResourceEntry>> resourceList = new ArrayList<>(types.length);
     int count = 0;
     for (final String type : types) {
-      final List<ResourceEntry> entries = ResourceFactory.getResources(type);
+      final List<ResourceEntry> entries = ResourceFactory.getCachedResources(type);
       resourceList.add(entries);
       count += entries.size();
     }
@@ -10,6 +10,7 @@
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Frame;
+import java.awt.GraphicsEnvironment;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
@@ -114,7 +115,8 @@ public final class BrowserMenuBar extends JMenuBar implements KeyEventDispatcher
       new LookAndFeelInfo("Metal", "javax.swing.plaf.metal.MetalLookAndFeel");
 
   /** Defines platform-specific shortcut key (e.g. Ctrl on Win/Linux, Meta on Mac). */
-  private static final int CTRL_MASK = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
+  private static final int CTRL_MASK = GraphicsEnvironment.isHeadless() ? InputEvent.CTRL_MASK
+                                                                        : Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
 
   /** Name of the child node in the GUI preferences path. */
   private static final String PREFS_PROFILES_NODE = "Profiles";
@@ -161,7 +161,7 @@ protected Void doInBackground() throws Exception
   public String getText(int index)
   {
     if (index >= 0 && index < StringTable.getNumEntries(getSelectedDialogType())) {
-      return StringTable.getStringRef(index, StringTable.Format.NONE);
+      return StringTable.getStringRef(getSelectedDialogType(), index, StringTable.Format.NONE);
     }
     return null;
   }
@@ -172,6 +172,12 @@ public void hitFound(int index)
     showEntry(index);
   }
 
+  @Override
+  public int[] getCandidates(String text)
+  {
+    return StringTable.findCandidates(getSelectedDialogType(), text);
+  }
+
 //--------------------- End Interface SearchClient ---------------------
 
   private static String getWindowTitle(StringTable.Type dlgType)
@@ -54,15 +54,6 @@ final class StringLookup extends ChildFrame implements SearchClient
 
     setSize(Misc.getScaledValue(540), Misc.getScaledValue(350));
     Center.center(this, NearInfinity.getInstance().getBounds());
-
-    // pre-caching string table to significantly reduce search time
-    new Thread(new Runnable() {
-      @Override
-      public void run()
-      {
-        StringTable.ensureFullyLoaded();
-      }
-    }).start();
   }
 
 // --------------------- Begin Interface SearchClient ---------------------
@@ -82,6 +73,16 @@ public void hitFound(int index)
     strref.setValue(index);
   }
 
+  @Override
+  public int[] getCandidates(String text)
+  {
+    // strref prefixes or suffixes are not indexed
+    if (StringTable.getDisplayFormat() != StringTable.Format.NONE) {
+      return null;
+    }
+    return StringTable.findCandidates(StringTable.Type.MALE, text);
+  }
+
 // --------------------- End Interface SearchClient ---------------------
 }
 
@@ -4110,6 +4110,7 @@ private void updateFinalBamDecoder(int bamVersion) throws Exception
 
         // processing frames
         IndexColorModel cm = new IndexColorModel(8, 256, palette, 0, getUseAlpha(), transIndex, DataBuffer.TYPE_BYTE);
+        ColorConvert.NearestColorIndex colorIndex = new ColorConvert.NearestColorIndex(palette, !getUseAlpha());
         for (int i = 0; i < srcListFrames.size(); i++) {
           PseudoBamFrameEntry srcEntry = srcListFrames.get(i);
           BufferedImage srcImage = ColorConvert.toBufferedImage(srcEntry.getFrame(), true, true);
@@ -4129,7 +4130,7 @@ private void updateFinalBamDecoder(int bamVersion) throws Exception
                 if (ci >= transIndex) ci++;
                 dstBuf[ofs] = colIdx.byteValue();//(byte)ci;
               } else {
-                byte color = (byte)ColorConvert.nearestColorRGB(srcBuf[ofs], palette, !getUseAlpha());
+                byte color = (byte)colorIndex.nearest(srcBuf[ofs]);
                 dstBuf[ofs] = color;//(byte)ci;
                 colorCache.put(Integer.valueOf(c), Byte.valueOf(color));
               }
@@ -4202,6 +4203,7 @@ private void updateFinalBamFrame(int bamVersion, int frameIdx)
           }
         }
         IndexColorModel cm = new IndexColorModel(8, 256, palette, 0, getUseAlpha(), transIndex, DataBuffer.TYPE_BYTE);
+        ColorConvert.NearestColorIndex colorIndex = new ColorConvert.NearestColorIndex(palette, !getUseAlpha());
 
         // converting frame
         srcImage = ColorConvert.toBufferedImage(srcImage, true, true);
@@ -4221,7 +4223,7 @@ private void updateFinalBamFrame(int bamVersion, int frameIdx)
               if (ci >= transIndex) ci++;
               dstBuf[ofs] = colIdx.byteValue();
             } else {
-              byte color = (byte)ColorConvert.nearestColorRGB(srcBuf[ofs], palette, !getUseAlpha());
+              byte color = (byte)colorIndex.nearest(srcBuf[ofs]);
               dstBuf[ofs] = color;//(byte)ci;
               colorCache.put(Integer.valueOf(c), Byte.valueOf(color));
             }
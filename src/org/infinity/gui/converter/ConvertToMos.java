@@ -183,8 +183,9 @@ public static boolean convertV1(Component parent, BufferedImage img, String mosF
             tilePalette[(i << 2) + 1] = (byte)((palette[i - 1] >>> 8) & 0xff);
             tilePalette[(i << 2) + 2] = (byte)((palette[i - 1] >>> 16) & 0xff);
             tilePalette[(i << 2) + 3] = 0;
-            colorCache.put(palette[i - 1], (byte)(i - 1));
+            colorCache.put(palette[i - 1], Byte.valueOf((byte)(i - 1)));
           }
+          ColorConvert.NearestColorIndex colorIndex = new ColorConvert.NearestColorIndex(palette, true);
           // filling pixel data
           for (int i = 0; i < pixels.length; i++) {
             if ((pixels[i] & 0xff000000) == 0) {
@@ -194,9 +195,9 @@ public static boolean convertV1(Component parent, BufferedImage img, String mosF
               if (palIndex != null) {
                 tileData[i] = (byte)(palIndex + 1);
               } else {
-                byte color = (byte)ColorConvert.nearestColorRGB(pixels[i], palette, true);
+                byte color = (byte)colorIndex.nearest(pixels[i]);
                 tileData[i] = (byte)(color + 1);
-                colorCache.put(pixels[i], color);
+                colorCache.put(pixels[i], Byte.valueOf(color));
               }
             }
           }
@@ -62,6 +62,9 @@
 
 public class ConvertToPvrz extends ChildFrame implements ActionListener, PropertyChangeListener
 {
+  // Number of 4x4 block rows encoded between progress updates
+  private static final int BandBlockRows = 16;
+
   private static String currentDir = Profile.getGameRoot().toString();
 
   private JList<Path> lInputList;
@@ -685,60 +688,37 @@ private List<String> convert()
               header = createPVRHeader(w, h, 7);
           }
 
-          // encoding block by block
+          // encoding in bands of block rows
           int outSize = DxtEncoder.calcImageSize(w, h, dxtType);
           byte[] output = new byte[outSize];
-          int outOfs = 0;
           int bw = w / 4;
           int bh = h / 4;
-          int[] inBlock = new int[16];
-          byte[] outBlock = new byte[DxtEncoder.calcBlockSize(dxtType)];
-          // more initialization for progress meter
-          int counter = 0;
-          if (isSingle) {
-            progressInc = (bw*bh / 100);
-            if (progressInc == 0) {
-              progress.setMaximum(bw*bh + 1);
-              progressInc = 1;
-            }
-          }
-          for (int y = 0; y < bh; y++) {
-            if (!isSingle) {
+          int bandSize = bw * BandBlockRows * DxtEncoder.calcBlockSize(dxtType);
+          for (int y = 0; y < bh && bw > 0; y += BandBlockRows) {
+            // handling progress meter
+            if (isSingle) {
+              progress.setProgress(y * progressMax / bh);
+            } else {
               // force the progress meter to pop up
               progress.setProgress(progressIndex);
             }
-            for (int x = 0; x < bw; x++) {
-              // handling progress meter
-              if (isSingle) {
-                if (counter >= progressInc) {
-                  counter = 0;
-                  progressIndex++;
-                  progress.setProgress(progressIndex);
-                }
-                counter++;
-              }
-              if (progress.isCanceled()) {
-                progress.close();
-                progress = null;
-                List<String> l = new Vector<String>(2);
-                l.add(null);
-                l.add("Conversion cancelled.");
-                return l;
-              }
+            if (progress.isCanceled()) {
+              progress.close();
+              progress = null;
+              List<String> l = new Vector<String>(2);
+              l.add(null);
+              l.add("Conversion cancelled.");
+              return l;
+            }
 
-              // starting encoding process
-              int ofs = y*w*4 + x*4;
-              for (int i = 0; i < 4; i++, ofs+=w) {
-                System.arraycopy(pixels, ofs, inBlock, i*4, 4);
-              }
-              try {
-                DxtEncoder.encodeBlock(inBlock, outBlock, dxtType);
-              } catch (Exception e) {
-                warnings++;
-                Arrays.fill(outBlock, (byte)0);
-              }
-              System.arraycopy(outBlock, 0, output, outOfs, outBlock.length);
-              outOfs += outBlock.length;
+            // starting encoding process
+            int rows = Math.min(BandBlockRows, bh - y);
+            try {
+              DxtEncoder.encodeBlockRows(pixels, w, h, y, rows, output, dxtType, true);
+            } catch (Exception e) {
+              warnings++;
+              int ofs = (y / BandBlockRows) * bandSize;
+              Arrays.fill(output, ofs, Math.min(ofs + bandSize, output.length), (byte)0);
             }
           }
 
@@ -760,8 +740,6 @@ private List<String> convert()
           srcImg = null;
           output = null;
           pvrz = null;
-          inBlock = null;
-          outBlock = null;
           header = null;
         }
       } else {
@@ -187,8 +187,9 @@ public static boolean convertV1(Component parent, BufferedImage img, String tisF
             tilePalette[(i << 2) + 1] = (byte)((palette[i - 1] >>> 8) & 0xff);
             tilePalette[(i << 2) + 2] = (byte)((palette[i - 1] >>> 16) & 0xff);
             tilePalette[(i << 2) + 3] = 0;
-            colorCache.put(palette[i - 1], (byte)(i - 1));
+            colorCache.put(palette[i - 1], Byte.valueOf((byte)(i - 1)));
           }
+          ColorConvert.NearestColorIndex colorIndex = new ColorConvert.NearestColorIndex(palette, true);
 
           // processing pixel data
           for (int i = 0; i < tileData.length; i++) {
@@ -199,9 +200,9 @@ public static boolean convertV1(Component parent, BufferedImage img, String tisF
               if (palIndex != null) {
                 tileData[i] = (byte)(palIndex + 1);
               } else {
-                byte color = (byte)ColorConvert.nearestColorRGB(srcBlock[i], palette, true);
+                byte color = (byte)colorIndex.nearest(srcBlock[i]);
                 tileData[i] = (byte)(color + 1);
-                colorCache.put(srcBlock[i], color);
+                colorCache.put(srcBlock[i], Byte.valueOf(color));
               }
             }
           }
@@ -12,12 +12,17 @@
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 import javax.swing.JComponent;
@@ -75,6 +80,9 @@ public abstract class AbstractStruct extends AbstractTableModel implements Struc
   /** Identifies the intention to removal of rows or columns. */
   public static final int WILL_BE_DELETE = -2;
 
+  /** Minimum number of fields for building a lookup index. Smaller structures are scanned linearly. */
+  private static final int INDEX_MIN_FIELDS = 16;
+
   private List<StructEntry> fields;
   private AbstractStruct superStruct;
   private Map<Class<? extends StructEntry>, SectionCount> countmap;
@@ -96,6 +104,12 @@ public abstract class AbstractStruct extends AbstractTableModel implements Struc
   /** Offset of the last byte in serialized format of this struct. */
   private int endoffset;
   private int extraoffset;
+  /** Incremented whenever fields of this structure or any of its substructures are modified. */
+  private int fieldsVersion;
+  /** Value of {@link #fieldsVersion} at the time of the last attribute lookup. */
+  private int lookupVersion = -1;
+  /** Lazily built lookup index for {@link #getAttribute} calls. */
+  private FieldIndex fieldIndex;
   /**
    * If any {@link PropertyChangeListener}s have been registered,
    * the {@code changeSupport} field describes them.
@@ -151,7 +165,7 @@ else if (so.getValue() + superStruct.getExtraOffset() == datatype.getOffset()) {
   protected AbstractStruct(ResourceEntry entry) throws Exception
   {
     this.entry = entry;
-    fields = new ArrayList<>();
+    fields = new FieldList(10);
     name = entry.getResourceName();
     ByteBuffer bb = entry.getResourceBuffer();
     endoffset = read(bb, 0);
@@ -168,7 +182,7 @@ protected AbstractStruct(AbstractStruct superStruct, String name, int startoffse
     this.superStruct = superStruct;
     this.name = name;
     this.startoffset = startoffset;
-    fields = new ArrayList<>(listSize);
+    fields = new FieldList(listSize);
   }
 
   protected AbstractStruct(AbstractStruct superStruct, String name, ByteBuffer buffer, int startoffset)
@@ -231,7 +245,9 @@ public AbstractStruct clone() throws CloneNotSupportedException
   {
     final AbstractStruct newstruct = (AbstractStruct)super.clone();
     newstruct.superStruct = null;
-    newstruct.fields = new ArrayList<>(fields.size());
+    newstruct.fields = newstruct.new FieldList(fields.size());
+    newstruct.fieldIndex = null;
+    newstruct.lookupVersion = -1;
     newstruct.viewer = null;
     for (final StructEntry e : fields) {
       newstruct.fields.add(e.clone());
@@ -264,6 +280,7 @@ public void setName(String newName)
   {
     if (newName != null) {
       name = newName;
+      invalidateFieldIndex();
     } else {
       throw new NullPointerException();
     }
@@ -324,6 +341,7 @@ public void setOffset(int newoffset)
     int delta = getSize();
     startoffset = newoffset;
     endoffset = newoffset + delta;
+    invalidateFieldIndex();
   }
 
   @Override
@@ -336,6 +354,7 @@ public void setParent(AbstractStruct parent)
     if (parent != null) {
       addPropertyChangeListener(parent);
     }
+    invalidateFieldIndex();
   }
   //</editor-fold>
 
@@ -566,6 +585,7 @@ else if (index == 0 && !fields.isEmpty()) {
       AbstractStruct addedStruct = (AbstractStruct)addedEntry;
       addedStruct.realignStructOffsets();
       addedStruct.superStruct = this;
+      addedStruct.invalidateFieldIndex();
     }
     AbstractStruct topStruct = this;
     while (topStruct.superStruct != null) {
@@ -575,8 +595,10 @@ else if (index == 0 && !fields.isEmpty()) {
       }
       topStruct = topStruct.superStruct;
     }
-    if (topStruct instanceof Resource)
+    if (topStruct instanceof Resource) {
       topStruct.endoffset += addedEntry.getSize();
+      topStruct.invalidateFieldIndex();
+    }
     adjustEntryOffsets(topStruct, this, addedEntry, addedEntry.getSize());
     adjustSectionOffsets(topStruct, addedEntry, addedEntry.getSize());
 
@@ -657,7 +679,7 @@ public void clearFields()
    */
   public StructEntry getAttribute(int offset)
   {
-    return getAttribute(this, offset, StructEntry.class, true);
+    return getAttribute(offset, StructEntry.class, true);
   }
 
   /**
@@ -669,7 +691,7 @@ public StructEntry getAttribute(int offset)
    */
   public StructEntry getAttribute(int offset, boolean recursive)
   {
-    return getAttribute(this, offset, StructEntry.class, recursive);
+    return getAttribute(offset, StructEntry.class, recursive);
   }
 
   /**
@@ -683,7 +705,7 @@ public StructEntry getAttribute(int offset, boolean recursive)
    */
   public <T extends StructEntry> T getAttribute(int offset, Class<T> type)
   {
-    return getAttribute(this, offset, type, true);
+    return getAttribute(offset, type, true);
   }
 
   /**
@@ -699,6 +721,16 @@ public <T extends StructEntry> T getAttribute(int offset, Class<T> type)
    */
   public <T extends StructEntry> T getAttribute(int offset, Class<T> type, boolean recursive)
   {
+    final FieldIndex index = getFieldIndex();
+    if (index != null) {
+      final T result = index.find(offset, type, recursive);
+      if (result == null ||
+          (offset >= result.getOffset() && offset < result.getOffset() + result.getSize())) {
+        return result;
+      }
+      // field has been modified without notification
+      fieldIndex = null;
+    }
     return getAttribute(this, offset, type, recursive);
   }
 
@@ -709,7 +741,7 @@ public <T extends StructEntry> T getAttribute(int offset, Class<T> type, boolean
    */
   public StructEntry getAttribute(String ename)
   {
-    return getAttribute(this, ename, true);
+    return getAttribute(ename, true);
   }
 
   /**
@@ -721,9 +753,50 @@ public StructEntry getAttribute(String ename)
    */
   public StructEntry getAttribute(String ename, boolean recursive)
   {
+    if (ename == null || ename.isEmpty()) {
+      return null;
+    }
+    final FieldIndex index = getFieldIndex();
+    if (index != null) {
+      final StructEntry result = index.find(ename, recursive);
+      if (result == null || ename.equals(result.getName())) {
+        return result;
+      }
+      // field has been renamed without notification
+      fieldIndex = null;
+    }
     return getAttribute(this, ename, recursive);
   }
 
+  /**
+   * Discards the attribute lookup index of this structure and all parent structures.
+   * <p>
+   * Field lists, names and offsets changed through the methods of this class and of
+   * {@link org.infinity.datatype.Datatype Datatype} are tracked automatically.
+   */
+  public void invalidateFieldIndex()
+  {
+    for (AbstractStruct struct = this; struct != null; struct = struct.superStruct) {
+      struct.fieldsVersion++;
+    }
+  }
+
+  // Returns the lookup index if it is up to date. The index is built only if the structure has not
+  // been modified since the previous lookup, so that lookups during parsing don't trigger rebuilds.
+  private FieldIndex getFieldIndex()
+  {
+    final FieldIndex index = fieldIndex;
+    if (index != null && index.version == fieldsVersion) {
+      return index;
+    }
+    if (fields.size() < INDEX_MIN_FIELDS || lookupVersion != fieldsVersion) {
+      lookupVersion = fieldsVersion;
+      return null;
+    }
+    fieldIndex = new FieldIndex(this);
+    return fieldIndex;
+  }
+
   private static <T extends StructEntry> T getAttribute(AbstractStruct parent, int offset,
                                                         Class<T> type, boolean recursive)
   {
@@ -937,8 +1010,10 @@ public void removeDatatype(AddRemovable removedEntry, boolean removeRecurse)
       }
       topStruct = topStruct.superStruct;
     }
-    if (topStruct instanceof Resource)
+    if (topStruct instanceof Resource) {
       topStruct.endoffset -= removedEntry.getSize();
+      topStruct.invalidateFieldIndex();
+    }
     adjustEntryOffsets(topStruct, this, removedEntry, -removedEntry.getSize());
     adjustSectionOffsets(topStruct, removedEntry, -removedEntry.getSize());
     datatypeRemoved(removedEntry);
@@ -1242,6 +1317,7 @@ protected void setExtraOffset(int offset)
   protected void setStartOffset(int offset)
   {
     startoffset = offset;
+    invalidateFieldIndex();
   }
 
   protected void writeFlatFields(OutputStream os) throws IOException
@@ -1303,4 +1379,234 @@ public void propertyChange(PropertyChangeEvent evt)
   {
     changeSupport.firePropertyChange(evt);
   }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Field list that invalidates the lookup index of the owning structure on modification. */
+  private final class FieldList extends ArrayList<StructEntry>
+  {
+    public FieldList(int initialCapacity)
+    {
+      super(initialCapacity);
+    }
+
+    @Override
+    public StructEntry set(int index, StructEntry element)
+    {
+      invalidateFieldIndex();
+      return super.set(index, element);
+    }
+
+    @Override
+    public boolean add(StructEntry e)
+    {
+      invalidateFieldIndex();
+      return super.add(e);
+    }
+
+    @Override
+    public void add(int index, StructEntry element)
+    {
+      invalidateFieldIndex();
+      super.add(index, element);
+    }
+
+    @Override
+    public StructEntry remove(int index)
+    {
+      invalidateFieldIndex();
+      return super.remove(index);
+    }
+
+    @Override
+    public boolean remove(Object o)
+    {
+      invalidateFieldIndex();
+      return super.remove(o);
+    }
+
+    @Override
+    public void clear()
+    {
+      invalidateFieldIndex();
+      super.clear();
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends StructEntry> c)
+    {
+      invalidateFieldIndex();
+      return super.addAll(c);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends StructEntry> c)
+    {
+      invalidateFieldIndex();
+      return super.addAll(index, c);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c)
+    {
+      invalidateFieldIndex();
+      return super.removeAll(c);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c)
+    {
+      invalidateFieldIndex();
+      return super.retainAll(c);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super StructEntry> filter)
+    {
+      invalidateFieldIndex();
+      return super.removeIf(filter);
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<StructEntry> operator)
+    {
+      invalidateFieldIndex();
+      super.replaceAll(operator);
+    }
+
+    @Override
+    public void sort(Comparator<? super StructEntry> c)
+    {
+      invalidateFieldIndex();
+      super.sort(c);
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex)
+    {
+      invalidateFieldIndex();
+      super.removeRange(fromIndex, toIndex);
+    }
+  }
+
+  /**
+   * Lookup index for fields by name and offset. Results are identical to a linear scan of the
+   * structure: substructures take precedence over their parent and earlier fields take precedence
+   * over later fields, which corresponds to the post-order of the field hierarchy.
+   */
+  private static final class FieldIndex
+  {
+    final int version;
+    final Map<String, StructEntry> names = new HashMap<>();
+    final Map<String, StructEntry> directNames = new HashMap<>();
+    final OffsetIndex offsets;
+    final OffsetIndex directOffsets;
+
+    FieldIndex(AbstractStruct struct)
+    {
+      this.version = struct.fieldsVersion;
+      final List<StructEntry> all = new ArrayList<>(struct.fields.size() * 2);
+      collect(struct, all);
+      for (final StructEntry e : all) {
+        names.putIfAbsent(e.getName(), e);
+      }
+      for (final StructEntry e : struct.fields) {
+        directNames.putIfAbsent(e.getName(), e);
+      }
+      this.offsets = new OffsetIndex(all);
+      this.directOffsets = new OffsetIndex(struct.fields);
+    }
+
+    StructEntry find(String name, boolean recursive)
+    {
+      return (recursive ? names : directNames).get(name);
+    }
+
+    <T extends StructEntry> T find(int offset, Class<T> type, boolean recursive)
+    {
+      return (recursive ? offsets : directOffsets).find(offset, type);
+    }
+
+    // Adds all fields of the specified structure in post-order
+    private static void collect(AbstractStruct struct, List<StructEntry> list)
+    {
+      for (final StructEntry e : struct.fields) {
+        if (e instanceof AbstractStruct) {
+          collect((AbstractStruct)e, list);
+        }
+        list.add(e);
+      }
+    }
+  }
+
+  /**
+   * Maps offsets to the ordered list of fields covering them. The offset range is split into
+   * segments at every field boundary, so each segment is covered by the same set of fields.
+   */
+  private static final class OffsetIndex
+  {
+    /** Sorted start offsets of all segments, including the end offset of the last segment. */
+    final int[] bounds;
+    /** Fields covering the respective segment in lookup order. */
+    final StructEntry[][] segments;
+
+    OffsetIndex(List<StructEntry> entries)
+    {
+      final int[] points = new int[entries.size() * 2];
+      int count = 0;
+      for (final StructEntry e : entries) {
+        if (e.getSize() > 0) {
+          points[count++] = e.getOffset();
+          points[count++] = e.getOffset() + e.getSize();
+        }
+      }
+      Arrays.sort(points, 0, count);
+      int numBounds = 0;
+      for (int i = 0; i < count; i++) {
+        if (numBounds == 0 || points[numBounds - 1] != points[i]) {
+          points[numBounds++] = points[i];
+        }
+      }
+      bounds = Arrays.copyOf(points, numBounds);
+
+      final int[] sizes = new int[Math.max(0, numBounds - 1)];
+      for (final StructEntry e : entries) {
+        if (e.getSize() > 0) {
+          final int end = Arrays.binarySearch(bounds, e.getOffset() + e.getSize());
+          for (int i = Arrays.binarySearch(bounds, e.getOffset()); i < end; i++) {
+            sizes[i]++;
+          }
+        }
+      }
+      segments = new StructEntry[sizes.length][];
+      for (int i = 0; i < sizes.length; i++) {
+        segments[i] = new StructEntry[sizes[i]];
+        sizes[i] = 0;
+      }
+      for (final StructEntry e : entries) {
+        if (e.getSize() > 0) {
+          final int end = Arrays.binarySearch(bounds, e.getOffset() + e.getSize());
+          for (int i = Arrays.binarySearch(bounds, e.getOffset()); i < end; i++) {
+            segments[i][sizes[i]++] = e;
+          }
+        }
+      }
+    }
+
+    <T extends StructEntry> T find(int offset, Class<T> type)
+    {
+      int idx = Arrays.binarySearch(bounds, offset);
+      if (idx < 0) {
+        idx = -idx - 2;
+      }
+      if (idx >= 0 && idx < segments.length) {
+        for (final StructEntry e : segments[idx]) {
+          if (type.isInstance(e)) {
+            return type.cast(e);
+          }
+        }
+      }
+      return null;
+    }
+  }
 }
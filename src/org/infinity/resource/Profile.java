@@ -809,6 +809,21 @@ public static Path getHomeRoot()
     return (ret instanceof Path) ? (Path)ret : getGameRoot();
   }
 
+  /**
+   * Returns a folder for persistent cache data of the current game. The folder is located in the
+   * user's home directory and is unique for each game installation. It is not created automatically.
+   * @return The cache folder as {@link Path} object. Returns {@code null} if no game is open.
+   */
+  public static Path getCacheFolder()
+  {
+    Path key = getChitinKey();
+    if (key == null) {
+      return null;
+    }
+    String name = String.format("%08x", key.toAbsolutePath().toString().toLowerCase(Locale.ENGLISH).hashCode());
+    return FileManager.resolve(System.getProperty("user.home"), ".nearinfinity", "cache", name);
+  }
+
   /**
    * Returns the game's language folder (where the effective dialog.tlk is located).
    * A Non-enhanced Edition game will always return the game's root folder instead.
@@ -23,8 +23,11 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import javax.swing.JComponent;
 
@@ -33,6 +36,7 @@
 import javax.swing.filechooser.FileSystemView;
 
 import org.infinity.NearInfinity;
+import org.infinity.check.StrrefUsage;
 import org.infinity.datatype.PriTypeBitmap;
 import org.infinity.datatype.SecTypeBitmap;
 import org.infinity.datatype.Song2daBitmap;
@@ -44,6 +48,7 @@
 import org.infinity.resource.are.AreResource;
 import org.infinity.resource.bcs.BafResource;
 import org.infinity.resource.bcs.BcsResource;
+import org.infinity.resource.bcs.DecompilerCache;
 import org.infinity.resource.chu.ChuResource;
 import org.infinity.resource.cre.CreResource;
 import org.infinity.resource.dlg.DlgResource;
@@ -61,6 +66,7 @@
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.resource.key.ResourceTreeFolder;
 import org.infinity.resource.key.ResourceTreeModel;
+import org.infinity.resource.key.ResourceTreeSnapshot;
 import org.infinity.resource.maze.MazeResource;
 import org.infinity.resource.mus.MusResource;
 import org.infinity.resource.other.EffResource;
@@ -85,6 +91,8 @@
 import org.infinity.resource.video.WbmResource;
 import org.infinity.resource.wed.WedResource;
 import org.infinity.resource.wmp.WmpResource;
+import org.infinity.search.AttributeStore;
+import org.infinity.search.ReferenceIndex;
 import org.infinity.util.StaticSimpleXorDecryptor;
 import org.infinity.util.CreMapCache;
 import org.infinity.util.DynamicArray;
@@ -112,6 +120,7 @@ public final class ResourceFactory implements FileWatchListener
   private JFileChooser fc;
   private Keyfile keyfile;
   private ResourceTreeModel treeModel;
+  private volatile ResourceCache resourceCache;
   private Path pendingSelection;
 
   public static Keyfile getKeyfile()
@@ -532,6 +541,7 @@ public static ResourceTreeModel getResourceTreeModel()
 
   /**
    * Returns all resources of the specified resource type from BIFFs, extra and override directories.
+   * The returned list can be modified by the caller.
    * @param type Resource extension.
    */
   public static List<ResourceEntry> getResources(String type)
@@ -541,12 +551,40 @@ public static List<ResourceEntry> getResources(String type)
 
   /**
    * Returns all resources of the specified resource type from BIFFs, override and specified
-   * extra directories.
+   * extra directories. The returned list can be modified by the caller.
    * @param type Resource extension.
    * @param extraDirs List of extra directories to search. Specify {@code null} to search default
    *                  extra directories.
    */
   public static List<ResourceEntry> getResources(String type, List<Path> extraDirs)
+  {
+    if (getInstance() != null) {
+      return new ArrayList<>(getInstance().getResourcesInternal(type, extraDirs));
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Returns all resources of the specified resource type from BIFFs, extra and override directories.
+   * Unlike {@link #getResources(String)} the returned list is unmodifiable and shared by all
+   * callers until the resource tree changes.
+   * @param type Resource extension.
+   */
+  public static List<ResourceEntry> getCachedResources(String type)
+  {
+    return getCachedResources(type, null);
+  }
+
+  /**
+   * Returns all resources of the specified resource type from BIFFs, override and specified
+   * extra directories. Unlike {@link #getResources(String, List)} the returned list is
+   * unmodifiable and shared by all callers until the resource tree changes.
+   * @param type Resource extension.
+   * @param extraDirs List of extra directories to search. Specify {@code null} to search default
+   *                  extra directories.
+   */
+  public static List<ResourceEntry> getCachedResources(String type, List<Path> extraDirs)
   {
     if (getInstance() != null) {
       return getInstance().getResourcesInternal(type, extraDirs);
@@ -892,7 +930,7 @@ static String fetchGameLanguage(Path iniFile)
     final String langDefault = "en_US";   // using default language, if no language entry found
 
     if (Profile.isEnhancedEdition() && iniFile != null && FileEx.create(iniFile).isFile()) {
-      String lang = BrowserMenuBar.getInstance().getSelectedGameLanguage();
+      String lang = (BrowserMenuBar.getInstance() != null) ? BrowserMenuBar.getInstance().getSelectedGameLanguage() : null;
 
       if (lang == null || lang.isEmpty()) {
         return autodetectGameLanguage(iniFile);
@@ -1074,6 +1112,10 @@ private void unregisterResourceInternal(Path resource)
     if (resource == null) {
       return;
     }
+    ReferenceIndex.invalidate(resource.getFileName().toString());
+    AttributeStore.invalidate(resource.getFileName().toString());
+    StrrefUsage.invalidate(resource.getFileName().toString());
+    DecompilerCache.invalidate();
     ResourceEntry selectedEntry = NearInfinity.getInstance().getResourceTree().getSelected();
 
     // 1. checking extra folders <- skipped because of issues on Windows systems
@@ -1173,6 +1215,10 @@ private void registerResourceInternal(Path resource, boolean autoselect)
     if (resource == null || !FileEx.create(resource).isFile()) {
       return;
     }
+    ReferenceIndex.invalidate(resource.getFileName().toString());
+    AttributeStore.invalidate(resource.getFileName().toString());
+    StrrefUsage.invalidate(resource.getFileName().toString());
+    DecompilerCache.invalidate();
 
     // 1. checking if resource has already been added to resource tree
     ResourceEntry entry = treeModel.getResourceEntry(resource.getFileName().toString(), true);
@@ -1293,17 +1339,19 @@ private void setPendingSelection(Path path)
   private void loadResourcesInternal() throws Exception
   {
     treeModel = new ResourceTreeModel();
+    // provides BIFF locations and folder content of the previous session
+    final ResourceTreeSnapshot snapshot = ResourceTreeSnapshot.load();
 
     // Get resources from keyfile
     NearInfinity.advanceProgress("Loading BIFF resources...");
-    keyfile.populateResourceTree(treeModel);
+    keyfile.populateResourceTree(treeModel, snapshot);
 
     // Add resources from extra folders
     NearInfinity.advanceProgress("Loading extra resources...");
     List<Path> extraPaths = Profile.getProperty(Profile.Key.GET_GAME_EXTRA_FOLDERS);
     extraPaths.forEach((path) -> {
       if (FileEx.create(path).isDirectory()) {
-        treeModel.addDirectory(treeModel.getRoot(), path, false);
+        treeModel.addDirectory(treeModel.getRoot(), path, false, snapshot);
       }
     });
 
@@ -1311,27 +1359,40 @@ private void loadResourcesInternal() throws Exception
     final boolean overrideInOverride = (BrowserMenuBar.getInstance() != null &&
                                         BrowserMenuBar.getInstance().getOverrideMode() == OverrideMode.InOverride);
     String overrideFolder = Profile.getOverrideFolderName();
-    List<Path> overridePaths = Profile.getOverrideFolders(false);
-    for (final Path overridePath: overridePaths) {
-      if (FileEx.create(overridePath).isDirectory()) {
-        try (DirectoryStream<Path> dstream = Files.newDirectoryStream(overridePath)) {
-          dstream.forEach((path) -> {
-            if (FileEx.create(path).isFile()) {
-              ResourceEntry entry = getResourceEntry(path.getFileName().toString());
-              if (entry instanceof FileResourceEntry) {
-                treeModel.addResourceEntry(entry, entry.getTreeFolderName(), true);
-              } else if (entry instanceof BIFFResourceEntry) {
-                ((BIFFResourceEntry)entry).setOverride(true);
-                if (overrideInOverride) {
-                  treeModel.removeResourceEntry(entry, entry.getExtension());
-                  treeModel.addResourceEntry(new FileResourceEntry(path, true), overrideFolder, true);
-                }
-              }
-            }
-          });
+    List<Path> overridePaths = new ArrayList<>(Profile.getOverrideFolders(false));
+    overridePaths.removeIf((path) -> !FileEx.create(path).isDirectory());
+    List<ResourceTreeSnapshot.Listing> listings = ResourceTreeSnapshot.listAll(snapshot, overridePaths);
+
+    // first match of each file name in order of override folders (as used by getResourceEntry())
+    Map<String, Path> overrideFiles = new LinkedHashMap<>();
+    for (int i = 0; i < listings.size(); i++) {
+      if (listings.get(i) == null) {
+        throw new IOException("Could not read override folder: " + overridePaths.get(i));
+      }
+      for (final Path path : listings.get(i).getFiles()) {
+        overrideFiles.putIfAbsent(path.getFileName().toString().toUpperCase(Locale.ENGLISH), path);
+      }
+    }
+
+    List<ResourceEntry> fileEntries = new ArrayList<>();
+    List<ResourceEntry> biffEntries = new ArrayList<>();
+    List<ResourceEntry> replacedEntries = new ArrayList<>();
+    for (final Path path : overrideFiles.values()) {
+      ResourceEntry entry = treeModel.getResourceEntry(path.getFileName().toString());
+      if (entry == null) {
+        fileEntries.add(new FileResourceEntry(path));
+      } else if (entry instanceof BIFFResourceEntry) {
+        ((BIFFResourceEntry)entry).setOverride(true);
+        if (overrideInOverride) {
+          biffEntries.add(entry);
+          replacedEntries.add(new FileResourceEntry(path, true));
         }
       }
     }
+    treeModel.removeResourceEntries(biffEntries, ResourceEntry::getExtension);
+    treeModel.addResourceEntries(replacedEntries, (entry) -> overrideFolder, true);
+    treeModel.addResourceEntries(fileEntries, ResourceEntry::getTreeFolderName, true);
+    snapshot.save();
     loadSpecialResources();
     treeModel.sort();
   }
@@ -1394,7 +1455,33 @@ private void addFileResource(Path path)
     }
   }
 
+  // Returns the resource list cache for the current state of the resource tree
+  private ResourceCache getResourceCache()
+  {
+    ResourceCache cache = resourceCache;
+    if (cache == null || cache.generation != ResourceTreeFolder.getGeneration()) {
+      cache = new ResourceCache(ResourceTreeFolder.getGeneration());
+      resourceCache = cache;
+    }
+    return cache;
+  }
+
   private List<ResourceEntry> getResourcesInternal(String type, List<Path> extraDirs)
+  {
+    final boolean includeOverride = (BrowserMenuBar.getInstance() != null &&
+                                     !BrowserMenuBar.getInstance().ignoreOverrides());
+    final String key = type.toUpperCase(Locale.ENGLISH) + '|' + includeOverride + '|' +
+                       ((extraDirs != null) ? extraDirs.toString() : "");
+    final ResourceCache cache = getResourceCache();
+    List<ResourceEntry> retVal = cache.lists.get(key);
+    if (retVal == null) {
+      retVal = Collections.unmodifiableList(collectResources(type, extraDirs, includeOverride));
+      cache.lists.put(key, retVal);
+    }
+    return retVal;
+  }
+
+  private List<ResourceEntry> collectResources(String type, List<Path> extraDirs, boolean includeOverride)
   {
     List<ResourceEntry> list;
     ResourceTreeFolder bifNode = treeModel.getFolder(type);
@@ -1422,7 +1509,7 @@ private List<ResourceEntry> getResourcesInternal(String type, List<Path> extraDi
     }
 
     // include override folders
-    if (BrowserMenuBar.getInstance() != null && !BrowserMenuBar.getInstance().ignoreOverrides()) {
+    if (includeOverride) {
       ResourceTreeFolder overrideNode = treeModel.getFolder(Profile.getOverrideFolderName());
       if (overrideNode != null) {
         list.addAll(overrideNode.getResourceEntries(type));
@@ -1437,54 +1524,69 @@ private List<ResourceEntry> getResourcesInternal(String type, List<Path> extraDi
 
   private List<ResourceEntry> getResourcesInternal(Pattern pattern, List<Path> extraDirs)
   {
-    final ArrayList<ResourceEntry> retList = new ArrayList<>();
+    final List<ResourceEntry> allResources = getAllResourcesInternal(extraDirs);
+    if (pattern == null) {
+      return new ArrayList<>(allResources);
+    }
 
-    String[] resTypes = Profile.getAvailableResourceTypes();
-    for (final String type : resTypes) {
-      fillResources(retList, type, pattern);
+    // filtering preserves the sort order of the cached list
+    final ArrayList<ResourceEntry> retList = new ArrayList<>();
+    for (final ResourceEntry entry : allResources) {
+      if (pattern.matcher(entry.getResourceName()).matches()) {
+        retList.add(entry);
+      }
     }
+    return retList;
+  }
 
-    // include extra folders
+  // Returns a sorted unmodifiable list of all resources, which is cached until the resource tree changes
+  private List<ResourceEntry> getAllResourcesInternal(List<Path> extraDirs)
+  {
     if (extraDirs == null) {
       extraDirs = Profile.getProperty(Profile.Key.GET_GAME_EXTRA_FOLDERS);
     }
-    extraDirs.forEach(path -> {
-      fillResources(retList, path.getFileName().toString(), pattern);
-    });
+    final boolean includeOverride = (BrowserMenuBar.getInstance() != null &&
+                                     !BrowserMenuBar.getInstance().ignoreOverrides());
+    final String key = "*|" + includeOverride + '|' + extraDirs.toString();
+    final ResourceCache cache = getResourceCache();
+    List<ResourceEntry> retVal = cache.lists.get(key);
+    if (retVal == null) {
+      final ArrayList<ResourceEntry> list = new ArrayList<>();
+
+      String[] resTypes = Profile.getAvailableResourceTypes();
+      for (final String type : resTypes) {
+        fillResources(list, type);
+      }
 
-    // include override folders
-    if (BrowserMenuBar.getInstance() != null && !BrowserMenuBar.getInstance().ignoreOverrides()) {
-      fillResources(retList, Profile.getOverrideFolderName(), pattern);
-    }
+      // include extra folders
+      extraDirs.forEach(path -> {
+        fillResources(list, path.getFileName().toString());
+      });
 
-    retList.sort(null);
+      // include override folders
+      if (includeOverride) {
+        fillResources(list, Profile.getOverrideFolderName());
+      }
 
-    return retList;
+      list.sort(null);
+      retVal = Collections.unmodifiableList(list);
+      cache.lists.put(key, retVal);
+    }
+    return retVal;
   }
 
   /**
-   * Adds to {@code retList} all resources from specified {@code folderName}, that
-   * match specified {@code pattern}. If such folder not exists, do nothing.
+   * Adds to {@code retList} all resources from specified {@code folderName}.
+   * If such folder not exists, do nothing.
    *
    * @param retList List to be filled. Must not be {@code null}
    * @param folderName Folder from which all direct resources must be added
-   * @param pattern Pattern to which resource name must match to be added to the list.
-   *        If {@code null}, then all folder resources will be added
    */
-  private void fillResources(List<ResourceEntry> retList, String folderName, Pattern pattern)
+  private void fillResources(List<ResourceEntry> retList, String folderName)
   {
     final ResourceTreeFolder folder = treeModel.getFolder(folderName);
     if (folder != null) {
-      final List<ResourceEntry> entries = folder.getResourceEntries();
-      if (pattern == null) {
-        retList.addAll(entries);
-      } else {
-        for (final ResourceEntry entry : entries) {
-          if (pattern.matcher(entry.getResourceName()).matches()) {
-            retList.add(entry);
-          }
-        }
-      }
+      retList.addAll(folder.getResourceEntries());
     }
   }
 
@@ -1636,6 +1738,9 @@ private boolean saveResourceInternal(Resource resource, Component parent)
     }
     JOptionPane.showMessageDialog(parent, "File saved to \"" + outPath.toAbsolutePath() + '\"',
                                   "Save complete", JOptionPane.INFORMATION_MESSAGE);
+    ReferenceIndex.invalidate(entry.getResourceName());
+    AttributeStore.invalidate(entry.getResourceName());
+    StrrefUsage.invalidate(entry.getResourceName());
     if ("IDS".equals(entry.getExtension())) {
       IdsMapCache.remove(entry);
       final IdsBrowser idsbrowser = ChildFrame.getFirstFrame(IdsBrowser.class);
@@ -1669,4 +1774,18 @@ public void fileChanged(FileWatchEvent e)
   }
 
 //--------------------- End Interface FileWatchListener ---------------------
+
+//-------------------------- INNER CLASSES --------------------------
+
+  // Resource lists by query, valid for a specific generation of the resource tree
+  private static class ResourceCache
+  {
+    private final int generation;
+    private final Map<String, List<ResourceEntry>> lists = new ConcurrentHashMap<>();
+
+    public ResourceCache(int generation)
+    {
+      this.generation = generation;
+    }
+  }
 }
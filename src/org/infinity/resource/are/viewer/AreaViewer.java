@@ -1951,6 +1951,7 @@ public void run()
               setZoomFactor(zoom, Settings.ZoomFactor);
             }
           } else {
+            rcCanvas.updateTiles();
             VolatileImage srcImage = (VolatileImage)rcCanvas.getImage();
             dstImage = ColorConvert.createCompatibleImage(srcImage.getWidth(), srcImage.getHeight(),
                                                           srcImage.getTransparency());
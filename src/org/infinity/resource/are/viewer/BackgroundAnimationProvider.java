@@ -75,6 +75,10 @@ public void setAnimation(BamDecoder bam)
     this.control = this.bam.createControl();
     this.control.setMode(BamDecoder.BamControl.Mode.INDIVIDUAL);
     this.control.setSharedPerCycle(!isMultiPart());
+    if (this.control instanceof BamV1Decoder.BamV1Control) {
+      // frames are drawn repeatedly at animation frame rate
+      ((BamV1Decoder.BamV1Control)this.control).setFrameCacheSize(BamV1Decoder.DefaultFrameCacheSize);
+    }
     resetFrame();
 
     updateCanvas();
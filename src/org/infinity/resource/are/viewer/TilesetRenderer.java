@@ -9,12 +9,21 @@
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
 import java.awt.image.VolatileImage;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.infinity.datatype.Bitmap;
 import org.infinity.datatype.DecNumber;
@@ -56,6 +65,9 @@ public enum RenderMode {
   private static final int MaxOverlays = 8;   // max. supported overlay entries
   private static final double MinZoomFactor = 1.0/64.0;   // lower zoom factor limit
   private static final double MaxZoomFactor = 16.0;       // upper zoom factor limit
+  private static final int TileMargin = 1;                // number of tiles drawn beyond the visible area
+  private static final int TileCacheSize = 2048;          // max. number of cached composed tiles (16 KB each)
+  private static final int ParallelTileThreshold = 64;    // min. number of tiles to compose concurrently
 
   // Placeholder for missing tile data
   private static final int[] DEFAULT_TILE_DATA = createDefaultTile();
@@ -76,14 +88,23 @@ public enum RenderMode {
   private final List<Tileset> listTilesets = new ArrayList<Tileset>(MaxOverlays);
   // array of tile indices used for closed door states for each door structure
   private final List<DoorInfo> listDoorTileIndices = new ArrayList<DoorInfo>();
+  // composed tile graphics, mapped by tile position and render state (see getTileCacheKey())
+  private final Map<Long, int[]> tileCache = new LinkedHashMap<Long, int[]>(256, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest)
+    {
+      return size() > TileCacheSize;
+    }
+  };
 
-  private final BufferedImage workingTile = ColorConvert.createCompatibleImage(64, 64, true); // internally used for drawing tile graphics
   private WedResource wed;                // current wed resource
   private int overlayTransparency;        // overlay transparency strength from 0 (opaque) to 255 (transparent)
   private RenderMode renderingMode = RenderMode.Auto; // the rendering mode to use for processing overlayed tiles
   private boolean overlaysEnabled = true; // indicates whether to draw overlays
+  private boolean multiThreaded = true;   // indicates whether tiles are composed concurrently
   private boolean blendedOverlays;        // indicates whether to blend overlays with tile graphics
   private boolean hasChangedMap, hasChangedAppearance, hasChangedOverlays, hasChangedDoorState;
+  private int dirtyTileCount;             // number of tiles not yet drawn in their current state
   private boolean isClosed = false;       // opened/closed state of door tiles
   private boolean showGrid = false;       // indicates whether to draw a grid on the tiles
   private boolean forcedInterpolation = false;  // indicates whether to use a pre-defined interpolation type or set one based on zoom factor
@@ -203,6 +224,8 @@ public void setRenderingMode(RenderMode mode)
     if (mode != renderingMode) {
       renderingMode = mode;
       hasChangedOverlays = true;
+      clearTileCache();
+      invalidateOverlayTiles();
       updateDisplay();
     }
   }
@@ -223,10 +246,28 @@ public void setOverlaysEnabled(boolean enable)
     if (overlaysEnabled != enable) {
       overlaysEnabled = enable;
       hasChangedOverlays = true;
+      clearTileCache();
+      invalidateOverlayTiles();
       updateDisplay();
     }
   }
 
+  /**
+   * Returns whether tiles are composed concurrently when larger parts of the map are redrawn.
+   */
+  public boolean isMultiThreaded()
+  {
+    return multiThreaded;
+  }
+
+  /**
+   * Specifies whether tiles are composed concurrently when larger parts of the map are redrawn.
+   */
+  public void setMultiThreaded(boolean enable)
+  {
+    multiThreaded = enable;
+  }
+
   /**
    * Returns whether the current map contains overlays
    */
@@ -303,6 +344,7 @@ public void setDoorsClosed(boolean isClosed)
     if (this.isClosed != isClosed) {
       this.isClosed = isClosed;
       hasChangedDoorState = true;
+      invalidateDoorTiles();
       updateDisplay();
     }
   }
@@ -340,6 +382,7 @@ public void setLighting(int lighting)
     if (lighting != this.lighting) {
       this.lighting = lighting;
       hasChangedAppearance = true;
+      invalidateAllTiles();
       updateDisplay();
     }
   }
@@ -404,6 +447,7 @@ public void advanceTileFrame()
       hasChangedOverlays = true;
     }
     if (hasChangedOverlays) {
+      invalidateOverlayTiles();
       updateDisplay();
     }
   }
@@ -419,6 +463,7 @@ public void setTileFrame(int index)
       hasChangedOverlays = true;
     }
     if (hasChangedOverlays) {
+      invalidateOverlayTiles();
       updateDisplay();
     }
   }
@@ -461,6 +506,8 @@ public void setMiniMap(int mapType, GraphicsResource bmp)
           miniMapType = ViewerConstants.MAP_NONE;
       }
       hasChangedAppearance = true;
+      clearTileCache();
+      invalidateAllTiles();
       updateDisplay();
     }
   }
@@ -484,6 +531,10 @@ public void setMiniMapTransparency(int alpha)
     if (miniMapAlpha != alpha) {
       miniMapAlpha = alpha;
       hasChangedAppearance = true;
+      if (miniMap != null) {
+        clearTileCache();
+        invalidateAllTiles();
+      }
       updateDisplay();
     }
   }
@@ -501,6 +552,17 @@ public void reload(boolean force)
     updateDisplay(b || force);
   }
 
+  /**
+   * Draws all tiles which are pending an update. Tiles outside of the visible area of the component
+   * are otherwise drawn only when they become visible.
+   */
+  public void updateTiles()
+  {
+    if (isInitialized()) {
+      drawDirtyTiles(null);
+    }
+  }
+
   @Override
   public void paint(Graphics g)
   {
@@ -522,6 +584,10 @@ public void paint(Graphics g)
         }
       } while (image.contentsLost());
     }
+    if (dirtyTileCount > 0 && isInitialized()) {
+      // tiles may have been skipped while outside of the visible area
+      drawDirtyTiles(toMapRect(g.getClipBounds()));
+    }
     super.paint(g);
   }
 
@@ -615,6 +681,7 @@ private boolean init(int overlayTransparency, WedResource wed)
       }
     }
     hasChangedMap = true;
+    invalidateAllTiles();
 
     // drawing map data
     updateDisplay();
@@ -629,6 +696,8 @@ private void release(boolean forceUpdate)
       wed = null;
       listTilesets.clear();
       listDoorTileIndices.clear();
+      clearTileCache();
+      dirtyTileCount = 0;
 
       Image img = getImage();
       if (img != null) {
@@ -705,6 +774,21 @@ private boolean initWed(WedResource wed)
         return false;
       }
 
+      // marking tiles which share graphics with door tiles
+      Set<Integer> doorTileIndices = new HashSet<>();
+      List<Tile> tiles = listTilesets.get(0).listTiles;
+      for (final DoorInfo di : listDoorTileIndices) {
+        for (int j = 0, iCount = di.getIndicesCount(); j < iCount; j++) {
+          int index = di.getIndex(j);
+          if (index >= 0 && index < tiles.size()) {
+            doorTileIndices.add(tiles.get(index).getPrimaryIndex());
+          }
+        }
+      }
+      for (final Tile tile : tiles) {
+        tile.setDoorTile(doorTileIndices.contains(tile.getPrimaryIndex()));
+      }
+
       return true;
     } else {
       return false;
@@ -728,19 +812,11 @@ private void updateDisplay(boolean forced)
         forced |= ((VolatileImage)getImage()).contentsLost();
       }
 
-      if (hasChangedMap || hasChangedAppearance || forced) {
-        // redraw each tile
-        drawAllTiles();
-      } else {
-        if (hasChangedOverlays) {
-          // redraw overlayed tiles only
-          drawOverlayTiles();
-        }
-        if (hasChangedDoorState) {
-          // redraw door tiles only
-          drawDoorTiles();
-        }
+      if (forced) {
+        invalidateAllTiles();
       }
+      // tiles outside of the visible area are drawn when they become visible
+      drawDirtyTiles(toMapRect(getVisibleRect()));
       repaint();
       notifyChangeListeners();
       hasChangedMap = false;
@@ -759,34 +835,148 @@ private boolean hasOverlay(int ovlIdx)
     return false;
   }
 
-  // draws all tiles of the map
-  private void drawAllTiles()
+  // Marks all tiles of the map for redrawing
+  private void invalidateAllTiles()
   {
-    Tileset ts = listTilesets.get(0);
-    for (int i = 0, size = ts.listTiles.size(); i < size; i++) {
-      Tile tile = ts.listTiles.get(i);
-      drawTile(tile, isDoorTile(tile));
+    if (!listTilesets.isEmpty()) {
+      invalidateTiles(listTilesets.get(0).listTiles);
     }
   }
 
-  // draws overlayed tiles only
-  private void drawOverlayTiles()
+  // Marks overlayed tiles for redrawing
+  private void invalidateOverlayTiles()
   {
+    if (!listTilesets.isEmpty()) {
+      invalidateTiles(listTilesets.get(0).listOverlayTiles);
+    }
+  }
+
+  // Marks door tiles for redrawing
+  private void invalidateDoorTiles()
+  {
+    if (!listTilesets.isEmpty()) {
+      for (final Tile tile : listTilesets.get(0).listTiles) {
+        if (tile.isDoorTile() && !tile.isDirty()) {
+          tile.setDirty(true);
+          dirtyTileCount++;
+        }
+      }
+    }
+  }
+
+  private void invalidateTiles(List<Tile> tiles)
+  {
+    for (int i = 0, size = tiles.size(); i < size; i++) {
+      Tile tile = tiles.get(i);
+      if (!tile.isDirty()) {
+        tile.setDirty(true);
+        dirtyTileCount++;
+      }
+    }
+  }
+
+  // Discards all cached tile graphics. Required if tile composition depends on a state not covered by the cache key.
+  private void clearTileCache()
+  {
+    synchronized (tileCache) {
+      tileCache.clear();
+    }
+  }
+
+  // Converts a rectangle in (scaled) component coordinates into map coordinates, returns null for null argument
+  private Rectangle toMapRect(Rectangle rect)
+  {
+    if (rect != null) {
+      int x = (int)Math.floor(rect.x / zoomFactor);
+      int y = (int)Math.floor(rect.y / zoomFactor);
+      int w = (int)Math.ceil((rect.x + rect.width) / zoomFactor) - x;
+      int h = (int)Math.ceil((rect.y + rect.height) / zoomFactor) - y;
+      return new Rectangle(x, y, w, h);
+    }
+    return null;
+  }
+
+  // Draws all tiles marked for redrawing which intersect the specified map area (plus margin). Specify null to draw all tiles.
+  private void drawDirtyTiles(Rectangle area)
+  {
+    if (dirtyTileCount <= 0 || (area != null && area.isEmpty()) || getImage() == null) {
+      return;
+    }
+
     Tileset ts = listTilesets.get(0);
-    for (int i = 0, size = ts.listOverlayTiles.size(); i < size; i++) {
-      Tile tile = ts.listOverlayTiles.get(i);
-      drawTile(tile, isDoorTile(tile));
+    int x0 = 0, y0 = 0, x1 = ts.tilesX, y1 = ts.tilesY;
+    if (area != null) {
+      x0 = Math.max(0, area.x / 64 - TileMargin);
+      y0 = Math.max(0, area.y / 64 - TileMargin);
+      x1 = Math.min(ts.tilesX, (area.x + area.width + 63) / 64 + TileMargin);
+      y1 = Math.min(ts.tilesY, (area.y + area.height + 63) / 64 + TileMargin);
+    }
+
+    // collecting dirty tiles by tile row
+    List<TileBand> bands = new ArrayList<>();
+    int numTiles = 0;
+    for (int y = y0; y < y1; y++) {
+      TileBand band = null;
+      for (int x = x0, pos = y * ts.tilesX + x0; x < x1 && pos < ts.listTiles.size(); x++, pos++) {
+        Tile tile = ts.listTiles.get(pos);
+        if (tile.isDirty()) {
+          if (band == null) {
+            band = new TileBand(y, x0, x1 - x0);
+            bands.add(band);
+          }
+          band.add(x);
+          tile.setDirty(false);
+          dirtyTileCount--;
+          numTiles++;
+        }
+      }
+    }
+
+    final Graphics2D g = (Graphics2D)getImage().getGraphics();
+    try {
+      if (multiThreaded && bands.size() > 1 && numTiles >= ParallelTileThreshold) {
+        // bands are composed concurrently, drawing on the target image is serialized
+        List<Callable<Void>> tasks = new ArrayList<>(bands.size());
+        for (final TileBand band : bands) {
+          tasks.add(() -> {
+            composeBand(band);
+            synchronized (g) {
+              band.draw(g);
+            }
+            return null;
+          });
+        }
+        for (final Future<Void> result : ForkJoinPool.commonPool().invokeAll(tasks)) {
+          try {
+            result.get();
+          } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+          }
+        }
+      } else {
+        for (final TileBand band : bands) {
+          composeBand(band);
+          band.draw(g);
+        }
+      }
+    } finally {
+      g.dispose();
     }
   }
 
-  // draws door tiles only
-  private void drawDoorTiles()
+  // Composes all tiles of the specified band, including overlays, lighting and mini map
+  private void composeBand(TileBand band)
   {
-    for (int i = 0, size = listDoorTileIndices.size(); i < size; i++) {
-      DoorInfo di = listDoorTileIndices.get(i);
-      for (int j = 0, iCount = di.getIndicesCount(); j < iCount; j++) {
-        Tile tile = listTilesets.get(0).listTiles.get(di.getIndex(j));
-        drawTile(tile, isDoorTile(tile));
+    Tileset ts = listTilesets.get(0);
+    int[] tile = new int[64*64];
+    int[] target = band.getBuffer();
+    int stride = band.getWidth() * 64;
+    for (int i = 0, count = band.getTileCount(); i < count; i++) {
+      int x = band.getTileX(i);
+      int pos = band.getRow() * ts.tilesX + x;
+      composeTile(pos, ts.listTiles.get(pos), tile);
+      for (int y = 0, dst = (x - band.getStartX()) * 64; y < 64; y++, dst += stride) {
+        System.arraycopy(tile, y * 64, target, dst, 64);
       }
     }
   }
@@ -916,24 +1106,45 @@ private void drawTileBlended(int[] primaryTile, int[] secondaryTile, int[] overl
     }
   }
 
-  // draws the specified tile into the target graphics buffer
-  private synchronized void drawTile(Tile tile, boolean isDoorTile)
+  // composes the graphics of the specified tile at map position "pos" into the 64x64 pixel target buffer
+  private void composeTile(int pos, Tile tile, int[] target)
   {
     if (tile != null) {
+      boolean isDoorTile = tile.isDoorTile();
       boolean isDoorClosed = (Profile.getEngine() == Profile.Engine.PST) ? !isClosed : isClosed;
-      int[] target = ((DataBufferInt)workingTile.getRaster().getDataBuffer()).getData();
 
-      if (overlaysEnabled && tile.hasOverlay() && hasOverlay(tile.getOverlayIndex())) {   // overlayed tile
+      // determining tile graphics used for the current tile state
+      boolean isOverlayed = overlaysEnabled && tile.hasOverlay() && hasOverlay(tile.getOverlayIndex());
+      int primaryIdx, overlayIdx = -1;
+      if (isOverlayed) {
+        primaryIdx = tile.getPrimaryIndex();
+        overlayIdx = listTilesets.get(tile.getOverlayIndex()).listTiles.get(0).getPrimaryIndex();
+      } else {
+        primaryIdx = (!isDoorClosed || !isDoorTile) ? tile.getPrimaryIndex() : tile.getSecondaryIndex();
+        if (primaryIdx < 0) { primaryIdx = tile.getPrimaryIndex(); }    // XXX: hackish work-around for faulty tile definitions
+      }
+
+      Long key = getTileCacheKey(pos, primaryIdx, overlayIdx, isDoorTile && isDoorClosed);
+      int[] cachedTile;
+      synchronized (tileCache) {
+        cachedTile = tileCache.get(key);
+      }
+      if (cachedTile != null) {
+        System.arraycopy(cachedTile, 0, target, 0, target.length);
+        return;
+      }
+
+      if (isOverlayed) {   // overlayed tile
         // preparing graphics data
         int overlay = tile.getOverlayIndex();
         if (overlay < listTilesets.size() && !listTilesets.get(overlay).listTiles.isEmpty()) {
-          int tileIdx = listTilesets.get(overlay).listTiles.get(0).getPrimaryIndex();
+          int tileIdx = overlayIdx;
           int[] srcOvl = null;
           if (tileIdx >= 0) {
             srcOvl = listTilesets.get(overlay).listTileData.get(tileIdx);
           }
           int[] srcPri = null;
-          tileIdx = tile.getPrimaryIndex();
+          tileIdx = primaryIdx;
           if (tileIdx >= 0) {
             srcPri = listTilesets.get(0).listTileData.get(tileIdx);
           }
@@ -959,8 +1170,7 @@ private synchronized void drawTile(Tile tile, boolean isDoorTile)
       } else {    // no overlay or disabled overlay
         // preparing tile graphics
         int[] srcTile = null;
-        int tileIdx = (!isDoorClosed || !isDoorTile) ? tile.getPrimaryIndex() : tile.getSecondaryIndex();
-        if (tileIdx < 0) { tileIdx = tile.getPrimaryIndex(); }    // XXX: hackish work-around for faulty tile definitions
+        int tileIdx = primaryIdx;
         if (tileIdx >= 0 && tileIdx < listTilesets.get(0).listTileData.size()) {
           srcTile = listTilesets.get(0).listTileData.get(tileIdx);
         } else {
@@ -1023,36 +1233,22 @@ private synchronized void drawTile(Tile tile, boolean isDoorTile)
         }
       }
 
-      // drawing tile on canvas
-      if (getImage() != null) {
-        Graphics2D g = (Graphics2D)getImage().getGraphics();
-        g.drawImage(workingTile, tile.getX(), tile.getY(), null);
-        g.dispose();
+      synchronized (tileCache) {
+        tileCache.put(key, target.clone());
       }
-      target = null;
     }
   }
 
-  // Returns whether the specified tile is used as a door tile
-  private boolean isDoorTile(Tile tile)
+  // Returns a key which identifies the composed graphics of a tile at the given map position in the current
+  // lighting and door state. Tile indices are in range [-1, 0xffffe].
+  private Long getTileCacheKey(int pos, int primaryIdx, int overlayIdx, boolean isDoorClosed)
   {
-    if (tile != null) {
-      int tileIdx = tile.getPrimaryIndex();
-      for (int i = 0, size = listDoorTileIndices.size(); i < size; i++) {
-        DoorInfo di = listDoorTileIndices.get(i);
-        for (int j = 0, iCount = di.getIndicesCount(); j < iCount; j++) {
-          try {
-            int idx = listTilesets.get(0).listTiles.get(di.getIndex(j)).getPrimaryIndex();
-            if (idx == tileIdx) {
-              return true;
-            }
-          } catch (Exception e) {
-            // ignore invalid tile indices
-          }
-        }
-      }
-    }
-    return false;
+    long key = (long)(pos & 0xfffff) << 43;
+    key |= (long)((overlayIdx + 1) & 0xfffff) << 23;
+    key |= (long)((primaryIdx + 1) & 0xfffff) << 3;
+    key |= isDoorClosed ? 4L : 0L;
+    key |= lighting & 3;
+    return Long.valueOf(key);
   }
 
   // Notify all registered change listeners
@@ -1234,6 +1430,8 @@ private ResourceEntry getTisResource(WedResource wed, Overlay ovl)
     private int tileCount, curTile;   // number of primary tiles, currently selected tile
     private int x, y, flags;          // (x, y) as pixel coordinates, flags defines overlay usage
     private boolean isTisV1;
+    private boolean isDoorTile;       // whether tile graphics depend on the door state
+    private boolean isDirty;          // whether tile has to be redrawn
 
     public Tile(int x, int y, int tileCount, int[] index, int index2, int flags, boolean isTisV1)
     {
@@ -1254,6 +1452,28 @@ public boolean isTisV1()
       return isTisV1;
     }
 
+    // Returns whether this tile is used as a door tile
+    public boolean isDoorTile()
+    {
+      return isDoorTile;
+    }
+
+    public void setDoorTile(boolean set)
+    {
+      isDoorTile = set;
+    }
+
+    // Returns whether this tile has not yet been drawn in its current state
+    public boolean isDirty()
+    {
+      return isDirty;
+    }
+
+    public void setDirty(boolean set)
+    {
+      isDirty = set;
+    }
+
     // Returns the current primary tile index
     public int getPrimaryIndex()
     {
@@ -1342,6 +1562,62 @@ public int getOverlayIndex()
   }
 
 
+  // Stores the dirty tiles of a single tile row and their composed graphics
+  private static class TileBand
+  {
+    private final int row, startX, width;   // tile row, first tile column and number of tile columns
+    private final int[] tileX;              // tile columns to compose, in ascending order
+    private int tileCount;
+    private BufferedImage image;
+
+    public TileBand(int row, int startX, int width)
+    {
+      this.row = row;
+      this.startX = startX;
+      this.width = width;
+      this.tileX = new int[width];
+    }
+
+    public void add(int x)
+    {
+      tileX[tileCount++] = x;
+    }
+
+    public int getRow() { return row; }
+    public int getStartX() { return startX; }
+    public int getWidth() { return width; }
+    public int getTileCount() { return tileCount; }
+    public int getTileX(int index) { return tileX[index]; }
+
+    // Returns the pixel buffer of the band graphics, covering all tile columns
+    public int[] getBuffer()
+    {
+      if (image == null) {
+        image = new BufferedImage(width * 64, 64, BufferedImage.TYPE_INT_ARGB);
+      }
+      return ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+    }
+
+    // Draws composed tiles onto the target graphics, adjacent tiles at once. Releases the band graphics.
+    public void draw(Graphics2D g)
+    {
+      if (image != null) {
+        for (int i = 0; i < tileCount; ) {
+          int first = tileX[i];
+          int last = first;
+          while (++i < tileCount && tileX[i] == last + 1) {
+            last++;
+          }
+          int sx1 = (first - startX) * 64, sx2 = (last + 1 - startX) * 64;
+          g.drawImage(image, first * 64, row * 64, (last + 1) * 64, row * 64 + 64, sx1, 0, sx2, 64, null);
+        }
+        image.flush();
+        image = null;
+      }
+    }
+  }
+
+
   // Stores relevant information about door structures
   private static class DoorInfo
   {
@@ -0,0 +1,432 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource.bcs;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.infinity.resource.Profile;
+import org.infinity.util.CreMapCache;
+import org.infinity.util.Misc;
+import org.infinity.util.StaticSimpleXorDecryptor;
+import org.infinity.util.io.FileEx;
+import org.infinity.util.io.FileManager;
+import org.infinity.util.io.StreamUtils;
+
+/**
+ * Compiles BAF sources or decompiles BCS scripts of whole directories without user interface.
+ * <p>
+ * Scripts are processed in parallel against the function signatures and IDS maps of the currently
+ * opened game. Each script is written to the output directory under the same relative path, using
+ * the file extension of the target format. Errors and warnings are collected per script and can be
+ * written as a tab-separated report.
+ */
+public final class BatchCompiler
+{
+  /** Available batch operations. */
+  public enum Mode {
+    /** Compiles BAF files into BCS files. */
+    COMPILE("BAF", "BCS"),
+    /** Decompiles BCS and BS files into BAF files. */
+    DECOMPILE("BCS", "BAF");
+
+    private final String inputExt;
+    private final String outputExt;
+
+    private Mode(String inputExt, String outputExt)
+    {
+      this.inputExt = inputExt;
+      this.outputExt = outputExt;
+    }
+
+    /** Returns whether the specified file is processed by this mode. */
+    public boolean accept(Path file)
+    {
+      String ext = FileManager.getFileExtension(file).toUpperCase(Locale.ENGLISH);
+      return ext.equals(inputExt) || (this == DECOMPILE && ext.equals("BS"));
+    }
+
+    /** Returns the file extension of generated files. */
+    public String getOutputExtension()
+    {
+      return outputExt;
+    }
+  }
+
+  private static final String REPORT_HEADER = "file\tseverity\tline\tcolumn\tmessage";
+
+  private final Mode mode;
+  private Charset charset = Misc.CHARSET_DEFAULT;
+  private int numThreads = Runtime.getRuntime().availableProcessors();
+  private boolean verbose;
+  private boolean generateComments;
+
+  public BatchCompiler(Mode mode)
+  {
+    if (mode == null) {
+      throw new NullPointerException();
+    }
+    this.mode = mode;
+  }
+
+  /** Returns the batch operation. */
+  public Mode getMode()
+  {
+    return mode;
+  }
+
+  /** Returns the character set of script files. */
+  public Charset getCharset()
+  {
+    return charset;
+  }
+
+  /** Specifies the character set of script files. Default: windows-1252. */
+  public void setCharset(Charset charset)
+  {
+    this.charset = (charset != null) ? charset : Misc.CHARSET_DEFAULT;
+  }
+
+  /** Returns the max. number of scripts processed in parallel. */
+  public int getThreadCount()
+  {
+    return numThreads;
+  }
+
+  /** Specifies the max. number of scripts processed in parallel. Default: number of available processors. */
+  public void setThreadCount(int count)
+  {
+    numThreads = Math.max(1, count);
+  }
+
+  /** Returns whether more compile warnings are generated. */
+  public boolean isVerbose()
+  {
+    return verbose;
+  }
+
+  /** Specifies whether more compile warnings are generated. */
+  public void setVerbose(boolean set)
+  {
+    verbose = set;
+  }
+
+  /** Returns whether function-specific comments are generated by decompiling. */
+  public boolean isGenerateComments()
+  {
+    return generateComments;
+  }
+
+  /** Specifies whether function-specific comments are generated by decompiling. */
+  public void setGenerateComments(boolean enable)
+  {
+    generateComments = enable;
+  }
+
+  /**
+   * Processes all matching scripts of the input directory and its subdirectories.
+   * @param inputDir Directory containing the scripts to process.
+   * @param outputDir Directory for the generated files. Subdirectories are created as needed.
+   * @return Results of all processed scripts, sorted by input path.
+   * @throws IOException if the input directory could not be read.
+   */
+  public List<Result> process(Path inputDir, Path outputDir) throws IOException
+  {
+    List<Path> files;
+    try (Stream<Path> stream = Files.walk(inputDir)) {
+      files = stream.filter(p -> FileEx.create(p).isFile() && mode.accept(p)).sorted().collect(Collectors.toList());
+    }
+    if (files.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    // loading shared data before processing scripts concurrently
+    Signatures.getTriggers();
+    Signatures.getActions();
+    if (mode == Mode.COMPILE || generateComments) {
+      CreMapCache.init();
+    }
+
+    final List<Future<Result>> futures = new ArrayList<>(files.size());
+    final ThreadPoolExecutor executor = Misc.createThreadPool(numThreads, numThreads * 2);
+    try {
+      for (final Path file : files) {
+        final Path relPath = inputDir.relativize(file);
+        final Path outFile = outputDir.resolve(StreamUtils.replaceFileExtension(relPath.toString(),
+                                                                                getOutputExtension(file)));
+        Misc.isQueueReady(executor, true, -1);
+        futures.add(executor.submit(() -> process(file, outFile, relPath.toString().replace('\\', '/'))));
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    final List<Result> results = new ArrayList<>(futures.size());
+    for (int i = 0; i < futures.size(); i++) {
+      try {
+        results.add(futures.get(i).get());
+      } catch (InterruptedException | ExecutionException e) {
+        final String name = inputDir.relativize(files.get(i)).toString().replace('\\', '/');
+        final Result result = new Result(name, files.get(i), null);
+        result.errors.add(new ScriptMessage(e.toString()));
+        results.add(result);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Processes a single script.
+   * @param inputFile The script to process.
+   * @param outputFile The file to generate. Not written if errors occurred.
+   * @param name Name of the script in the result.
+   * @return The result of the operation.
+   */
+  public Result process(Path inputFile, Path outputFile, String name)
+  {
+    Result result = new Result(name, inputFile, outputFile);
+    try {
+      String output = (mode == Mode.COMPILE) ? compile(readScript(inputFile), result)
+                                             : decompile(readScript(inputFile), result);
+      if (output != null && result.errors.isEmpty()) {
+        Files.createDirectories(outputFile.toAbsolutePath().getParent());
+        try (BufferedWriter bw = Files.newBufferedWriter(outputFile, charset)) {
+          bw.write(output);
+        }
+        result.written = true;
+      }
+    } catch (Exception e) {
+      result.errors.add(new ScriptMessage(e.toString()));
+    }
+    return result;
+  }
+
+  // Returns the extension of the generated file in the letter case of the input file extension
+  private String getOutputExtension(Path inputFile)
+  {
+    String ext = FileManager.getFileExtension(inputFile);
+    if (ext.equals(ext.toLowerCase(Locale.ENGLISH))) {
+      return mode.getOutputExtension().toLowerCase(Locale.ENGLISH);
+    }
+    return mode.getOutputExtension();
+  }
+
+  private String compile(String source, Result result)
+  {
+    Compiler compiler = new Compiler(source, ScriptType.BAF);
+    compiler.setVerbose(verbose);
+    String code = compiler.compileScript();
+    result.errors.addAll(compiler.getErrors());
+    result.warnings.addAll(compiler.getWarnings());
+    return code;
+  }
+
+  private String decompile(String code, Result result) throws Exception
+  {
+    Decompiler decompiler = new Decompiler(code, ScriptType.BCS, true);
+    decompiler.setGenerateComments(generateComments);
+    decompiler.setGenerateResourcesUsed(false);
+    String source = decompiler.decompile();
+    for (final Map.Entry<Integer, String> e : decompiler.getIdsErrors().entrySet()) {
+      result.warnings.add(new ScriptMessage(e.getValue(), e.getKey().intValue()));
+    }
+    return source.replaceAll("\r?\n", Misc.LINE_SEPARATOR);
+  }
+
+  private String readScript(Path file) throws IOException
+  {
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+    if (buffer.limit() > 1 && buffer.getShort(0) == -1) {
+      buffer = StaticSimpleXorDecryptor.decrypt(buffer, 2);
+    }
+    return StreamUtils.readString(buffer, buffer.limit(), charset);
+  }
+
+  /**
+   * Writes errors and warnings of the specified results as tab-separated values with the columns
+   * file, severity ({@code ERROR} or {@code WARNING}), line, column and message. Line and column
+   * are 0 if not available.
+   */
+  public static void writeReport(List<Result> results, Path reportFile) throws IOException
+  {
+    try (BufferedWriter bw = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+      bw.write(REPORT_HEADER);
+      bw.newLine();
+      for (final Result result : results) {
+        writeMessages(bw, result.getName(), "ERROR", result.getErrors());
+        writeMessages(bw, result.getName(), "WARNING", result.getWarnings());
+      }
+    }
+  }
+
+  private static void writeMessages(BufferedWriter bw, String name, String severity,
+                                    SortedSet<ScriptMessage> messages) throws IOException
+  {
+    for (final ScriptMessage msg : messages) {
+      bw.write(String.format("%s\t%s\t%d\t%d\t%s", name, severity, Math.max(0, msg.getLine()),
+                             Math.max(0, msg.getColumn()), msg.getMessage().replaceAll("[\t\r\n]+", " ")));
+      bw.newLine();
+    }
+  }
+
+  /** Prints usage information of the command line interface. */
+  public static void printHelp(PrintStream out, String jarFile)
+  {
+    out.format("Usage: java -jar %s -compile|-decompile [options] game_path input_dir output_dir", jarFile).println();
+    out.println("\nOptions:");
+    out.println("  -t type         Force the game to be of specific type.");
+    out.println("  -threads n      Number of scripts to process in parallel.");
+    out.println("  -charset name   Character set of script files (default: windows-1252).");
+    out.println("  -report file    Write errors and warnings as tab-separated values to file.");
+    out.println("  -verbose        Generate more compile warnings.");
+    out.println("  -comments       Generate comments in decompiled scripts.");
+  }
+
+  /**
+   * Command line interface for compiling or decompiling all scripts of a directory.
+   * @param mode The batch operation.
+   * @param forcedGame Game type to enforce. Specify {@code null} to autodetect.
+   * @param args Options and paths as described by {@link #printHelp(PrintStream, String)}.
+   * @return Exit code: 0 on success, 1 if errors occurred in scripts, 2 on invalid arguments or
+   *         if the game could not be opened.
+   */
+  public static int run(Mode mode, Profile.Game forcedGame, String[] args)
+  {
+    BatchCompiler batch = new BatchCompiler(mode);
+    Path reportFile = null;
+    List<Path> paths = new ArrayList<>();
+    try {
+      for (int idx = 0; idx < args.length; idx++) {
+        if (args[idx].equalsIgnoreCase("-t") && idx+1 < args.length) {
+          idx++;
+          for (final Profile.Game game: Profile.Game.values()) {
+            if (game.toString().equalsIgnoreCase(args[idx])) {
+              forcedGame = game;
+              break;
+            }
+          }
+        } else if (args[idx].equalsIgnoreCase("-threads") && idx+1 < args.length) {
+          batch.setThreadCount(Integer.parseInt(args[++idx]));
+        } else if (args[idx].equalsIgnoreCase("-charset") && idx+1 < args.length) {
+          batch.setCharset(Charset.forName(args[++idx]));
+        } else if (args[idx].equalsIgnoreCase("-report") && idx+1 < args.length) {
+          reportFile = FileManager.resolve(args[++idx]);
+        } else if (args[idx].equalsIgnoreCase("-verbose")) {
+          batch.setVerbose(true);
+        } else if (args[idx].equalsIgnoreCase("-comments")) {
+          batch.setGenerateComments(true);
+        } else {
+          paths.add(FileManager.resolve(args[idx]));
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      System.err.println("Invalid argument: " + e.getMessage());
+      return 2;
+    }
+    if (paths.size() != 3) {
+      printHelp(System.err, "NearInfinity.jar");
+      return 2;
+    }
+
+    Path keyFile = paths.get(0);
+    if (!FileEx.create(keyFile).isFile()) {
+      keyFile = FileManager.query(keyFile, "chitin.key");
+    }
+    if (keyFile == null || !FileEx.create(keyFile).isFile()) {
+      System.err.println("No chitin.key found in " + paths.get(0));
+      return 2;
+    }
+    if (!FileEx.create(paths.get(1)).isDirectory()) {
+      System.err.println("Input directory not found: " + paths.get(1));
+      return 2;
+    }
+    if (!Profile.openGame(keyFile, null, forcedGame)) {
+      System.err.println("Could not open game: " + keyFile);
+      return 2;
+    }
+
+    try {
+      long start = System.nanoTime();
+      List<Result> results = batch.process(paths.get(1), paths.get(2));
+      int numFailed = 0, numWarnings = 0;
+      for (final Result result : results) {
+        if (!result.getErrors().isEmpty()) {
+          numFailed++;
+          for (final ScriptMessage msg : result.getErrors()) {
+            System.out.println(result.getName() + ": " + msg);
+          }
+        }
+        numWarnings += result.getWarnings().size();
+      }
+      if (reportFile != null) {
+        writeReport(results, reportFile);
+      }
+      System.out.format("%d scripts processed in %d ms: %d failed, %d warnings",
+                        results.size(), (System.nanoTime() - start) / 1000000L, numFailed, numWarnings).println();
+      return (numFailed > 0) ? 1 : 0;
+    } catch (IOException e) {
+      e.printStackTrace();
+      return 2;
+    } finally {
+      DecompilerCache.clearCache();
+    }
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Outcome of processing a single script. */
+  public static final class Result
+  {
+    private final String name;
+    private final Path inputFile;
+    private final Path outputFile;
+    private final SortedSet<ScriptMessage> errors = new TreeSet<>();
+    private final SortedSet<ScriptMessage> warnings = new TreeSet<>();
+    private boolean written;
+
+    private Result(String name, Path inputFile, Path outputFile)
+    {
+      this.name = name;
+      this.inputFile = inputFile;
+      this.outputFile = outputFile;
+    }
+
+    /** Returns the name of the script, relative to the input directory. */
+    public String getName() { return name; }
+
+    /** Returns the processed script file. */
+    public Path getInputFile() { return inputFile; }
+
+    /** Returns the generated file. It is only written if no errors occurred. */
+    public Path getOutputFile() { return outputFile; }
+
+    /** Returns whether the output file has been written. */
+    public boolean isWritten() { return written; }
+
+    /** Returns all errors in order of occurrence. */
+    public SortedSet<ScriptMessage> getErrors() { return errors; }
+
+    /** Returns all warnings in order of occurrence. */
+    public SortedSet<ScriptMessage> getWarnings() { return warnings; }
+  }
+}
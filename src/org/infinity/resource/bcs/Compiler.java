@@ -69,7 +69,7 @@ public Compiler(String source)
   public Compiler(String source, ScriptType type)
   {
     this.scriptType = type;
-    setVerbose(BrowserMenuBar.getInstance().showMoreCompileWarnings());
+    setVerbose(BrowserMenuBar.getInstance() != null && BrowserMenuBar.getInstance().showMoreCompileWarnings());
     setSource(source);
   }
 
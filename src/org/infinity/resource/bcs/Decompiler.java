@@ -245,12 +245,32 @@ public String decompile(ScriptType type) throws Exception
       reset();
     }
 
+    // comments depend on string tables and resource contents and are not cached
+    DecompilerCache cache = null;
+    String key = null;
+    int generation = 0;
+    if (!isGenerateComments() && (type == ScriptType.BCS || type == ScriptType.TRIGGER || type == ScriptType.ACTION)) {
+      cache = DecompilerCache.getInstance();
+      key = DecompilerCache.createKey(code, type, this);
+      generation = cache.getGeneration();
+      DecompilerCache.Entry entry = cache.get(key);
+      if (entry != null) {
+        restore(entry);
+        return source;
+      }
+    }
+
     switch (type) {
-      case BCS:     return decompileScript();
-      case TRIGGER: return decompileTriggers();
-      case ACTION:  return decompileActions();
+      case BCS:     decompileScript(); break;
+      case TRIGGER: decompileTriggers(); break;
+      case ACTION:  decompileActions(); break;
       default:      throw new IllegalArgumentException("Could not determine script type");
     }
+
+    if (cache != null) {
+      cache.put(key, generation, new DecompilerCache.Entry(source, strrefsUsed, resourcesUsed, idsErrors));
+    }
+    return source;
   }
 
   public String decompileScript() throws Exception
@@ -365,6 +385,23 @@ private void reset()
     source = null;
   }
 
+  // Applies the result of a previous decompile operation
+  private void restore(DecompilerCache.Entry entry)
+  {
+    reset();
+    source = entry.getSource();
+    for (final int strref : entry.getStringRefsUsed()) {
+      strrefsUsed.add(Integer.valueOf(strref));
+    }
+    for (final String name : entry.getResourcesUsed()) {
+      ResourceEntry resEntry = ResourceFactory.getResourceEntry(name, true);
+      if (resEntry != null) {
+        resourcesUsed.add(resEntry);
+      }
+    }
+    idsErrors.putAll(entry.getIdsErrors());
+  }
+
   private void init()
   {
     triggers = Signatures.getTriggers();
@@ -0,0 +1,401 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource.bcs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.infinity.gui.BrowserMenuBar;
+import org.infinity.resource.Profile;
+import org.infinity.resource.ResourceFactory;
+import org.infinity.resource.key.ResourceEntry;
+import org.infinity.util.io.FileEx;
+import org.infinity.util.io.StreamUtils;
+
+/**
+ * Process-wide cache of decompiled scripts, used transparently by {@link Decompiler#decompile(ScriptType)}.
+ * <p>
+ * Entries are keyed by a content hash of the byte code and the decompiler options, so each script
+ * is decompiled only once, no matter how many passes over the game scripts are performed. An entry
+ * holds the decompiled source, the string references, the names of the used resources and the IDS errors.
+ * Scripts decompiled with comments are not cached, since comments depend on string tables and
+ * resource contents.
+ * <p>
+ * Cached results depend on the IDS files and the set of available resources. They are discarded
+ * whenever IDS maps or function signatures are reloaded, or resources are added or removed. When the
+ * game is closed or refreshed, results are stored in the {@link Profile#getCacheFolder() cache folder}
+ * together with a fingerprint of the IDS files and resource names, and reused by later sessions as long
+ * as the fingerprint matches.
+ */
+public final class DecompilerCache
+{
+  private static final String CACHE_FILE    = "scripts.cache";
+  private static final String CACHE_SIG     = "NIDC";
+  private static final int    CACHE_VERSION = 1;
+
+  private static final int OPTION_ERRORS           = 1;
+  private static final int OPTION_RESOURCES_USED   = 2;
+  private static final int OPTION_TRIGGER_OVERRIDE = 4;
+
+  private static DecompilerCache instance;
+
+  // access-ordered to evict least recently used entries first
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(1024, 0.75f, true);
+  private final Path cacheFile;
+  private final long capacity;    // max. number of characters occupied by cached entries
+  private long weight;
+  private int generation;         // incremented whenever cached entries are discarded
+  private boolean loaded;
+  private boolean modified;
+  private byte[] fingerprint;     // fingerprint of IDS files and resource names, null if not available
+
+  /** Returns the decompiler cache of the current game. */
+  public static synchronized DecompilerCache getInstance()
+  {
+    if (instance == null) {
+      instance = new DecompilerCache();
+    }
+    return instance;
+  }
+
+  /**
+   * Stores new entries in the cache folder and discards the cache of the current game from memory.
+   * Must be called before IDS maps and function signatures are cleared, since entries are stored
+   * with the fingerprint they have been created for.
+   */
+  public static synchronized void clearCache()
+  {
+    if (instance != null) {
+      instance.discard(true);
+      instance = null;
+    }
+  }
+
+  /**
+   * Discards all cached entries because IDS maps or function signatures have been reloaded, or resources
+   * have been added or removed. Discarded entries are not stored in the cache folder, since they may
+   * not match the current fingerprint anymore. Does nothing if the cache has not been used yet.
+   */
+  public static synchronized void invalidate()
+  {
+    if (instance != null) {
+      instance.discard(false);
+    }
+  }
+
+  /**
+   * Returns the key of the specified byte code and decompiler options.
+   * @param code The BCS byte code.
+   * @param type The decompile action.
+   * @param decompiler The decompiler providing options.
+   * @return Key for looking up the decompiled script.
+   */
+  static String createKey(String code, ScriptType type, Decompiler decompiler)
+  {
+    int options = 0;
+    if (decompiler.isGenerateErrors()) {
+      options |= OPTION_ERRORS;
+    }
+    if (decompiler.isGenerateResourcesUsed()) {
+      options |= OPTION_RESOURCES_USED;
+    }
+    if (decompiler.isTriggerOverrideEnabled()) {
+      options |= OPTION_TRIGGER_OVERRIDE;
+    }
+    MessageDigest md = createDigest();
+    md.update(code.getBytes(StandardCharsets.UTF_8));
+    StringBuilder sb = new StringBuilder(64);
+    appendHex(sb, md.digest());
+    sb.append(':').append(code.length()).append(':').append(type.name()).append(':').append(options);
+    sb.append(':').append(decompiler.getIndent());
+    return sb.toString();
+  }
+
+  private DecompilerCache()
+  {
+    Path folder = Profile.getCacheFolder();
+    this.cacheFile = (folder != null) ? folder.resolve(CACHE_FILE) : null;
+    this.capacity = Math.min(64L << 20, Runtime.getRuntime().maxMemory() / 16L);
+  }
+
+  /** Returns the current generation of cached entries. It changes whenever cached entries are discarded. */
+  synchronized int getGeneration()
+  {
+    return generation;
+  }
+
+  /** Returns the cached entry of the specified key, or {@code null} if not available. */
+  synchronized Entry get(String key)
+  {
+    if (!loaded) {
+      loaded = true;
+      fingerprint = (cacheFile != null) ? createFingerprint() : null;
+      load();
+    }
+    return entries.get(key);
+  }
+
+  /**
+   * Adds the specified entry to the cache. Does nothing if cached entries have been discarded
+   * after {@code generation} has been retrieved.
+   */
+  synchronized void put(String key, int generation, Entry entry)
+  {
+    if (generation == this.generation && loaded) {
+      add(key, entry);
+      modified = true;
+    }
+  }
+
+  private void add(String key, Entry entry)
+  {
+    Entry prev = entries.put(key, entry);
+    if (prev != null) {
+      weight -= prev.getWeight();
+    }
+    weight += entry.getWeight();
+    for (final Iterator<Entry> iter = entries.values().iterator(); weight > capacity && iter.hasNext(); ) {
+      weight -= iter.next().getWeight();
+      iter.remove();
+    }
+  }
+
+  // Removes all entries from memory, optionally storing new entries in the cache folder before
+  private synchronized void discard(boolean persist)
+  {
+    if (persist && modified) {
+      save();
+    }
+    entries.clear();
+    weight = 0L;
+    generation++;
+    loaded = false;
+    modified = false;
+    fingerprint = null;
+  }
+
+  private void load()
+  {
+    if (cacheFile == null || fingerprint == null || !FileEx.create(cacheFile).isFile()) {
+      return;
+    }
+    try (DataInputStream dis = new DataInputStream(new GZIPInputStream(new BufferedInputStream(
+        StreamUtils.getInputStream(cacheFile))))) {
+      if (!CACHE_SIG.equals(dis.readUTF()) || dis.readInt() != CACHE_VERSION) {
+        return;
+      }
+      byte[] stored = new byte[dis.readInt()];
+      dis.readFully(stored);
+      if (!Arrays.equals(stored, fingerprint)) {
+        return;
+      }
+      final int count = dis.readInt();
+      for (int i = 0; i < count; i++) {
+        final String key = dis.readUTF();
+        final String source = readString(dis);
+        final int[] strrefs = new int[dis.readInt()];
+        for (int j = 0; j < strrefs.length; j++) {
+          strrefs[j] = dis.readInt();
+        }
+        final String[] resources = new String[dis.readInt()];
+        for (int j = 0; j < resources.length; j++) {
+          resources[j] = dis.readUTF();
+        }
+        final SortedMap<Integer, String> idsErrors = new TreeMap<>();
+        for (int j = 0, cnt = dis.readInt(); j < cnt; j++) {
+          idsErrors.put(Integer.valueOf(dis.readInt()), dis.readUTF());
+        }
+        add(key, new Entry(source, strrefs, resources, idsErrors));
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+      entries.clear();
+      weight = 0L;
+    }
+  }
+
+  private void save()
+  {
+    if (cacheFile == null || fingerprint == null) {
+      return;
+    }
+    try {
+      Files.createDirectories(cacheFile.getParent());
+      try (DataOutputStream dos = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(
+          StreamUtils.getOutputStream(cacheFile, true))))) {
+        dos.writeUTF(CACHE_SIG);
+        dos.writeInt(CACHE_VERSION);
+        dos.writeInt(fingerprint.length);
+        dos.write(fingerprint);
+        dos.writeInt(entries.size());
+        for (final Map.Entry<String, Entry> e : entries.entrySet()) {
+          final Entry entry = e.getValue();
+          dos.writeUTF(e.getKey());
+          writeString(dos, entry.source);
+          dos.writeInt(entry.strrefs.length);
+          for (final int v : entry.strrefs) {
+            dos.writeInt(v);
+          }
+          dos.writeInt(entry.resources.length);
+          for (final String v : entry.resources) {
+            dos.writeUTF(v);
+          }
+          dos.writeInt(entry.idsErrors.size());
+          for (final Map.Entry<Integer, String> error : entry.idsErrors.entrySet()) {
+            dos.writeInt(error.getKey().intValue());
+            dos.writeUTF(error.getValue());
+          }
+        }
+      }
+      modified = false;
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  // Strings written by writeUTF() are limited to 65535 bytes
+  private static String readString(DataInputStream dis) throws IOException
+  {
+    byte[] data = new byte[dis.readInt()];
+    dis.readFully(data);
+    return new String(data, StandardCharsets.UTF_8);
+  }
+
+  private static void writeString(DataOutputStream dos, String s) throws IOException
+  {
+    byte[] data = s.getBytes(StandardCharsets.UTF_8);
+    dos.writeInt(data.length);
+    dos.write(data);
+  }
+
+  // Returns a hash of the program version, all resource names and the content of all IDS files
+  private static byte[] createFingerprint()
+  {
+    try {
+      MessageDigest md = createDigest();
+      md.update(BrowserMenuBar.VERSION.getBytes(StandardCharsets.UTF_8));
+      List<String> names = new ArrayList<>();
+      for (final ResourceEntry entry : ResourceFactory.getResources()) {
+        names.add(entry.getResourceName().toUpperCase(Locale.ENGLISH));
+      }
+      Collections.sort(names);
+      for (final String name : names) {
+        md.update((byte)0);
+        md.update(name.getBytes(StandardCharsets.UTF_8));
+      }
+      List<ResourceEntry> idsList = new ArrayList<>(ResourceFactory.getResources("IDS"));
+      Collections.sort(idsList);
+      for (final ResourceEntry entry : idsList) {
+        md.update((byte)0);
+        md.update(entry.getResourceBuffer());
+      }
+      return md.digest();
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+    return null;
+  }
+
+  private static MessageDigest createDigest()
+  {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      // guaranteed to be available by the Java platform
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void appendHex(StringBuilder sb, byte[] data)
+  {
+    final String digits = "0123456789abcdef";
+    for (final byte b : data) {
+      sb.append(digits.charAt((b >> 4) & 0x0f)).append(digits.charAt(b & 0x0f));
+    }
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Result of a single decompile operation. */
+  static final class Entry
+  {
+    private final String source;
+    private final int[] strrefs;
+    private final String[] resources;
+    private final SortedMap<Integer, String> idsErrors;
+
+    Entry(String source, Set<Integer> strrefsUsed, Set<ResourceEntry> resourcesUsed,
+          SortedMap<Integer, String> idsErrors)
+    {
+      this(source,
+           strrefsUsed.stream().mapToInt(Integer::intValue).toArray(),
+           resourcesUsed.stream().map(ResourceEntry::getResourceName).toArray(String[]::new),
+           new TreeMap<>(idsErrors));
+    }
+
+    private Entry(String source, int[] strrefs, String[] resources, SortedMap<Integer, String> idsErrors)
+    {
+      this.source = source;
+      this.strrefs = strrefs;
+      this.resources = resources;
+      this.idsErrors = idsErrors;
+    }
+
+    /** Returns the decompiled script source. */
+    String getSource()
+    {
+      return source;
+    }
+
+    /** Returns the string references used by the script. */
+    int[] getStringRefsUsed()
+    {
+      return strrefs;
+    }
+
+    /** Returns the names of resources used by the script. */
+    String[] getResourcesUsed()
+    {
+      return resources;
+    }
+
+    /** Returns the IDS errors by line number. */
+    SortedMap<Integer, String> getIdsErrors()
+    {
+      return idsErrors;
+    }
+
+    // Returns the approximate number of characters occupied by the entry
+    private long getWeight()
+    {
+      long retVal = source.length() + 64L + strrefs.length * 4L + resources.length * 16L;
+      for (final String s : idsErrors.values()) {
+        retVal += s.length() + 16L;
+      }
+      return retVal;
+    }
+  }
+}
@@ -15,8 +15,10 @@
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.infinity.check.StrrefUsage;
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.key.ResourceEntry;
+import org.infinity.search.ReferenceIndex;
 import org.infinity.util.io.StreamUtils;
 
 /**
@@ -110,6 +112,9 @@ public Function getFunction(String name, boolean exact)
   public static void clearCache()
   {
     instances.clear();
+    DecompilerCache.invalidate();
+    ReferenceIndex.invalidateScripts();
+    StrrefUsage.invalidateScripts();
   }
 
   /** Convenience method for getting trigger signatures. */
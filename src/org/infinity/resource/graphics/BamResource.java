@@ -170,6 +170,9 @@ public void close() throws Exception
     if (isRawModified()) {
       ResourceFactory.closeResource(this, entry, panelMain);
     }
+    if (decoder instanceof BamV2Decoder) {
+      ((BamV2Decoder)decoder).setPvrzPinned(false);
+    }
  }
 
 //--------------------- End Interface Closeable ---------------------
@@ -463,6 +466,10 @@ public JComponent makeViewer(ViewableContainer container)
     } else {
       rpc = NearInfinity.getInstance();
     }
+    if (decoder instanceof BamV2Decoder) {
+      // viewer is closed explicitly, keeps PVRZ pages of the animation in the cache
+      ((BamV2Decoder)decoder).setPvrzPinned(true);
+    }
 
     // creating "View" tab
     Dimension dim = (decoder != null) ? bamControl.getSharedDimension() : new Dimension(1, 1);
@@ -1081,7 +1088,7 @@ private byte[] convertToBamV1(boolean compressed) throws Exception
       // initializing color cache
       IntegerHashMap<Byte> colorCache = new IntegerHashMap<Byte>(1536);
       for (int i = 0; i < palette.length; i++) {
-        colorCache.put(palette[i], (byte)i);
+        colorCache.put(palette[i], Byte.valueOf((byte)i));
       }
       // adding transparent color index to the palette if available
       if (hasTransparency) {
@@ -1095,6 +1102,7 @@ private byte[] convertToBamV1(boolean compressed) throws Exception
       // 2. encoding frames
       List<byte[]> frameList = new ArrayList<byte[]>(frameCount);
       int colorShift = hasTransparency ? 1 : 0;   // considers transparent color index
+      ColorConvert.NearestColorIndex colorIndex = new ColorConvert.NearestColorIndex(palette, ignoreAlpha);
       for (int i = 0; i < frameCount; i++) {
         if (decoder.frameGet(control, i) != null) {
           BufferedImage img = ColorConvert.toBufferedImage(decoder.frameGet(control, i), true);
@@ -1120,10 +1128,10 @@ private byte[] convertToBamV1(boolean compressed) throws Exception
                 if (colIdx != null) {
                   dstData[dstIdx++] = (byte)(colIdx + colorShift);
                 } else {
-                  int color = ColorConvert.nearestColorRGB(srcData[srcIdx], palette, ignoreAlpha);
+                  int color = colorIndex.nearest(srcData[srcIdx]);
                   dstData[dstIdx++] = (byte)(color);
                   if (color > 0) {
-                    colorCache.put(srcData[srcIdx], (byte)(color - colorShift));
+                    colorCache.put(srcData[srcIdx], Byte.valueOf((byte)(color - colorShift)));
                   }
                 }
                 srcIdx++;
@@ -1144,10 +1152,10 @@ private byte[] convertToBamV1(boolean compressed) throws Exception
               if (colIdx != null) {
                 dstData[idx] = (byte)(colIdx + colorShift);
               } else {
-                int color = ColorConvert.nearestColorRGB(srcData[idx], palette, ignoreAlpha);
+                int color = colorIndex.nearest(srcData[idx]);
                 dstData[idx] = (byte)(color);
                 if (color > 0) {
-                  colorCache.put(srcData[idx], (byte)(color - colorShift));
+                  colorCache.put(srcData[idx], Byte.valueOf((byte)(color - colorShift)));
                 }
               }
               idx++;
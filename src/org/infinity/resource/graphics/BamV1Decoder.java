@@ -7,13 +7,18 @@
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
 import java.awt.image.DataBufferInt;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.infinity.resource.Profile;
 import org.infinity.resource.key.ResourceEntry;
@@ -25,6 +30,9 @@
  */
 public class BamV1Decoder extends BamDecoder
 {
+  /** Suggested memory budget (in bytes) for the decoded-frame cache of a single {@link BamV1Control}. */
+  public static final long DefaultFrameCacheSize = 2L << 20;
+
   private final List<BamV1FrameEntry> listFrames = new ArrayList<BamV1FrameEntry>();
   private final List<CycleEntry> listCycles = new ArrayList<CycleEntry>();
   private final BamV1FrameEntry defaultFrameInfo = new BamV1FrameEntry(null, 0);
@@ -277,6 +285,10 @@ private void decodeFrame(BamControl control, int frameIdx, Image canvas)
       int left, top, maxWidth, maxHeight, srcOfs, dstOfs;
       int count = 0, color = 0;
       byte pixel = 0;
+      int[] pixels = null;
+      if (bufferI != null && control instanceof BamV1Control) {
+        pixels = ((BamV1Control)control).getCachedFrame(frameIdx);
+      }
       if (control.getMode() == BamControl.Mode.SHARED) {
         left = -control.getSharedRectangle().x - listFrames.get(frameIdx).centerX;
         top = -control.getSharedRectangle().y - listFrames.get(frameIdx).centerY;
@@ -292,28 +304,36 @@ private void decodeFrame(BamControl control, int frameIdx, Image canvas)
         dstOfs = 0;
       }
       try {
-        for (int y = 0; y < maxHeight; y++) {
-          for (int x = 0; x < srcWidth; x++, dstOfs++) {
-            if (count > 0) {
-              // writing remaining RLE compressed pixels
-              count--;
-              if (x < maxWidth) {
-                if (bufferB != null) bufferB[dstOfs] = pixel;
-                if (bufferI != null) bufferI[dstOfs] = color;
-              }
-            } else {
-              pixel = bamBuffer.get(srcOfs++);
-              color = palette[pixel & 0xff];
-              if (isCompressed && (pixel & 0xff) == rleIndex) {
-                count = bamBuffer.get(srcOfs++) & 0xff;
-              }
-              if (x < maxWidth) {
-                if (bufferB != null) bufferB[dstOfs] = pixel;
-                if (bufferI != null) bufferI[dstOfs] = color;
+        if (pixels != null) {
+          // copying pre-decoded frame data
+          int rowWidth = Math.min(maxWidth, srcWidth);
+          for (int y = 0; y < maxHeight; y++, dstOfs += dstWidth) {
+            System.arraycopy(pixels, y*srcWidth, bufferI, dstOfs, rowWidth);
+          }
+        } else {
+          for (int y = 0; y < maxHeight; y++) {
+            for (int x = 0; x < srcWidth; x++, dstOfs++) {
+              if (count > 0) {
+                // writing remaining RLE compressed pixels
+                count--;
+                if (x < maxWidth) {
+                  if (bufferB != null) bufferB[dstOfs] = pixel;
+                  if (bufferI != null) bufferI[dstOfs] = color;
+                }
+              } else {
+                pixel = bamBuffer.get(srcOfs++);
+                color = palette[pixel & 0xff];
+                if (isCompressed && (pixel & 0xff) == rleIndex) {
+                  count = bamBuffer.get(srcOfs++) & 0xff;
+                }
+                if (x < maxWidth) {
+                  if (bufferB != null) bufferB[dstOfs] = pixel;
+                  if (bufferI != null) bufferI[dstOfs] = color;
+                }
               }
             }
+            dstOfs += dstWidth - srcWidth;
           }
-          dstOfs += dstWidth - srcWidth;
         }
       } catch (Exception e) {
         System.err.printf("Error [%s]: input (offset=%d, size=%d), output (offset=%d, size=%d)\n",
@@ -338,6 +358,32 @@ private void decodeFrame(BamControl control, int frameIdx, Image canvas)
     }
   }
 
+  // Decodes the absolute frame into an array of ARGB pixels, using the specified palette.
+  private int[] decodeFramePixels(int frameIdx, int[] palette)
+  {
+    BamV1FrameEntry entry = listFrames.get(frameIdx);
+    int[] pixels = new int[entry.width*entry.height];
+    boolean isCompressed = entry.compressed;
+    int srcOfs = entry.ofsData, dstOfs = 0;
+    try {
+      while (dstOfs < pixels.length) {
+        int pixel = bamBuffer.get(srcOfs++) & 0xff;
+        int count = 1;
+        if (isCompressed && pixel == rleIndex) {
+          count += bamBuffer.get(srcOfs++) & 0xff;
+        }
+        int color = palette[pixel];
+        for (int end = Math.min(pixels.length, dstOfs + count); dstOfs < end; dstOfs++) {
+          pixels[dstOfs] = color;
+        }
+      }
+    } catch (Exception e) {
+      System.err.printf("Error [%s]: input (offset=%d, size=%d), output (offset=%d, size=%d)\n",
+                        e.getClass().getName(), srcOfs, bamBuffer.limit(), dstOfs, pixels.length);
+    }
+    return pixels;
+  }
+
 
 //-------------------------- INNER CLASSES --------------------------
 
@@ -375,12 +421,56 @@ private BamV1FrameEntry(ByteBuffer buffer, int ofs)
   }
 
 
+  /**
+   * Contains all frames of a cycle, pre-rendered side by side into a single image.
+   * Each frame occupies a cell of identical size, where frame centers are located at the same relative position.
+   */
+  public static class CycleStrip
+  {
+    private final BufferedImage image;
+    private final int frameCount, cellWidth, cellHeight;
+    private final Point origin;
+
+    private CycleStrip(BufferedImage image, int frameCount, int cellWidth, int cellHeight, Point origin)
+    {
+      this.image = image;
+      this.frameCount = frameCount;
+      this.cellWidth = cellWidth;
+      this.cellHeight = cellHeight;
+      this.origin = origin;
+    }
+
+    /** Returns the image containing all frames of the cycle. */
+    public BufferedImage getImage() { return image; }
+
+    /** Returns the number of frames in the strip. */
+    public int getFrameCount() { return frameCount; }
+
+    /** Returns the region of the strip image occupied by the specified cycle frame. */
+    public Rectangle getFrameBounds(int frameIdx)
+    {
+      return new Rectangle(frameIdx*cellWidth, 0, cellWidth, cellHeight);
+    }
+
+    /** Returns the position of the frame center relative to the top-left corner of each frame region. */
+    public Point getOrigin()
+    {
+      return new Point(origin);
+    }
+  }
+
+
   /** Provides access to cycle-specific functionality. */
   public static class BamV1Control extends BamControl
   {
+    // Decoded frames of the current palette, in least recently used order
+    private final LinkedHashMap<Integer, int[]> frameCache = new LinkedHashMap<>(16, 0.75f, true);
+
     private int[] currentPalette, externalPalette;
     private boolean transparencyEnabled;
     private int currentCycle, currentFrame;
+    private long frameCacheSize, frameCacheUsage;
+    private ByteBuffer frameCacheSource;    // the BAM data the cached frames are based on
 
     protected BamV1Control(BamV1Decoder decoder)
     {
@@ -474,6 +564,80 @@ public int[] getCurrentPalette()
       return currentPalette;
     }
 
+    /** Returns the memory budget (in bytes) of the decoded-frame cache. */
+    public long getFrameCacheSize()
+    {
+      return frameCacheSize;
+    }
+
+    /**
+     * Specify a memory budget for caching decoded frames. Cached frames are reused for drawing
+     * as long as neither palette nor transparency settings change.
+     * @param size The max. number of bytes occupied by decoded frames. Specify 0 to disable the cache.
+     *             (Default: 0)
+     */
+    public void setFrameCacheSize(long size)
+    {
+      frameCacheSize = Math.max(0L, size);
+      trimFrameCache(frameCacheSize);
+    }
+
+    /** Removes all decoded frames from the frame cache. */
+    public void clearFrameCache()
+    {
+      frameCache.clear();
+      frameCacheUsage = 0L;
+    }
+
+    /**
+     * Renders all frames of the specified cycle into a single image.
+     * Takes palette and transparency settings into account. Frames are drawn without mirroring.
+     * @param cycleIdx The cycle index.
+     * @return A {@link CycleStrip} object, or {@code null} if the cycle is not available.
+     */
+    public CycleStrip createCycleStrip(int cycleIdx)
+    {
+      if (cycleIdx < 0 || cycleIdx >= getDecoder().listCycles.size()) {
+        return null;
+      }
+      int[] frames = getDecoder().listCycles.get(cycleIdx).frames;
+
+      // calculating common cell size and frame center
+      int x1 = 0, y1 = 0, x2 = 1, y2 = 1;
+      for (int i = 0; i < frames.length; i++) {
+        BamV1FrameEntry entry = getDecoder().getFrameInfo(frames[i]);
+        if (i == 0) {
+          x1 = y1 = Integer.MAX_VALUE;
+          x2 = y2 = Integer.MIN_VALUE;
+        }
+        x1 = Math.min(x1, -entry.centerX);
+        y1 = Math.min(y1, -entry.centerY);
+        x2 = Math.max(x2, entry.width - entry.centerX);
+        y2 = Math.max(y2, entry.height - entry.centerY);
+      }
+      int cellWidth = x2 - x1;
+      int cellHeight = y2 - y1;
+
+      BufferedImage image = new BufferedImage(Math.max(1, cellWidth*frames.length), cellHeight,
+                                              BufferedImage.TYPE_INT_ARGB);
+      int[] buffer = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+      int stride = image.getWidth();
+      for (int i = 0; i < frames.length; i++) {
+        BamV1FrameEntry entry = getDecoder().getFrameInfo(frames[i]);
+        if (entry.width > 0 && entry.height > 0) {
+          int[] pixels = getCachedFrame(frames[i]);
+          if (pixels == null) {
+            pixels = getDecoder().decodeFramePixels(frames[i], currentPalette);
+          }
+          int dstOfs = (-y1 - entry.centerY)*stride + i*cellWidth - x1 - entry.centerX;
+          for (int y = 0; y < entry.height; y++, dstOfs += stride) {
+            System.arraycopy(pixels, y*entry.width, buffer, dstOfs, entry.width);
+          }
+        }
+      }
+      return new CycleStrip(image, frames.length, cellWidth, cellHeight, new Point(-x1, -y1));
+    }
+
     @Override
     public BamV1Decoder getDecoder()
     {
@@ -635,9 +799,45 @@ private void init()
     }
 
 
+    // Returns the decoded pixels of the absolute frame from the frame cache, or null if caching is disabled.
+    private int[] getCachedFrame(int frameIdx)
+    {
+      if (frameCacheSize <= 0L) {
+        return null;
+      }
+      if (frameCacheSource != getDecoder().bamBuffer) {
+        // BAM has been reloaded
+        clearFrameCache();
+        frameCacheSource = getDecoder().bamBuffer;
+      }
+      Integer key = Integer.valueOf(frameIdx);
+      int[] pixels = frameCache.get(key);
+      if (pixels == null) {
+        pixels = getDecoder().decodeFramePixels(frameIdx, currentPalette);
+        long size = pixels.length*4L;
+        if (size <= frameCacheSize) {
+          trimFrameCache(frameCacheSize - size);
+          frameCache.put(key, pixels);
+          frameCacheUsage += size;
+        }
+      }
+      return pixels;
+    }
+
+    // Removes least recently used frames until the frame cache fits into the specified size
+    private void trimFrameCache(long maxSize)
+    {
+      for (Iterator<Map.Entry<Integer, int[]>> iter = frameCache.entrySet().iterator();
+           frameCacheUsage > maxSize && iter.hasNext(); ) {
+        frameCacheUsage -= iter.next().getValue().length*4L;
+        iter.remove();
+      }
+    }
+
     // Prepares the palette to be used for decoding BAM frames
     private void preparePalette(int[] externalPalette)
     {
+      clearFrameCache();
       if (currentPalette == null)
         currentPalette = new int[256];
 
@@ -37,6 +37,8 @@ public class BamV2Decoder extends BamDecoder
   private final List<CycleEntry> listCycles = new ArrayList<CycleEntry>();
   private final BamV2FrameEntry defaultFrameInfo = new BamV2FrameEntry(null, 0, 0);
 
+  // PVRZ resources pinned in the global cache until the decoder is closed (see setPvrzPinned)
+  private final PvrCache.PinnedPages pvrPages = new PvrCache.PinnedPages();
   private BamV2Control defaultControl;
   private ByteBuffer bamBuffer;           // contains the raw (uncompressed) BAM v2 data
   private Path bamPath;                   // base path of the BAM resource (or null if BAM is biffed)
@@ -64,10 +66,27 @@ public BamV2FrameEntry getFrameInfo(int frameIdx)
     }
   }
 
+  /**
+   * Specifies whether PVRZ resources used by this decoder are pinned in the global cache until
+   * {@link #close()} is called. Pinned resources are never evicted from the cache, so this should
+   * only be enabled by owners which close the decoder explicitly. Disabling releases all pins,
+   * {@link #close()} disables pinning.
+   */
+  public void setPvrzPinned(boolean pinned)
+  {
+    pvrPages.setEnabled(pinned);
+  }
+
+  /** Returns whether PVRZ resources used by this decoder are pinned in the global cache. */
+  public boolean isPvrzPinned()
+  {
+    return pvrPages.isEnabled();
+  }
+
   @Override
   public void close()
   {
-    PvrDecoder.flushCache();
+    setPvrzPinned(false);
     bamBuffer = null;
     listFrames.clear();
     listCycles.clear();
@@ -240,11 +259,15 @@ private void init()
     }
   }
 
-  // Returns and caches the PVRZ resource of the specified page
+  // Returns the PVRZ resource of the specified page, pins it if requested
   private PvrDecoder getPVR(int page)
   {
     try {
       pvrIndices.add(Integer.valueOf(page));
+      PvrDecoder decoder = pvrPages.get(page);
+      if (decoder != null) {
+        return decoder;
+      }
       String name = String.format("MOS%04d.PVRZ", page);
       ResourceEntry entry = null;
       if (bamPath != null) {
@@ -259,7 +282,8 @@ private PvrDecoder getPVR(int page)
         entry = ResourceFactory.getResourceEntry(name);
       }
       if (entry != null) {
-        return PvrDecoder.loadPvr(entry);
+        decoder = PvrDecoder.loadPvr(entry);
+        return pvrPages.pin(page, decoder);
       }
     } catch (Exception e) {
       e.printStackTrace();
@@ -230,6 +230,7 @@ public static Dimension getImageDimension(Path fileName)
 
   /**
    * Calculates the nearest color available in the given RGBA palette for the specified color.
+   * Use {@link NearestColorIndex} to look up many colors in the same palette.
    * @param rgbColor The source color in ARGB format.
    * @param rgbPalette A palette containing ARGB color entries.
    * @param ignoreAlpha Whether to exclude alpha component from the calculation.
@@ -718,6 +719,162 @@ private static BufferedImage convertToIndexedImage(BufferedImage image)
 
 //-------------------------- INNER CLASSES --------------------------
 
+  /**
+   * Finds nearest palette colors like {@link ColorConvert#nearestColorRGB(int, int[], boolean)}, with identical
+   * results, but without scanning the whole palette for every color.
+   * <p>
+   * The color space is divided into a lookup grid. For each grid cell the index determines on first use which
+   * palette entries can be nearest to any color inside the cell. Lookups compute exact distances to these
+   * candidates only. Results of recent lookups are memorized. Instances are not thread-safe.
+   */
+  public static final class NearestColorIndex
+  {
+    // weights of the alpha, red, green and blue components in the distance metric
+    private static final int[] WEIGHTS = { 48, 14, 28, 6 };
+    private static final int CELL_BITS = 4;     // grid resolution per color component
+    private static final int MEMO_BITS = 12;
+
+    private final boolean ignoreAlpha;
+    private final int transIndex;     // palette index returned for fully transparent colors, or -1
+    private final int[][] comps;      // weighted alpha, red, green and blue components of the palette entries
+    private final int[][] cells;      // palette indices of nearest color candidates per grid cell (lazily built)
+    private final long[] memo;        // recent lookups: (color << 32) | (palette index + 1)
+
+    /**
+     * Creates an index for the specified palette.
+     * @param rgbPalette A palette containing ARGB color entries. Later changes of the array are not reflected.
+     * @param ignoreAlpha Whether to exclude alpha component from the calculation.
+     */
+    public NearestColorIndex(int[] rgbPalette, boolean ignoreAlpha)
+    {
+      this.ignoreAlpha = ignoreAlpha;
+      int size = (rgbPalette != null) ? rgbPalette.length : 0;
+
+      // nearestColorRGB() returns the first transparent or green entry for transparent colors
+      int idx = -1;
+      for (int i = 0; i < size && idx < 0; i++) {
+        int col = rgbPalette[i];
+        if ((col & 0xff000000) == 0 || col == 0xff00ff00) {
+          idx = i;
+        }
+      }
+      transIndex = idx;
+
+      comps = new int[4][size];
+      for (int i = 0; i < size; i++) {
+        comps[0][i] = ignoreAlpha ? 0 : ((rgbPalette[i] >>> 24) * WEIGHTS[0]);
+        comps[1][i] = ((rgbPalette[i] >>> 16) & 0xff) * WEIGHTS[1];
+        comps[2][i] = ((rgbPalette[i] >>> 8) & 0xff) * WEIGHTS[2];
+        comps[3][i] = (rgbPalette[i] & 0xff) * WEIGHTS[3];
+      }
+
+      cells = new int[1 << (CELL_BITS * (ignoreAlpha ? 3 : 4))][];
+      memo = new long[1 << MEMO_BITS];
+    }
+
+    /** Returns the number of palette entries. */
+    public int size()
+    {
+      return comps[0].length;
+    }
+
+    /**
+     * Returns the palette index of the nearest color.
+     * @param rgbColor The source color in ARGB format.
+     * @return The palette index pointing to the nearest color, or -1 if the palette is empty.
+     */
+    public int nearest(int rgbColor)
+    {
+      if (size() == 0) {
+        return -1;
+      }
+      int a = ignoreAlpha ? 0 : (rgbColor >>> 24);
+      if (a == 0 && transIndex >= 0) {
+        return transIndex;
+      }
+
+      int color = ignoreAlpha ? (rgbColor & 0xffffff) : rgbColor;
+      int slot = (color * 0x9e3779b9) >>> (32 - MEMO_BITS);
+      long entry = memo[slot];
+      if (entry != 0L && (int)(entry >>> 32) == color) {
+        return (int)entry - 1;
+      }
+
+      final int shift = 8 - CELL_BITS;
+      int cell = (a >>> shift);
+      cell = (cell << CELL_BITS) | (((rgbColor >>> 16) & 0xff) >>> shift);
+      cell = (cell << CELL_BITS) | (((rgbColor >>> 8) & 0xff) >>> shift);
+      cell = (cell << CELL_BITS) | ((rgbColor & 0xff) >>> shift);
+      int[] candidates = cells[cell];
+      if (candidates == null) {
+        candidates = getCandidates(cell);
+        cells[cell] = candidates;
+      }
+
+      // candidates are in ascending order: the first of several equally near colors is returned
+      final int[] ca = comps[0], cr = comps[1], cg = comps[2], cb = comps[3];
+      int wa = a * WEIGHTS[0];
+      int wr = ((rgbColor >>> 16) & 0xff) * WEIGHTS[1];
+      int wg = ((rgbColor >>> 8) & 0xff) * WEIGHTS[2];
+      int wb = (rgbColor & 0xff) * WEIGHTS[3];
+      int minDist = Integer.MAX_VALUE, index = -1;
+      for (final int i : candidates) {
+        int da = wa - ca[i], dr = wr - cr[i], dg = wg - cg[i], db = wb - cb[i];
+        int dist = da*da + dr*dr + dg*dg + db*db;
+        if (dist < minDist) {
+          minDist = dist;
+          index = i;
+        }
+      }
+
+      memo[slot] = ((long)color << 32) | (index + 1);
+      return index;
+    }
+
+    // Returns all palette entries which may be nearest to a color of the specified grid cell
+    private int[] getCandidates(int cell)
+    {
+      final int mask = (1 << CELL_BITS) - 1;
+      final int shift = 8 - CELL_BITS;
+      int size = size();
+      long[] minDist = new long[size];
+      long threshold = Long.MAX_VALUE;    // smallest distance which is guaranteed to be reached by an entry
+      for (int i = 0; i < size; i++) {
+        long dMin = 0L, dMax = 0L;
+        for (int c = 0; c < 4; c++) {
+          int lo = ((cell >>> (CELL_BITS * (3 - c))) & mask) << shift;
+          int hi = lo + (1 << shift) - 1;
+          if (c == 0 && ignoreAlpha) {
+            lo = hi = 0;
+          }
+          lo *= WEIGHTS[c];
+          hi *= WEIGHTS[c];
+          int v = comps[c][i];
+          long near = (v < lo) ? lo - v : (v > hi) ? v - hi : 0;
+          long far = Math.max(Math.abs(v - lo), Math.abs(v - hi));
+          dMin += near * near;
+          dMax += far * far;
+        }
+        minDist[i] = dMin;
+        threshold = Math.min(threshold, dMax);
+      }
+
+      int count = 0;
+      for (int i = 0; i < size; i++) {
+        if (minDist[i] <= threshold) {
+          count++;
+        }
+      }
+      int[] retVal = new int[count];
+      for (int i = 0, n = 0; i < size; i++) {
+        if (minDist[i] <= threshold) {
+          retVal[n++] = i;
+        }
+      }
+      return retVal;
+    }
+  }
+
   private static class PixelBlock
   {
     private final Pixel minCorner, maxCorner;
@@ -29,6 +29,14 @@
 
 package org.infinity.resource.graphics;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
 /**
  * Encodes pixel data into the DXT1/DXT3/DXT5 format.
  */
@@ -39,6 +47,11 @@
    */
   public static enum DxtType { DXT1, DXT3, DXT5 }
 
+  // Minimum number of 4x4 blocks to encode before work is distributed over several threads
+  private static final int ParallelBlockThreshold = 1024;
+  // Number of block row bands per available thread, which evens out bands of different complexity
+  private static final int BandsPerThread = 4;
+
   /**
    * Encodes an image into a series of DXTn code blocks.
    * @param pixels The pixel data as array of integers in ARGB format.
@@ -73,7 +86,7 @@ static public byte[] encodeImage(int[] pixels, int width, int height, DxtType dx
   }
 
   /**
-   * Encodes an image into a series of DXTn code blocks.
+   * Encodes an image into a series of DXTn code blocks. Larger images are encoded concurrently.
    * @param pixels The pixel data as array of integers in ARGB format.
    * @param width The width of the image (must be a multiple of 4).
    * @param height The height of the image (must be a multiple of 4).
@@ -83,6 +96,43 @@ static public byte[] encodeImage(int[] pixels, int width, int height, DxtType dx
    */
   static public void encodeImage(int[] pixels, int width, int height, byte[] output,
                               DxtType dxtType) throws Exception
+  {
+    encodeImage(pixels, width, height, output, dxtType, true);
+  }
+
+  /**
+   * Encodes an image into a series of DXTn code blocks.
+   * @param pixels The pixel data as array of integers in ARGB format.
+   * @param width The width of the image (must be a multiple of 4).
+   * @param height The height of the image (must be a multiple of 4).
+   * @param output The storage space for the compressed data.
+   * @param dxtType The compression type to use.
+   * @param multiThreaded Whether bands of block rows may be encoded concurrently.
+   *                      Output is identical in both modes.
+   * @throws Exception
+   */
+  static public void encodeImage(int[] pixels, int width, int height, byte[] output,
+                                 DxtType dxtType, boolean multiThreaded) throws Exception
+  {
+    encodeBlockRows(pixels, width, height, 0, height / 4, output, dxtType, multiThreaded);
+  }
+
+  /**
+   * Encodes a range of 4x4 block rows of an image into a series of DXTn code blocks.
+   * Encoded blocks are stored at the same location in {@code output} as if the whole image was encoded.
+   * @param pixels The pixel data of the whole image as array of integers in ARGB format.
+   * @param width The width of the image (must be a multiple of 4).
+   * @param height The height of the image (must be a multiple of 4).
+   * @param firstRow The first block row to encode.
+   * @param numRows The number of block rows to encode.
+   * @param output The storage space for the compressed data of the whole image.
+   * @param dxtType The compression type to use.
+   * @param multiThreaded Whether bands of block rows may be encoded concurrently.
+   *                      Output is identical in both modes.
+   * @throws Exception
+   */
+  static public void encodeBlockRows(int[] pixels, int width, int height, int firstRow, int numRows,
+                                     byte[] output, DxtType dxtType, boolean multiThreaded) throws Exception
   {
     // consistency check
     if (dxtType == null)
@@ -91,29 +141,38 @@ static public void encodeImage(int[] pixels, int width, int height, byte[] outpu
       throw new Exception("Invalid width or height specified");
     if ((width & 3) != 0 || (height & 3) != 0)
       throw new Exception("Width and height must be a multiple of 4");
+    if (firstRow < 0 || numRows < 0 || firstRow + numRows > height / 4)
+      throw new Exception("Block rows out of range");
     if (pixels == null || pixels.length < width*height)
       throw new Exception("Insufficient source data.");
     if (output == null || output.length < calcImageSize(width, height, dxtType))
       throw new Exception(String.format("Insufficient space in output array. Needed: %d bytes, available: %d bytes",
                           calcImageSize(width, height, dxtType), (output == null) ? 0 : output.length));
 
-    int outputOfs = 0;    // points to the end of encoded data
-    int bw = width / 4;
-    int bh = height / 4;
-    int[] inBlock = new int[16];
-    byte[] outBlock = new byte[calcBlockSize(dxtType)];
-    for (int y = 0; y < bh; y++) {
-      for (int x = 0; x < bw; x++) {
-        // create 4x4 block of pixels for DXTn compression
-        int ofs = (y*4)*width + (x*4);
-        for (int i = 0; i < 4; i++, ofs+=width) {
-          System.arraycopy(pixels, ofs, inBlock, i*4, 4);
+    int numBands = Math.min(numRows, ForkJoinPool.getCommonPoolParallelism() * BandsPerThread);
+    if (!multiThreaded || numBands < 2 || (width / 4) * numRows < ParallelBlockThreshold) {
+      new BlockEncoder(dxtType).encodeRows(pixels, width, firstRow, firstRow + numRows, output);
+      return;
+    }
+
+    // each band uses its own encoder state and writes to a separate region of the output array
+    List<Callable<Void>> tasks = new ArrayList<>(numBands);
+    for (int i = 0; i < numBands; i++) {
+      final int startRow = firstRow + (int)((long)numRows * i / numBands);
+      final int endRow = firstRow + (int)((long)numRows * (i + 1) / numBands);
+      tasks.add(() -> {
+        new BlockEncoder(dxtType).encodeRows(pixels, width, startRow, endRow, output);
+        return null;
+      });
+    }
+    for (final Future<Void> result : ForkJoinPool.commonPool().invokeAll(tasks)) {
+      try {
+        result.get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof Exception) {
+          throw (Exception)e.getCause();
         }
-
-        // compress pixel block
-        encodeBlock(inBlock, outBlock, dxtType);
-        System.arraycopy(outBlock, 0, output, outputOfs, outBlock.length);
-        outputOfs += outBlock.length;
+        throw e;
       }
     }
   }
@@ -132,45 +191,7 @@ public static void encodeBlock(int[] pixels, byte[] block, DxtType dxtType) thro
       throw new Exception(String.format("Insufficient output space. Needed: %d bytes, available: %d bytes",
                           calcBlockSize(dxtType), (block == null) ? 0 : block.length));
 
-    byte[] colorBlock = new byte[8];
-    byte[] alphaBlock = null;
-    if (dxtType == DxtType.DXT3 || dxtType == DxtType.DXT5) {
-      alphaBlock = new byte[8];
-    }
-
-    // create the minimal point set
-    ColorSet colors = new ColorSet(pixels, dxtType);
-
-    // check the compression type and compress color
-    ColorFit fit = null;
-    if (colors.getCount() == 1) {
-      // always do a single color fit
-      fit = new SingleColorFit(colors, dxtType);
-    } else if (colors.getCount() == 0) {
-      // do a range fit
-      fit = new RangeFit(colors, dxtType);
-    } else {
-      // default to a cluster fit
-      fit = new ClusterFit(colors, dxtType);
-    }
-    fit.compress(colorBlock);
-
-    // compress alpha separately if necessary
-    if (dxtType == DxtType.DXT3) {
-      Alpha.compressAlphaDxt3(pixels, alphaBlock);
-    } else if (dxtType == DxtType.DXT5) {
-      Alpha.compressAlphaDxt5(pixels, alphaBlock);
-    }
-
-    int ofs = 0;
-    if (alphaBlock != null) {
-      for (int i = 0; i < alphaBlock.length; i++, ofs++) {
-        block[ofs] = alphaBlock[i];
-      }
-    }
-    for (int i = 0; i < colorBlock.length; i++, ofs++) {
-      block[ofs] = colorBlock[i];
-    }
+    new BlockEncoder(dxtType).encode(pixels, block, 0);
   }
 
 
@@ -214,6 +235,91 @@ public static int calcImageSize(int width, int height, DxtType dxtType)
 
 // --------------------------- INNER CLASSES ---------------------------
 
+  // Encoder state which is reused for all blocks encoded by the same thread
+  private static final class BlockEncoder
+  {
+    private final DxtType dxtType;
+    private final int[] inBlock;
+    private final byte[] colorBlock;
+    private final byte[] alphaBlock;
+    private final ColorSet colors;
+    private final SingleColorFit singleColorFit;
+    private final RangeFit rangeFit;
+    private final ClusterFit clusterFit;
+    private final Alpha alpha;
+
+    public BlockEncoder(DxtType dxtType)
+    {
+      this.dxtType = dxtType;
+      inBlock = new int[16];
+      colorBlock = new byte[8];
+      alphaBlock = (dxtType == DxtType.DXT3 || dxtType == DxtType.DXT5) ? new byte[8] : null;
+      colors = new ColorSet();
+      singleColorFit = new SingleColorFit(colors, dxtType);
+      rangeFit = new RangeFit(colors, dxtType);
+      clusterFit = new ClusterFit(colors, dxtType);
+      alpha = new Alpha();
+    }
+
+    // Encodes the block rows [startRow, endRow) of the image
+    public void encodeRows(int[] pixels, int width, int startRow, int endRow, byte[] output)
+    {
+      int bw = width / 4;
+      int blockSize = (alphaBlock != null) ? 16 : 8;
+      int outputOfs = startRow*bw*blockSize;
+      for (int y = startRow; y < endRow; y++) {
+        for (int x = 0; x < bw; x++) {
+          // create 4x4 block of pixels for DXTn compression
+          int ofs = (y*4)*width + (x*4);
+          for (int i = 0; i < 4; i++, ofs+=width) {
+            System.arraycopy(pixels, ofs, inBlock, i*4, 4);
+          }
+
+          // compress pixel block
+          encode(inBlock, output, outputOfs);
+          outputOfs += blockSize;
+        }
+      }
+    }
+
+    // Encodes a single 4x4 block of pixels and stores the result at the specified offset
+    public void encode(int[] pixels, byte[] output, int outputOfs)
+    {
+      // create the minimal point set
+      colors.init(pixels, dxtType);
+
+      // check the compression type and compress color
+      ColorFit fit = null;
+      if (colors.getCount() == 1) {
+        // always do a single color fit
+        fit = singleColorFit;
+      } else if (colors.getCount() == 0) {
+        // do a range fit
+        fit = rangeFit;
+      } else {
+        // default to a cluster fit
+        fit = clusterFit;
+      }
+      Arrays.fill(colorBlock, (byte)0);
+      fit.init();
+      fit.compress(colorBlock);
+
+      // compress alpha separately if necessary
+      if (dxtType == DxtType.DXT3) {
+        Alpha.compressAlphaDxt3(pixels, alphaBlock);
+      } else if (dxtType == DxtType.DXT5) {
+        alpha.compressAlphaDxt5(pixels, alphaBlock);
+      }
+
+      if (alphaBlock != null) {
+        System.arraycopy(alphaBlock, 0, output, outputOfs, alphaBlock.length);
+        outputOfs += alphaBlock.length;
+      }
+      System.arraycopy(colorBlock, 0, output, outputOfs, colorBlock.length);
+    }
+  }
+
+
   private static class ColorSet
   {
     private final Vec3[] points;
@@ -228,11 +334,19 @@ public static int argb(int color, int pos)
       return (color >>> ((pos & 3) << 3)) & 0xff;
     }
 
-    public ColorSet(int[] pixels, DxtType dxtType)
+    public ColorSet()
     {
       points = new Vec3[16];
+      for (int i = 0; i < points.length; i++) {
+        points[i] = new Vec3();
+      }
       weights = new float[16];
       remap = new int[16];
+    }
+
+    // Creates the minimal point set of the specified 4x4 block of pixels
+    public void init(int[] pixels, DxtType dxtType)
+    {
       count = 0;
       transparent = false;
 
@@ -260,7 +374,7 @@ public ColorSet(int[] pixels, DxtType dxtType)
             float w = (float)(argb(pixels[i], 3) + 1) / 256.0f;
 
             // add the points
-            points[count] = new Vec3(x, y, z);
+            points[count].set(x, y, z);
             weights[count] = w;
             remap[i] = count;
 
@@ -312,13 +426,29 @@ public void remapIndices(int[] source, int[] target)
 
   private static abstract class ColorFit
   {
-    protected ColorSet colors;
-    protected DxtType dxtType;
+    // using perceptual metric for color error
+    protected static final float MetricX = 0.2126f;
+    protected static final float MetricY = 0.7152f;
+    protected static final float MetricZ = 0.0722f;
+
+    protected final ColorSet colors;
+    protected final DxtType dxtType;
+    protected final int[] indices;
 
     public ColorFit(ColorSet colors, DxtType dxtType)
     {
       this.colors = colors;
       this.dxtType = dxtType;
+      this.indices = new int[16];
+    }
+
+    // Clamps the value to [0, 1] and snaps it to the specified grid
+    protected static float clampToGrid(float value, float grid, float gridrcp)
+    {
+      if (Float.isNaN(value))
+        value = 0.0f;
+      value = grid*Math.min(1.0f, Math.max(0.0f, value)) + 0.5f;
+      return ((value > 0.0f) ? (float)Math.floor(value) : (float)Math.ceil(value)) * gridrcp;
     }
 
     public void compress(byte[] block)
@@ -334,6 +464,9 @@ public void compress(byte[] block)
       }
     }
 
+    // Prepares the fit for the current content of the color set
+    public abstract void init();
+
     protected abstract void compress3(byte[] block);
     protected abstract void compress4(byte[] block);
   }
@@ -341,10 +474,13 @@ public void compress(byte[] block)
 
   private static class SingleColorFit extends ColorFit
   {
-    private final int[] color;
+    private static final SingleColorLookup[][] lookups3 = { Lookups.lookup53, Lookups.lookup63, Lookups.lookup53 };
+    private static final SingleColorLookup[][] lookups4 = { Lookups.lookup54, Lookups.lookup64, Lookups.lookup54 };
 
-    private Vec3 start, end;
-    private int index;
+    private final int[] color;
+    private final int[] index;
+    private final SourceBlock[] sources;
+    private final Vec3 start, end;
     private int error;
     private int bestError;
 
@@ -352,9 +488,15 @@ public SingleColorFit(ColorSet colors, DxtType dxtType)
     {
       super(colors, dxtType);
       color = new int[3];
+      index = new int[1];
+      sources = new SourceBlock[3];
       start = new Vec3();
       end = new Vec3();
+    }
 
+    @Override
+    public void init()
+    {
       // grab the single color
       Vec3 value = this.colors.getPoints()[0];
       color[0] = Misc.floatToInt(255.0f*value.x(), 255);
@@ -368,22 +510,16 @@ public SingleColorFit(ColorSet colors, DxtType dxtType)
     @Override
     protected void compress3(byte[] block)
     {
-      // build the table of lookups
-      SingleColorLookup[][] lookups = new SingleColorLookup[][]{
-          Lookups.lookup53, Lookups.lookup63, Lookups.lookup53
-      };
-
       // find the best end-points and index
-      computeEndPoints(lookups);
+      computeEndPoints(lookups3);
 
       // build the block if we win
       if (error < bestError) {
         // remap indices
-        int[] indices = new int[16];
-        colors.remapIndices(new int[]{index}, indices);
+        colors.remapIndices(index, indices);
 
         // save the block
-        ColorBlock.writeColorBlock3(start, end, indices, block);
+        ColorBlock.writeColorBlock3(start.x(), start.y(), start.z(), end.x(), end.y(), end.z(), indices, block);
 
         // save the error
         bestError = error;
@@ -393,22 +529,16 @@ protected void compress3(byte[] block)
     @Override
     protected void compress4(byte[] block)
     {
-      // build the table of lookups
-      SingleColorLookup[][] lookups = new SingleColorLookup[][]{
-          Lookups.lookup54, Lookups.lookup64, Lookups.lookup54
-      };
-
       // find the best end-points and index
-      computeEndPoints(lookups);
+      computeEndPoints(lookups4);
 
       // build the block if we win
       if (error < bestError) {
         // remap indices
-        int[] indices = new int[16];
-        colors.remapIndices(new int[]{index}, indices);
+        colors.remapIndices(index, indices);
 
         // save the block
-        ColorBlock.writeColorBlock4(start, end, indices, block);
+        ColorBlock.writeColorBlock4(start.x(), start.y(), start.z(), end.x(), end.y(), end.z(), indices, block);
 
         // save the error
         bestError = error;
@@ -420,7 +550,6 @@ protected void computeEndPoints(SingleColorLookup[][] lookups)
       // check each index combination (endpoint or intermediate)
       this.error = Integer.MAX_VALUE;
       for (int index = 0; index < 2; index++) {
-        SourceBlock[] sources = new SourceBlock[3];
         int error = 0;
         for (int channel = 0; channel < 3; channel++) {
           // grab the lookup table and index for this channel
@@ -437,13 +566,13 @@ protected void computeEndPoints(SingleColorLookup[][] lookups)
 
         // keep it if the error is lower
         if (error < this.error) {
-          start = new Vec3((float)sources[0].start / 31.0f,
-                           (float)sources[1].start / 63.0f,
-                           (float)sources[2].start / 31.0f);
-          end = new Vec3((float)sources[0].end / 31.0f,
-                         (float)sources[1].end / 63.0f,
-                         (float)sources[2].end / 31.0f);
-          this.index = 2 * index;
+          start.set((float)sources[0].start / 31.0f,
+                    (float)sources[1].start / 63.0f,
+                    (float)sources[2].start / 31.0f);
+          end.set((float)sources[0].end / 31.0f,
+                  (float)sources[1].end / 63.0f,
+                  (float)sources[2].end / 31.0f);
+          this.index[0] = 2 * index;
           this.error = error;
         }
       }
@@ -452,16 +581,30 @@ protected void computeEndPoints(SingleColorLookup[][] lookups)
 
   private static class RangeFit extends ColorFit
   {
-    private Vec3 metric, start, end;
+    private final Sym3x3 covariance;
+    private final Vec3 principle;
+    private final Vec3 start, end;
+    private final Vec3[] codes;
+    private final int[] closest;
     private float bestError;
 
     public RangeFit(ColorSet colors, DxtType dxtType)
     {
       super(colors, dxtType);
+      covariance = new Sym3x3();
+      principle = new Vec3();
+      start = new Vec3();
+      end = new Vec3();
+      codes = new Vec3[4];
+      for (int i = 0; i < codes.length; i++) {
+        codes[i] = new Vec3();
+      }
+      closest = new int[16];
+    }
 
-      // using perceptual metric for color error
-      metric = new Vec3(0.2126f, 0.7152f, 0.0722f);
-
+    @Override
+    public void init()
+    {
       // initialize the best error
       bestError = Float.MAX_VALUE;
 
@@ -471,19 +614,19 @@ public RangeFit(ColorSet colors, DxtType dxtType)
       float[] weights = this.colors.getWeights();
 
       // get the covariance matrix
-      Sym3x3 covariance = Sym3x3.computeWeightedCovariance(count, values, weights);
+      Sym3x3.computeWeightedCovariance(count, values, weights, covariance);
 
       // compute the principle component
-      Vec3 principle = Sym3x3.computePrincipleComponent(covariance);
+      Sym3x3.computePrincipleComponent(covariance, principle);
 
       // get the min and max range as the codebook endpoints
-      Vec3 start = new Vec3();
-      Vec3 end = new Vec3();
+      float sx = 0.0f, sy = 0.0f, sz = 0.0f;
+      float ex = 0.0f, ey = 0.0f, ez = 0.0f;
       if (count > 0) {
         float min, max;
 
         // compute the range
-        start = end = values[0];
+        Vec3 start = values[0], end = values[0];
         min = max = Vec3.dot(values[0], principle);
         for (int i = 1; i < count; i++) {
           float val = Vec3.dot(values[i], principle);
@@ -495,94 +638,92 @@ public RangeFit(ColorSet colors, DxtType dxtType)
             max = val;
           }
         }
+        sx = start.x(); sy = start.y(); sz = start.z();
+        ex = end.x(); ey = end.y(); ez = end.z();
       }
 
-      // clamp the output to [0, 1]
-      final Vec3 one = new Vec3(1.0f);
-      final Vec3 zero = new Vec3(0.0f);
-      start = Vec3.min(one, Vec3.max(zero, start));
-      end = Vec3.min(one, Vec3.max(zero, end));
-
-      // clamp the grid and save
-      final Vec3 grid = new Vec3(31.0f, 63.0f, 31.0f);
-      final Vec3 gridrcp = new Vec3(1.0f/31.0f, 1.0f/63.0f, 1.0f/31.0f);
-      final Vec3 half = new Vec3(0.5f);
-      this.start = Vec3.truncate(Vec3.mul(grid, start).add(half)).mul(gridrcp);
-      this.end = Vec3.truncate(Vec3.mul(grid, end).add(half)).mul(gridrcp);
+      // clamp the output to [0, 1], clamp the grid and save
+      start.set(clampToGrid(sx, 31.0f, 1.0f/31.0f),
+                clampToGrid(sy, 63.0f, 1.0f/63.0f),
+                clampToGrid(sz, 31.0f, 1.0f/31.0f));
+      end.set(clampToGrid(ex, 31.0f, 1.0f/31.0f),
+              clampToGrid(ey, 63.0f, 1.0f/63.0f),
+              clampToGrid(ez, 31.0f, 1.0f/31.0f));
     }
 
     @Override
     protected void compress3(byte[] block)
     {
-      // cache some values
-      int count = colors.getCount();
-      Vec3[] values = colors.getPoints();
-
       // create a codebook
-      Vec3[] codes = new Vec3[3];
-      codes[0] = start;
-      codes[1] = end;
-      codes[2] = Vec3.mul(start, 0.5f).add(Vec3.mul(end, 0.5f));
+      codes[0].set(start);
+      codes[1].set(end);
+      codes[2].set(start.x()*0.5f + end.x()*0.5f,
+                   start.y()*0.5f + end.y()*0.5f,
+                   start.z()*0.5f + end.z()*0.5f);
 
       // match each point to the closest code
-      int[] closest = new int[16];
-      float error = 0.0f;
-      for (int i = 0; i < count; i++) {
-        // find the closest code
-        float dist = Float.MAX_VALUE;
-        int idx = 0;
-        for (int j = 0; j < 3; j++) {
-          float d = Vec3.lengthSquared(Vec3.mul(metric, Vec3.sub(values[i], codes[j])));
-          if (d < dist) {
-            dist = d;
-            idx = j;
-          }
-        }
+      float error = matchCodes(3);
 
-        // save the index
-        closest[i] = idx;
+      // save this scheme if it wins
+      if (error < bestError) {
+        // remap the indices
+        colors.remapIndices(closest, indices);
 
-        // accumulate the error
-        error += dist;
+        // save the block
+        ColorBlock.writeColorBlock3(start.x(), start.y(), start.z(), end.x(), end.y(), end.z(), indices, block);
+
+        // save the error
+        bestError = error;
       }
+    }
+
+    @Override
+    protected void compress4(byte[] block)
+    {
+      // create a codebook
+      codes[0].set(start);
+      codes[1].set(end);
+      codes[2].set(start.x()*(2.0f/3.0f) + end.x()*(1.0f/3.0f),
+                   start.y()*(2.0f/3.0f) + end.y()*(1.0f/3.0f),
+                   start.z()*(2.0f/3.0f) + end.z()*(1.0f/3.0f));
+      codes[3].set(start.x()*(1.0f/3.0f) + end.x()*(2.0f/3.0f),
+                   start.y()*(1.0f/3.0f) + end.y()*(2.0f/3.0f),
+                   start.z()*(1.0f/3.0f) + end.z()*(2.0f/3.0f));
+
+      // match each point to the closest code
+      float error = matchCodes(4);
 
       // save this scheme if it wins
       if (error < bestError) {
         // remap the indices
-        int[] indices = new int[16];
         colors.remapIndices(closest, indices);
 
         // save the block
-        ColorBlock.writeColorBlock3(start, end, indices, block);
+        ColorBlock.writeColorBlock4(start.x(), start.y(), start.z(), end.x(), end.y(), end.z(), indices, block);
 
         // save the error
         bestError = error;
       }
     }
 
-    @Override
-    protected void compress4(byte[] block)
+    // Matches each point to the closest of the specified number of codes, returns the accumulated error
+    private float matchCodes(int numCodes)
     {
       // cache some values
       int count = colors.getCount();
       Vec3[] values = colors.getPoints();
 
-      // create a codebook
-      Vec3[] codes = new Vec3[4];
-      codes[0] = start;
-      codes[1] = end;
-      codes[2] = Vec3.mul(start, 2.0f/3.0f).add(Vec3.mul(end, 1.0f/3.0f));
-      codes[3] = Vec3.mul(start, 1.0f/3.0f).add(Vec3.mul(end, 2.0f/3.0f));
-
-      // match each point to the closest code
-      int[] closest = new int[16];
       float error = 0.0f;
       for (int i = 0; i < count; i++) {
         // find the closest code
+        Vec3 value = values[i];
         float dist = Float.MAX_VALUE;
         int idx = 0;
-        for (int j = 0; j < 4; j++) {
-          float d = Vec3.lengthSquared(Vec3.mul(metric, Vec3.sub(values[i], codes[j])));
+        for (int j = 0; j < numCodes; j++) {
+          float dx = MetricX*(value.x() - codes[j].x());
+          float dy = MetricY*(value.y() - codes[j].y());
+          float dz = MetricZ*(value.z() - codes[j].z());
+          float d = dx*dx + dy*dy + dz*dz;
           if (d < dist) {
             dist = d;
             idx = j;
@@ -595,53 +736,58 @@ protected void compress4(byte[] block)
         // accumulate the error
         error += dist;
       }
-
-      // save this scheme if it wins
-      if (error < bestError) {
-        // remap the indices
-        int[] indices = new int[16];
-        colors.remapIndices(closest, indices);
-
-        // save the block
-        ColorBlock.writeColorBlock4(start, end, indices, block);
-
-        // save the error
-        bestError = error;
-      }
+      return error;
     }
   }
 
+  // Cluster fit with points and partial sums stored as (x, y, z, w) float quadruples
   private static class ClusterFit extends ColorFit
   {
     private static final int IterationCount = 8;
 
-    private final int[] order;
-    private final Vec4[] pointsWeights;
+    private static final float OneThird = 1.0f/3.0f;
+    private static final float TwoThirds = 2.0f/3.0f;
+    private static final float OneNinth = 1.0f/9.0f;
+    private static final float FourNinths = 4.0f/9.0f;
+    private static final float TwoNinths = 2.0f/9.0f;
 
-    private Vec3 principle;
-    private Vec4 xsum_wsum;
-    private Vec4 metric;
-    private Vec4 bestError;
+    private final int[] order;
+    private final float[] pointsWeights;
+    private final float[] dps;
+    private final int[] unordered;
+    private final Sym3x3 covariance;
+    private final Vec3 principle;
+    private final Vec3 axis;
+
+    private float xsum, ysum, zsum, wsum;
+    private float bestError;
 
     public ClusterFit(ColorSet colors, DxtType dxtType)
     {
       super(colors, dxtType);
       order = new int[16*IterationCount];
-      pointsWeights = new Vec4[16];
+      pointsWeights = new float[16*4];
+      dps = new float[16];
+      unordered = new int[16];
+      covariance = new Sym3x3();
+      principle = new Vec3();
+      axis = new Vec3();
+    }
 
+    @Override
+    public void init()
+    {
       // initialize the best error
-      bestError = new Vec4(Float.MAX_VALUE);
-
-      // using perceptual metric for color error
-      metric = new Vec4(0.2126f, 0.7152f, 0.0722f, 0.0f);
+      bestError = Float.MAX_VALUE;
 
       // get the covariance matrix
-      Sym3x3 covariance = Sym3x3.computeWeightedCovariance(this.colors.getCount(),
-                                                           this.colors.getPoints(),
-                                                           this.colors.getWeights());
+      Sym3x3.computeWeightedCovariance(this.colors.getCount(),
+                                       this.colors.getPoints(),
+                                       this.colors.getWeights(),
+                                       covariance);
 
       // compute the principle component
-      principle = Sym3x3.computePrincipleComponent(covariance);
+      Sym3x3.computePrincipleComponent(covariance, principle);
     }
 
     @Override
@@ -649,71 +795,74 @@ protected void compress3(byte[] block)
     {
       // declare variables
       final int count = colors.getCount();
-      final Vec4 two = new Vec4(2.0f);
-      final Vec4 one = new Vec4(1.0f);
-      final Vec4 halfHalf2 = new Vec4(0.5f, 0.5f, 0.5f, 0.25f);
-      final Vec4 zero = new Vec4(0.0f);
-      final Vec4 half = new Vec4(0.5f);
-      final Vec4 grid = new Vec4(31.0f, 63.0f, 31.0f, 0.0f);
-      final Vec4 gridrcp = new Vec4(1.0f/31.0f, 1.0f/63.0f, 1.0f/31.0f, 0.0f);
+      final float[] pw = pointsWeights;
 
       // prepare an ordering using the principle axis
       constructOrdering(principle, 0);
 
       // check all possible clusters and iterate on the total order
-      Vec4 bestStart = new Vec4();
-      Vec4 bestEnd = new Vec4();
-      Vec4 bestError = this.bestError;
-      int[] bestIndices = new int[16];
+      float bestStartX = 0.0f, bestStartY = 0.0f, bestStartZ = 0.0f;
+      float bestEndX = 0.0f, bestEndY = 0.0f, bestEndZ = 0.0f;
+      float bestError = this.bestError;
       int bestIteration = 0;
       int bestI = 0, bestJ = 0;
 
       // loop over iterations (we avoid the case that all points in first or last cluster)
       for (int iterIndex = 0; ; ) {
         // first cluster [0, i) is at the start
-        Vec4 part0 = new Vec4();
+        float p0x = 0.0f, p0y = 0.0f, p0z = 0.0f, p0w = 0.0f;
         for (int i = 0; i < count; i++) {
           // second cluster [i, j) is half along
-          Vec4 part1 = (i == 0) ? (Vec4)pointsWeights[0].clone() : new Vec4();
+          float p1x = 0.0f, p1y = 0.0f, p1z = 0.0f, p1w = 0.0f;
+          if (i == 0) {
+            p1x = pw[0]; p1y = pw[1]; p1z = pw[2]; p1w = pw[3];
+          }
           int jmin = (i == 0) ? 1 : i;
           for (int j = jmin; ; ) {
             // last cluster [j, count) is at the end
-            Vec4 part2 = Vec4.sub(xsum_wsum, part1).sub(part0);
+            float p2x = (xsum - p1x) - p0x;
+            float p2y = (ysum - p1y) - p0y;
+            float p2z = (zsum - p1z) - p0z;
+            float p2w = (wsum - p1w) - p0w;
 
             // compute least squares terms directly
-            Vec4 alphaXSum = Vec4.multiplyAdd(part1, halfHalf2, part0);
-            Vec4 alpha2Sum = alphaXSum.splatW();
+            float alphaXSumX = p1x*0.5f + p0x;
+            float alphaXSumY = p1y*0.5f + p0y;
+            float alphaXSumZ = p1z*0.5f + p0z;
+            float alpha2Sum = p1w*0.25f + p0w;
 
-            Vec4 betaXSum = Vec4.multiplyAdd(part1, halfHalf2, part2);
-            Vec4 beta2Sum = betaXSum.splatW();
+            float betaXSumX = p1x*0.5f + p2x;
+            float betaXSumY = p1y*0.5f + p2y;
+            float betaXSumZ = p1z*0.5f + p2z;
+            float beta2Sum = p1w*0.25f + p2w;
 
-            Vec4 alphaBetaSum = Vec4.mul(part1, halfHalf2).splatW();
+            float alphaBetaSum = p1w*0.25f;
 
             // compute the least squares optimal points
-            Vec4 factor = Vec4.reciprocal(Vec4.negMulSub(alphaBetaSum, alphaBetaSum, Vec4.mul(alpha2Sum, beta2Sum)));
-            Vec4 a = Vec4.negMulSub(betaXSum, alphaBetaSum, Vec4.mul(alphaXSum, beta2Sum)).mul(factor);
-            Vec4 b = Vec4.negMulSub(alphaXSum, alphaBetaSum, Vec4.mul(betaXSum, alpha2Sum)).mul(factor);
+            float factor = 1.0f / (alpha2Sum*beta2Sum - alphaBetaSum*alphaBetaSum);
+            float ax = (alphaXSumX*beta2Sum - betaXSumX*alphaBetaSum) * factor;
+            float ay = (alphaXSumY*beta2Sum - betaXSumY*alphaBetaSum) * factor;
+            float az = (alphaXSumZ*beta2Sum - betaXSumZ*alphaBetaSum) * factor;
+            float bx = (betaXSumX*alpha2Sum - alphaXSumX*alphaBetaSum) * factor;
+            float by = (betaXSumY*alpha2Sum - alphaXSumY*alphaBetaSum) * factor;
+            float bz = (betaXSumZ*alpha2Sum - alphaXSumZ*alphaBetaSum) * factor;
 
             // clamp to the grid
-            a = Vec4.min(one, Vec4.max(zero, a));
-            b = Vec4.min(one, Vec4.max(zero, b));
-            a = Vec4.truncate(Vec4.multiplyAdd(grid, a, half)).mul(gridrcp);
-            b = Vec4.truncate(Vec4.multiplyAdd(grid, b, half)).mul(gridrcp);
+            ax = clampToGrid(ax, 31.0f, 1.0f/31.0f);
+            ay = clampToGrid(ay, 63.0f, 1.0f/63.0f);
+            az = clampToGrid(az, 31.0f, 1.0f/31.0f);
+            bx = clampToGrid(bx, 31.0f, 1.0f/31.0f);
+            by = clampToGrid(by, 63.0f, 1.0f/63.0f);
+            bz = clampToGrid(bz, 31.0f, 1.0f/31.0f);
 
             // compute the error (we skip the constant xxsum)
-            Vec4 e1 = Vec4.multiplyAdd(Vec4.mul(a, a), alpha2Sum, Vec4.mul(b, b).mul(beta2Sum));
-            Vec4 e2 = Vec4.negMulSub(a, alphaXSum, Vec4.mul(a, b).mul(alphaBetaSum));
-            Vec4 e3 = Vec4.negMulSub(b, betaXSum, e2);
-            Vec4 e4 = Vec4.multiplyAdd(two, e3, e1);
-
-            // apply the metric to the error terms
-            Vec4 e5 = Vec4.mul(e4, metric);
-            Vec4 error = Vec4.add(e5.splatX(), e5.splatY()).add(e5.splatZ());
+            float error = computeError(ax, ay, az, bx, by, bz, alphaXSumX, alphaXSumY, alphaXSumZ,
+                                       betaXSumX, betaXSumY, betaXSumZ, alpha2Sum, beta2Sum, alphaBetaSum);
 
             // keep the solution if it wins
-            if (Vec4.compareAnyLessThan(error, bestError)) {
-              bestStart = a;
-              bestEnd = b;
+            if (error < bestError) {
+              bestStartX = ax; bestStartY = ay; bestStartZ = az;
+              bestEndX = bx; bestEndY = by; bestEndZ = bz;
               bestI = i;
               bestJ = j;
               bestError = error;
@@ -723,11 +872,11 @@ protected void compress3(byte[] block)
             // advance
             if (j == count)
               break;
-            part1.add(pointsWeights[j]);
+            p1x += pw[4*j]; p1y += pw[4*j+1]; p1z += pw[4*j+2]; p1w += pw[4*j+3];
             j++;
           }
           // advance
-          part0.add(pointsWeights[i]);
+          p0x += pw[4*i]; p0y += pw[4*i+1]; p0z += pw[4*i+2]; p0w += pw[4*i+3];
         }
         // stop if we didn't improve in this iteration
         if (bestIteration != iterIndex)
@@ -739,16 +888,15 @@ protected void compress3(byte[] block)
           break;
 
         // stop if a new iteration is an ordering that has already been tried
-        Vec3 axis = Vec4.sub(bestEnd, bestStart).getVec3();
+        axis.set(bestEndX - bestStartX, bestEndY - bestStartY, bestEndZ - bestStartZ);
         if (!constructOrdering(axis, iterIndex))
           break;
       }
 
       // save the block if necessary
-      if (Vec4.compareAnyLessThan(bestError, this.bestError)) {
+      if (bestError < this.bestError) {
         // remap the indices
         int orderIdx = 16*bestIteration;
-        int[] unordered = new int[16];
         for (int m = 0; m < bestI; m++)
           unordered[order[orderIdx+m]] = 0;
         for (int m = bestI; m < bestJ; m++)
@@ -756,10 +904,11 @@ protected void compress3(byte[] block)
         for (int m = bestJ; m < count; m++)
           unordered[order[orderIdx+m]] = 1;
 
-        colors.remapIndices(unordered, bestIndices);
+        colors.remapIndices(unordered, indices);
 
         // save the block
-        ColorBlock.writeColorBlock3(bestStart.getVec3(), bestEnd.getVec3(), bestIndices, block);
+        ColorBlock.writeColorBlock3(bestStartX, bestStartY, bestStartZ, bestEndX, bestEndY, bestEndZ,
+                                    indices, block);
 
         // save the error
         this.bestError = bestError;
@@ -771,79 +920,77 @@ protected void compress4(byte[] block)
     {
       // declare variables
       final int count = colors.getCount();
-      final Vec4 two = new Vec4(2.0f);
-      final Vec4 one = new Vec4(1.0f);
-      final Vec4 oneThirdOneThird2 = new Vec4(1.0f/3.0f, 1.0f/3.0f, 1.0f/3.0f, 1.0f/9.0f);
-      final Vec4 twoThirdsTwoThirds2 = new Vec4(2.0f/3.0f, 2.0f/3.0f, 2.0f/3.0f, 4.0f/9.0f);
-      final Vec4 twoNineth = new Vec4(2.0f/9.0f);
-      final Vec4 zero = new Vec4(0.0f);
-      final Vec4 half = new Vec4(0.5f);
-      final Vec4 grid = new Vec4(31.0f, 63.0f, 31.0f, 0.0f);
-      final Vec4 gridrcp = new Vec4(1.0f/31.0f, 1.0f/63.0f, 1.0f/31.0f, 0.0f);
+      final float[] pw = pointsWeights;
 
       // prepare an ordering using the principle axis
       constructOrdering(principle, 0);
 
       // check all possible clusters and iterate on the total order
-      Vec4 bestStart = new Vec4();
-      Vec4 bestEnd = new Vec4();
-      Vec4 bestError = this.bestError;
-      int[] bestIndices = new int[16];
+      float bestStartX = 0.0f, bestStartY = 0.0f, bestStartZ = 0.0f;
+      float bestEndX = 0.0f, bestEndY = 0.0f, bestEndZ = 0.0f;
+      float bestError = this.bestError;
       int bestIteration = 0;
       int bestI = 0, bestJ = 0, bestK = 0;
 
       // loop over iterations (we avoid the case all points in first or last cluster)
       for (int iterIndex = 0; ; ) {
         // first cluster [0, i) is at the start
-        Vec4 part0 = new Vec4();
+        float p0x = 0.0f, p0y = 0.0f, p0z = 0.0f, p0w = 0.0f;
         for (int i = 0; i < count; i++) {
           // second cluster [i, j) is one third along
-          Vec4 part1 = new Vec4();
+          float p1x = 0.0f, p1y = 0.0f, p1z = 0.0f, p1w = 0.0f;
           for (int j = i; ; ) {
             // third cluster [j, k) is two thirds along
-            Vec4 part2 = (j == 0) ? (Vec4)pointsWeights[0].clone() : new Vec4();
+            float p2x = 0.0f, p2y = 0.0f, p2z = 0.0f, p2w = 0.0f;
+            if (j == 0) {
+              p2x = pw[0]; p2y = pw[1]; p2z = pw[2]; p2w = pw[3];
+            }
             int kmin = (j == 0) ? 1 : j;
             for (int k = kmin; ; ) {
               // last cluster [k, count) is at the end
-              Vec4 part3 = Vec4.sub(xsum_wsum, part2).sub(part1).sub(part0);
+              float p3x = ((xsum - p2x) - p1x) - p0x;
+              float p3y = ((ysum - p2y) - p1y) - p0y;
+              float p3z = ((zsum - p2z) - p1z) - p0z;
+              float p3w = ((wsum - p2w) - p1w) - p0w;
 
               // compute least squares terms directly
-              Vec4 alphaXSum = Vec4.multiplyAdd(part2, oneThirdOneThird2,
-                                                Vec4.multiplyAdd(part1, twoThirdsTwoThirds2, part0));
-              Vec4 alpha2Sum = alphaXSum.splatW();
+              float alphaXSumX = p2x*OneThird + (p1x*TwoThirds + p0x);
+              float alphaXSumY = p2y*OneThird + (p1y*TwoThirds + p0y);
+              float alphaXSumZ = p2z*OneThird + (p1z*TwoThirds + p0z);
+              float alpha2Sum = p2w*OneNinth + (p1w*FourNinths + p0w);
 
-              Vec4 betaXSum = Vec4.multiplyAdd(part1, oneThirdOneThird2,
-                                               Vec4.multiplyAdd(part2, twoThirdsTwoThirds2, part3));
-              Vec4 beta2Sum = betaXSum.splatW();
+              float betaXSumX = p1x*OneThird + (p2x*TwoThirds + p3x);
+              float betaXSumY = p1y*OneThird + (p2y*TwoThirds + p3y);
+              float betaXSumZ = p1z*OneThird + (p2z*TwoThirds + p3z);
+              float beta2Sum = p1w*OneNinth + (p2w*FourNinths + p3w);
 
-              Vec4 alphaBetaSum = Vec4.mul(twoNineth, Vec4.add(part1, part2).splatW());
+              float alphaBetaSum = TwoNinths * (p1w + p2w);
 
               // compute the least-squares optimal points
-              Vec4 factor = Vec4.reciprocal(Vec4.negMulSub(alphaBetaSum, alphaBetaSum,
-                                            Vec4.mul(alpha2Sum, beta2Sum)));
-              Vec4 a = Vec4.negMulSub(betaXSum, alphaBetaSum, Vec4.mul(alphaXSum, beta2Sum)).mul(factor);
-              Vec4 b = Vec4.negMulSub(alphaXSum, alphaBetaSum, Vec4.mul(betaXSum, alpha2Sum)).mul(factor);
+              float factor = 1.0f / (alpha2Sum*beta2Sum - alphaBetaSum*alphaBetaSum);
+              float ax = (alphaXSumX*beta2Sum - betaXSumX*alphaBetaSum) * factor;
+              float ay = (alphaXSumY*beta2Sum - betaXSumY*alphaBetaSum) * factor;
+              float az = (alphaXSumZ*beta2Sum - betaXSumZ*alphaBetaSum) * factor;
+              float bx = (betaXSumX*alpha2Sum - alphaXSumX*alphaBetaSum) * factor;
+              float by = (betaXSumY*alpha2Sum - alphaXSumY*alphaBetaSum) * factor;
+              float bz = (betaXSumZ*alpha2Sum - alphaXSumZ*alphaBetaSum) * factor;
 
               // clamp to the grid
-              a = Vec4.min(one, Vec4.max(zero, a));
-              b = Vec4.min(one, Vec4.max(zero, b));
-              a = Vec4.truncate(Vec4.multiplyAdd(grid, a, half)).mul(gridrcp);
-              b = Vec4.truncate(Vec4.multiplyAdd(grid, b, half)).mul(gridrcp);
+              ax = clampToGrid(ax, 31.0f, 1.0f/31.0f);
+              ay = clampToGrid(ay, 63.0f, 1.0f/63.0f);
+              az = clampToGrid(az, 31.0f, 1.0f/31.0f);
+              bx = clampToGrid(bx, 31.0f, 1.0f/31.0f);
+              by = clampToGrid(by, 63.0f, 1.0f/63.0f);
+              bz = clampToGrid(bz, 31.0f, 1.0f/31.0f);
 
               // compute the error (we skip the constant xxsum)
-              Vec4 e1 = Vec4.multiplyAdd(Vec4.mul(a, a), alpha2Sum, Vec4.mul(b, b).mul(beta2Sum));
-              Vec4 e2 = Vec4.negMulSub(a, alphaXSum, Vec4.mul(a, b).mul(alphaBetaSum));
-              Vec4 e3 = Vec4.negMulSub(b, betaXSum, e2);
-              Vec4 e4 = Vec4.multiplyAdd(two, e3, e1);
-
-              // apply the metric to the error term
-              Vec4 e5 = Vec4.mul(e4, metric);
-              Vec4 error = Vec4.add(e5.splatX(), e5.splatY()).add(e5.splatZ());
+              float error = computeError(ax, ay, az, bx, by, bz, alphaXSumX, alphaXSumY, alphaXSumZ,
+                                         betaXSumX, betaXSumY, betaXSumZ, alpha2Sum, beta2Sum, alphaBetaSum);
 
               // keep the solution if it wins
-              if (Vec4.compareAnyLessThan(error, bestError)) {
-                bestStart = a;
-                bestEnd = b;
+              if (error < bestError) {
+                bestStartX = ax; bestStartY = ay; bestStartZ = az;
+                bestEndX = bx; bestEndY = by; bestEndZ = bz;
                 bestError = error;
                 bestI = i;
                 bestJ = j;
@@ -853,17 +1000,17 @@ protected void compress4(byte[] block)
               // advance
               if (k == count)
                 break;
-              part2.add(pointsWeights[k]);
+              p2x += pw[4*k]; p2y += pw[4*k+1]; p2z += pw[4*k+2]; p2w += pw[4*k+3];
               k++;
             }
             // advance
             if (j == count)
               break;
-            part1.add(pointsWeights[j]);
+            p1x += pw[4*j]; p1y += pw[4*j+1]; p1z += pw[4*j+2]; p1w += pw[4*j+3];
             j++;
           }
           // advance
-          part0.add(pointsWeights[i]);
+          p0x += pw[4*i]; p0y += pw[4*i+1]; p0z += pw[4*i+2]; p0w += pw[4*i+3];
         }
         // stop if we didn't improve in this iteration
         if (bestIteration != iterIndex)
@@ -875,16 +1022,15 @@ protected void compress4(byte[] block)
           break;
 
         // stop if a new iteration is an ordering that has already been tried
-        Vec3 axis = Vec4.sub(bestEnd, bestStart).getVec3();
+        axis.set(bestEndX - bestStartX, bestEndY - bestStartY, bestEndZ - bestStartZ);
         if (!constructOrdering(axis, iterIndex))
           break;
       }
 
       // save the block if necessary
-      if (Vec4.compareAnyLessThan(bestError, this.bestError)) {
+      if (bestError < this.bestError) {
         // remap the indices
         int orderIdx = 16*bestIteration;
-        int[] unordered = new int[16];
         for (int m = 0; m < bestI; m++)
           unordered[order[orderIdx+m]] = 0;
         for (int m = bestI; m < bestJ; m++)
@@ -894,16 +1040,34 @@ protected void compress4(byte[] block)
         for (int m = bestK; m < count; m++)
           unordered[order[orderIdx+m]] = 1;
 
-        colors.remapIndices(unordered, bestIndices);
+        colors.remapIndices(unordered, indices);
 
         // save the block
-        ColorBlock.writeColorBlock4(bestStart.getVec3(), bestEnd.getVec3(), bestIndices, block);
+        ColorBlock.writeColorBlock4(bestStartX, bestStartY, bestStartZ, bestEndX, bestEndY, bestEndZ,
+                                    indices, block);
 
         // save the error
         this.bestError = bestError;
       }
     }
 
+    // Returns the perceptually weighted error of the specified end points (without the constant xxsum)
+    private static float computeError(float ax, float ay, float az, float bx, float by, float bz,
+                                      float alphaXSumX, float alphaXSumY, float alphaXSumZ,
+                                      float betaXSumX, float betaXSumY, float betaXSumZ,
+                                      float alpha2Sum, float beta2Sum, float alphaBetaSum)
+    {
+      float ex = 2.0f*(((ax*bx)*alphaBetaSum - ax*alphaXSumX) - bx*betaXSumX) +
+                 ((ax*ax)*alpha2Sum + (bx*bx)*beta2Sum);
+      float ey = 2.0f*(((ay*by)*alphaBetaSum - ay*alphaXSumY) - by*betaXSumY) +
+                 ((ay*ay)*alpha2Sum + (by*by)*beta2Sum);
+      float ez = 2.0f*(((az*bz)*alphaBetaSum - az*alphaXSumZ) - bz*betaXSumZ) +
+                 ((az*az)*alpha2Sum + (bz*bz)*beta2Sum);
+
+      // apply the metric to the error terms
+      return (ex*MetricX + ey*MetricY) + ez*MetricZ;
+    }
+
     private boolean constructOrdering(Vec3 axis, int iteration)
     {
       // cache some values
@@ -911,7 +1075,6 @@ private boolean constructOrdering(Vec3 axis, int iteration)
       final Vec3[] values = colors.getPoints();
 
       // build list of dot products
-      float[] dps = new float[16];
       int orderIdx = 16*iteration;
       for (int i = 0; i < count; i++) {
         dps[i] = Vec3.dot(values[i], axis);
@@ -943,14 +1106,16 @@ private boolean constructOrdering(Vec3 axis, int iteration)
       // copy the ordering and weight all the points
       final Vec3[] unweighted = colors.getPoints();
       final float[] weights = colors.getWeights();
-      xsum_wsum = new Vec4();
+      xsum = ysum = zsum = wsum = 0.0f;
       for (int i = 0; i < count; i++) {
         int j = order[orderIdx+i];
-        Vec4 p = new Vec4(unweighted[j].x(), unweighted[j].y(), unweighted[j].z(), 1.0f);
-        Vec4 w = new Vec4(weights[j]);
-        Vec4 x = Vec4.mul(p, w);
-        pointsWeights[i] = x;
-        xsum_wsum.add(x);
+        float w = weights[j];
+        float x = unweighted[j].x()*w, y = unweighted[j].y()*w, z = unweighted[j].z()*w;
+        pointsWeights[4*i] = x;
+        pointsWeights[4*i+1] = y;
+        pointsWeights[4*i+2] = z;
+        pointsWeights[4*i+3] = w;
+        xsum += x; ysum += y; zsum += z; wsum += w;
       }
       return true;
     }
@@ -959,69 +1124,63 @@ private boolean constructOrdering(Vec3 axis, int iteration)
 
   private static final class ColorBlock
   {
-    public static void writeColorBlock3(Vec3 start, Vec3 end, int[] indices, byte[] block)
+    // Note: indices are remapped in place
+    public static void writeColorBlock3(float startX, float startY, float startZ,
+                                        float endX, float endY, float endZ, int[] indices, byte[] block)
     {
       // get the packed values
-      int a = floatTo565(start);
-      int b = floatTo565(end);
+      int a = floatTo565(startX, startY, startZ);
+      int b = floatTo565(endX, endY, endZ);
 
       // remap the indices
-      int[] remapped = new int[16];
-      if (a <= b) {
-        // use the indices directly
-        System.arraycopy(indices, 0, remapped, 0, 16);
-      } else {
+      if (a > b) {
         // swap a and b
         int tmp = a; a = b; b = tmp;
         for (int i = 0; i < 16; i++) {
           if (indices[i] == 0) {
-            remapped[i] = 1;
+            indices[i] = 1;
           } else if (indices[i] == 1) {
-            remapped[i] = 0;
-          } else {
-            remapped[i] = indices[i];
+            indices[i] = 0;
           }
         }
       }
 
       // write the block
-      writeColorBlock(a, b, remapped, block);
+      writeColorBlock(a, b, indices, block);
     }
 
-    public static void writeColorBlock4(Vec3 start, Vec3 end, int[] indices, byte[] block)
+    // Note: indices are remapped in place
+    public static void writeColorBlock4(float startX, float startY, float startZ,
+                                        float endX, float endY, float endZ, int[] indices, byte[] block)
     {
       // get the packed values
-      int a = floatTo565(start);
-      int b = floatTo565(end);
+      int a = floatTo565(startX, startY, startZ);
+      int b = floatTo565(endX, endY, endZ);
 
       // remap the indices
-      int[] remapped = new int[16];
       if (a < b) {
         // swap a and b
         int tmp = a; a = b; b = tmp;
         for (int i = 0; i < 16; i++) {
-          remapped[i] = (indices[i] ^ 1) & 3;
+          indices[i] = (indices[i] ^ 1) & 3;
         }
       } else if (a == b) {
         // use index 0
         for (int i = 0; i < 16; i++) {
-          remapped[i] = 0;
+          indices[i] = 0;
         }
-      } else {
-        // use the indices directly
-        System.arraycopy(indices, 0, remapped, 0, 16);
       }
 
       // write the block
-      writeColorBlock(a, b, remapped, block);
+      writeColorBlock(a, b, indices, block);
     }
 
-    private static int floatTo565(Vec3 color)
+    private static int floatTo565(float x, float y, float z)
     {
       // get the components in the correct range
-      int r = Misc.floatToInt(31.0f*color.x(), 31);
-      int g = Misc.floatToInt(63.0f*color.y(), 63);
-      int b = Misc.floatToInt(31.0f*color.z(), 31);
+      int r = Misc.floatToInt(31.0f*x, 31);
+      int g = Misc.floatToInt(63.0f*y, 63);
+      int b = Misc.floatToInt(31.0f*z, 31);
 
       // pack the color into a single value
       return ((r << 11) | (g << 5) | b) & 0xffff;
@@ -1046,6 +1205,12 @@ private static void writeColorBlock(int a, int b, int[] indices, byte[] block)
 
   private static final class Alpha
   {
+    private final int[] minMax = new int[2];
+    private final int[] codes5 = new int[8];
+    private final int[] codes7 = new int[8];
+    private final int[] indices5 = new int[16];
+    private final int[] indices7 = new int[16];
+
     public static void compressAlphaDxt3(int[] pixels, byte[] block)
     {
       // quantize and pack the alpha values pairwise
@@ -1061,7 +1226,7 @@ public static void compressAlphaDxt3(int[] pixels, byte[] block)
       }
     }
 
-    public static void compressAlphaDxt5(int[] pixels, byte[] block)
+    public void compressAlphaDxt5(int[] pixels, byte[] block)
     {
       // get the range for 5-alpha and 7-alpha interpolation
       int min5 = 255;
@@ -1088,16 +1253,14 @@ public static void compressAlphaDxt5(int[] pixels, byte[] block)
         min7 = max7;
 
       // fix the range to be the minimum in each case
-      int[] minmax = new int[2];
-      minmax[0] = min5; minmax[1] = max5;
-      fixRange(minmax, 5);
-      min5 = minmax[0]; max5 = minmax[1];
-      minmax[0] = min7; minmax[1] = max7;
-      fixRange(minmax, 7);
-      min7 = minmax[0]; max7 = minmax[1];
+      minMax[0] = min5; minMax[1] = max5;
+      fixRange(minMax, 5);
+      min5 = minMax[0]; max5 = minMax[1];
+      minMax[0] = min7; minMax[1] = max7;
+      fixRange(minMax, 7);
+      min7 = minMax[0]; max7 = minMax[1];
 
       // set up the 5-alpha code book
-      int[] codes5 = new int[8];
       codes5[0] = min5;
       codes5[1] = max5;
       for (int i = 1; i < 5; i++) {
@@ -1107,7 +1270,6 @@ public static void compressAlphaDxt5(int[] pixels, byte[] block)
       codes5[7] = 255;
 
       // set up the 7-alpha code book
-      int[] codes7 = new int[8];
       codes7[0] = min7;
       codes7[1] = max7;
       for (int i = 1; i < 7; i++) {
@@ -1115,8 +1277,6 @@ public static void compressAlphaDxt5(int[] pixels, byte[] block)
       }
 
       // fit the data to both code books
-      int[] indices5 = new int[16];
-      int[] indices7 = new int[16];
       int err5 = fitCodes(pixels, codes5, indices5);
       int err7 = fitCodes(pixels, codes7, indices7);
 
@@ -1189,27 +1349,25 @@ private static void writeAlphaBlock(int alpha0, int alpha1, int[] indices, byte[
       }
     }
 
+    // Note: indices are swapped in place
     private static void writeAlphaBlock5(int alpha0, int alpha1, int[] indices, byte[] block)
     {
       // check the relative values of the endpoints
       if (alpha0 > alpha1) {
         // swap the indices
-        int[] swapped = new int[16];
         for (int i = 0; i < 16; i++) {
           int index = indices[i];
           if (index == 0) {
-            swapped[i] = 1;
+            indices[i] = 1;
           } else if (index == 1) {
-            swapped[i] = 0;
+            indices[i] = 0;
           } else if (index <= 5) {
-            swapped[i] = 7 - index;
-          } else {
-            swapped[i] = index;
+            indices[i] = 7 - index;
           }
         }
 
         // write the block
-        writeAlphaBlock(alpha1, alpha0, swapped, block);
+        writeAlphaBlock(alpha1, alpha0, indices, block);
 
       } else {
         // write the block
@@ -1217,24 +1375,24 @@ private static void writeAlphaBlock5(int alpha0, int alpha1, int[] indices, byte
       }
     }
 
+    // Note: indices are swapped in place
     private static void writeAlphaBlock7(int alpha0, int alpha1, int[] indices, byte[] block)
     {
       if (alpha0 < alpha1) {
         // swap the indices
-        int[] swapped = new int[16];
         for (int i = 0; i < 16; i++) {
           int index = indices[i];
           if (index == 0) {
-            swapped[i] = 1;
+            indices[i] = 1;
           } else if (index == 1) {
-            swapped[i] = 0;
+            indices[i] = 0;
           } else {
-            swapped[i] = 9 - index;
+            indices[i] = 9 - index;
           }
         }
 
         // write the block
-        writeAlphaBlock(alpha1, alpha0, swapped, block);
+        writeAlphaBlock(alpha1, alpha0, indices, block);
       } else {
         // write the block
         writeAlphaBlock(alpha0, alpha1, indices, block);
@@ -2416,6 +2574,18 @@ public Object clone()
     public float y() { return vy; }
     public float z() { return vz; }
 
+    public Vec3 set(float x, float y, float z)
+    {
+      vx = x; vy = y; vz = z;
+      return this;
+    }
+
+    public Vec3 set(Vec3 v)
+    {
+      vx = v.vx; vy = v.vy; vz = v.vz;
+      return this;
+    }
+
     public Vec3 add(Vec3 v)
     {
       vx += v.vx;
@@ -2649,34 +2819,52 @@ private Vec4 fixNaN()
     private final float[] m;
 
     public static Sym3x3 computeWeightedCovariance(int count, Vec3[] points, float[] weights)
+    {
+      return computeWeightedCovariance(count, points, weights, new Sym3x3());
+    }
+
+    /** Computes the weighted covariance matrix of the given points and stores it in {@code result}. */
+    public static Sym3x3 computeWeightedCovariance(int count, Vec3[] points, float[] weights, Sym3x3 result)
     {
       // computing the centroid
       float total = 0.0f;
-      Vec3 centroid = new Vec3();
+      float cx = 0.0f, cy = 0.0f, cz = 0.0f;
       for (int i = 0; i < count; i++) {
         total += weights[i];
-        centroid.add(Vec3.mul(points[i], weights[i]));
+        cx += points[i].vx * weights[i];
+        cy += points[i].vy * weights[i];
+        cz += points[i].vz * weights[i];
       }
-      centroid.div(total);
+      float t = 1.0f / total;
+      cx *= t;
+      cy *= t;
+      cz *= t;
 
       // accumulating the covariance matrix
-      Sym3x3 covariance = new Sym3x3(0.0f);
+      final float[] m = result.m;
+      Arrays.fill(m, 0.0f);
       for (int i = 0; i < count; i++) {
-        Vec3 a = Vec3.sub(points[i], centroid);
-        Vec3 b = Vec3.mul(a, weights[i]);
-
-        covariance.m[0] += a.x()*b.x();
-        covariance.m[1] += a.x()*b.y();
-        covariance.m[2] += a.x()*b.z();
-        covariance.m[3] += a.y()*b.y();
-        covariance.m[4] += a.y()*b.z();
-        covariance.m[5] += a.z()*b.z();
+        float ax = points[i].vx - cx, ay = points[i].vy - cy, az = points[i].vz - cz;
+        float bx = ax * weights[i], by = ay * weights[i], bz = az * weights[i];
+
+        m[0] += ax*bx;
+        m[1] += ax*by;
+        m[2] += ax*bz;
+        m[3] += ay*by;
+        m[4] += ay*bz;
+        m[5] += az*bz;
       }
 
-      return covariance;
+      return result;
     }
 
     public static Vec3 computePrincipleComponent(Sym3x3 matrix)
+    {
+      return computePrincipleComponent(matrix, new Vec3());
+    }
+
+    /** Computes the principle component of the given matrix and stores it in {@code result}. */
+    public static Vec3 computePrincipleComponent(Sym3x3 matrix, Vec3 result)
     {
       // computing the cubic coefficients
       float c0 = matrix.m[0] * matrix.m[3] * matrix.m[5] +
@@ -2702,7 +2890,7 @@ public static Vec3 computePrincipleComponent(Sym3x3 matrix)
       // testing the multiplicity
       if (FLT_EPSILON < Q) {
         // only one root, which implies we have a multiple of the identity
-        return new Vec3(1.0f);
+        return result.set(1.0f, 1.0f, 1.0f);
       } else if (Q < -FLT_EPSILON) {
         // three distinct roots
         double theta = Math.atan2(Math.sqrt(-Q), -0.5*b);
@@ -2723,7 +2911,7 @@ public static Vec3 computePrincipleComponent(Sym3x3 matrix)
           l1 = l3;
 
         // getting the eigenvector
-        return getMultiplicity1Evector(matrix, l1);
+        return getMultiplicity1Evector(matrix, l1, result);
       } else {    // if (-FLT_EPSILON <= Q && Q <= FLT_EPSILON)
         // two roots
         float rt = (float)((b < 0.0f) ? -Math.pow(-0.5*b, 1.0/3.0) : Math.pow(0.5*b, 1.0/3.0));
@@ -2733,96 +2921,89 @@ public static Vec3 computePrincipleComponent(Sym3x3 matrix)
 
         // getting the eigenvector
         if (Math.abs(l1) > Math.abs(l2)) {
-          return getMultiplicity2Evector(matrix, l1);
+          return getMultiplicity2Evector(matrix, l1, result);
         } else {
-          return getMultiplicity1Evector(matrix, l2);
+          return getMultiplicity1Evector(matrix, l2, result);
         }
       }
     }
 
-    private static Vec3 getMultiplicity1Evector(Sym3x3 matrix, float evalue)
+    private static Vec3 getMultiplicity1Evector(Sym3x3 matrix, float evalue, Vec3 result)
     {
       if (matrix == null)
         throw new NullPointerException();
 
       // computing M
-      Sym3x3 m = new Sym3x3();
-      m.m[0] = matrix.m[0] - evalue;
-      m.m[1] = matrix.m[1];
-      m.m[2] = matrix.m[2];
-      m.m[3] = matrix.m[3] - evalue;
-      m.m[4] = matrix.m[4];
-      m.m[5] = matrix.m[5] - evalue;
+      float m0 = matrix.m[0] - evalue;
+      float m1 = matrix.m[1];
+      float m2 = matrix.m[2];
+      float m3 = matrix.m[3] - evalue;
+      float m4 = matrix.m[4];
+      float m5 = matrix.m[5] - evalue;
 
       // computing U
-      Sym3x3 u = new Sym3x3();
-      u.m[0] = m.m[3]*m.m[5] - m.m[4]*m.m[4];
-      u.m[1] = m.m[2]*m.m[4] - m.m[1]*m.m[5];
-      u.m[2] = m.m[1]*m.m[4] - m.m[2]*m.m[3];
-      u.m[3] = m.m[0]*m.m[5] - m.m[2]*m.m[2];
-      u.m[4] = m.m[1]*m.m[2] - m.m[4]*m.m[0];
-      u.m[5] = m.m[0]*m.m[3] - m.m[1]*m.m[1];
+      float u0 = m3*m5 - m4*m4;
+      float u1 = m2*m4 - m1*m5;
+      float u2 = m1*m4 - m2*m3;
+      float u3 = m0*m5 - m2*m2;
+      float u4 = m1*m2 - m4*m0;
+      float u5 = m0*m3 - m1*m1;
 
       // finding the largest component
-      float mc = Math.abs(u.m[0]);
+      float mc = Math.abs(u0);
       int mi = 0;
-      for (int i = 1; i < 6; i++) {
-        float c = Math.abs(u.m[i]);
-        if (c > mc) {
-          mc = c;
-          mi = i;
-        }
-      }
+      if (Math.abs(u1) > mc) { mc = Math.abs(u1); mi = 1; }
+      if (Math.abs(u2) > mc) { mc = Math.abs(u2); mi = 2; }
+      if (Math.abs(u3) > mc) { mc = Math.abs(u3); mi = 3; }
+      if (Math.abs(u4) > mc) { mc = Math.abs(u4); mi = 4; }
+      if (Math.abs(u5) > mc) { mc = Math.abs(u5); mi = 5; }
 
       // picking the column with this component
       switch (mi) {
         case 0:
-          return new Vec3(u.m[0], u.m[1], u.m[2]);
+          return result.set(u0, u1, u2);
         case 1:
         case 3:
-          return new Vec3(u.m[1], u.m[3], u.m[4]);
+          return result.set(u1, u3, u4);
         default:
-          return new Vec3(u.m[2], u.m[4], u.m[5]);
+          return result.set(u2, u4, u5);
       }
     }
 
-    private static Vec3 getMultiplicity2Evector(Sym3x3 matrix, float evalue)
+    private static Vec3 getMultiplicity2Evector(Sym3x3 matrix, float evalue, Vec3 result)
     {
       if (matrix == null)
         throw new NullPointerException();
 
       // computing M
-      Sym3x3 m = new Sym3x3();
-      m.m[0] = matrix.m[0] - evalue;
-      m.m[1] = matrix.m[1];
-      m.m[2] = matrix.m[2];
-      m.m[3] = matrix.m[3] - evalue;
-      m.m[4] = matrix.m[4];
-      m.m[5] = matrix.m[5] - evalue;
+      float m0 = matrix.m[0] - evalue;
+      float m1 = matrix.m[1];
+      float m2 = matrix.m[2];
+      float m3 = matrix.m[3] - evalue;
+      float m4 = matrix.m[4];
+      float m5 = matrix.m[5] - evalue;
 
       // finding the largest component
-      float mc = Math.abs(m.m[0]);
+      float mc = Math.abs(m0);
       int mi = 0;
-      for (int i = 1; i < 6; i++) {
-        float c = Math.abs(m.m[i]);
-        if (c > mc) {
-          mc = c;
-          mi = i;
-        }
-      }
+      if (Math.abs(m1) > mc) { mc = Math.abs(m1); mi = 1; }
+      if (Math.abs(m2) > mc) { mc = Math.abs(m2); mi = 2; }
+      if (Math.abs(m3) > mc) { mc = Math.abs(m3); mi = 3; }
+      if (Math.abs(m4) > mc) { mc = Math.abs(m4); mi = 4; }
+      if (Math.abs(m5) > mc) { mc = Math.abs(m5); mi = 5; }
 
       // picking the first eigenvector based on this index
       switch (mi) {
         case 0:
         case 1:
-          return new Vec3(-m.m[1], m.m[0], 0.0f);
+          return result.set(-m1, m0, 0.0f);
         case 2:
-          return new Vec3(m.m[2], 0.0f, -m.m[0]);
+          return result.set(m2, 0.0f, -m0);
         case 3:
         case 4:
-          return new Vec3(0.0f, -m.m[4], m.m[3]);
+          return result.set(0.0f, -m4, m3);
         default:
-          return new Vec3(0.0f, -m.m[5], m.m[4]);
+          return result.set(0.0f, -m5, m4);
       }
     }
 
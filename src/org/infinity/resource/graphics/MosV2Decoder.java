@@ -24,6 +24,8 @@ public class MosV2Decoder extends MosDecoder
   private static final int HeaderSize = 16;   // size of the MOS header
   private static final int BlockSize = 28;    // size of a single data block
 
+  // PVRZ resources pinned in the global cache until the decoder is closed (see setPvrzPinned)
+  private final PvrCache.PinnedPages pvrPages = new PvrCache.PinnedPages();
   private ByteBuffer mosBuffer;
   private int width, height, blockCount, ofsData;
 
@@ -50,10 +52,27 @@ public void preloadPvrz()
     }
   }
 
+  /**
+   * Specifies whether PVRZ resources used by this decoder are pinned in the global cache until
+   * {@link #close()} is called. Pinned resources are never evicted from the cache, so this should
+   * only be enabled by owners which close the decoder explicitly. Disabling releases all pins,
+   * {@link #close()} disables pinning.
+   */
+  public void setPvrzPinned(boolean pinned)
+  {
+    pvrPages.setEnabled(pinned);
+  }
+
+  /** Returns whether PVRZ resources used by this decoder are pinned in the global cache. */
+  public boolean isPvrzPinned()
+  {
+    return pvrPages.isEnabled();
+  }
+
   @Override
   public void close()
   {
-    PvrDecoder.flushCache();
+    setPvrzPinned(false);
     pvrIndices.clear();
     mosBuffer = null;
     width = height = blockCount = 0;
@@ -280,14 +299,19 @@ private void init()
     }
   }
 
-  // Returns and caches the PVRZ resource of the specified page
+  // Returns the PVRZ resource of the specified page, pins it if requested
   private PvrDecoder getPVR(int page)
   {
+    PvrDecoder decoder = pvrPages.get(page);
+    if (decoder != null) {
+      return decoder;
+    }
     try {
       String name = String.format("MOS%04d.PVRZ", page);
       ResourceEntry entry = ResourceFactory.getResourceEntry(name);
       if (entry != null) {
-        return PvrDecoder.loadPvr(entry);
+        decoder = PvrDecoder.loadPvr(entry);
+        return pvrPages.pin(page, decoder);
       }
     } catch (Exception e) {
       e.printStackTrace();
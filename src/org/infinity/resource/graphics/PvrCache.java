@@ -0,0 +1,346 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource.graphics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe cache of {@link PvrDecoder} objects, bounded by the number of bytes occupied by
+ * encoded and decoded texture data.
+ * <p>
+ * Lookups don't block each other. If the total size exceeds the capacity, least recently used
+ * decoders are evicted. Decoders pinned by open viewers (see {@link PvrDecoder#pin()}) are never
+ * evicted, which allows any number of viewers to share PVRZ pages without wiping each other's textures.
+ * Pinned decoders count towards the capacity, so the cache may temporarily exceed it while more pages
+ * are pinned than fit into it. Only owners which release their pins explicitly should pin decoders.
+ */
+public final class PvrCache
+{
+  /** Creates a new {@link PvrDecoder} object for a cache miss. */
+  public interface Loader
+  {
+    PvrDecoder load() throws Exception;
+  }
+
+  private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private final AtomicLong clock = new AtomicLong();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  // guards weight accounting and eviction
+  private final Object lock = new Object();
+  private long weight;
+  private long capacity;
+
+  /**
+   * Creates a new cache.
+   * @param capacity Max. number of bytes occupied by all cached decoders, including pinned decoders.
+   *                 Specifying 0 disables caching.
+   */
+  public PvrCache(long capacity)
+  {
+    this.capacity = Math.max(0L, capacity);
+  }
+
+  /** Returns the cached decoder of the specified key, or {@code null} if not available. */
+  public PvrDecoder get(String key)
+  {
+    Entry entry = entries.get(key);
+    if (entry != null) {
+      entry.lastAccess = clock.incrementAndGet();
+      hits.increment();
+      return entry.decoder;
+    }
+    misses.increment();
+    return null;
+  }
+
+  /**
+   * Returns the cached decoder of the specified key. Creates and adds a new decoder if not available.
+   * Concurrent misses of the same key return the decoder which has been added first.
+   * @return The decoder, or {@code null} if the loader returned {@code null}.
+   */
+  public PvrDecoder get(String key, Loader loader) throws Exception
+  {
+    PvrDecoder decoder = get(key);
+    if (decoder == null) {
+      decoder = loader.load();
+      if (decoder != null) {
+        decoder = add(key, decoder);
+      }
+    }
+    return decoder;
+  }
+
+  /** Removes all decoders which are not pinned. */
+  public void clear()
+  {
+    synchronized (lock) {
+      for (final Map.Entry<String, Entry> e : entries.entrySet()) {
+        Entry entry = e.getValue();
+        if (!entry.decoder.isPinned() && entries.remove(e.getKey(), entry)) {
+          weight -= entry.weight;
+        }
+      }
+    }
+  }
+
+  /** Returns the max. number of bytes occupied by all cached decoders, including pinned decoders. */
+  public long getCapacity()
+  {
+    synchronized (lock) {
+      return capacity;
+    }
+  }
+
+  /**
+   * Specifies the max. number of bytes occupied by all cached decoders, including pinned decoders.
+   * Specifying 0 disables caching.
+   */
+  public void setCapacity(long capacity)
+  {
+    synchronized (lock) {
+      this.capacity = Math.max(0L, capacity);
+      evict();
+    }
+  }
+
+  /** Returns the number of bytes occupied by all cached decoders, including pinned decoders. */
+  public long getWeight()
+  {
+    synchronized (lock) {
+      return weight;
+    }
+  }
+
+  /** Returns the number of cached decoders. */
+  public int size()
+  {
+    return entries.size();
+  }
+
+  /** Returns a snapshot of the cache statistics. */
+  public Statistics getStatistics()
+  {
+    int pinned = 0;
+    for (final Entry entry : entries.values()) {
+      if (entry.decoder.isPinned()) {
+        pinned++;
+      }
+    }
+    synchronized (lock) {
+      return new Statistics(hits.sum(), misses.sum(), evictions.sum(), entries.size(), pinned, weight, capacity);
+    }
+  }
+
+  /** Resets hit, miss and eviction counters. */
+  public void resetStatistics()
+  {
+    hits.reset();
+    misses.reset();
+    evictions.reset();
+  }
+
+  // Adds the decoder unless another thread has been faster, returns the cached decoder
+  private PvrDecoder add(String key, PvrDecoder decoder)
+  {
+    Entry entry = new Entry(key, decoder);
+    synchronized (lock) {
+      Entry prev = entries.putIfAbsent(key, entry);
+      if (prev != null) {
+        prev.lastAccess = clock.incrementAndGet();
+        return prev.decoder;
+      }
+      decoder.setCache(this, key);
+      entry.weight = decoder.getMemoryUsage();
+      weight += entry.weight;
+      evict();
+    }
+    return decoder;
+  }
+
+  // Called by the decoder after its memory usage has changed
+  void updateWeight(String key, PvrDecoder decoder)
+  {
+    synchronized (lock) {
+      Entry entry = entries.get(key);
+      if (entry != null && entry.decoder == decoder) {
+        long newWeight = decoder.getMemoryUsage();
+        weight += newWeight - entry.weight;
+        entry.weight = newWeight;
+        evict();
+      }
+    }
+  }
+
+  // Called by the decoder after the last pin has been released
+  void unpinned()
+  {
+    synchronized (lock) {
+      evict();
+    }
+  }
+
+  // Removes least recently used unpinned decoders until the total weight fits into the capacity
+  private void evict()
+  {
+    while (weight > capacity) {
+      Entry oldest = null;
+      for (final Entry entry : entries.values()) {
+        if (!entry.decoder.isPinned() && (oldest == null || entry.lastAccess < oldest.lastAccess)) {
+          oldest = entry;
+        }
+      }
+      if (oldest == null) {
+        break;
+      }
+      if (entries.remove(oldest.key, oldest)) {
+        weight -= oldest.weight;
+        evictions.increment();
+      }
+    }
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  private final class Entry
+  {
+    private final String key;
+    private final PvrDecoder decoder;
+    private volatile long lastAccess;
+    private long weight;    // guarded by lock
+
+    private Entry(String key, PvrDecoder decoder)
+    {
+      this.key = key;
+      this.decoder = decoder;
+      this.lastAccess = clock.incrementAndGet();
+    }
+  }
+
+  /**
+   * Pins the decoders of PVRZ pages on behalf of a single owner, such as a MOS, TIS or BAM decoder.
+   * Pinning is disabled by default and should only be enabled by owners which disable it again
+   * when they are closed.
+   */
+  static final class PinnedPages
+  {
+    private final ConcurrentHashMap<Integer, PvrDecoder> pages = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+
+    /** Specifies whether pages are pinned. Disabling releases all pinned pages. */
+    void setEnabled(boolean enabled)
+    {
+      this.enabled = enabled;
+      if (!enabled) {
+        releaseAll();
+      }
+    }
+
+    /** Returns whether pages are pinned. */
+    boolean isEnabled()
+    {
+      return enabled;
+    }
+
+    /** Returns the pinned decoder of the specified page, or {@code null} if not available. */
+    PvrDecoder get(int page)
+    {
+      return pages.get(Integer.valueOf(page));
+    }
+
+    /**
+     * Pins the decoder of the specified page if pinning is enabled.
+     * @return The decoder to use for the page, which may have been pinned concurrently.
+     */
+    PvrDecoder pin(int page, PvrDecoder decoder)
+    {
+      if (decoder == null || !enabled) {
+        return decoder;
+      }
+      // pin first, a concurrent release must never see an entry which has not been pinned yet
+      decoder.pin();
+      PvrDecoder prev = pages.putIfAbsent(Integer.valueOf(page), decoder);
+      if (prev != null) {
+        decoder.release();
+        return prev;
+      }
+      if (!enabled && pages.remove(Integer.valueOf(page), decoder)) {
+        // pinning has been disabled concurrently
+        decoder.release();
+      }
+      return decoder;
+    }
+
+    /** Releases all pinned pages. */
+    void releaseAll()
+    {
+      for (final Integer page : pages.keySet()) {
+        PvrDecoder decoder = pages.remove(page);
+        if (decoder != null) {
+          decoder.release();
+        }
+      }
+    }
+  }
+
+  /** Snapshot of cache counters and memory usage. */
+  public static final class Statistics
+  {
+    private final long hits, misses, evictions;
+    private final int entries, pinned;
+    private final long weight, capacity;
+
+    private Statistics(long hits, long misses, long evictions, int entries, int pinned, long weight, long capacity)
+    {
+      this.hits = hits;
+      this.misses = misses;
+      this.evictions = evictions;
+      this.entries = entries;
+      this.pinned = pinned;
+      this.weight = weight;
+      this.capacity = capacity;
+    }
+
+    /** Returns the number of lookups which returned a cached decoder. */
+    public long getHits() { return hits; }
+
+    /** Returns the number of lookups which didn't find a cached decoder. */
+    public long getMisses() { return misses; }
+
+    /** Returns the number of decoders removed from the cache to make room for others. */
+    public long getEvictions() { return evictions; }
+
+    /** Returns the number of cached decoders. */
+    public int getEntries() { return entries; }
+
+    /** Returns the number of cached decoders which are pinned by open resources. */
+    public int getPinnedEntries() { return pinned; }
+
+    /** Returns the number of bytes occupied by all cached decoders. */
+    public long getWeight() { return weight; }
+
+    /** Returns the max. number of bytes occupied by all cached decoders, including pinned decoders. */
+    public long getCapacity() { return capacity; }
+
+    /** Returns the ratio of hits to all lookups in range [0.0, 1.0]. */
+    public double getHitRatio()
+    {
+      long total = hits + misses;
+      return (total > 0L) ? (double)hits / total : 0.0;
+    }
+
+    @Override
+    public String toString()
+    {
+      return String.format("hits: %d, misses: %d (%.1f %% hits), evictions: %d, entries: %d (%d pinned), size: %d / %d KB",
+                           hits, misses, getHitRatio() * 100.0, evictions, entries, pinned,
+                           weight / 1024L, capacity / 1024L);
+    }
+  }
+}
@@ -15,11 +15,9 @@
 import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.EnumSet;
-import java.util.LinkedHashMap;
 import java.util.Locale;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.InflaterInputStream;
 
 import org.infinity.resource.key.FileResourceEntry;
@@ -62,10 +60,11 @@ public enum ChannelType {
     FLOAT
   }
 
-  // The global cache list for PVR objects. The "key" has to be a unique String (e.g. filename or integer as string)
-  private static final Map<String, PvrDecoder> pvrCache = new LinkedHashMap<String, PvrDecoder>();
-  // The max. number of cache entries to hold
-  private static int MaxCacheEntries = 32;
+  // Default max. size of cached texture data: 1/8 of the available heap, within [32 MB, 256 MB]
+  private static final long DefaultCacheCapacity =
+      Math.max(32L << 20, Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 8L));
+  // The global cache for PVR objects. The "key" has to be a unique String (e.g. filename or integer as string)
+  private static final PvrCache pvrCache = new PvrCache(DefaultCacheCapacity);
 
   // Supported pixel formats
   private static final EnumSet<PixelFormat> SupportedFormat =
@@ -73,7 +72,10 @@ public enum ChannelType {
                  PixelFormat.PVRTC_2BPP_RGB, PixelFormat.PVRTC_2BPP_RGBA,
                  PixelFormat.PVRTC_4BPP_RGB, PixelFormat.PVRTC_4BPP_RGBA);
 
+  private final AtomicInteger pinCount = new AtomicInteger();
   private PvrInfo info;
+  private volatile PvrCache cache;
+  private volatile String cacheKey;
 
 
   /**
@@ -93,12 +95,7 @@ public static PvrDecoder loadPvr(ResourceEntry entry)
       } else {
         key = entry.getResourceName();
       }
-      PvrDecoder decoder = getCachedPvrDecoder(key);
-      if (decoder != null) {
-        return decoder;
-      } else {
-        return createPvrDecoder(key, entry.getResourceDataAsStream());
-      }
+      return getPvrDecoder(key, () -> new PvrDecoder(entry.getResourceDataAsStream()));
     } catch (Exception e) {
       e.printStackTrace();
     }
@@ -116,13 +113,8 @@ public static PvrDecoder loadPvr(String fileName)
       throw new NullPointerException();
     }
     try {
-      String key = fileName;
-      PvrDecoder decoder = getCachedPvrDecoder(key);
-      if (decoder != null) {
-        return decoder;
-      } else {
-        return createPvrDecoder(key, StreamUtils.getInputStream(FileManager.resolve(fileName)));
-      }
+      return getPvrDecoder(fileName,
+                           () -> new PvrDecoder(StreamUtils.getInputStream(FileManager.resolve(fileName))));
     } catch (Exception e) {
       e.printStackTrace();
     }
@@ -137,13 +129,7 @@ public static PvrDecoder loadPvr(String fileName)
   public static PvrDecoder loadPvr(Path file)
   {
     try {
-      String key = file.getFileName().toString();
-      PvrDecoder decoder = getCachedPvrDecoder(key);
-      if (decoder != null) {
-        return decoder;
-      } else {
-        return createPvrDecoder(key, StreamUtils.getInputStream(file));
-      }
+      return getPvrDecoder(file.getFileName().toString(), () -> new PvrDecoder(StreamUtils.getInputStream(file)));
     } catch (Exception e) {
       e.printStackTrace();
     }
@@ -161,89 +147,61 @@ public static PvrDecoder loadPvr(InputStream input)
       throw new NullPointerException();
     }
     try {
-      String key = Integer.valueOf(input.hashCode()).toString();
-      PvrDecoder decoder = getCachedPvrDecoder(key);
-      if (decoder != null) {
-        return decoder;
-      } else {
-        return createPvrDecoder(key, input);
-      }
+      return getPvrDecoder(Integer.valueOf(input.hashCode()).toString(), () -> new PvrDecoder(input));
     } catch (Exception e) {
       e.printStackTrace();
     }
     return null;
   }
 
-  /** Returns the max. number of PvrDecoder objects to cache. */
-  public static int getMaxCacheEntries()
+  /** Returns the global cache of PvrDecoder objects. */
+  public static PvrCache getCache()
   {
-    return MaxCacheEntries;
+    return pvrCache;
   }
 
-  /** Specify the new max. number of PvrDecoder objects to cache. Specifying 0 disables the cache. */
-  public static synchronized void setMaxCacheEntries(int maxValue)
+  /** Returns the max. number of bytes of texture data to cache, including pinned PvrDecoder objects. */
+  public static long getCacheCapacity()
   {
-    if (maxValue < 0) maxValue = 0; else if (maxValue > 65535) maxValue = 65535;
-    if (maxValue != MaxCacheEntries) {
-      MaxCacheEntries = maxValue;
-      while (pvrCache.size() > MaxCacheEntries) {
-        pvrCache.remove(pvrCache.keySet().iterator().next());
-      }
-    }
+    return pvrCache.getCapacity();
   }
 
-  /** Clears all available caches. */
-  public static synchronized void flushCache()
+  /** Specify the new max. number of bytes of texture data to cache. Specifying 0 disables the cache. */
+  public static void setCacheCapacity(long capacity)
+  {
+    pvrCache.setCapacity(capacity);
+  }
+
+  /** Returns a snapshot of hit, miss and eviction counters and the memory usage of the cache. */
+  public static PvrCache.Statistics getCacheStatistics()
+  {
+    return pvrCache.getStatistics();
+  }
+
+  /** Removes all PvrDecoder objects from the cache which are not pinned by open resources. */
+  public static void flushCache()
   {
     pvrCache.clear();
-    DecodePVRT.flushCache();
   }
 
   /** Returns the current cache load as percentage value. */
   public static int getCacheLoad()
   {
-    if (MaxCacheEntries > 0) {
-      return (pvrCache.size()*100) / MaxCacheEntries;
+    PvrCache.Statistics stats = pvrCache.getStatistics();
+    if (stats.getCapacity() > 0L) {
+      return (int)((stats.getWeight()*100L) / stats.getCapacity());
     } else {
       return 0;
     }
   }
 
-  // Returns a PvrDecoder object only if it already exists in the cache.
-  private static synchronized PvrDecoder getCachedPvrDecoder(String key)
+  // Returns the cached PvrDecoder object of the specified key, or creates, caches and returns a new one otherwise.
+  private static PvrDecoder getPvrDecoder(String key, PvrCache.Loader loader) throws Exception
   {
-    PvrDecoder retVal = null;
-    if (key != null && !key.isEmpty()) {
-      key = key.toUpperCase(Locale.ENGLISH);
-      if (pvrCache.containsKey(key)) {
-        retVal = pvrCache.get(key);
-        // re-inserting entry to prevent premature removal from cache
-        pvrCache.remove(key);
-        pvrCache.put(key, retVal);
-      }
+    if (key == null || key.isEmpty()) {
+      return loader.load();
     }
-    return retVal;
-  }
-
-  // Returns a PvrDecoder object of the specified key if available, or creates and returns a new one otherwise.
-  private static synchronized PvrDecoder createPvrDecoder(String key, InputStream input)
-  {
-    PvrDecoder retVal = getCachedPvrDecoder(key);
-    if (retVal == null && input != null) {
-      try {
-        retVal = new PvrDecoder(input);
-        if (retVal != null) {
-          pvrCache.put(key, retVal);
-          // removing excess cache entries
-          while (pvrCache.size() > MaxCacheEntries) {
-            pvrCache.remove(pvrCache.keySet().iterator().next());
-          }
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
-    }
-    return retVal;
+    return pvrCache.get(key.toUpperCase(Locale.ENGLISH), loader);
   }
 
   // Returns a rectangle that is aligned to the values specified as arguments 2 and 3
@@ -326,6 +284,46 @@ private static Rectangle alignRectangle(Rectangle rect, int alignX, int alignY)
   /** Provides direct access to the content of the encoded pixel data. */
   public byte[] getData() { return info.data; }
 
+  /**
+   * Protects this object from being evicted from the cache until {@link #release()} is called.
+   * Pins are reference counted, each call of {@code pin()} has to be matched by a call of {@code release()}.
+   */
+  public void pin()
+  {
+    pinCount.incrementAndGet();
+  }
+
+  /** Releases a pin acquired by {@link #pin()}. */
+  public void release()
+  {
+    int count = pinCount.decrementAndGet();
+    if (count < 0) {
+      pinCount.compareAndSet(count, 0);
+      throw new IllegalStateException("PvrDecoder has not been pinned");
+    }
+    PvrCache cache = this.cache;
+    if (count == 0 && cache != null) {
+      cache.unpinned();
+    }
+  }
+
+  /** Returns whether this object is pinned by at least one open resource. */
+  public boolean isPinned()
+  {
+    return pinCount.get() > 0;
+  }
+
+  /** Returns the approximate number of bytes occupied by encoded and cached decoded texture data. */
+  public long getMemoryUsage()
+  {
+    long size = info.data.length + info.metaData.length;
+    BufferedImage texture = info.texture;
+    if (texture != null) {
+      size += (long)texture.getWidth() * texture.getHeight() * 4L;
+    }
+    return size;
+  }
+
   /** Returns whether the pixel format of the current texture is supported by the PvrDecoder. */
   public boolean isSupported()
   {
@@ -484,6 +482,22 @@ private PvrDecoder(InputStream input) throws Exception
     }
   }
 
+  // Associates this object with the cache which holds it
+  void setCache(PvrCache cache, String key)
+  {
+    this.cacheKey = key;
+    this.cache = cache;
+  }
+
+  // Informs the cache about changed memory usage
+  private void memoryUsageChanged()
+  {
+    PvrCache cache = this.cache;
+    if (cache != null) {
+      cache.updateWeight(cacheKey, this);
+    }
+  }
+
 // ----------------------------- INNER CLASSES -----------------------------
 
   // Contains preprocessed data of a single PVR resource
@@ -507,12 +521,20 @@ private PvrDecoder(InputStream input) throws Exception
     public byte[] metaData;           // optional metadata
     public int headerSize;            // size of the header incl. meta data
     public byte[] data;               // the encoded pixel data
+    public volatile BufferedImage texture;  // optional fully decoded texture (PVRT formats only)
 
     public PvrInfo(byte[] buffer, int size) throws Exception
     {
       init(buffer, size);
     }
 
+    // Stores the fully decoded texture for subsequent decode operations
+    public void setTexture(BufferedImage image)
+    {
+      texture = image;
+      memoryUsageChanged();
+    }
+
 
     private void init(byte[] buffer, int size) throws Exception
     {
@@ -1079,12 +1101,6 @@ private static void unpackColors565(int inData, int[] outData)
   // Decodes PVRTC pixel data.
   private static class DecodePVRT
   {
-    // The local cache list for decoded PVR textures. The "key" has to be a unique PvrInfo structure.
-    private static final Map<PvrInfo, BufferedImage> textureCache =
-        Collections.synchronizedMap(new LinkedHashMap<PvrInfo, BufferedImage>());
-    // The max. number of cache entries to hold
-    private static int MaxCacheEntries = 8;
-
     // Datatypes as used in the reference implementation:
     // Pixel32/128S:      int[]{red, green, blue, alpha}
     // PVRTCWord:         int[]{modulation, color}
@@ -1105,40 +1121,6 @@ private static void unpackColors565(int inData, int[] outData)
     private static final int BLK_COL  = 1;
 
 
-    /** Removes all PvrDecoder objects from the cache. */
-    public static void flushCache()
-    {
-      textureCache.clear();
-    }
-
-    // Returns a PvrDecoder object only if it already exists in the cache.
-    private static BufferedImage getCachedImage(PvrInfo pvr)
-    {
-      BufferedImage retVal = null;
-      if (pvr != null) {
-        if (textureCache.containsKey(pvr)) {
-          retVal = textureCache.get(pvr);
-          // re-inserting entry to prevent premature removal from cache
-          textureCache.remove(pvr);
-          textureCache.put(pvr, retVal);
-        }
-      }
-      return retVal;
-    }
-
-    // Returns a PvrDecoder object of the specified key if available, or creates and returns a new one otherwise.
-    private static void registerCachedImage(PvrInfo pvr, BufferedImage image)
-    {
-      if (pvr != null && getCachedImage(pvr) == null && image != null) {
-        textureCache.put(pvr, image);
-        // removing excess cache entries
-        while (textureCache.size() > MaxCacheEntries) {
-          textureCache.remove(textureCache.keySet().iterator().next());
-        }
-      }
-    }
-
-
     /**
      * Decodes PVR data in PVRT 2bpp format and draws the specified "region" into "image".
      * @param pvr The PVR data
@@ -1185,7 +1167,7 @@ private static boolean decodePVRT(PvrInfo pvr, BufferedImage image, Rectangle re
 
 
       // preparing image buffer for faster rendering
-      BufferedImage alignedImage = getCachedImage(pvr);
+      BufferedImage alignedImage = pvr.texture;
       if (alignedImage == null) {
         if (!region.equals(new Rectangle(0, 0, pvr.width, pvr.height))) {
           alignedImage = new BufferedImage(pvr.width, pvr.height, BufferedImage.TYPE_INT_ARGB);
@@ -1243,7 +1225,9 @@ private static boolean decodePVRT(PvrInfo pvr, BufferedImage image, Rectangle re
           }
         }
         imgData = null;
-        registerCachedImage(pvr, alignedImage);
+        if (alignedImage != null) {
+          pvr.setTexture(alignedImage);
+        }
       } else {
         if (imgWidth < region.width) {
           region.width= imgWidth;
@@ -434,6 +434,10 @@ public JComponent makeViewer(ViewableContainer container)
     if (decoder == null) {
       return new JPanel(new BorderLayout());
     }
+    if (decoder instanceof TisV2Decoder) {
+      // viewer is closed explicitly, keeps PVRZ pages available for conversion and export
+      ((TisV2Decoder)decoder).setPvrzPinned(true);
+    }
 
     int tileCount = decoder.getTileCount();
     int defaultColumns = Math.min(tileCount, DEFAULT_COLUMNS);
@@ -710,8 +714,9 @@ public Status convertToPaletteTis(Path output, boolean showProgress)
                 tilePalette[(i << 2) + 1] = (byte)((palette[i - 1] >>> 8) & 0xff);
                 tilePalette[(i << 2) + 2] = (byte)((palette[i - 1] >>> 16) & 0xff);
                 tilePalette[(i << 2) + 3] = 0;
-                colorCache.put(palette[i - 1], (byte)(i - 1));
+                colorCache.put(palette[i - 1], Byte.valueOf((byte)(i - 1)));
               }
+              ColorConvert.NearestColorIndex colorIndex = new ColorConvert.NearestColorIndex(palette, true);
               // filling pixel data
               for (int i = 0; i < tileData.length; i++) {
                 if ((pixels[i] & 0xff000000) == 0) {
@@ -721,9 +726,9 @@ public Status convertToPaletteTis(Path output, boolean showProgress)
                   if (palIndex != null) {
                     tileData[i] = (byte)(palIndex + 1);
                   } else {
-                    byte color = (byte)ColorConvert.nearestColorRGB(pixels[i], palette, true);
+                    byte color = (byte)colorIndex.nearest(pixels[i]);
                     tileData[i] = (byte)(color + 1);
-                    colorCache.put(pixels[i], color);
+                    colorCache.put(pixels[i], Byte.valueOf(color));
                   }
                 }
               }
@@ -22,6 +22,8 @@ public class TisV2Decoder extends TisDecoder
 {
   private static final int HeaderSize = 24;   // Size of the TIS header
 
+  // PVRZ resources pinned in the global cache until the decoder is closed (see setPvrzPinned)
+  private final PvrCache.PinnedPages pvrPages = new PvrCache.PinnedPages();
   private ByteBuffer tisBuffer;
   private int tileCount, tileSize;
   private String pvrzNameBase;
@@ -73,10 +75,27 @@ public String getPvrzFileName(int tileIdx)
     }
   }
 
+  /**
+   * Specifies whether PVRZ resources used by this decoder are pinned in the global cache until
+   * {@link #close()} is called. Pinned resources are never evicted from the cache, so this should
+   * only be enabled by owners which close the decoder explicitly. Disabling releases all pins,
+   * {@link #close()} disables pinning.
+   */
+  public void setPvrzPinned(boolean pinned)
+  {
+    pvrPages.setEnabled(pinned);
+  }
+
+  /** Returns whether PVRZ resources used by this decoder are pinned in the global cache. */
+  public boolean isPvrzPinned()
+  {
+    return pvrPages.isEnabled();
+  }
+
   @Override
   public void close()
   {
-    PvrDecoder.flushCache();
+    setPvrzPinned(false);
     tisBuffer = null;
     tileCount = 0;
     tileSize = 0;
@@ -181,14 +200,19 @@ private void init()
     }
   }
 
-  // Returns and caches the PVRZ resource of the specified page
+  // Returns the PVRZ resource of the specified page, pins it if requested
   private PvrDecoder getPVR(int page)
   {
+    PvrDecoder decoder = pvrPages.get(page);
+    if (decoder != null) {
+      return decoder;
+    }
     try {
       String name = String.format("%s%02d.PVRZ", pvrzNameBase, page);
       ResourceEntry entry = ResourceFactory.getResourceEntry(name);
       if (entry != null) {
-        return PvrDecoder.loadPvr(entry);
+        decoder = PvrDecoder.loadPvr(entry);
+        return pvrPages.pin(page, decoder);
       }
     } catch (Exception e) {
       e.printStackTrace();
@@ -7,9 +7,12 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.infinity.util.io.StreamUtils;
 
@@ -28,8 +31,28 @@ public enum Type {
     BIFC,
   }
 
-  // A cache for AbstractBIFFReader instances
-  private static final LinkedHashMap<Path, AbstractBIFFReader> BIFF_CACHE = new LinkedHashMap<>();
+  /** Max. number of BIFF archives kept open in the cache. */
+  private static final int MAX_CACHE_SIZE = 64;
+
+  // A cache for AbstractBIFFReader instances, least recently used entries are closed and evicted
+  private static final LinkedHashMap<Path, AbstractBIFFReader> BIFF_CACHE =
+      new LinkedHashMap<Path, AbstractBIFFReader>(MAX_CACHE_SIZE * 2, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Path, AbstractBIFFReader> eldest)
+    {
+      if (size() > MAX_CACHE_SIZE) {
+        eldest.getValue().close();
+        CACHE_EVICTIONS.incrementAndGet();
+        return true;
+      }
+      return false;
+    }
+  };
+
+  // Cache statistics
+  private static final AtomicLong CACHE_HITS = new AtomicLong();
+  private static final AtomicLong CACHE_MISSES = new AtomicLong();
+  private static final AtomicLong CACHE_EVICTIONS = new AtomicLong();
 
   // Maps resource locators to BIFF entry structures
   private final HashMap<Integer, Entry> mapEntries = new HashMap<>();
@@ -43,9 +66,11 @@ public enum Type {
    * @return A BIFFReader object for accessing the BIFF archive.
    * @throws IOException On error.
    */
-  public static synchronized AbstractBIFFReader open(Path file) throws Exception
+  public static AbstractBIFFReader open(Path file) throws Exception
   {
-    return queryBIFFReader(file);
+    synchronized (BIFF_CACHE) {
+      return queryBIFFReader(file);
+    }
   }
 
   /** Returns a fully initialized TIS header as {@link ByteBuffer} object. */
@@ -61,10 +86,39 @@ public static ByteBuffer getTisHeader(int tileCount, int tileSize)
     return bb;
   }
 
-  /** Removes all {@code AbstractBIFFReader} entries from the cache. */
+  /** Closes and removes all {@code AbstractBIFFReader} entries from the cache. */
   public static void resetCache()
   {
-    BIFF_CACHE.clear();
+    synchronized (BIFF_CACHE) {
+      BIFF_CACHE.values().forEach(reader -> reader.close());
+      BIFF_CACHE.clear();
+    }
+  }
+
+  /** Returns the number of {@link #open(Path)} requests served by the cache. */
+  public static long getCacheHits()
+  {
+    return CACHE_HITS.get();
+  }
+
+  /** Returns the number of {@link #open(Path)} requests which required a new BIFF reader instance. */
+  public static long getCacheMisses()
+  {
+    return CACHE_MISSES.get();
+  }
+
+  /** Returns the number of BIFF readers which have been closed and removed from the cache. */
+  public static long getCacheEvictions()
+  {
+    return CACHE_EVICTIONS.get();
+  }
+
+  /** Returns the number of cached BIFF readers which are currently open. */
+  public static int getOpenCount()
+  {
+    synchronized (BIFF_CACHE) {
+      return (int)BIFF_CACHE.values().stream().filter(reader -> reader.isOpen()).count();
+    }
   }
 
   // Fetches a cached AbstractBIFFReader associated of the specified path or creates a new one
@@ -72,9 +126,12 @@ private static AbstractBIFFReader queryBIFFReader(Path file) throws Exception
   {
     AbstractBIFFReader retVal = null;
     if (file != null) {
-      // get and remove an available cached entry
+      // get an available cached entry
       retVal = BIFF_CACHE.get(file);
-      if (retVal == null) {
+      if (retVal != null) {
+        CACHE_HITS.incrementAndGet();
+      } else {
+        CACHE_MISSES.incrementAndGet();
         Type type = detectBiffType(file);
         switch (type) {
           case BIFF:
@@ -130,11 +187,17 @@ public int[] getResourceInfo(int locator) throws IOException
   }
 
   /** Returns whether the BIFF file is open and ready for read operations. */
-//  public abstract boolean isOpen();
+  public abstract boolean isOpen();
 
   /** Re-opens the BIFF file if it had been {@code close}d before. Does nothing if the BIFF file is open. */
   public abstract void open() throws Exception;
 
+  /**
+   * Releases all resources associated with the BIFF file. The BIFF file is automatically
+   * re-opened by subsequent read operations.
+   */
+  public abstract void close();
+
   /** Returns the BIFF resource type. */
   public abstract Type getType();
 
@@ -153,6 +216,17 @@ public int[] getResourceInfo(int locator) throws IOException
    */
   public abstract ByteBuffer getResourceBuffer(int locator) throws IOException;
 
+  /**
+   * Returns a read-only {@link ByteBuffer} object of the requested (TIS or regular) resource.
+   * Implementations may return a view of shared data without copying it. Use this method
+   * instead of {@link #getResourceBuffer(int)} if the resource data is not modified.
+   * @param locator The unmodified locator of the desired resource as found in the KEY file.
+   */
+  public ByteBuffer getResourceView(int locator) throws IOException
+  {
+    return getResourceBuffer(locator).asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+  }
+
   /**
    * Returns an {@link InputStream} object of the requested (TIS or regular) resource.
    * @param locator The unmodified locator of the desired resource as found in the KEY file.
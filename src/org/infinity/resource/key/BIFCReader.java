@@ -4,15 +4,19 @@
 
 package org.infinity.resource.key;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.SequenceInputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.file.Files;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 
 import org.infinity.NearInfinity;
@@ -25,8 +29,24 @@
  */
 public class BIFCReader extends AbstractBIFFReader
 {
+  /** Max. number of decompressed blocks kept in the block cache. */
+  private static final int BLOCK_CACHE_SIZE = 64;
+
   private final WindowBlocker blocker;
+  // LRU cache of decompressed blocks, shared by all threads accessing this archive
+  private final Map<Integer, byte[]> blockCache = new LinkedHashMap<Integer, byte[]>(BLOCK_CACHE_SIZE * 2, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest)
+    {
+      return size() > BLOCK_CACHE_SIZE;
+    }
+  };
 
+  private MappedByteBuffer mappedBuffer;
+  private int[] blockOffsets;     // start offsets of blocks in decompressed data
+  private int[] blockSizes;       // decompressed block sizes
+  private int[] blockDataOffsets; // file offsets of compressed block data
+  private int[] blockDataSizes;   // compressed block sizes
   private int uncSize;
   private int numFiles, numTilesets;
 
@@ -40,6 +60,9 @@ protected BIFCReader(Path file) throws Exception
   @Override
   public synchronized void open() throws Exception
   {
+    synchronized (blockCache) {
+      blockCache.clear();
+    }
     try (FileChannel channel = FileChannel.open(getFile(), StandardOpenOption.READ)) {
       String sigver = StreamUtils.readString(channel, 8);
       if (!"BIFCV1.0".equals(sigver)) {
@@ -50,10 +73,29 @@ public synchronized void open() throws Exception
       if (this.uncSize < 0) {
         throw new Exception("Invalid BIFF archive");
       }
+
+      mappedBuffer = channel.map(MapMode.READ_ONLY, 0L, channel.size());
+      mappedBuffer.order(ByteOrder.LITTLE_ENDIAN);
     }
+    initBlocks();
     init();
   }
 
+  @Override
+  public synchronized boolean isOpen()
+  {
+    return (mappedBuffer != null);
+  }
+
+  @Override
+  public synchronized void close()
+  {
+    synchronized (blockCache) {
+      blockCache.clear();
+    }
+    mappedBuffer = null;
+  }
+
   @Override
   public Type getType()
   {
@@ -86,27 +128,21 @@ public ByteBuffer getResourceBuffer(int locator) throws IOException
       throw new IOException("Resource not found");
     }
 
-    int size;
     ByteBuffer buffer;
     if (entry.isTile) {
       ByteBuffer header = getTisHeader(entry.count, entry.size);
       buffer = StreamUtils.getByteBuffer(entry.count*entry.size + header.limit());
       StreamUtils.copyBytes(header, buffer, header.limit());
-      size = entry.count*entry.size;
     } else {
       buffer = StreamUtils.getByteBuffer(entry.size);
-      size = entry.size;
     }
 
     if (buffer.limit() > 1000000) {
       blocker.setBlocked(true);
     }
 
-    try (InputStream is = new BifcInputStream(
-        new BufferedInputStream(
-            Files.newInputStream(getFile(), StandardOpenOption.READ)),
-        entry.offset, size)) {
-      StreamUtils.readBytes(is, buffer);
+    try {
+      readData(entry.offset, buffer);
     } finally {
       blocker.setBlocked(false);
     }
@@ -118,267 +154,191 @@ public ByteBuffer getResourceBuffer(int locator) throws IOException
   @Override
   public InputStream getResourceAsStream(int locator) throws IOException
   {
-    Entry entry = getEntry(locator);
-    if (entry == null) {
-      throw new IOException("Resource not found");
-    }
-
-    if (entry.isTile) {
-      ByteBuffer header = getTisHeader(entry.count, entry.size);
-      InputStream is1 = new ByteBufferInputStream(header);
-      @SuppressWarnings("resource")
-      InputStream is2 = new BifcInputStream(
-          new BufferedInputStream(
-              Files.newInputStream(getFile(), StandardOpenOption.READ)),
-          entry.offset, entry.count*entry.size);
-      InputStream is = new SequenceInputStream(is1, is2);
-      return is;
-    } else {
-      return new BifcInputStream(
-          new BufferedInputStream(
-              Files.newInputStream(getFile(), StandardOpenOption.READ)),
-          entry.offset, entry.size);
-    }
+    return new ByteBufferInputStream(getResourceBuffer(locator));
   }
 
 
-  private void init() throws Exception
+  // Builds the block offset table from the block headers of the archive
+  private void initBlocks() throws Exception
   {
-    try (InputStream is = new BifcInputStream(
-        new BufferedInputStream(
-            Files.newInputStream(getFile(), StandardOpenOption.READ)), 0, -1)) {
-      int curOfs = 0;
-      String sigver = StreamUtils.readString(is, 8);
-      if (!"BIFFV1  ".equals(sigver)) {
-        throw new Exception("Invalid decompressed BIFF signature");
-      }
-      this.numFiles = StreamUtils.readInt(is);
-      this.numTilesets = StreamUtils.readInt(is);
-      int entryOfs = StreamUtils.readInt(is);
-      curOfs += 20;
-      if (entryOfs < curOfs) {
-        throw new Exception("Invalid decompressed BIFF header");
-      }
-      int remaining = entryOfs - curOfs;
-      while (remaining > 0) {
-        long n = is.skip(remaining);
-        remaining -= n;
-      }
-
-      // reading file entries
-      for (int i = 0; i < numFiles; i++) {
-        int locator = StreamUtils.readInt(is) & 0xfffff;
-        int offset = StreamUtils.readInt(is);
-        int size = StreamUtils.readInt(is);
-        short type = StreamUtils.readShort(is);
-        is.skip(2); // unknown data
-        addEntry(new Entry(locator, offset, size, type));
-      }
+    ByteBuffer bb = mappedBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+    // determining number of blocks
+    int numBlocks = 0;
+    int total = 0;
+    int pos = 12;
+    while (total < uncSize && pos + 8 <= bb.limit()) {
+      total += bb.getInt(pos);
+      pos += 8 + bb.getInt(pos + 4);
+      numBlocks++;
+    }
+    if (total < uncSize || pos > bb.limit()) {
+      throw new Exception("Invalid BIFF archive");
+    }
 
-      // reading tileset entries
-      for (int i = 0; i < numTilesets; i++) {
-        int locator = StreamUtils.readInt(is) & 0xfffff;
-        int offset = StreamUtils.readInt(is);
-        int count = StreamUtils.readInt(is);
-        int size = StreamUtils.readInt(is);
-        short type = StreamUtils.readShort(is);
-        is.skip(2); // unknown data
-        addEntry(new Entry(locator, offset, count, size, type));
+    blockOffsets = new int[numBlocks];
+    blockSizes = new int[numBlocks];
+    blockDataOffsets = new int[numBlocks];
+    blockDataSizes = new int[numBlocks];
+    total = 0;
+    pos = 12;
+    for (int i = 0; i < numBlocks; i++) {
+      blockOffsets[i] = total;
+      blockSizes[i] = bb.getInt(pos);
+      blockDataSizes[i] = bb.getInt(pos + 4);
+      blockDataOffsets[i] = pos + 8;
+      if (blockSizes[i] < 0 || blockDataSizes[i] < 0) {
+        throw new Exception("Invalid BIFF block header");
       }
+      total += blockSizes[i];
+      pos += 8 + blockDataSizes[i];
     }
   }
 
-
-//-------------------------- INNER CLASSES --------------------------
-
-  private static class BifcInputStream extends InputStream
+  private void init() throws Exception
   {
-    private final Inflater inflater;
-
-    private InputStream input;  // BIFC archive as input stream
-    private int endOffset;      // the end-of-stream offset for this InputStream in decompressed data
-    private int position;       // current absolute position in decompressed data
-    private byte[] inBuffer;    // buffer for compressed data of current block
-    private byte[] outBuffer;   // buffer for decompressed data of current block
-    private int bufOfs;         // contains relative offset in current outBuffer
-    private int bufLen;         // contains actual number of bytes of data in current outBuffer
-
-    /**
-     * Constructs an InputStream over a specific section of a BIFC archive.
-     * @param is The BIFC archive as input stream.
-     * @param offset Start offset in decompressed BIFF data.
-     * @param size Size of decompressed BIFF data to map.
-     *             Specify -1 to map until the end of decompressed data.
-     */
-    public BifcInputStream(InputStream is, int offset, int size) throws IOException
-    {
-      if (is == null) {
-        throw new NullPointerException();
-      }
-      this.input = is;
-      String sigver = StreamUtils.readString(this.input, 8);
-      if (!"BIFCV1.0".equals(sigver)) {
-        throw new IOException("Unsupported source BIFF signature");
-      }
-      int uncSize = StreamUtils.readInt(this.input);
-      if (offset < 0 || offset > uncSize) {
-        throw new IOException("Start offset is out of bounds");
-      }
-      if (size < 0) {
-        size = uncSize - offset;
-      }
-      if (size < 0 || offset+size > uncSize) {
-        throw new IOException("Size is out of bounds");
-      }
-      this.endOffset = offset + size;
-      this.position = 0;
-      this.inflater = new Inflater();
-      this.bufOfs = 0;
-      this.bufLen = 0;
-      skip(offset);
+    ByteBuffer header = StreamUtils.getByteBuffer(20);
+    readData(0, header);
+    header.position(0);
+    String sigver = StreamUtils.readString(header, 8);
+    if (!"BIFFV1  ".equals(sigver)) {
+      throw new Exception("Invalid decompressed BIFF signature");
     }
-
-    @Override
-    public int read() throws IOException
-    {
-      if (available() > 0) {
-        final byte[] b = {0};
-        if (getData(b, 0, 1) == 1) {
-          return b[0] & 0xff;
-        }
-      }
-      return -1;
+    header.position(8);
+    this.numFiles = header.getInt();
+    this.numTilesets = header.getInt();
+    int entryOfs = header.getInt();
+    if (entryOfs < header.limit()) {
+      throw new Exception("Invalid decompressed BIFF header");
     }
 
-    @Override
-    public int read(byte b[], int off, int len) throws IOException
-    {
-      if (available() > 0) {
-        return getData(b, off, len);
-      }
-      return -1;
+    ByteBuffer buffer = StreamUtils.getByteBuffer(numFiles*0x10 + numTilesets*0x14);
+    readData(entryOfs, buffer);
+    buffer.position(0);
+
+    // reading file entries
+    for (int i = 0; i < numFiles; i++) {
+      int locator = buffer.getInt() & 0xfffff;
+      int offset = buffer.getInt();
+      int size = buffer.getInt();
+      short type = buffer.getShort();
+      buffer.getShort(); // unknown data
+      addEntry(new Entry(locator, offset, size, type));
     }
 
-    @Override
-    public long skip(long n) throws IOException
-    {
-      return Math.max(0, skipData((int)n));
+    // reading tileset entries
+    for (int i = 0; i < numTilesets; i++) {
+      int locator = buffer.getInt() & 0xfffff;
+      int offset = buffer.getInt();
+      int count = buffer.getInt();
+      int size = buffer.getInt();
+      short type = buffer.getShort();
+      buffer.getShort(); // unknown data
+      addEntry(new Entry(locator, offset, count, size, type));
     }
+  }
 
-    @Override
-    public int available() throws IOException
-    {
-      return endOffset - position;
+  // Fills the remaining space of "buffer" with decompressed data starting at the specified offset.
+  // Only blocks covering the requested data range are decompressed.
+  private void readData(int offset, ByteBuffer buffer) throws IOException
+  {
+    if (offset < 0 || offset + buffer.remaining() > uncSize) {
+      throw new IOException("Data offset is out of bounds");
     }
 
-    @Override
-    public void close() throws IOException
-    {
-      if (isOpen()) {
-        try {
-          input.close();
-        } finally {
-          synchronized (this) {
-            input = null;
-          }
-        }
-      }
+    if (!buffer.hasRemaining()) {
+      return;
     }
 
-    private boolean isOpen()
-    {
-      return (input != null);
+    int index = Arrays.binarySearch(blockOffsets, offset);
+    if (index < 0) {
+      index = -index - 2;
+    }
+    // skip empty blocks
+    while (index + 1 < blockOffsets.length && blockOffsets[index + 1] <= offset) {
+      index++;
+    }
+    if (index < 0 || index >= blockOffsets.length) {
+      throw new IOException("Data offset is out of bounds");
     }
 
-    // Writes decompressed data into "buf". Returns actual number of decompressed bytes.
-    // Updates internal data position. Returns -1 on error or end-of-stream.
-    private synchronized int getData(byte[] buf, int ofs, int len) throws IOException
-    {
-      ofs = Math.max(0, ofs);
-      len = Math.max(0, Math.min(len, endOffset - position));
-      if (!isOpen() || position >= endOffset ||
-          buf == null || ofs > buf.length || ofs+len > buf.length) {
-        return -1;
+    int blockPos = offset - blockOffsets[index];
+    while (buffer.hasRemaining()) {
+      if (index >= blockOffsets.length) {
+        throw new IOException("Unexpected end of decompressed data");
       }
-
-      int retVal = 0;
-      while (len > 0) {
-        try {
-          updateBuffer(false, -1);
-        } catch (Exception e) {
-          throw new IOException(e.getMessage());
-        }
-
-        // copy data into output buffer
-        int n = Math.min(bufLen - bufOfs, len);
-        System.arraycopy(outBuffer, bufOfs, buf, ofs, n);
-        retVal += n;
-        bufOfs += n;
-        ofs += n;
-        len -= n;
+      byte[] block = getBlock(index);
+      if (blockPos > block.length) {
+        throw new IOException("Unexpected end of decompressed data");
       }
-      position += retVal;
-      return retVal;
+      int n = Math.min(buffer.remaining(), block.length - blockPos);
+      buffer.put(block, blockPos, n);
+      blockPos = 0;
+      index++;
     }
+  }
 
-    // Skips the specified number of decompressed bytes. Returns -1 on error or end-of-stream.
-    private synchronized int skipData(int len) throws IOException
-    {
-      len = Math.max(0, Math.min(len, endOffset - position));
-      if (!isOpen() || position >= endOffset) {
-        return -1;
+  // Returns decompressed data of the specified block, either from the cache or by inflating it
+  private byte[] getBlock(int index) throws IOException
+  {
+    final Integer key = Integer.valueOf(index);
+    byte[] block;
+    synchronized (blockCache) {
+      block = blockCache.get(key);
+    }
+
+    if (block == null) {
+      block = inflateBlock(index);
+      synchronized (blockCache) {
+        blockCache.put(key, block);
       }
+    }
+    return block;
+  }
 
-      int retVal = 0;
-      while (len > 0) {
-        try {
-          updateBuffer(true, len);
-        } catch (Exception e) {
-          throw new IOException(e);
+  // Decompresses the specified block
+  private byte[] inflateBlock(int index) throws IOException
+  {
+    byte[] inBuffer = new byte[blockDataSizes[index]];
+    byte[] outBuffer = new byte[blockSizes[index]];
+    ByteBuffer bb = getMappedBuffer();
+    bb.position(blockDataOffsets[index]);
+    bb.get(inBuffer);
+
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(inBuffer);
+      int n = 0;
+      while (n < outBuffer.length && !inflater.finished()) {
+        int len = inflater.inflate(outBuffer, n, outBuffer.length - n);
+        if (len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
         }
-
-        int n = Math.min(len, bufLen - bufOfs);
-        retVal += n;
-        bufOfs += n;
-        len -= n;
+        n += len;
+      }
+      if (n != outBuffer.length) {
+        throw new IOException("Unexpected end of decompressed data");
       }
-      position += retVal;
-      return retVal;
+    } catch (DataFormatException e) {
+      throw new IOException(e);
+    } finally {
+      inflater.end();
     }
+    return outBuffer;
+  }
 
-    // Decompress next block of data.
-    // if skipOnly == true, then the next compressed block is skipped if
-    //   (condition < 0) || (condition >= uncompressed block size)
-    private boolean updateBuffer(boolean skipOnly, int condition) throws Exception
-    {
-      if (bufLen == 0 || bufOfs >= bufLen) {
-        int uncSize = StreamUtils.readInt(input);
-        int compSize = StreamUtils.readInt(input);
-        if (skipOnly && (condition < 0 || condition >= uncSize)) {
-          int remaining = compSize;
-          while (remaining > 0) {
-            long n = input.skip(remaining);
-            remaining -= n;
-          }
-        } else {
-          if (inBuffer == null || inBuffer.length < compSize) {
-            inBuffer = new byte[compSize];
-          }
-          if (outBuffer == null || outBuffer.length < uncSize) {
-            outBuffer = new byte[uncSize];
-          }
-          input.read(inBuffer, 0, compSize);
-          inflater.reset();
-          inflater.setInput(inBuffer, 0, compSize);
-          if (inflater.inflate(outBuffer, 0, uncSize) != uncSize) {
-            throw new Exception("Unexpected end of decompressed data");
-          }
-        }
-        bufLen = uncSize;
-        bufOfs = 0;
-        return true;
+  // Returns a duplicate of the mapped archive data. Re-opens the BIFF file if needed.
+  private synchronized ByteBuffer getMappedBuffer() throws IOException
+  {
+    if (!isOpen()) {
+      try {
+        open();
+      } catch (IOException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IOException(e);
       }
-      return false;
     }
+    return mappedBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
   }
 }
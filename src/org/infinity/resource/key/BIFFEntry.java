@@ -62,6 +62,15 @@ public BIFFEntry(Path keyFile, int index, ByteBuffer buffer, int offset)
     updateBIFF(keyFile, index, buffer, offset);
   }
 
+  /**
+   * Constructs a BIFF entry from KEY file data. The BIFF file is only searched if
+   * {@code biffFile} is {@code null}.
+   */
+  BIFFEntry(Path keyFile, int index, ByteBuffer buffer, int offset, Path biffFile)
+  {
+    update(keyFile, index, buffer, offset, biffFile);
+  }
+
 //--------------------- Begin Interface Comparable ---------------------
 
   @Override
@@ -182,6 +191,11 @@ public void setFileSize(int fileSize)
    * @param offset Start offset of BIFF entry data in KEY file.
    */
   public void updateBIFF(Path keyFile, int index, ByteBuffer buffer, int offset)
+  {
+    update(keyFile, index, buffer, offset, null);
+  }
+
+  private void update(Path keyFile, int index, ByteBuffer buffer, int offset, Path biffFile)
   {
     if (keyFile == null || buffer == null) {
       throw new NullPointerException();
@@ -204,7 +218,7 @@ public void updateBIFF(Path keyFile, int index, ByteBuffer buffer, int offset)
       this.separatorChar = '/';
     }
     this.fileName = this.fileName.replace(this.separatorChar, '/');
-    this.biffFile = findBiffFile(this.keyFile.getParent(), this.location, this.fileName);
+    this.biffFile = (biffFile != null) ? biffFile : findBiffFile(this.keyFile.getParent(), this.location, this.fileName);
   }
 
 
@@ -8,6 +8,7 @@
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.Files;
@@ -21,11 +22,15 @@
 
 /**
  * Provides read operations for uncompressed BIFF V1 archives.
+ * <p>
+ * The archive is mapped into memory once when it is opened. Resource data is copied from or
+ * provided as read-only views into the mapped data without additional file operations.
  */
 public class BIFFReader extends AbstractBIFFReader
 {
   private final WindowBlocker blocker;
 
+  private MappedByteBuffer mappedBuffer;
   private int numFiles, numTilesets;
 
   protected BIFFReader(Path file) throws Exception
@@ -51,9 +56,24 @@ public synchronized void open() throws Exception
       channel.read(bb);
       bb.position(0);
       init(bb, numFiles, numTilesets);
+
+      mappedBuffer = channel.map(MapMode.READ_ONLY, 0L, channel.size());
+      mappedBuffer.order(ByteOrder.LITTLE_ENDIAN);
     }
   }
 
+  @Override
+  public synchronized boolean isOpen()
+  {
+    return (mappedBuffer != null);
+  }
+
+  @Override
+  public synchronized void close()
+  {
+    mappedBuffer = null;
+  }
+
   @Override
   public Type getType()
   {
@@ -91,29 +111,46 @@ public ByteBuffer getResourceBuffer(int locator) throws IOException
     }
 
     ByteBuffer buffer;
-    try (FileChannel channel = FileChannel.open(getFile(), StandardOpenOption.READ)) {
-      channel.position(entry.offset);
-      if (entry.isTile) {
-        ByteBuffer header = getTisHeader(entry.count, entry.size);
-        int remaining = entry.count*entry.size + header.limit();
-        if (remaining > 1000000) {
-          blocker.setBlocked(true);
-        }
-        try {
-          buffer = StreamUtils.getByteBuffer(remaining);
-          StreamUtils.copyBytes(header, buffer, header.limit());
-          remaining -= header.limit();
-          while (channel.read(buffer) > 0);
-        } finally {
-          blocker.setBlocked(false);
-        }
-      } else {
-        buffer = StreamUtils.getByteBuffer(entry.size);
-        while (channel.read(buffer) > 0);
+    if (entry.isTile) {
+      ByteBuffer header = getTisHeader(entry.count, entry.size);
+      int remaining = entry.count*entry.size + header.limit();
+      if (remaining > 1000000) {
+        blocker.setBlocked(true);
       }
+      try {
+        buffer = StreamUtils.getByteBuffer(remaining);
+        StreamUtils.copyBytes(header, buffer, header.limit());
+        buffer.put(getMappedData(entry));
+      } finally {
+        blocker.setBlocked(false);
+      }
+    } else {
+      buffer = StreamUtils.getByteBuffer(entry.size);
+      buffer.put(getMappedData(entry));
+    }
+
+    buffer.position(0);
+    return buffer;
+  }
+
+  /**
+   * Returns a read-only {@link ByteBuffer} view of the requested resource. Regular resources are
+   * provided as slices of the memory-mapped archive without copying data. Tileset resources are
+   * composed of the TIS header and the tile data.
+   * @param locator The unmodified locator of the desired resource as found in the KEY file.
+   */
+  @Override
+  public ByteBuffer getResourceView(int locator) throws IOException
+  {
+    Entry entry = getEntry(locator);
+    if (entry == null) {
+      throw new IOException("Resource not found");
+    }
 
-      buffer.position(0);
-      return buffer;
+    if (entry.isTile) {
+      return super.getResourceView(locator);
+    } else {
+      return getMappedData(entry).asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
     }
   }
 
@@ -125,18 +162,43 @@ public InputStream getResourceAsStream(int locator) throws IOException
       throw new IOException("Resource not found");
     }
 
-    try (FileChannel channel = FileChannel.open(getFile(), StandardOpenOption.READ)) {
-      int size = entry.isTile ? entry.count*entry.size : entry.size;
-      ByteBuffer buffer = channel.map(MapMode.READ_ONLY, entry.offset, size).order(ByteOrder.LITTLE_ENDIAN);
-      InputStream is;
-      if (entry.isTile) {
-        ByteBuffer header = getTisHeader(entry.count, entry.size);
-        is = new ByteBufferInputStream(header, buffer);
-      } else {
-        is = new ByteBufferInputStream(buffer);
+    ByteBuffer buffer = getMappedData(entry);
+    InputStream is;
+    if (entry.isTile) {
+      ByteBuffer header = getTisHeader(entry.count, entry.size);
+      is = new ByteBufferInputStream(header, buffer);
+    } else {
+      is = new ByteBufferInputStream(buffer);
+    }
+    return is;
+  }
+
+  // Returns a buffer covering the raw resource data in the mapped archive
+  private ByteBuffer getMappedData(Entry entry) throws IOException
+  {
+    int size = entry.isTile ? entry.count*entry.size : entry.size;
+    ByteBuffer bb = getMappedBuffer();
+    if (entry.offset < 0 || size < 0 || entry.offset + size > bb.limit()) {
+      throw new IOException("Resource data is out of bounds");
+    }
+    bb.limit(entry.offset + size);
+    bb.position(entry.offset);
+    return bb.slice().order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  // Returns a duplicate of the mapped archive data. Re-opens the BIFF file if needed.
+  private synchronized ByteBuffer getMappedBuffer() throws IOException
+  {
+    if (!isOpen()) {
+      try {
+        open();
+      } catch (IOException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IOException(e);
       }
-      return is;
     }
+    return mappedBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
   }
 
   private void init(ByteBuffer buffer, int numFiles, int numTilesets) throws IOException
@@ -207,6 +207,20 @@ public ByteBuffer getResourceBuffer(boolean ignoreOverride) throws Exception
     return biff.getResourceBuffer(locator);
   }
 
+  @Override
+  public ByteBuffer getResourceView(boolean ignoreOverride) throws Exception
+  {
+    if (!ignoreOverride) {
+      List<Path> overrides = Profile.getOverrideFolders(false);
+      Path file = FileManager.query(overrides, getResourceName());
+      if (file != null && FileEx.create(file).isFile()) {
+        return super.getResourceView(ignoreOverride);
+      }
+    }
+    AbstractBIFFReader biff = ResourceFactory.getKeyfile().getBIFFFile(getBIFFEntry());
+    return biff.getResourceView(locator);
+  }
+
   @Override
   public InputStream getResourceDataAsStream(boolean ignoreOverride) throws Exception
   {
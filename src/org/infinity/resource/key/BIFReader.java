@@ -6,28 +6,38 @@
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.zip.InflaterInputStream;
 
 import org.infinity.NearInfinity;
 import org.infinity.gui.WindowBlocker;
+import org.infinity.util.FileDeletionHook;
 import org.infinity.util.io.ByteBufferInputStream;
 import org.infinity.util.io.StreamUtils;
 
 /**
  * Provides read operations for file-compressed BIF V1.0 archives.
+ * <p>
+ * The compressed data is a single zlib stream which doesn't allow random access. The first resource
+ * request therefore decompresses the whole archive once into a temporary spill file which is mapped
+ * into memory. All subsequent requests are served directly from the mapped data.
  */
 public class BIFReader extends AbstractBIFFReader
 {
   private final WindowBlocker blocker;
 
   private MappedByteBuffer mappedBuffer;
+  private MappedByteBuffer spillBuffer;   // decompressed BIFF data, available after first access
+  private Path spillFile;
+  private boolean spillFailed;            // indicates that no spill file could be created
   private int uncSize, compSize, compOffset;
   private int numFiles, numTilesets;
 
@@ -41,6 +51,8 @@ protected BIFReader(Path file) throws Exception
   @Override
   public synchronized void open() throws Exception
   {
+    releaseSpillFile();
+    spillFailed = false;
     try (FileChannel channel = FileChannel.open(getFile(), StandardOpenOption.READ)) {
       String sigver = StreamUtils.readString(channel, 8);
       if (!"BIF V1.0".equals(sigver)) {
@@ -63,6 +75,20 @@ public synchronized void open() throws Exception
     init();
   }
 
+  @Override
+  public synchronized boolean isOpen()
+  {
+    return (mappedBuffer != null);
+  }
+
+  @Override
+  public synchronized void close()
+  {
+    releaseSpillFile();
+    spillFailed = false;
+    mappedBuffer = null;
+  }
+
   @Override
   public Type getType()
   {
@@ -104,21 +130,13 @@ public ByteBuffer getResourceBuffer(int locator) throws IOException
       buffer = StreamUtils.getByteBuffer(entry.size);
     }
 
-    if (buffer.limit() > 1000000) {
-      blocker.setBlocked(true);
-    }
-
-    try (InflaterInputStream iis = getInflaterInputStream()) {
-      int remaining = entry.offset;
-      while (remaining > 0) {
-        long n = iis.skip(entry.offset);
-        remaining -= n;
-      }
-      StreamUtils.readBytes(iis, buffer);
-    } finally {
-      blocker.setBlocked(false);
+    ByteBuffer source = getSpillBuffer();
+    if (source != null) {
+      StreamUtils.copyBytes(source, entry.offset, buffer, buffer.position(), buffer.remaining());
+    } else {
+      // fall back to sequential decompression if spill file is not available
+      readSequential(entry, buffer);
     }
-
     buffer.position(0);
     return buffer;
   }
@@ -174,9 +192,97 @@ private void init() throws Exception
     }
   }
 
+  // Decompresses data of the specified entry by inflating the archive from the beginning.
+  // Package-private to allow comparison with the spill file approach in benchmarks.
+  void readSequential(Entry entry, ByteBuffer buffer) throws IOException
+  {
+    if (buffer.remaining() > 1000000) {
+      blocker.setBlocked(true);
+    }
+
+    try (InflaterInputStream iis = getInflaterInputStream()) {
+      long remaining = entry.offset;
+      while (remaining > 0) {
+        long n = iis.skip(remaining);
+        if (n <= 0) {
+          throw new IOException("Unexpected end of compressed data");
+        }
+        remaining -= n;
+      }
+      StreamUtils.readBytes(iis, buffer);
+    } finally {
+      blocker.setBlocked(false);
+    }
+  }
+
+  // Returns the decompressed BIFF data. Decompresses the archive into a spill file on first call.
+  // Returns null if the spill file could not be created.
+  private synchronized ByteBuffer getSpillBuffer()
+  {
+    if (spillBuffer == null && !spillFailed) {
+      Path file = null;
+      blocker.setBlocked(true);
+      try {
+        file = Files.createTempFile(getFile().getFileName().toString() + "-", ".tmp");
+        FileDeletionHook.getInstance().registerFile(file);
+        try (InflaterInputStream iis = getInflaterInputStream();
+             OutputStream os = StreamUtils.getOutputStream(file, true)) {
+          if (StreamUtils.writeBytes(os, iis) != uncSize) {
+            throw new IOException("Unexpected size of decompressed data");
+          }
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+          spillBuffer = channel.map(MapMode.READ_ONLY, 0L, channel.size());
+          spillBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+      } catch (IOException e) {
+        e.printStackTrace();
+        spillBuffer = null;
+        spillFailed = true;
+      } finally {
+        spillFile = file;
+        if (spillFailed) {
+          releaseSpillFile();
+        }
+        blocker.setBlocked(false);
+      }
+    }
+    return (spillBuffer != null) ? spillBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN) : null;
+  }
+
+  // Discards decompressed data and removes the associated spill file
+  private void releaseSpillFile()
+  {
+    spillBuffer = null;
+    if (spillFile != null) {
+      try {
+        // may fail as long as the file is still mapped; will be removed on exit in this case
+        Files.deleteIfExists(spillFile);
+        FileDeletionHook.getInstance().unregisterFile(spillFile);
+      } catch (IOException e) {
+      }
+    }
+    spillFile = null;
+  }
+
   // Returns an inflater input stream
   private InflaterInputStream getInflaterInputStream() throws IOException
   {
-    return new InflaterInputStream(new ByteBufferInputStream(mappedBuffer.duplicate()));
+    return new InflaterInputStream(new ByteBufferInputStream(getMappedBuffer()));
+  }
+
+  // Returns a duplicate of the mapped archive data. Re-opens the BIFF file if needed.
+  private synchronized ByteBuffer getMappedBuffer() throws IOException
+  {
+    if (!isOpen()) {
+      try {
+        open();
+      } catch (IOException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IOException(e);
+      }
+    }
+    return mappedBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
   }
 }
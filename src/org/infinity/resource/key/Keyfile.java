@@ -268,11 +268,21 @@ public void addKeyfile(Path keyFile) throws IOException
   }
 
   public void populateResourceTree(ResourceTreeModel treeModel) throws Exception
+  {
+    populateResourceTree(treeModel, null);
+  }
+
+  /**
+   * Adds all resources of the key files to the specified resource tree.
+   * @param treeModel The resource tree.
+   * @param snapshot Optional snapshot which provides BIFF file locations of a previous session.
+   */
+  public void populateResourceTree(ResourceTreeModel treeModel, ResourceTreeSnapshot snapshot) throws Exception
   {
     if (treeModel != null) {
-      init();
+      init(snapshot);
 
-      resourceEntries.values().forEach((entry) -> treeModel.addResourceEntry(entry, entry.getExtension(), true));
+      treeModel.addResourceEntries(resourceEntries.values(), ResourceEntry::getExtension, true);
 
       cacheBIFFs();
     }
@@ -511,7 +521,7 @@ public void run()
 
 
   /** Creates or updates cached biff maps and entry tables. */
-  private void init() throws IOException
+  private void init(ResourceTreeSnapshot snapshot) throws IOException
   {
     if (getKeyfile() == null) {
       throw new NullPointerException();
@@ -560,8 +570,19 @@ private void init() throws IOException
         }
 
         // processing BIFF entries
+        Path[] biffFiles = (snapshot != null) ? snapshot.getBiffFiles(file, numBif) : null;
+        boolean resolved = (biffFiles != null);
         for (int i = 0, ofs = ofsBif; i < numBif; i++, ofs += 12) {
-          biffList.add(new BIFFEntry(file, i, buffer, ofs));
+          Path biffFile = (biffFiles != null) ? biffFiles[i] : null;
+          resolved &= (biffFile != null);
+          biffList.add(new BIFFEntry(file, i, buffer, ofs, biffFile));
+        }
+        if (snapshot != null) {
+          if (resolved) {
+            snapshot.keepBiffFiles(file);
+          } else {
+            snapshot.setBiffFiles(file, biffList);
+          }
         }
         biffEntries.put(file, biffList);
 
@@ -7,6 +7,7 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -165,6 +166,16 @@ public ByteBuffer getResourceBuffer() throws Exception
                              BrowserMenuBar.getInstance().ignoreOverrides());
   }
 
+  /**
+   * Returns the resource data as read-only {@link ByteBuffer}. The buffer may be a view of shared
+   * data, so this method is preferred over {@link #getResourceBuffer()} for read-only access.
+   */
+  public ByteBuffer getResourceView() throws Exception
+  {
+    return getResourceView((NearInfinity.getInstance() != null) &&
+                           BrowserMenuBar.getInstance().ignoreOverrides());
+  }
+
   public InputStream getResourceDataAsStream() throws Exception
   {
     return getResourceDataAsStream((NearInfinity.getInstance() != null) &&
@@ -277,6 +288,11 @@ public boolean isVisible()
 
   public abstract ByteBuffer getResourceBuffer(boolean ignoreOverride) throws Exception;
 
+  public ByteBuffer getResourceView(boolean ignoreOverride) throws Exception
+  {
+    return getResourceBuffer(ignoreOverride).asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+  }
+
   public abstract InputStream getResourceDataAsStream(boolean ignoreOverride) throws Exception;
 
   public abstract int[] getResourceInfo(boolean ignoreOverride) throws Exception;
@@ -8,18 +8,42 @@
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 public final class ResourceTreeFolder implements Comparable<ResourceTreeFolder>
 {
+  // Incremented whenever the content of any folder changes
+  private static final AtomicInteger generation = new AtomicInteger();
+
   private final SortedListSet<ResourceEntry> resourceEntries = new SortedListSet<>();
   private final List<ResourceTreeFolder> folders = new ArrayList<ResourceTreeFolder>();
   private final ResourceTreeFolder parentFolder;
   private final String folderName;
 
+  // Cached unmodifiable views of the folder content, reset on modification
+  private List<ResourceEntry> entriesView;
+  private volatile TypeViews typeViews;
+
+  /**
+   * Returns a value which changes whenever resource entries or subfolders of any
+   * {@code ResourceTreeFolder} are added, removed or reordered. Can be used to validate
+   * data derived from the resource tree.
+   */
+  public static int getGeneration()
+  {
+    return generation.get();
+  }
+
   public ResourceTreeFolder(ResourceTreeFolder parentFolder, String folderName)
   {
     this.parentFolder = parentFolder;
@@ -47,26 +71,48 @@ public String folderName()
     return folderName;
   }
 
+  /** Returns an unmodifiable list of the resource entries in this folder. */
   public List<ResourceEntry> getResourceEntries()
   {
-    return Collections.unmodifiableList(new ArrayList<>(resourceEntries));
+    synchronized (resourceEntries) {
+      if (entriesView == null) {
+        entriesView = Collections.unmodifiableList(new ArrayList<>(resourceEntries));
+      }
+      return entriesView;
+    }
   }
 
+  /**
+   * Returns an unmodifiable list of the resource entries of the specified type in this folder
+   * and all subfolders. The list is cached until the resource tree is modified.
+   */
   public List<ResourceEntry> getResourceEntries(String type)
   {
-    List<ResourceEntry> list = new ArrayList<ResourceEntry>();
-    resourceEntries.forEach((entry) -> {
-      if (entry.getExtension().equalsIgnoreCase(type)) {
-        list.add(entry);
-      }
-    });
-    folders.forEach((folder) -> list.addAll(folder.getResourceEntries(type)));
+    TypeViews views = typeViews;
+    if (views == null || views.generation != getGeneration()) {
+      views = new TypeViews(getGeneration());
+      typeViews = views;
+    }
+    final String key = type.toUpperCase(Locale.ENGLISH);
+    List<ResourceEntry> list = views.lists.get(key);
+    if (list == null) {
+      final List<ResourceEntry> result = new ArrayList<ResourceEntry>();
+      getResourceEntries().forEach((entry) -> {
+        if (entry.getExtension().equalsIgnoreCase(type)) {
+          result.add(entry);
+        }
+      });
+      folders.forEach((folder) -> result.addAll(folder.getResourceEntries(type)));
+      list = result.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(result);
+      views.lists.put(key, list);
+    }
     return list;
   }
 
   public void addFolder(ResourceTreeFolder folder)
   {
     folders.add(folder);
+    contentChanged();
   }
 
   public void addResourceEntry(ResourceEntry entry, boolean overwrite)
@@ -76,6 +122,27 @@ public void addResourceEntry(ResourceEntry entry, boolean overwrite)
         resourceEntries.remove(entry);
       }
       resourceEntries.add(entry);
+      contentChanged();
+    }
+  }
+
+  /**
+   * Adds all specified resource entries at once. The result is the same as adding them one by
+   * one with {@link #addResourceEntry(ResourceEntry, boolean)}, but entries are sorted only once.
+   */
+  public void addResourceEntries(Collection<? extends ResourceEntry> entries, boolean overwrite)
+  {
+    List<ResourceEntry> list = new ArrayList<>(entries.size());
+    entries.forEach((entry) -> {
+      if (entry.isVisible()) {
+        list.add(entry);
+      }
+    });
+    if (!list.isEmpty()) {
+      // stable sort preserves the insertion order of entries with the same name
+      Collections.sort(list);
+      resourceEntries.merge(list, overwrite);
+      contentChanged();
     }
   }
 
@@ -124,24 +191,56 @@ public ResourceTreeFolder getParentFolder()
   public void removeFolder(ResourceTreeFolder folder)
   {
     folders.remove(folder);
+    contentChanged();
   }
 
   public void removeResourceEntry(ResourceEntry entry)
   {
     resourceEntries.remove(entry);
+    contentChanged();
+  }
+
+  /** Removes all specified resource entry instances at once. */
+  public void removeResourceEntries(Collection<? extends ResourceEntry> entries)
+  {
+    final Set<ResourceEntry> set = Collections.newSetFromMap(new IdentityHashMap<>());
+    set.addAll(entries);
+    resourceEntries.removeIf((entry) -> set.contains(entry));
+    contentChanged();
   }
 
   public void sortChildren(boolean recursive)
   {
     Collections.sort(folders);
+    contentChanged();
     if (recursive) {
       folders.forEach((folder) -> folder.sortChildren(recursive));
     }
   }
 
+  private void contentChanged()
+  {
+    synchronized (resourceEntries) {
+      entriesView = null;
+    }
+    generation.incrementAndGet();
+  }
 
 //-------------------------- INNER CLASSES --------------------------
 
+  // Resource entry lists by type, valid for a specific generation of the resource tree
+  private static class TypeViews
+  {
+    private final int generation;
+    private final Map<String, List<ResourceEntry>> lists = new ConcurrentHashMap<>();
+
+    public TypeViews(int generation)
+    {
+      this.generation = generation;
+    }
+  }
+
+
   // A thread-safe sorted set using an ArrayList as backend for indexed element access
   private static class SortedListSet<T extends Comparable<? super T>> extends ArrayList<T> implements SortedSet<T>
   {
@@ -177,6 +276,48 @@ public synchronized boolean addAll(Collection<? extends T> c)
       return bRet;
     }
 
+    /**
+     * Merges the specified sorted list into this set. Of several elements comparing equal the
+     * last one is kept if {@code overwrite} is set, otherwise the first one.
+     * Existing elements are considered to precede the specified elements.
+     */
+    public synchronized void merge(List<T> sorted, boolean overwrite)
+    {
+      final int n = size(), m = sorted.size();
+      final List<T> result = new ArrayList<>(n + m);
+      int i = 0, j = 0;
+      while (j < m) {
+        // collapse run of equal elements
+        int k = j + 1;
+        while (k < m && sorted.get(k).compareTo(sorted.get(j)) == 0) {
+          k++;
+        }
+        final T item = overwrite ? sorted.get(k - 1) : sorted.get(j);
+        j = k;
+
+        while (i < n && get(i).compareTo(item) < 0) {
+          result.add(get(i++));
+        }
+        if (i < n && get(i).compareTo(item) == 0) {
+          result.add(overwrite ? item : get(i));
+          i++;
+        } else {
+          result.add(item);
+        }
+      }
+      while (i < n) {
+        result.add(get(i++));
+      }
+      clear();
+      super.addAll(result);
+    }
+
+    @Override
+    public synchronized boolean removeIf(Predicate<? super T> filter)
+    {
+      return super.removeIf(filter);
+    }
+
     @Override
     public boolean contains(Object o)
     {
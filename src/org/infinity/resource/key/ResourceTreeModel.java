@@ -4,19 +4,17 @@
 
 package org.infinity.resource.key;
 
-import java.io.IOException;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.function.Function;
 
 import javax.swing.event.TreeModelEvent;
 import javax.swing.event.TreeModelListener;
@@ -24,7 +22,6 @@
 import javax.swing.tree.TreePath;
 
 import org.infinity.util.Misc;
-import org.infinity.util.io.FileEx;
 
 public final class ResourceTreeModel implements TreeModel
 {
@@ -32,6 +29,7 @@ public final class ResourceTreeModel implements TreeModel
   private final Map<String, ResourceEntry> entries = new HashMap<>(25000);
   private final Map<String, ResourceTreeFolder> folders = new TreeMap<>(Misc.getIgnoreCaseComparator());
   private final ResourceTreeFolder root = new ResourceTreeFolder(null, "");
+  private volatile FolderEntryIndex folderEntryIndex;
 
   public ResourceTreeModel()
   {
@@ -109,23 +107,67 @@ public void removeTreeModelListener(TreeModelListener l)
    */
   public void addDirectory(ResourceTreeFolder parentFolder, Path directory, boolean overwrite)
   {
-    try (DirectoryStream<Path> dstream = Files.newDirectoryStream(directory)) {
-      Iterator<Path> iter = dstream.iterator();
-      if (iter.hasNext()) {
-        final ResourceTreeFolder folder = addFolder(parentFolder, directory.getFileName().toString());
-        iter.forEachRemaining((path) -> {
-          if (FileEx.create(path).isDirectory()) {
-            addDirectory(folder, path, overwrite);
-          } else {
-            folder.addResourceEntry(new FileResourceEntry(path), overwrite);
-          }
-        });
-        parentFolder.sortChildren(true);
+    addDirectory(parentFolder, directory, overwrite, null);
+  }
+
+  /**
+   * Recursively adds all files from directory {@code directory} as file resources
+   * under {@code parentFolder}.
+   *
+   * @param parentFolder Navigation tree element under which new fiels will be added
+   * @param directory Directory from which all files will be added (recursively)
+   * @param overwrite If {@code true}, new files will replace existent resources
+   *        otherwise it will be skipped and not added to the tree
+   * @param snapshot Optional snapshot which provides the content of unmodified directories
+   */
+  public void addDirectory(ResourceTreeFolder parentFolder, Path directory, boolean overwrite,
+                           ResourceTreeSnapshot snapshot)
+  {
+    // directories of the same level are listed concurrently
+    final Map<Path, ResourceTreeSnapshot.Listing> listings = new HashMap<>();
+    List<Path> dirs = Collections.singletonList(directory);
+    while (!dirs.isEmpty()) {
+      final List<ResourceTreeSnapshot.Listing> results = ResourceTreeSnapshot.listAll(snapshot, dirs);
+      final List<Path> subDirs = new ArrayList<>();
+      for (int i = 0; i < dirs.size(); i++) {
+        final ResourceTreeSnapshot.Listing listing = results.get(i);
+        if (listing != null) {
+          listings.put(dirs.get(i), listing);
+          subDirs.addAll(listing.getDirectories());
+        }
+      }
+      dirs = subDirs;
+    }
+
+    if (addListing(parentFolder, directory, listings, overwrite)) {
+      parentFolder.sortChildren(true);
+    }
+  }
+
+  /**
+   * Adds the specified resource entries to the tree. The result is the same as adding them one
+   * by one with {@link #addResourceEntry(ResourceEntry, String, boolean)}, but each folder
+   * is sorted only once.
+   *
+   * @param entries The resource entries to add.
+   * @param folderName Returns the name of the folder for a given resource entry.
+   * @param overwrite If {@code true}, new entries will replace existing resources
+   */
+  public void addResourceEntries(Collection<? extends ResourceEntry> entries,
+                                 Function<? super ResourceEntry, String> folderName, boolean overwrite)
+  {
+    final Map<String, List<ResourceEntry>> map = new LinkedHashMap<>();
+    for (final ResourceEntry entry : entries) {
+      if (entry.isVisible()) {
+        map.computeIfAbsent(folderName.apply(entry), (name) -> new ArrayList<>()).add(entry);
+        this.entries.put(entry.getResourceName().toUpperCase(Locale.ENGLISH), entry);
       }
-    } catch (IOException e) {
-      e.printStackTrace();
-      return;
     }
+    map.forEach((name, list) -> {
+      final ResourceTreeFolder folder = addFolder(name);
+      folder.addResourceEntries(list, overwrite);
+      folder.sortChildren(false);
+    });
   }
 
   public ResourceTreeFolder addResourceEntry(ResourceEntry entry, String folderName, boolean overwrite)
@@ -216,6 +258,23 @@ public ResourceTreeFolder addFolder(ResourceTreeFolder parent, String folderName
     return null;
   }
 
+  // Returns the index of all resource entries in the tree by upper-cased name. Entries of
+  // folders which come first in the folder map take precedence.
+  private Map<String, ResourceEntry> getFolderEntryIndex()
+  {
+    FolderEntryIndex index = folderEntryIndex;
+    if (index == null || index.generation != ResourceTreeFolder.getGeneration()) {
+      index = new FolderEntryIndex(ResourceTreeFolder.getGeneration());
+      for (final ResourceTreeFolder folder: folders.values()) {
+        for (final ResourceEntry entry: folder.getResourceEntries()) {
+          index.entries.putIfAbsent(entry.getResourceName().toUpperCase(Locale.ENGLISH), entry);
+        }
+      }
+      folderEntryIndex = index;
+    }
+    return index.entries;
+  }
+
   public TreePath getPathToNode(ResourceEntry entry)
   {
     List<Object> path = new ArrayList<>(4);
@@ -263,14 +322,7 @@ public ResourceEntry getResourceEntry(String entryname, boolean includeExtraFold
       if (entry != null) {
         retVal = entry;
       } else if (includeExtraFolders) {
-        for (final ResourceTreeFolder folder: folders.values()) {
-          List<ResourceEntry> entries = folder.getResourceEntries();
-          for (final ResourceEntry curEntry: entries) {
-            if (curEntry.getResourceName().equalsIgnoreCase(entryname)) {
-              return curEntry;
-            }
-          }
-        }
+        retVal = getFolderEntryIndex().get(entryname);
       }
     }
 
@@ -304,6 +356,37 @@ public void removeResourceEntry(ResourceEntry entry)
     removeResourceEntry(entry, entry.getTreeFolderName());
   }
 
+  /**
+   * Removes the specified resource entries from the tree. Folders which become empty are removed
+   * as well. Listeners are notified by a single structure change event.
+   *
+   * @param entries The resource entries to remove.
+   * @param folderName Returns the name of the folder for a given resource entry.
+   */
+  public void removeResourceEntries(Collection<? extends ResourceEntry> entries,
+                                    Function<? super ResourceEntry, String> folderName)
+  {
+    if (entries.isEmpty()) {
+      return;
+    }
+    final Map<String, List<ResourceEntry>> map = new HashMap<>();
+    for (final ResourceEntry entry : entries) {
+      map.computeIfAbsent(folderName.apply(entry), (name) -> new ArrayList<>()).add(entry);
+    }
+    map.forEach((name, list) -> {
+      final ResourceTreeFolder parent = folders.get(name);
+      if (parent != null) {
+        parent.removeResourceEntries(list);
+        list.forEach((entry) -> this.entries.remove(entry.getResourceName().toUpperCase(Locale.ENGLISH)));
+        if (parent.getChildCount() == 0) {
+          root.removeFolder(parent);
+          folders.remove(parent.folderName());
+        }
+      }
+    });
+    fireTreeStructureChanged(new TreePath(root));
+  }
+
   public void removeResourceEntry(ResourceEntry entry, String folder)
   {
     ResourceTreeFolder parent = folders.get(folder);
@@ -357,6 +440,25 @@ public void updateFolders(ResourceTreeFolder... folders)
     }
   }
 
+  // Recursively adds the listed content of the directory, returns whether a folder has been added
+  private boolean addListing(ResourceTreeFolder parentFolder, Path directory,
+                             Map<Path, ResourceTreeSnapshot.Listing> listings, boolean overwrite)
+  {
+    final ResourceTreeSnapshot.Listing listing = listings.get(directory);
+    if (listing == null || listing.isEmpty()) {
+      return false;
+    }
+    final ResourceTreeFolder folder = addFolder(parentFolder, directory.getFileName().toString());
+    for (final Path path : listing.getDirectories()) {
+      addListing(folder, path, listings, overwrite);
+    }
+    final List<Path> files = listing.getNonDirectories();
+    final List<ResourceEntry> list = new ArrayList<>(files.size());
+    files.forEach((path) -> list.add(new FileResourceEntry(path)));
+    folder.addResourceEntries(list, overwrite);
+    return true;
+  }
+
   private void fireTreeStructureChanged(TreePath changed)
   {
     TreeModelEvent event = new TreeModelEvent(this, changed);
@@ -364,4 +466,18 @@ private void fireTreeStructureChanged(TreePath changed)
       treeModelListeners.get(i).treeStructureChanged(event);
     }
   }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  // Resource entries of all folders by name, valid for a specific generation of the resource tree
+  private static class FolderEntryIndex
+  {
+    private final int generation;
+    private final Map<String, ResourceEntry> entries = new HashMap<>();
+
+    public FolderEntryIndex(int generation)
+    {
+      this.generation = generation;
+    }
+  }
 }
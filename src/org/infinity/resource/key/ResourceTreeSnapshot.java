@@ -0,0 +1,498 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2005 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource.key;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.infinity.resource.Profile;
+import org.infinity.util.Misc;
+import org.infinity.util.io.FileEx;
+import org.infinity.util.io.StreamUtils;
+
+/**
+ * Persistent snapshot of the file system information needed to build the resource tree.
+ * <p>
+ * The snapshot stores the resolved BIFF file locations of each KEY file and the content of
+ * the override and extra folders. Entries are validated by modification time (and size for
+ * files), so that only folders which have been changed since the last start have to be
+ * scanned again. The snapshot is stored uncompressed in the
+ * {@link Profile#getCacheFolder() cache folder} and memory-mapped when loaded.
+ */
+public final class ResourceTreeSnapshot
+{
+  private static final String SNAPSHOT_FILE    = "resources.snapshot";
+  private static final String SNAPSHOT_SIG     = "NIRT";
+  private static final int    SNAPSHOT_VERSION = 1;
+
+  // Directories modified within this time span before a scan are not stored, since further
+  // changes may not be reflected by the modification time (file systems with coarse timestamps)
+  private static final long RACY_INTERVAL = 2000L;
+
+  private static final byte TYPE_FILE       = 0;
+  private static final byte TYPE_DIRECTORY  = 1;
+  private static final byte TYPE_OTHER      = 2;
+
+  private final Path snapshotFile;
+  // Records of the loaded snapshot, mapped by absolute path
+  private final Map<String, KeyRecord> oldKeys = new HashMap<>();
+  private final Map<String, DirectoryRecord> oldDirs = new HashMap<>();
+  // Records to be stored by the next save operation
+  private final Map<String, KeyRecord> keys = new ConcurrentHashMap<>();
+  private final Map<String, DirectoryRecord> dirs = new ConcurrentHashMap<>();
+
+  private volatile boolean modified;
+
+  /**
+   * Loads the resource tree snapshot of the current game.
+   * Returns an empty snapshot if no snapshot is available.
+   */
+  public static ResourceTreeSnapshot load()
+  {
+    Path folder = Profile.getCacheFolder();
+    ResourceTreeSnapshot snapshot = new ResourceTreeSnapshot((folder != null) ? folder.resolve(SNAPSHOT_FILE) : null);
+    snapshot.read();
+    return snapshot;
+  }
+
+  /**
+   * Scans the specified directory without involving a snapshot.
+   * @param dir The directory to scan.
+   * @return The directory content.
+   */
+  public static Listing scan(Path dir) throws IOException
+  {
+    List<String> names = new ArrayList<>();
+    List<Byte> types = new ArrayList<>();
+    try (DirectoryStream<Path> dstream = Files.newDirectoryStream(dir)) {
+      for (final Path path : dstream) {
+        byte type;
+        try {
+          // symbolic links are classified by their targets, like FileEx.isFile() and isDirectory()
+          BasicFileAttributes attr = Files.readAttributes(path, BasicFileAttributes.class);
+          type = attr.isRegularFile() ? TYPE_FILE : (attr.isDirectory() ? TYPE_DIRECTORY : TYPE_OTHER);
+        } catch (IOException e) {
+          type = TYPE_OTHER;
+        }
+        names.add(path.getFileName().toString());
+        types.add(type);
+      }
+    }
+    byte[] typeArray = new byte[types.size()];
+    for (int i = 0; i < typeArray.length; i++) {
+      typeArray[i] = types.get(i);
+    }
+    return new Listing(dir, names.toArray(new String[names.size()]), typeArray);
+  }
+
+  /**
+   * Lists the specified directories concurrently.
+   * @param snapshot Optional snapshot which provides the content of unmodified directories.
+   * @param dirs The directories to list.
+   * @return Content of the directories in the same order. Elements are {@code null} for
+   *         directories which could not be listed.
+   */
+  public static List<Listing> listAll(ResourceTreeSnapshot snapshot, List<Path> dirs)
+  {
+    List<Listing> retVal = new ArrayList<>(dirs.size());
+    if (dirs.size() < 2) {
+      for (final Path dir : dirs) {
+        retVal.add(listOrNull(snapshot, dir));
+      }
+      return retVal;
+    }
+
+    ThreadPoolExecutor executor = Misc.createThreadPool();
+    List<Future<Listing>> results = new ArrayList<>(dirs.size());
+    for (final Path dir : dirs) {
+      Misc.isQueueReady(executor, true, -1);
+      results.add(executor.submit(() -> listOrNull(snapshot, dir)));
+    }
+    executor.shutdown();
+    for (final Future<Listing> result : results) {
+      try {
+        retVal.add(result.get());
+      } catch (InterruptedException | ExecutionException e) {
+        e.printStackTrace();
+        retVal.add(null);
+      }
+    }
+    return retVal;
+  }
+
+  private static Listing listOrNull(ResourceTreeSnapshot snapshot, Path dir)
+  {
+    try {
+      return (snapshot != null) ? snapshot.list(dir) : scan(dir);
+    } catch (IOException e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  private ResourceTreeSnapshot(Path snapshotFile)
+  {
+    this.snapshotFile = snapshotFile;
+  }
+
+  /**
+   * Returns the content of the specified directory. The content is taken from the snapshot
+   * if the directory has not been modified since the snapshot was created.
+   * May be called concurrently.
+   * @param dir The directory to list.
+   * @return The directory content.
+   */
+  public Listing list(Path dir) throws IOException
+  {
+    if (dir.getFileSystem() != FileSystems.getDefault()) {
+      // virtual file systems (e.g. DLC archives) are not covered
+      return scan(dir);
+    }
+
+    String key = dir.toAbsolutePath().toString();
+    long mtime = Files.getLastModifiedTime(dir).toMillis();
+    DirectoryRecord record = oldDirs.get(key);
+    if (record != null && record.mtime == mtime) {
+      dirs.put(key, record);
+      return new Listing(dir, record.names, record.types);
+    }
+
+    long scanTime = System.currentTimeMillis();
+    Listing listing = scan(dir);
+    if (mtime < scanTime - RACY_INTERVAL) {
+      dirs.put(key, new DirectoryRecord(mtime, listing.names, listing.types));
+    }
+    modified = true;
+    return listing;
+  }
+
+  /**
+   * Returns the BIFF file locations of the specified KEY file, as resolved by a previous session.
+   * Array elements are {@code null} for BIFF files which have to be looked up again.
+   * Returns {@code null} if the KEY file is not covered by the snapshot or has been modified.
+   * @param keyFile The KEY file.
+   * @param numBiffs Number of BIFF entries in the KEY file.
+   */
+  synchronized Path[] getBiffFiles(Path keyFile, int numBiffs)
+  {
+    KeyRecord record = oldKeys.get(keyFile.toAbsolutePath().toString());
+    if (record == null || record.biffPaths.length != numBiffs || !record.key.matches(keyFile)) {
+      return null;
+    }
+
+    Path[] retVal = new Path[numBiffs];
+    for (int i = 0; i < numBiffs; i++) {
+      if (record.biffPaths[i] != null) {
+        Path path = keyFile.getFileSystem().getPath(record.biffPaths[i]);
+        if (record.biffStamps[i].matches(path)) {
+          retVal[i] = path;
+        }
+      }
+    }
+    return retVal;
+  }
+
+  /**
+   * Stores the resolved BIFF file locations of the specified KEY file.
+   * @param keyFile The KEY file.
+   * @param biffList BIFF entries of the KEY file in index order.
+   */
+  synchronized void setBiffFiles(Path keyFile, List<BIFFEntry> biffList)
+  {
+    if (keyFile.getFileSystem() != FileSystems.getDefault()) {
+      return;
+    }
+    Stamp keyStamp = Stamp.of(keyFile);
+    if (keyStamp == null) {
+      return;
+    }
+
+    String[] biffPaths = new String[biffList.size()];
+    Stamp[] biffStamps = new Stamp[biffPaths.length];
+    for (int i = 0; i < biffPaths.length; i++) {
+      Path path = biffList.get(i).getPath();
+      Stamp stamp = (path != null && path.getFileSystem() == FileSystems.getDefault()) ? Stamp.of(path) : null;
+      if (stamp != null) {
+        biffPaths[i] = path.toAbsolutePath().toString();
+        biffStamps[i] = stamp;
+      }
+    }
+    keys.put(keyFile.toAbsolutePath().toString(), new KeyRecord(keyStamp, biffPaths, biffStamps));
+    modified = true;
+  }
+
+  /**
+   * Marks the snapshot record of the specified KEY file as still valid without resolving
+   * BIFF locations again.
+   */
+  synchronized void keepBiffFiles(Path keyFile)
+  {
+    String key = keyFile.toAbsolutePath().toString();
+    KeyRecord record = oldKeys.get(key);
+    if (record != null) {
+      keys.put(key, record);
+    }
+  }
+
+  /** Writes the snapshot to disk if it differs from the loaded snapshot. */
+  public synchronized void save()
+  {
+    if (snapshotFile == null ||
+        (!modified && keys.size() == oldKeys.size() && dirs.size() == oldDirs.size())) {
+      return;
+    }
+
+    Path tmpFile = snapshotFile.resolveSibling(SNAPSHOT_FILE + ".tmp");
+    try {
+      Files.createDirectories(snapshotFile.getParent());
+      try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(
+          StreamUtils.getOutputStream(tmpFile, true)))) {
+        dos.write(SNAPSHOT_SIG.getBytes(StandardCharsets.US_ASCII));
+        dos.writeInt(SNAPSHOT_VERSION);
+
+        dos.writeInt(keys.size());
+        for (final Map.Entry<String, KeyRecord> entry : keys.entrySet()) {
+          final KeyRecord record = entry.getValue();
+          writeString(dos, entry.getKey());
+          record.key.write(dos);
+          dos.writeInt(record.biffPaths.length);
+          for (int i = 0; i < record.biffPaths.length; i++) {
+            writeString(dos, (record.biffPaths[i] != null) ? record.biffPaths[i] : "");
+            if (record.biffPaths[i] != null) {
+              record.biffStamps[i].write(dos);
+            }
+          }
+        }
+
+        dos.writeInt(dirs.size());
+        for (final Map.Entry<String, DirectoryRecord> entry : dirs.entrySet()) {
+          final DirectoryRecord record = entry.getValue();
+          writeString(dos, entry.getKey());
+          dos.writeLong(record.mtime);
+          dos.writeInt(record.names.length);
+          for (int i = 0; i < record.names.length; i++) {
+            dos.writeByte(record.types[i]);
+            writeString(dos, record.names[i]);
+          }
+        }
+      }
+      // may fail on platforms which lock memory-mapped files; the old snapshot remains valid in this case
+      Files.move(tmpFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+      modified = false;
+    } catch (IOException e) {
+      e.printStackTrace();
+      try {
+        Files.deleteIfExists(tmpFile);
+      } catch (IOException e2) {
+      }
+    }
+  }
+
+  private void read()
+  {
+    if (snapshotFile == null || !FileEx.create(snapshotFile).isFile()) {
+      return;
+    }
+    try (FileChannel ch = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+      ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0L, ch.size());
+      byte[] sig = new byte[4];
+      buf.get(sig);
+      if (!SNAPSHOT_SIG.equals(new String(sig, StandardCharsets.US_ASCII)) || buf.getInt() != SNAPSHOT_VERSION) {
+        return;
+      }
+
+      int numKeys = buf.getInt();
+      for (int i = 0; i < numKeys; i++) {
+        String key = readString(buf);
+        Stamp keyStamp = Stamp.read(buf);
+        String[] biffPaths = new String[buf.getInt()];
+        Stamp[] biffStamps = new Stamp[biffPaths.length];
+        for (int j = 0; j < biffPaths.length; j++) {
+          String path = readString(buf);
+          if (!path.isEmpty()) {
+            biffPaths[j] = path;
+            biffStamps[j] = Stamp.read(buf);
+          }
+        }
+        oldKeys.put(key, new KeyRecord(keyStamp, biffPaths, biffStamps));
+      }
+
+      int numDirs = buf.getInt();
+      for (int i = 0; i < numDirs; i++) {
+        String key = readString(buf);
+        long mtime = buf.getLong();
+        String[] names = new String[buf.getInt()];
+        byte[] types = new byte[names.length];
+        for (int j = 0; j < names.length; j++) {
+          types[j] = buf.get();
+          names[j] = readString(buf);
+        }
+        oldDirs.put(key, new DirectoryRecord(mtime, names, types));
+      }
+    } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+      e.printStackTrace();
+      oldKeys.clear();
+      oldDirs.clear();
+    }
+  }
+
+  private static void writeString(DataOutputStream dos, String s) throws IOException
+  {
+    byte[] data = s.getBytes(StandardCharsets.UTF_8);
+    dos.writeShort(data.length);
+    dos.write(data);
+  }
+
+  private static String readString(ByteBuffer buf)
+  {
+    byte[] data = new byte[buf.getShort() & 0xffff];
+    buf.get(data);
+    return new String(data, StandardCharsets.UTF_8);
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Content of a directory, in the order provided by the file system. */
+  public static final class Listing
+  {
+    private final Path dir;
+    private final String[] names;
+    private final byte[] types;
+
+    private Listing(Path dir, String[] names, byte[] types)
+    {
+      this.dir = dir;
+      this.names = names;
+      this.types = types;
+    }
+
+    /** Returns whether the directory is empty. */
+    public boolean isEmpty()
+    {
+      return names.length == 0;
+    }
+
+    /** Returns all directory entries which are regular files. */
+    public List<Path> getFiles()
+    {
+      return getPaths(TYPE_FILE, true);
+    }
+
+    /** Returns all directory entries which are directories. */
+    public List<Path> getDirectories()
+    {
+      return getPaths(TYPE_DIRECTORY, true);
+    }
+
+    /** Returns all directory entries which are not directories. */
+    public List<Path> getNonDirectories()
+    {
+      return getPaths(TYPE_DIRECTORY, false);
+    }
+
+    private List<Path> getPaths(byte type, boolean match)
+    {
+      if (names.length == 0) {
+        return Collections.emptyList();
+      }
+      List<Path> list = new ArrayList<>();
+      for (int i = 0; i < names.length; i++) {
+        if ((types[i] == type) == match) {
+          list.add(dir.resolve(names[i]));
+        }
+      }
+      return list;
+    }
+  }
+
+  // Modification time and size of a file
+  private static final class Stamp
+  {
+    private final long mtime;
+    private final long size;
+
+    private static Stamp of(Path file)
+    {
+      try {
+        BasicFileAttributes attr = Files.readAttributes(file, BasicFileAttributes.class);
+        return new Stamp(attr.lastModifiedTime().toMillis(), attr.size());
+      } catch (IOException e) {
+        return null;
+      }
+    }
+
+    private static Stamp read(ByteBuffer buf)
+    {
+      return new Stamp(buf.getLong(), buf.getLong());
+    }
+
+    private Stamp(long mtime, long size)
+    {
+      this.mtime = mtime;
+      this.size = size;
+    }
+
+    private boolean matches(Path file)
+    {
+      Stamp stamp = of(file);
+      return (stamp != null && stamp.mtime == mtime && stamp.size == size);
+    }
+
+    private void write(DataOutputStream dos) throws IOException
+    {
+      dos.writeLong(mtime);
+      dos.writeLong(size);
+    }
+  }
+
+  private static final class KeyRecord
+  {
+    private final Stamp key;
+    private final String[] biffPaths;   // null for unresolved BIFF files
+    private final Stamp[] biffStamps;
+
+    private KeyRecord(Stamp key, String[] biffPaths, Stamp[] biffStamps)
+    {
+      this.key = key;
+      this.biffPaths = biffPaths;
+      this.biffStamps = biffStamps;
+    }
+  }
+
+  private static final class DirectoryRecord
+  {
+    private final long mtime;
+    private final String[] names;
+    private final byte[] types;
+
+    private DirectoryRecord(long mtime, String[] names, byte[] types)
+    {
+      this.mtime = mtime;
+      this.names = names;
+      this.types = types;
+    }
+  }
+}
@@ -14,13 +14,17 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.zip.Deflater;
 
 import org.infinity.datatype.TextString;
 import org.infinity.resource.Profile;
 import org.infinity.resource.Writeable;
-import org.infinity.resource.key.FileResourceEntry;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.util.FileDeletionHook;
+import org.infinity.util.Misc;
 import org.infinity.util.io.FileEx;
 import org.infinity.util.io.StreamUtils;
 
@@ -35,6 +39,12 @@ public IOHandler(ResourceEntry entry) throws Exception
   {
     this.entry = entry;
     ByteBuffer buffer = entry.getResourceBuffer(true);  // ignoreOverride - no real effect
+    if (!buffer.hasArray()) {
+      // archive entries keep referencing the buffer: don't hold on to mapped file data
+      ByteBuffer bb = StreamUtils.getByteBuffer(buffer.remaining());
+      bb.put(buffer.duplicate()).flip();
+      buffer = bb;
+    }
     header = new TextString(buffer, 0, 8, null);
     if (!header.getText().equals("SAV V1.0")) {
       throw new UnsupportedOperationException("Unsupported version: " + header);
@@ -86,16 +96,70 @@ public void close()
     }
   }
 
+  /** Compresses the specified entries with the best compression level. See {@link #compress(List, int)}. */
   public void compress(List<? extends ResourceEntry> entries) throws Exception
   {
-    fileEntries.clear();
-    for (final ResourceEntry entry : entries) {
-      fileEntries.add(new SavResourceEntry(entry));
+    compress(entries, Deflater.BEST_COMPRESSION);
+  }
+
+  /**
+   * Replaces the content of the SAV archive by the specified entries and removes the temp folder.
+   * <p>
+   * Compressed data of unmodified archive entries is taken over as is. All other entries are
+   * compressed concurrently.
+   * @param entries List of resources to store in the archive.
+   * @param level Compression level in range [0, 9] as defined by {@link Deflater}.
+   */
+  public void compress(List<? extends ResourceEntry> entries, int level) throws Exception
+  {
+    if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+      throw new IllegalArgumentException("Invalid compression level: " + level);
+    }
+
+    final List<SavResourceEntry> list = new ArrayList<>(entries.size());
+    ThreadPoolExecutor executor = Misc.createThreadPool();
+    try {
+      List<Future<SavResourceEntry>> results = new ArrayList<>(entries.size());
+      for (final ResourceEntry entry : entries) {
+        Misc.isQueueReady(executor, true, -1);
+        results.add(executor.submit(() -> compressEntry(entry, level)));
+      }
+      for (final Future<SavResourceEntry> result : results) {
+        try {
+          list.add(result.get());
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception)e.getCause();
+          }
+          throw e;
+        }
+      }
+    } finally {
+      executor.shutdownNow();
     }
+
+    fileEntries.clear();
+    fileEntries.addAll(list);
     close();
   }
 
+  /**
+   * Makes the archived resources available for viewing and editing. Resources are inflated on demand
+   * and written to the temp folder only when saved. See {@link #decompress(boolean)}.
+   */
   public List<ResourceEntry> decompress() throws Exception
+  {
+    return decompress(false);
+  }
+
+  /**
+   * Makes the archived resources available for viewing and editing.
+   * @param extract Whether all resources should be extracted to the temp folder right away. Otherwise
+   *                resources are inflated on demand from the SAV archive and written to the temp folder
+   *                only when saved.
+   * @return List of resource entries located in the temp folder.
+   */
+  public List<ResourceEntry> decompress(boolean extract) throws Exception
   {
     tempFolder = createTempFolder();
     if (tempFolder == null) {
@@ -105,11 +169,32 @@ public List<ResourceEntry> decompress() throws Exception
 
     final List<ResourceEntry> entries = new ArrayList<>(fileEntries.size());
     for (final SavResourceEntry entry: fileEntries) {
-      Path file = tempFolder.resolve(entry.getResourceName());
-      try (OutputStream os = StreamUtils.getOutputStream(file, true)) {
-        StreamUtils.writeBytes(os, entry.decompress());
+      entries.add(new SavTempEntry(tempFolder.resolve(entry.getResourceName()), entry));
+    }
+
+    if (extract) {
+      ThreadPoolExecutor executor = Misc.createThreadPool();
+      List<Future<?>> results = new ArrayList<>(entries.size());
+      for (final ResourceEntry entry : entries) {
+        Misc.isQueueReady(executor, true, -1);
+        results.add(executor.submit(() -> {
+          try (OutputStream os = StreamUtils.getOutputStream(entry.getActualPath(), true)) {
+            StreamUtils.writeBytes(os, ((SavTempEntry)entry).getSource().decompress());
+          }
+          return null;
+        }));
+      }
+      executor.shutdown();
+      for (final Future<?> result : results) {
+        try {
+          result.get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception)e.getCause();
+          }
+          throw e;
+        }
       }
-      entries.add(new FileResourceEntry(file));
     }
     return entries;
   }
@@ -124,6 +209,18 @@ public Path getTempFolder()
     return tempFolder;
   }
 
+  // Returns the original archive entry if the resource is unmodified, a newly compressed entry otherwise
+  private static SavResourceEntry compressEntry(ResourceEntry entry, int level) throws Exception
+  {
+    if (entry instanceof SavTempEntry) {
+      SavTempEntry tempEntry = (SavTempEntry)entry;
+      if (!tempEntry.isModified()) {
+        return tempEntry.getSource();
+      }
+    }
+    return new SavResourceEntry(entry, level);
+  }
+
   /** Create a unique temp folder for current baldur.sav. */
   private Path createTempFolder()
   {
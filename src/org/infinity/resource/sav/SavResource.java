@@ -363,7 +363,10 @@ private void addResource(ResourceEntry resourceEntry)
     if (resourceEntry != null) {
       Path output = handler.getTempFolder().resolve(resourceEntry.getResourceName());
       try {
-        if (FileEx.create(output).exists()) {
+        // archived files are not necessarily present in the temp folder
+        boolean exists = FileEx.create(output).exists() ||
+                         entries.stream().anyMatch(e -> e.getResourceName().equalsIgnoreCase(resourceEntry.getResourceName()));
+        if (exists) {
           String msg = "File " + resourceEntry.getResourceName() + " already exists. Overwrite?";
           int ret = JOptionPane.showConfirmDialog(panel.getTopLevelAncestor(),
                                                   msg, "Overwrite file?", JOptionPane.YES_NO_OPTION,
@@ -40,21 +40,36 @@ public SavResourceEntry(ByteBuffer buffer, int offset)
     offset += 4 + fileNameLength;
     uncomprLength = buffer.getInt(offset);
     comprLength = buffer.getInt(offset + 4);
-    cdata = StreamUtils.getByteBuffer(comprLength);
-    StreamUtils.copyBytes(buffer, offset + 8, cdata, 0, comprLength);
+    // compressed data is shared with the source buffer and inflated on demand
+    ByteBuffer bb = buffer.duplicate();
+    bb.position(offset + 8);
+    bb.limit(offset + 8 + comprLength);
+    cdata = bb.slice().order(buffer.order());
   }
 
   public SavResourceEntry(ResourceEntry entry) throws Exception
+  {
+    this(entry, Deflater.BEST_COMPRESSION);
+  }
+
+  /**
+   * Creates a compressed entry from the specified resource.
+   * @param entry The resource to compress.
+   * @param level Compression level in range [0, 9] as defined by {@link Deflater}.
+   */
+  public SavResourceEntry(ResourceEntry entry, int level) throws Exception
   {
     comprLength = 0;
     uncomprLength = 0;
     fileName = entry.getResourceName();
     byte[] udata = StreamUtils.toArray(entry.getResourceBuffer(true));
     cdata = StreamUtils.getByteBuffer(udata.length * 2 + 8);
-    try (DeflaterOutputStream dos = new DeflaterOutputStream(new ByteBufferOutputStream(cdata),
-                                                             new Deflater(Deflater.BEST_COMPRESSION))) {
+    Deflater deflater = new Deflater(level);
+    try (DeflaterOutputStream dos = new DeflaterOutputStream(new ByteBufferOutputStream(cdata), deflater)) {
       dos.write(udata);
       dos.finish();
+    } finally {
+      deflater.end();
     }
     cdata.flip();
     uncomprLength = udata.length;
@@ -169,13 +184,37 @@ public long getResourceSize(boolean ignoreOverride)
     return -1L;
   }
 
+  /** Returns the size of the uncompressed resource data, in bytes. */
+  public int getUncompressedSize()
+  {
+    return uncomprLength;
+  }
+
+  /** Returns the size of the compressed resource data, in bytes. */
+  public int getCompressedSize()
+  {
+    return comprLength;
+  }
+
   public ByteBuffer decompress() throws Exception
   {
     Inflater inflater = new Inflater();
-    byte udata[] = new byte[uncomprLength];
-    inflater.setInput(cdata.array());
-    inflater.inflate(udata);
-    return StreamUtils.getByteBuffer(udata);
+    try {
+      byte udata[] = new byte[uncomprLength];
+      if (cdata.hasArray()) {
+        inflater.setInput(cdata.array(), cdata.arrayOffset(), comprLength);
+      } else {
+        byte[] input = new byte[comprLength];
+        ByteBuffer bb = cdata.duplicate();
+        bb.position(0);
+        bb.get(input);
+        inflater.setInput(input);
+      }
+      inflater.inflate(udata);
+      return StreamUtils.getByteBuffer(udata);
+    } finally {
+      inflater.end();
+    }
   }
 
   @Override
@@ -186,7 +225,8 @@ public void write(OutputStream os) throws IOException
     StreamUtils.writeByte(os, (byte)0);
     StreamUtils.writeInt(os, uncomprLength);
     StreamUtils.writeInt(os, comprLength);
-    cdata.position(0);
-    StreamUtils.writeBytes(os, cdata);
+    ByteBuffer bb = cdata.duplicate();
+    bb.position(0);
+    StreamUtils.writeBytes(os, bb);
   }
 }
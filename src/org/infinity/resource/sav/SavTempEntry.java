@@ -0,0 +1,143 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2019 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource.sav;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Locale;
+
+import org.infinity.resource.key.FileResourceEntry;
+import org.infinity.resource.key.ResourceEntry;
+import org.infinity.resource.key.ResourceTreeFolder;
+import org.infinity.util.io.ByteBufferInputStream;
+import org.infinity.util.io.FileEx;
+
+/**
+ * Resource entry of a file in the temp folder of a decompressed SAV resource.
+ * <p>
+ * As long as the file has not been written to the temp folder, resource data is inflated
+ * on demand from the compressed archive entry. Afterwards data is read from the file.
+ */
+public class SavTempEntry extends ResourceEntry
+{
+  private final FileResourceEntry file;
+  private final SavResourceEntry source;
+
+  /**
+   * Constructs a new entry.
+   * @param file Location of the file in the temp folder.
+   * @param source The archive entry providing the original data. Can be {@code null}.
+   */
+  public SavTempEntry(Path file, SavResourceEntry source)
+  {
+    this.file = new FileResourceEntry(file);
+    this.source = source;
+  }
+
+  /** Returns the archive entry of the original resource data. Can be {@code null}. */
+  public SavResourceEntry getSource()
+  {
+    return source;
+  }
+
+  /** Returns whether the resource data is available as file in the temp folder. */
+  public boolean isFileAvailable()
+  {
+    return source == null || FileEx.create(file.getActualPath()).isFile();
+  }
+
+  /**
+   * Returns whether the resource data differs from the original archive entry.
+   * Always returns {@code true} if there is no archive entry.
+   */
+  public boolean isModified() throws Exception
+  {
+    if (source == null) {
+      return true;
+    }
+    if (!isFileAvailable()) {
+      return false;
+    }
+    ByteBuffer data = file.getResourceBuffer(true);
+    if (data.remaining() != source.getUncompressedSize()) {
+      return true;
+    }
+    return !data.equals(source.decompress());
+  }
+
+  @Override
+  public String toString()
+  {
+    return getResourceName();
+  }
+
+  @Override
+  public String getResourceName()
+  {
+    return file.getResourceName();
+  }
+
+  @Override
+  public String getResourceRef()
+  {
+    return file.getResourceRef();
+  }
+
+  @Override
+  public String getExtension()
+  {
+    return getResourceName().substring(getResourceName().lastIndexOf('.') + 1).toUpperCase(Locale.ENGLISH);
+  }
+
+  @Override
+  public String getTreeFolderName()
+  {
+    return null;
+  }
+
+  @Override
+  public ResourceTreeFolder getTreeFolder()
+  {
+    return null;
+  }
+
+  @Override
+  public boolean hasOverride()
+  {
+    return false;
+  }
+
+  @Override
+  public int[] getResourceInfo(boolean ignoreOverride) throws Exception
+  {
+    return isFileAvailable() ? file.getResourceInfo(ignoreOverride) : source.getResourceInfo(ignoreOverride);
+  }
+
+  @Override
+  public ByteBuffer getResourceBuffer(boolean ignoreOverride) throws Exception
+  {
+    return isFileAvailable() ? file.getResourceBuffer(ignoreOverride) : source.decompress();
+  }
+
+  @Override
+  public InputStream getResourceDataAsStream(boolean ignoreOverride) throws Exception
+  {
+    return isFileAvailable() ? file.getResourceDataAsStream(ignoreOverride)
+                             : new ByteBufferInputStream(source.decompress());
+  }
+
+  @Override
+  public long getResourceSize(boolean ignoreOverride)
+  {
+    return isFileAvailable() ? file.getResourceSize(ignoreOverride) : source.getResourceSize(ignoreOverride);
+  }
+
+  @Override
+  protected Path getActualPath(boolean ignoreOverride)
+  {
+    return file.getActualPath();
+  }
+}
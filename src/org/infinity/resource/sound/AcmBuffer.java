@@ -4,14 +4,25 @@
 
 package org.infinity.resource.sound;
 
+import java.io.InputStream;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.util.DynamicArray;
 
 /**
  * Decodes ACM encoded audio data into uncompressed PCM WAV audio data.
+ * <p>
+ * Only the compressed source data is kept in memory. Audio data is decoded on demand, either
+ * completely by {@link #getAudioData()} or block by block by {@link #getAudioStream()}.
  */
 public class AcmBuffer extends AudioBuffer
 {
+  private byte[] source;            // ACM encoded audio data
+  private int sourceOffset;
+  private AudioOverride override;
 
   public AcmBuffer(ResourceEntry entry) throws Exception
   {
@@ -35,18 +46,49 @@ public AcmBuffer(byte[] buffer, int offset, AudioOverride override) throws Excep
 
 //--------------------- Begin Class AudioBuffer ---------------------
 
+  @Override
+  public byte[] getAudioData()
+  {
+    try {
+      AcmReader acm = new AcmReader(source, sourceOffset, override);
+      int numSamples = acm.getSampleCount();
+      int numChannels = acm.getChannels();
+      int sampleRate = acm.getSampleRate();
+      int bitsPerSample = acm.getBitsPerSample();
+      byte[] header = createWAVHeader(numSamples / numChannels, numChannels, sampleRate, bitsPerSample);
+      byte[] buffer = new byte[header.length + numSamples * bitsPerSample / 8];
+      System.arraycopy(header, 0, buffer, 0, header.length);
+      // remaining buffer space is already filled with silence
+      acm.readSamples(buffer, header.length, Math.min(numSamples, (buffer.length - header.length) / 2));
+      return buffer;
+    } catch (Exception e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  @Override
+  public AudioInputStream getAudioStream() throws Exception
+  {
+    AcmReader acm = new AcmReader(source, sourceOffset, override);
+    AudioFormat format = new AudioFormat(acm.getSampleRate(), 16, acm.getChannels(), true, false);
+    return new AudioInputStream(new AcmInputStream(acm), format, acm.getSampleCount() / acm.getChannels());
+  }
+
+  @Override
+  public int getMemorySize()
+  {
+    return (source != null) ? source.length : 0;
+  }
+
   @Override
   protected void convert(byte[] buffer, int offset, AudioOverride override) throws Exception
   {
-    AcmReader acm = new AcmReader(buffer, offset, override);
-    int numSamples = acm.getSampleCount();
-    int numChannels = acm.getChannels();
-    int sampleRate = acm.getSampleRate();
-    int bitsPerSample = acm.getBitsPerSample();
-    byte[] header = createWAVHeader(numSamples / numChannels, numChannels, sampleRate, bitsPerSample);
-    data = new byte[header.length + numSamples * bitsPerSample / 8];
-    System.arraycopy(header, 0, data, 0, header.length);
-    acm.readSamples(data, header.length, numSamples);
+    // validates header data, decoding is deferred until audio data is requested
+    new AcmReader(buffer, offset, override);
+    this.source = buffer;
+    this.sourceOffset = offset;
+    this.override = override;
   }
 
 //--------------------- End Class AudioBuffer ---------------------
@@ -54,19 +96,73 @@ protected void convert(byte[] buffer, int offset, AudioOverride override) throws
 
 //-------------------------- INNER CLASSES --------------------------
 
+  // Provides decoded 16-bit PCM audio data, one ACM block at a time
+  private static class AcmInputStream extends InputStream
+  {
+    private final AcmReader acm;
+    private final byte[] sample = new byte[2];
+    private int pending = -1;           // remaining byte of a partially consumed sample
+
+    private AcmInputStream(AcmReader acm)
+    {
+      this.acm = acm;
+    }
+
+    @Override
+    public int read()
+    {
+      if (pending >= 0) {
+        int v = pending;
+        pending = -1;
+        return v;
+      }
+      if (acm.readSamples(sample, 0, 1) == 0)
+        return -1;
+      pending = sample[1] & 0xff;
+      return sample[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+    {
+      if (off < 0 || len < 0 || off + len > b.length)
+        throw new IndexOutOfBoundsException();
+      if (len == 0)
+        return 0;
+
+      int res = 0;
+      if (pending >= 0) {
+        b[off + res++] = (byte)pending;
+        pending = -1;
+      }
+      res += acm.readSamples(b, off + res, (len - res) >> 1) << 1;
+      if (res == len - 1 && acm.readSamples(sample, 0, 1) > 0) {
+        b[off + res++] = sample[0];
+        pending = sample[1] & 0xff;
+      }
+      return (res > 0) ? res : -1;
+    }
+
+    @Override
+    public int available()
+    {
+      return (int)Math.min(Integer.MAX_VALUE, 2L * acm.getSamplesAvailable() + ((pending >= 0) ? 1 : 0));
+    }
+  }
+
+
   // ACM decoder class
   private static class AcmReader
   {
     private static final int ID_ACM = 0x01032897;
 
-    private final DynamicArray bufferB; // ACM input buffer and offset
-
     private final AudioOverride override;
     private int signature = 0, levels = 0, subBlocks = 0, blockSize = 0, samplesReady = 0;
     private int numChannels = 0, sampleRate = 0;
     private int numSamples = 0;         // total count of sound samples
     private int samplesLeft = 0;        // count of unprocessed samples
-    private DynamicArray blockI, valuesI;
+    private int[] blockI;               // decoded block of samples
+    private int valuesOfs;              // start of unprocessed samples in blockI
     private ValueUnpacker unpacker;     // ACM-stream unpacker
     private SubbandDecoder decoder;     // Interplay's subband decoder
 
@@ -83,28 +179,26 @@ private AcmReader(byte[] buffer, int offset, AudioOverride override) throws Exce
       if (offset < 0 || offset + 14 > buffer.length)
         throw new Exception("Input buffer too small");
 
-      bufferB = DynamicArray.wrap(buffer, offset, DynamicArray.ElementType.BYTE);
       if (override == null)
         override = AudioOverride.override(0, 0, 0);
       this.override = override;
 
-      init();
+      init(buffer, offset);
     }
 
-    private void init() throws Exception
+    private void init(byte[] buffer, int offset) throws Exception
     {
-      signature = bufferB.getInt(0);
-      numSamples = bufferB.getInt(4);
-      numChannels = bufferB.getUnsignedShort(8);
+      signature = DynamicArray.getInt(buffer, offset);
+      numSamples = DynamicArray.getInt(buffer, offset + 4);
+      numChannels = DynamicArray.getUnsignedShort(buffer, offset + 8);
       if (override.numChannels > 0)
         numChannels = override.numChannels;
-      sampleRate = bufferB.getUnsignedShort(10);
+      sampleRate = DynamicArray.getUnsignedShort(buffer, offset + 10);
       if (override.sampleRate > 0)
         sampleRate = override.sampleRate;
-      short val = bufferB.getShort(12);
+      short val = DynamicArray.getShort(buffer, offset + 12);
       levels = val & 0x0f;
       subBlocks = (val >>> 4) & 0x0fff;
-      bufferB.addToBaseOffset(14);
 
       if (signature != ID_ACM)
         throw new Exception("Invalid ACM header signature");
@@ -117,8 +211,8 @@ private void init() throws Exception
 
       samplesLeft = numSamples;
       blockSize = (1 << levels) * subBlocks;
-      blockI = DynamicArray.allocate(blockSize, DynamicArray.ElementType.INTEGER);
-      unpacker = new ValueUnpacker(levels, subBlocks, bufferB);
+      blockI = new int[blockSize];
+      unpacker = new ValueUnpacker(levels, subBlocks, buffer, offset + 14);
       decoder = new SubbandDecoder(levels);
     }
 
@@ -126,15 +220,17 @@ private void makeNewSamples()
     {
       unpacker.getOneBlock(blockI);
       decoder.decode(blockI, subBlocks);
-      valuesI = blockI.clone();
+      valuesOfs = 0;
       samplesReady = (blockSize > samplesLeft) ? samplesLeft : blockSize;
       samplesLeft -= samplesReady;
     }
 
+    /**
+     * Decodes up to {@code sampleCount} samples as 16-bit little endian values into the
+     * specified buffer. Returns the number of samples actually decoded.
+     */
     private int readSamples(byte[] outBuffer, int offset, int sampleCount)
     {
-      DynamicArray bufS = DynamicArray.wrap(outBuffer, offset, DynamicArray.ElementType.SHORT);
-
       int res = 0;
       while (res < sampleCount) {
         if (samplesReady == 0) {
@@ -142,18 +238,16 @@ private int readSamples(byte[] outBuffer, int offset, int sampleCount)
             break;
           makeNewSamples();
         }
-        bufS.putShort(0, (short)(valuesI.getInt(0) >> levels));
-        valuesI.addToBaseOffset(1);
-        bufS.addToBaseOffset(1);
-        res++;
-        samplesReady--;
-      }
-
-      // fill remaining buffer space with silence
-      for (int i = res; i < sampleCount; i++) {
-        bufS.putShort(0, (short)0).addToBaseOffset(1);
+        int count = Math.min(sampleCount - res, samplesReady);
+        for (int i = valuesOfs, end = valuesOfs + count; i < end; i++) {
+          int value = blockI[i] >> levels;
+          outBuffer[offset++] = (byte)value;
+          outBuffer[offset++] = (byte)(value >> 8);
+        }
+        valuesOfs += count;
+        samplesReady -= count;
+        res += count;
       }
-
       return res;
     }
 
@@ -172,6 +266,12 @@ private int getSampleCount()
       return numSamples;
     }
 
+    // Returns the number of samples not yet read
+    private int getSamplesAvailable()
+    {
+      return samplesReady + samplesLeft;
+    }
+
     private int getBitsPerSample()
     {
       if (override.bitsPerSample > 0)
@@ -213,48 +313,46 @@ private int getBitsPerSample()
       0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06  // added for type-safety reasons
     };
 
-    private int levels, subBlocks;
-    private DynamicArray bufferB;
+    private static final int AMP_MIDDLE = 0x8000;   // offset of amplitude value 0 in ampBufS
+
+    private final byte[] bufferB;     // ACM input buffer
+    private int posB;                 // current position in ACM input buffer
+    private final int levels, subBlocks;
     private int nextBits, availBits;
-    private int sbSize;
-    private DynamicArray ampBufS, bufMiddleS;
-    private DynamicArray blockI;
+    private final int sbSize;
+    private final short[] ampBufS;
+    private int[] blockI;
 
-    private ValueUnpacker(int levels, int sbCount, DynamicArray bufB)
+    private ValueUnpacker(int levels, int sbCount, byte[] bufB, int offset)
     {
       if (bufB == null)
         throw new NullPointerException();
 
       this.levels = levels;
       this.subBlocks = sbCount;
-      this.bufferB = bufB.clone();
+      this.bufferB = bufB;
+      this.posB = offset;
       this.nextBits = this.availBits = 0;
       this.sbSize = 1 << this.levels;
-      this.ampBufS = bufMiddleS = this.blockI = null;
-      init();
-    }
-
-    private void init()
-    {
-      ampBufS = DynamicArray.allocate(0x10000, DynamicArray.ElementType.SHORT);
-      bufMiddleS = ampBufS.clone().addToBaseOffset(0x8000);
+      this.ampBufS = new short[0x10000];
+      this.blockI = null;
     }
 
-    private void getOneBlock(DynamicArray blockI)
+    private void getOneBlock(int[] blockI)
     {
-      this.blockI = blockI.clone();
+      this.blockI = blockI;
       int pwr = getBits(4) & 0x0f;
       int val = getBits(16) & 0xffff;
       int count = 1 << pwr;
       int v = 0;
 
       for (int i = 0; i < count; i++) {
-        bufMiddleS.putShort(i, (short)v);
+        ampBufS[AMP_MIDDLE + i] = (short)v;
         v += val;
       }
       v = -val;
       for (int i = 0; i < count; i++) {
-        bufMiddleS.putShort(-i-1, (short)v);
+        ampBufS[AMP_MIDDLE - i - 1] = (short)v;
         v -= val;
       }
 
@@ -265,6 +363,12 @@ private void getOneBlock(DynamicArray blockI)
       }
     }
 
+    // Returns the amplitude value for the specified index (relative to amplitude 0)
+    private int amp(int index)
+    {
+      return ampBufS[AMP_MIDDLE + index];
+    }
+
     // *** These functions are used to fill the buffer with the amplitude values ***
     private int fillerProc(int fn, int pass, int idx)
     {
@@ -310,21 +414,18 @@ private int return0(int pass, int idx)
     // used when the whole column pass is zero-filled
     private int zeroFill(int pass, int idx)
     {
-      DynamicArray sbI = blockI.clone().addToBaseOffset(pass);
-      int step = sbSize;
-      int i = subBlocks;
-      do {
-        sbI.putInt(0, 0).addToBaseOffset(step);
-      } while ((--i) != 0);
+      for (int i = 0; i < subBlocks; i++) {
+        blockI[i*sbSize+pass] = 0;
+      }
       return 1;
     }
 
     private int linearFill(int pass, int idx)
     {
       int mask = (1 << idx) - 1;
-      DynamicArray lbS = bufMiddleS.clone().addToBaseOffset(-1 << (idx-1));
+      int base = -1 << (idx-1);
       for (int i = 0; i < subBlocks; i++) {
-        blockI.putInt(i*sbSize+pass, lbS.getShort((getBits(idx) & mask)));
+        blockI[i*sbSize+pass] = amp(base + (getBits(idx) & mask));
       }
       return 1;
     }
@@ -339,16 +440,16 @@ private int k1Bits3(int pass, int idx)
         if ((nextBits & 1) == 0) {
           availBits--;
           nextBits >>= 1;
-          blockI.putInt(i*sbSize+pass, 0);
+          blockI[i*sbSize+pass] = 0;
           if ((++i) == subBlocks)
             break;
-          blockI.putInt(i*sbSize+pass, 0);
+          blockI[i*sbSize+pass] = 0;
         } else if ((nextBits & 2) == 0) {
           availBits -= 2;
           nextBits >>= 2;
-          blockI.putInt(i*sbSize+pass, 0);
+          blockI[i*sbSize+pass] = 0;
         } else {
-          blockI.putInt(i*sbSize+pass, bufMiddleS.getShort(((nextBits & 4) != 0) ? 1 : -1));
+          blockI[i*sbSize+pass] = amp(((nextBits & 4) != 0) ? 1 : -1);
           availBits -= 3;
           nextBits >>= 3;
         }
@@ -366,9 +467,9 @@ private int k1Bits2(int pass, int idx)
         if ((nextBits & 1) == 0) {
           availBits--;
           nextBits >>= 1;
-          blockI.putInt(i*sbSize+pass, 0);
+          blockI[i*sbSize+pass] = 0;
         } else {
-          blockI.putInt(i*sbSize+pass, bufMiddleS.getShort(((nextBits & 2) != 0) ? 1 : -1));
+          blockI[i*sbSize+pass] = amp(((nextBits & 2) != 0) ? 1 : -1);
           availBits -= 2;
           nextBits >>= 2;
         }
@@ -385,15 +486,15 @@ private int t1Bits5(int pass, int idx)
         byte val = (byte)(getBits(5) & 0x1f);
         val = TABLE1[val];
 
-        blockI.putInt(i*sbSize+pass, bufMiddleS.getShort((val & 3)-1));
+        blockI[i*sbSize+pass] = amp((val & 3)-1);
         if ((++i) == subBlocks)
           break;
         val >>= 2;
-        blockI.putInt(i*sbSize+pass, bufMiddleS.getShort((val & 3)-1));
+        blockI[i*sbSize+pass] = amp((val & 3)-1);
         if ((++i) == subBlocks)
           break;
         val >>= 2;
-        blockI.putInt(i*sbSize+pass, bufMiddleS.getShort(val-1));
+        blockI[i*sbSize+pass] = amp(val-1);
       }
       return 1;
     }
@@ -408,18 +509,17 @@ private int k2Bits4(int pass, int idx)
         if ((nextBits & 1) == 0) {
           availBits--;
           nextBits >>= 1;
-          blockI.putInt(i*sbSize+pass, 0);
+          blockI[i*sbSize+pass] = 0;
           if ((++i) == subBlocks)
             break;
-          blockI.putInt(i*sbSize+pass, 0);
+          blockI[i*sbSize+pass] = 0;
         } else if ((nextBits & 2) == 0) {
           availBits -= 2;
           nextBits >>= 2;
-          blockI.putInt(i*sbSize+pass, 0);
+          blockI[i*sbSize+pass] = 0;
         } else {
-          blockI.putInt(i*sbSize+pass,
-                        ((nextBits & 8) != 0) ? bufMiddleS.getShort(((nextBits & 4) != 0) ? 2 : 1) :
-                                                bufMiddleS.getShort(((nextBits & 4) != 0) ? -1 : -2));
+          blockI[i*sbSize+pass] = ((nextBits & 8) != 0) ? amp(((nextBits & 4) != 0) ? 2 : 1) :
+                                                          amp(((nextBits & 4) != 0) ? -1 : -2);
           availBits -= 4;
           nextBits >>= 4;
         }
@@ -437,11 +537,10 @@ private int k2Bits3(int pass, int idx)
         if ((nextBits & 1) == 0) {
           availBits--;
           nextBits >>= 1;
-          blockI.putInt(i*sbSize+pass, 0);
+          blockI[i*sbSize+pass] = 0;
         } else {
-          blockI.putInt(i*sbSize+pass,
-                        ((nextBits & 4) != 0) ? bufMiddleS.getShort(((nextBits & 2) != 0) ? 2 : 1) :
-                                                bufMiddleS.getShort(((nextBits & 2) != 0) ? -1 : -2));
+          blockI[i*sbSize+pass] = ((nextBits & 4) != 0) ? amp(((nextBits & 2) != 0) ? 2 : 1) :
+                                                          amp(((nextBits & 2) != 0) ? -1 : -2);
           availBits -= 3;
           nextBits >>= 3;
         }
@@ -458,15 +557,15 @@ private int t2Bits7(int pass, int idx)
         short val = (short)(getBits(7) & 0x7f);
         val = TABLE2[val];
 
-        blockI.putInt(i*sbSize+pass, bufMiddleS.getShort((val & 7)-2));
+        blockI[i*sbSize+pass] = amp((val & 7)-2);
         if ((++i) == subBlocks)
           break;
         val >>= 3;
-        blockI.putInt(i*sbSize+pass, bufMiddleS.getShort((val & 7)-2));
+        blockI[i*sbSize+pass] = amp((val & 7)-2);
         if ((++i) == subBlocks)
           break;
         val >>= 3;
-        blockI.putInt(i*sbSize+pass, bufMiddleS.getShort(val-2));
+        blockI[i*sbSize+pass] = amp(val-2);
       }
       return 1;
     }
@@ -481,16 +580,16 @@ private int k3Bits5(int pass, int idx)
         if ((nextBits & 1) == 0) {
           availBits--;
           nextBits >>= 1;
-          blockI.putInt(i*sbSize+pass, 0);
+          blockI[i*sbSize+pass] = 0;
           if ((++i) == subBlocks)
             break;
-          blockI.putInt(i*sbSize+pass, 0);
+          blockI[i*sbSize+pass] = 0;
         } else if ((nextBits & 2) == 0) {
           availBits -= 2;
           nextBits >>= 2;
-          blockI.putInt(i*sbSize+pass, 0);
+          blockI[i*sbSize+pass] = 0;
         } else if ((nextBits & 4) == 0) {
-          blockI.putInt(i*sbSize+pass, bufMiddleS.getShort(((nextBits & 8) != 0) ? 1 : -1));
+          blockI[i*sbSize+pass] = amp(((nextBits & 8) != 0) ? 1 : -1);
           availBits -= 4;
           nextBits >>= 4;
         } else {
@@ -499,7 +598,7 @@ private int k3Bits5(int pass, int idx)
           nextBits >>= 5;
           if (val >= 2)
             val += 3;
-          blockI.putInt(i*sbSize+pass, bufMiddleS.getShort(val-3));
+          blockI[i*sbSize+pass] = amp(val-3);
         }
       }
       return 1;
@@ -514,10 +613,10 @@ private int k3Bits4(int pass, int idx)
         if ((nextBits & 1) == 0) {
           availBits--;
           nextBits >>= 1;
-          blockI.putInt(i*sbSize+pass, 0);
+          blockI[i*sbSize+pass] = 0;
         } else if ((nextBits & 2) == 0) {
           availBits -= 3;
-          blockI.putInt(i*sbSize+pass, bufMiddleS.getShort(((nextBits & 4) != 0) ? 1 : -1));
+          blockI[i*sbSize+pass] = amp(((nextBits & 4) != 0) ? 1 : -1);
           nextBits >>= 3;
         } else {
           int val = (nextBits & 0x0c) >> 2;
@@ -525,7 +624,7 @@ private int k3Bits4(int pass, int idx)
           nextBits >>= 4;
           if (val >= 2)
             val += 3;
-          blockI.putInt(i*sbSize+pass, bufMiddleS.getShort(val-3));
+          blockI[i*sbSize+pass] = amp(val-3);
         }
       }
       return 1;
@@ -541,19 +640,19 @@ private int k4Bits5(int pass, int idx)
         if ((nextBits & 1) == 0) {
           availBits--;
           nextBits >>= 1;
-          blockI.putInt(i*sbSize+pass, 0);
+          blockI[i*sbSize+pass] = 0;
           if ((++i) == subBlocks)
             break;
-          blockI.putInt(i*sbSize+pass, 0);
+          blockI[i*sbSize+pass] = 0;
         } else if ((nextBits & 2) == 0) {
           availBits -= 2;
           nextBits >>= 2;
-          blockI.putInt(i*sbSize+pass, 0);
+          blockI[i*sbSize+pass] = 0;
         } else {
           int val = (nextBits & 0x1c) >> 2;
           if (val >= 4)
             val++;
-          blockI.putInt(i*sbSize+pass, bufMiddleS.getShort(val-4));
+          blockI[i*sbSize+pass] = amp(val-4);
           availBits -= 5;
           nextBits >>= 5;
         }
@@ -570,14 +669,14 @@ private int k4Bits4(int pass, int idx)
         if ((nextBits & 1) == 0) {
           availBits--;
           nextBits >>= 1;
-          blockI.putInt(i*sbSize+pass, 0);
+          blockI[i*sbSize+pass] = 0;
         } else {
           int val = (nextBits & 0x0e) >> 1;
           availBits -= 4;
           nextBits >>= 4;
           if (val >= 4)
             val++;
-          blockI.putInt(i*sbSize+pass, bufMiddleS.getShort(val-4));
+          blockI[i*sbSize+pass] = amp(val-4);
         }
       }
       return 1;
@@ -591,24 +690,25 @@ private int t3Bits7(int pass, int idx)
         short val = (short)(getBits(7) & 0x7f);
         val = TABLE3[val];
 
-        blockI.putInt(i*sbSize+pass, bufMiddleS.getShort((val & 0x0f) - 5));
+        blockI[i*sbSize+pass] = amp((val & 0x0f) - 5);
         if ((++i) == subBlocks)
           break;
         val >>= 4;
-        blockI.putInt(i*sbSize+pass, bufMiddleS.getShort(val-5));
+        blockI[i*sbSize+pass] = amp(val-5);
       }
       return 1;
     }
 
 
+
+
     // request bits
     private void prepareBits(int bits)
     {
       while (bits > availBits) {
         int oneByte;
-        if (bufferB.getBaseOffset() < bufferB.arraySize()) {
-          oneByte = bufferB.getByte(0) & 0xff;
-          bufferB.addToBaseOffset(1);
+        if (posB < bufferB.length) {
+          oneByte = bufferB[posB++] & 0xff;
         } else
           oneByte = 0;
         nextBits |= oneByte << availBits;
@@ -631,7 +731,8 @@ private int getBits(int bits)
   private static class SubbandDecoder
   {
     private final int levels, blockSize;
-    private DynamicArray memBufI;
+    private short[] memBufS;    // state of the first subband level
+    private int[] memBufI;      // state of the remaining subband levels
 
     private SubbandDecoder(int levels)
     {
@@ -640,29 +741,27 @@ private SubbandDecoder(int levels)
       init();
     }
 
-    private void decode(DynamicArray bufferI, int blocks)
+    private void decode(int[] bufI, int blocks)
     {
       if (levels == 0)
         return;
 
-      DynamicArray bufI = bufferI.clone();
-      DynamicArray memI = memBufI.clone();
+      int memOfs = 0;
       int sbSize = blockSize >> 1;    // current subband size
 
       blocks <<= 1;
-      sub_4d3fcc(memI.asShortArray(), bufI, sbSize, blocks);
-      memI.addToBaseOffset(sbSize);
+      sub_4d3fcc(memBufS, bufI, sbSize, blocks);
 
       for (int i = 0; i < blocks; i++) {
-        bufI.putInt(i*sbSize, bufI.getInt(i*sbSize) + 1);
+        bufI[i*sbSize]++;
       }
 
       sbSize >>= 1;
       blocks <<= 1;
 
       while (sbSize != 0) {
-        sub_4d420c(memI, bufI, sbSize, blocks);
-        memI.addToBaseOffset(sbSize << 1);
+        sub_4d420c(memBufI, memOfs, bufI, sbSize, blocks);
+        memOfs += sbSize << 1;
         sbSize >>= 1;
         blocks <<= 1;
       }
@@ -670,152 +769,132 @@ private void decode(DynamicArray bufferI, int blocks)
 
     private void init()
     {
-      int memSize = (levels == 0) ? 0 : (3*(blockSize >> 1) - 2);
-      if (memSize > 0) {
-        memBufI = DynamicArray.allocate(memSize, DynamicArray.ElementType.INTEGER);
+      if (levels > 0) {
+        memBufS = new short[blockSize];
+        memBufI = new int[blockSize - 2];
       }
     }
 
-    private void sub_4d3fcc(DynamicArray memoryS, DynamicArray bufferI, int sbSize, int blocks)
+    private void sub_4d3fcc(short[] memS, int[] bufI, int sbSize, int blocks)
     {
-      DynamicArray memS = memoryS.clone();
-      DynamicArray bufI = bufferI.clone();
       int row0 = 0, row1 = 0, row2 = 0, row3 = 0, db0 = 0, db1 = 0;
       int sbSize2 = sbSize * 2;
       int sbSize3 = sbSize * 3;
       if (blocks == 2) {
-        for (int i = 0; i < sbSize; i++) {
-          row0 = bufI.getInt(0);
-          row1 = bufI.getInt(sbSize);
-          bufI.putInt(0, bufI.getInt(0) + memS.getShort(0) + (memS.getShort(1) << 1));
-          bufI.putInt(sbSize, (row0 << 1) - memS.getShort(1) - bufI.getInt(sbSize));
-          memS.putShort(0, (short)row0);
-          memS.putShort(1, (short)row1);
-
-          memS.addToBaseOffset(2);
-          bufI.addToBaseOffset(1);
+        for (int i = 0, m = 0; i < sbSize; i++, m += 2) {
+          row0 = bufI[i];
+          row1 = bufI[i+sbSize];
+          bufI[i] += memS[m] + (memS[m+1] << 1);
+          bufI[i+sbSize] = (row0 << 1) - memS[m+1] - row1;
+          memS[m] = (short)row0;
+          memS[m+1] = (short)row1;
         }
       } else if (blocks == 4) {
-        for (int i = 0; i < sbSize; i++) {
-          row0 = bufI.getInt(0);
-          row1 = bufI.getInt(sbSize);
-          row2 = bufI.getInt(sbSize2);
-          row3 = bufI.getInt(sbSize3);
-
-          bufI.putInt(0,        memS.getShort(0) + (memS.getShort(1) << 1) + row0);
-          bufI.putInt(sbSize,  -memS.getShort(1) + (row0 << 1) - row1);
-          bufI.putInt(sbSize2,  row0 + (row1 << 1) + row2);
-          bufI.putInt(sbSize3, -row1 + (row2 << 1) - row3);
-
-          memS.putShort(0, (short)row2);
-          memS.putShort(1, (short)row3);
-
-          memS.addToBaseOffset(2);
-          bufI.addToBaseOffset(1);
+        for (int i = 0, m = 0; i < sbSize; i++, m += 2) {
+          row0 = bufI[i];
+          row1 = bufI[i+sbSize];
+          row2 = bufI[i+sbSize2];
+          row3 = bufI[i+sbSize3];
+
+          bufI[i]         =  memS[m] + (memS[m+1] << 1) + row0;
+          bufI[i+sbSize]  = -memS[m+1] + (row0 << 1) - row1;
+          bufI[i+sbSize2] =  row0 + (row1 << 1) + row2;
+          bufI[i+sbSize3] = -row1 + (row2 << 1) - row3;
+
+          memS[m] = (short)row2;
+          memS[m+1] = (short)row3;
         }
       } else {
-        DynamicArray buf2I = bufI.clone();
-        for (int i = 0; i < sbSize; i++) {
-          buf2I.setBaseOffset(bufI.getBaseOffset());
+        for (int i = 0, m = 0; i < sbSize; i++, m += 2) {
+          int p = i;
           if ((blocks & 2) != 0) {
-            row0 = buf2I.getInt(0);
-            row1 = buf2I.getInt(sbSize);
+            row0 = bufI[p];
+            row1 = bufI[p+sbSize];
 
-            buf2I.putInt(0,       memS.getShort(0) + (memS.getShort(1) << 1) + row0);
-            buf2I.putInt(sbSize, -memS.getShort(1) + (row0 << 1) - row1);
-            buf2I.addToBaseOffset(sbSize2);
+            bufI[p]        =  memS[m] + (memS[m+1] << 1) + row0;
+            bufI[p+sbSize] = -memS[m+1] + (row0 << 1) - row1;
+            p += sbSize2;
 
             db0 = row0;
             db1 = row1;
           } else {
-            db0 = memS.getShort(0);
-            db1 = memS.getShort(1);
+            db0 = memS[m];
+            db1 = memS[m+1];
           }
 
           for (int j = 0; j < (blocks >> 2); j++) {
-            row0 = buf2I.getInt(0);
-            buf2I.putInt(0, db0 + (db1 << 1) + row0);
-            buf2I.addToBaseOffset(sbSize);
+            row0 = bufI[p];
+            bufI[p] = db0 + (db1 << 1) + row0;
+            p += sbSize;
 
-            row1 = buf2I.getInt(0);
-            buf2I.putInt(0, -db1 + (row0 << 1) - row1);
-            buf2I.addToBaseOffset(sbSize);
+            row1 = bufI[p];
+            bufI[p] = -db1 + (row0 << 1) - row1;
+            p += sbSize;
 
-            row2 = buf2I.getInt(0);
-            buf2I.putInt(0, row0 + (row1 << 1) + row2);
-            buf2I.addToBaseOffset(sbSize);
+            row2 = bufI[p];
+            bufI[p] = row0 + (row1 << 1) + row2;
+            p += sbSize;
 
-            row3 = buf2I.getInt(0);
-            buf2I.putInt(0, -row1 + (row2 << 1) - row3);
-            buf2I.addToBaseOffset(sbSize);
+            row3 = bufI[p];
+            bufI[p] = -row1 + (row2 << 1) - row3;
+            p += sbSize;
 
             db0 = row2;
             db1 = row3;
           }
-          memS.putShort(0, (short)row2);
-          memS.putShort(1, (short)row3);
-          memS.addToBaseOffset(2);
-          bufI.addToBaseOffset(1);
+          memS[m] = (short)row2;
+          memS[m+1] = (short)row3;
         }
       }
     }
 
-    private void sub_4d420c(DynamicArray memoryI, DynamicArray bufferI, int sbSize, int blocks)
+    private void sub_4d420c(int[] memI, int memOfs, int[] bufI, int sbSize, int blocks)
     {
-      DynamicArray memI = memoryI.clone();
-      DynamicArray bufI = bufferI.clone();
       int row0 = 0, row1 = 0, row2 = 0, row3 = 0, db0 = 0, db1 = 0;
       int sbSize2 = sbSize * 2;
       int sbSize3 = sbSize * 3;
       if (blocks == 4) {
-        for (int i = 0; i < sbSize; i++) {
-          row0 = bufI.getInt(0);
-          row1 = bufI.getInt(sbSize);
-          row2 = bufI.getInt(sbSize2);
-          row3 = bufI.getInt(sbSize3);
-
-          bufI.putInt(0,        memI.getInt(0) + (memI.getInt(1) << 1) + row0);
-          bufI.putInt(sbSize,  -memI.getInt(1) + (row0 << 1) - row1);
-          bufI.putInt(sbSize2,  row0 + (row1 << 1) + row2);
-          bufI.putInt(sbSize3, -row1 + (row2 << 1) - row3);
-
-          memI.putInt(0, row2);
-          memI.putInt(1, row3);
-
-          memI.addToBaseOffset(2);
-          bufI.addToBaseOffset(1);
+        for (int i = 0, m = memOfs; i < sbSize; i++, m += 2) {
+          row0 = bufI[i];
+          row1 = bufI[i+sbSize];
+          row2 = bufI[i+sbSize2];
+          row3 = bufI[i+sbSize3];
+
+          bufI[i]         =  memI[m] + (memI[m+1] << 1) + row0;
+          bufI[i+sbSize]  = -memI[m+1] + (row0 << 1) - row1;
+          bufI[i+sbSize2] =  row0 + (row1 << 1) + row2;
+          bufI[i+sbSize3] = -row1 + (row2 << 1) - row3;
+
+          memI[m] = row2;
+          memI[m+1] = row3;
         }
       } else {
-        DynamicArray buf2I = bufI.clone();
-        for (int i = 0; i < sbSize; i++) {
-          buf2I.setBaseOffset(bufI.getBaseOffset());
-          db0 = memI.getInt(0);
-          db1 = memI.getInt(1);
+        for (int i = 0, m = memOfs; i < sbSize; i++, m += 2) {
+          int p = i;
+          db0 = memI[m];
+          db1 = memI[m+1];
           for (int j = 0; j < (blocks >> 2); j++) {
-            row0 = buf2I.getInt(0);
-            buf2I.putInt(0, db0 + (db1 << 1) + row0);
-            buf2I.addToBaseOffset(sbSize);
+            row0 = bufI[p];
+            bufI[p] = db0 + (db1 << 1) + row0;
+            p += sbSize;
 
-            row1 = buf2I.getInt(0);
-            buf2I.putInt(0, -db1 + (row0 << 1) - row1);
-            buf2I.addToBaseOffset(sbSize);
+            row1 = bufI[p];
+            bufI[p] = -db1 + (row0 << 1) - row1;
+            p += sbSize;
 
-            row2 = buf2I.getInt(0);
-            buf2I.putInt(0, row0 + (row1 << 1) + row2);
-            buf2I.addToBaseOffset(sbSize);
+            row2 = bufI[p];
+            bufI[p] = row0 + (row1 << 1) + row2;
+            p += sbSize;
 
-            row3 = buf2I.getInt(0);
-            buf2I.putInt(0, -row1 + (row2 << 1) - row3);
-            buf2I.addToBaseOffset(sbSize);
+            row3 = bufI[p];
+            bufI[p] = -row1 + (row2 << 1) - row3;
+            p += sbSize;
 
             db0 = row2;
             db1 = row3;
           }
-          memI.putInt(0, row2);
-          memI.putInt(1, row3);
-
-          memI.addToBaseOffset(2);
-          bufI.addToBaseOffset(1);
+          memI[m] = row2;
+          memI[m+1] = row3;
         }
       }
     }
@@ -4,8 +4,13 @@
 
 package org.infinity.resource.sound;
 
+import java.io.ByteArrayInputStream;
 import java.nio.ByteBuffer;
 
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.util.io.StreamUtils;
 
@@ -52,6 +57,33 @@ public byte[] getAudioData()
     return data;
   }
 
+  /**
+   * Returns a stream of uncompressed PCM audio data. Subclasses may decode audio data
+   * on demand while the stream is read.
+   * @return Stream providing uncompressed PCM audio data, or {@code null} if not available.
+   * @throws Exception On error
+   */
+  public AudioInputStream getAudioStream() throws Exception
+  {
+    byte[] buffer = getAudioData();
+    if (buffer == null)
+      return null;
+
+    try {
+      return AudioSystem.getAudioInputStream(new ByteArrayInputStream(buffer));
+    } catch (UnsupportedAudioFileException e) {
+      throw new Exception("Unsupported audio format");
+    }
+  }
+
+  /**
+   * Returns the number of bytes of audio data held in memory by this object.
+   */
+  public int getMemorySize()
+  {
+    return (data != null) ? data.length : 0;
+  }
+
   /**
    * Converts the source audio data into uncompressed PCM WAV data.
    * @param buffer Buffer containing source audio data.
@@ -4,14 +4,11 @@
 
 package org.infinity.resource.sound;
 
-import java.io.ByteArrayInputStream;
-
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.DataLine;
 import javax.sound.sampled.SourceDataLine;
-import javax.sound.sampled.UnsupportedAudioFileException;
 
 public class AudioPlayer
 {
@@ -23,23 +20,21 @@
 
   /**
    * Starts playback of audio data associated with the specified audio buffer.
+   * Audio data is streamed to the audio line in fixed-size chunks.
    * @param audioBuffer AudioBuffer object containing audio data.
    * @throws Exception On error
    */
   public void play(AudioBuffer audioBuffer) throws Exception
   {
-    if (audioBuffer == null || audioBuffer.getAudioData() == null)
+    if (audioBuffer == null)
+      return;
+
+    AudioInputStream ais = audioBuffer.getAudioStream();
+    if (ais == null)
       return;
 
     setPlaying(true);
     setStopped(false);
-    AudioInputStream ais = null;
-    try {
-      ais = AudioSystem.getAudioInputStream(new ByteArrayInputStream(audioBuffer.getAudioData()));
-    } catch (UnsupportedAudioFileException e) {
-      throw new Exception("Unsupported audio format");
-    }
-
     if (dataLine == null || !ais.getFormat().matches(audioFormat)) {
       audioFormat = ais.getFormat();
       DataLine.Info info = new DataLine.Info(SourceDataLine.class, audioFormat);
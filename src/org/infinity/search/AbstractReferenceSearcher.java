@@ -114,6 +114,12 @@ else if (event.getSource() == bCancel) {
   @Override
   public void run()
   {
+    // skipping resources without matching references
+    final ReferenceIndex.Query query = getIndexQuery();
+    if (query != null) {
+      files = ReferenceIndex.getInstance().filter(files, query);
+    }
+
     // executing multithreaded search
     if (runSearch("Searching", files)) {
       hitFrame.close();
@@ -136,6 +142,17 @@ protected Runnable newWorker(ResourceEntry entry)
     };
   }
 
+  /**
+   * Returns the keys to look up in the {@link ReferenceIndex} to restrict the search to resources
+   * which may contain matching references.
+   *
+   * @return Query for the reference index, or {@code null} to search all selected resources
+   */
+  ReferenceIndex.Query getIndexQuery()
+  {
+    return null;
+  }
+
   /**
    * Registers match hit.
    *
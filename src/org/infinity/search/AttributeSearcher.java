@@ -62,7 +62,7 @@ public AttributeSearcher(AbstractStruct struct, StructEntry structEntry, Compone
     this.structEntry = structEntry;
     while (struct.getParent() != null)
       struct = struct.getParent();
-    files = ResourceFactory.getResources(struct.getResourceEntry().getExtension());
+    files = ResourceFactory.getCachedResources(struct.getResourceEntry().getExtension());
     inputFrame = new ChildFrame("Find: " + structEntry.getName(), true);
     inputFrame.setIconImage(Icons.getIcon(Icons.ICON_FIND_16).getImage());
     inputFrame.getRootPane().setDefaultButton(bsearch);
@@ -0,0 +1,706 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2019 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.search;
+
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.infinity.datatype.Flag;
+import org.infinity.datatype.IsNumeric;
+import org.infinity.datatype.IwdRef;
+import org.infinity.datatype.ResourceRef;
+import org.infinity.resource.AbstractStruct;
+import org.infinity.resource.Resource;
+import org.infinity.resource.ResourceFactory;
+import org.infinity.resource.StructEntry;
+import org.infinity.resource.key.ResourceEntry;
+import org.infinity.util.Pair;
+import org.infinity.util.io.FileWatcher;
+import org.infinity.util.io.FileWatcher.FileWatchEvent;
+import org.infinity.util.io.FileWatcher.FileWatchListener;
+
+/**
+ * In-memory columnar store of commonly filtered attributes for the Extended Search.
+ * <p>
+ * For each supported resource type the store keeps numeric fields, flags, effect opcodes and
+ * resource references of all resources in primitive arrays, one column per search option.
+ * Multi-valued options, such as the effect opcodes of an item, are stored in compressed sparse
+ * row layout. {@link #filter(List, SearchOptions)} evaluates the covered options by scanning
+ * these columns and returns the resources which may match. The result is a superset of the
+ * actual matches, so the remaining options have to be checked by
+ * {@link ResourceEntry#matchSearchOptions(SearchOptions)}.
+ * <p>
+ * The columns of a resource type are built once in parallel on first use. Resources which have
+ * been modified are extracted again before the next lookup.
+ */
+public final class AttributeStore implements FileWatchListener
+{
+  /** Covered search options by resource type. */
+  private static final Map<String, Field[]> FIELDS = new HashMap<>();
+
+  static {
+    FIELDS.put("ARE", new Field[] {
+        new Field(SearchOptions.ARE_AreaType, Kind.FLAGS, null),
+        new Field(SearchOptions.ARE_Location, Kind.FLAGS, null),
+        new Field(SearchOptions.ARE_AreaScript, Kind.RESREF, null),
+        new Field(SearchOptions.ARE_Actor_Character, Kind.RESREF, SearchOptions.ARE_Actor),
+        new Field(SearchOptions.ARE_Animation_Animation, Kind.RESREF, SearchOptions.ARE_Animation),
+    });
+
+    List<Field> list = new ArrayList<>();
+    for (final String key : new String[]{SearchOptions.CRE_Flags, SearchOptions.CRE_Feats1,
+                                         SearchOptions.CRE_Feats2, SearchOptions.CRE_Feats3,
+                                         SearchOptions.CRE_Attributes}) {
+      list.add(new Field(key, Kind.FLAGS, null));
+    }
+    for (final String key : new String[]{SearchOptions.CRE_Animation, SearchOptions.CRE_General,
+                                         SearchOptions.CRE_Class, SearchOptions.CRE_Specifics,
+                                         SearchOptions.CRE_Alignment, SearchOptions.CRE_Gender,
+                                         SearchOptions.CRE_Sex, SearchOptions.CRE_Race,
+                                         SearchOptions.CRE_Allegiance, SearchOptions.CRE_Kit,
+                                         SearchOptions.CRE_Level1, SearchOptions.CRE_Level2,
+                                         SearchOptions.CRE_Level3, SearchOptions.CRE_IWD2LevelTotal,
+                                         SearchOptions.CRE_IWD2LevelBarbarian, SearchOptions.CRE_IWD2LevelBard,
+                                         SearchOptions.CRE_IWD2LevelCleric, SearchOptions.CRE_IWD2LevelDruid,
+                                         SearchOptions.CRE_IWD2LevelFighter, SearchOptions.CRE_IWD2LevelMonk,
+                                         SearchOptions.CRE_IWD2LevelPaladin, SearchOptions.CRE_IWD2LevelRanger,
+                                         SearchOptions.CRE_IWD2LevelRogue, SearchOptions.CRE_IWD2LevelSorcerer,
+                                         SearchOptions.CRE_IWD2LevelWizard}) {
+      list.add(new Field(key, Kind.NUMBER, null));
+    }
+    for (final String key : new String[]{SearchOptions.CRE_Effect_Type1, SearchOptions.CRE_Effect_Type2,
+                                         SearchOptions.CRE_Effect_Type3, SearchOptions.CRE_Effect_Type4}) {
+      list.add(new Field(key, Kind.NUMBER, SearchOptions.CRE_Effect));
+    }
+    for (final String key : new String[]{SearchOptions.CRE_Item_Item1, SearchOptions.CRE_Item_Item2,
+                                         SearchOptions.CRE_Item_Item3, SearchOptions.CRE_Item_Item4}) {
+      list.add(new Field(key, Kind.RESREF, SearchOptions.CRE_Item));
+    }
+    FIELDS.put("CRE", list.toArray(new Field[list.size()]));
+
+    list = new ArrayList<>();
+    for (final String key : new String[]{SearchOptions.ITM_Flags, SearchOptions.ITM_Unusable,
+                                         SearchOptions.ITM_KitsUnusable1, SearchOptions.ITM_KitsUnusable2,
+                                         SearchOptions.ITM_KitsUnusable3, SearchOptions.ITM_KitsUnusable4}) {
+      list.add(new Field(key, Kind.FLAGS, null));
+    }
+    for (final String key : new String[]{SearchOptions.ITM_Category, SearchOptions.ITM_Price,
+                                         SearchOptions.ITM_Enchantment, SearchOptions.ITM_MinLevel,
+                                         SearchOptions.ITM_MinSTR, SearchOptions.ITM_MinSTRExtra,
+                                         SearchOptions.ITM_MinCON, SearchOptions.ITM_MinDEX,
+                                         SearchOptions.ITM_MinINT, SearchOptions.ITM_MinWIS,
+                                         SearchOptions.ITM_MinCHA}) {
+      list.add(new Field(key, Kind.NUMBER, null));
+    }
+    for (final String key : new String[]{SearchOptions.ITM_Effect_Type1, SearchOptions.ITM_Effect_Type2,
+                                         SearchOptions.ITM_Effect_Type3}) {
+      list.add(new Field(key, Kind.NUMBER, SearchOptions.ITM_Effect));
+    }
+    FIELDS.put("ITM", list.toArray(new Field[list.size()]));
+
+    list = new ArrayList<>();
+    for (final String key : new String[]{SearchOptions.SPL_SpellType, SearchOptions.SPL_CastingAnimation,
+                                         SearchOptions.SPL_PrimaryType, SearchOptions.SPL_SecondaryType,
+                                         SearchOptions.SPL_Level}) {
+      list.add(new Field(key, Kind.NUMBER, null));
+    }
+    for (final String key : new String[]{SearchOptions.SPL_Flags, SearchOptions.SPL_Exclusion}) {
+      list.add(new Field(key, Kind.FLAGS, null));
+    }
+    for (final String key : new String[]{SearchOptions.SPL_Effect_Type1, SearchOptions.SPL_Effect_Type2,
+                                         SearchOptions.SPL_Effect_Type3}) {
+      list.add(new Field(key, Kind.NUMBER, SearchOptions.SPL_Effect));
+    }
+    FIELDS.put("SPL", list.toArray(new Field[list.size()]));
+
+    list = new ArrayList<>();
+    list.add(new Field(SearchOptions.STO_Type, Kind.NUMBER, null));
+    for (final String key : new String[]{SearchOptions.STO_Flags, SearchOptions.STO_RoomsAvailable}) {
+      list.add(new Field(key, Kind.FLAGS, null));
+    }
+    for (final String key : new String[]{SearchOptions.STO_Depreciation, SearchOptions.STO_SellMarkup,
+                                         SearchOptions.STO_BuyMarkup, SearchOptions.STO_Stealing,
+                                         SearchOptions.STO_Capacity}) {
+      list.add(new Field(key, Kind.NUMBER, null));
+    }
+    for (final String key : new String[]{SearchOptions.STO_Item_Item1, SearchOptions.STO_Item_Item2,
+                                         SearchOptions.STO_Item_Item3, SearchOptions.STO_Item_Item4}) {
+      list.add(new Field(key, Kind.RESREF, SearchOptions.STO_Item));
+    }
+    FIELDS.put("STO", list.toArray(new Field[list.size()]));
+  }
+
+  // Cell states
+  private static final byte ABSENT  = 0;  // field not available: never matches
+  private static final byte VALUE   = 1;  // field of the expected type
+  private static final byte OTHER   = 2;  // field of an unsupported type: never matches
+  private static final byte UNKNOWN = 3;  // field which can't be evaluated by the store: always matches
+
+  private static AttributeStore instance;
+
+  // Maps resource types to the columns of all resources available when the type was first used
+  private final Map<String, Table> tables = new HashMap<>();
+  // Maps resource types to the columns of resources which have been extracted again
+  private final Map<String, Table> updates = new HashMap<>();
+  // Rows of the update tables, mapped by upper-cased resource name
+  private final Map<String, Row> updatedRows = new HashMap<>();
+  // Upper-cased names of resources which need to be extracted again
+  private final Set<String> dirty = new HashSet<>();
+
+  /** Returns the attribute store of the current game. */
+  public static synchronized AttributeStore getInstance()
+  {
+    if (instance == null) {
+      instance = new AttributeStore();
+    }
+    return instance;
+  }
+
+  /** Discards the attribute store of the current game. */
+  public static synchronized void clearCache()
+  {
+    if (instance != null) {
+      FileWatcher.getInstance().removeFileWatchListener(instance);
+      instance = null;
+    }
+  }
+
+  /**
+   * Marks the specified resource as modified. Its attributes will be extracted again before the
+   * next lookup. Does nothing if the store has not been used yet.
+   * @param resourceName Name of the resource (including extension).
+   */
+  public static synchronized void invalidate(String resourceName)
+  {
+    if (instance != null && resourceName != null) {
+      instance.markDirty(resourceName);
+    }
+  }
+
+  /** Returns whether the store covers search options of the specified resource type. */
+  public static boolean isSupported(String type)
+  {
+    return type != null && FIELDS.containsKey(type.toUpperCase(Locale.ENGLISH));
+  }
+
+  private AttributeStore()
+  {
+    FileWatcher.getInstance().addFileWatchListener(this);
+  }
+
+//--------------------- Begin Interface FileWatchListener ---------------------
+
+  @Override
+  public void fileChanged(FileWatchEvent e)
+  {
+    if (e.getKind() == StandardWatchEventKinds.ENTRY_CREATE ||
+        e.getKind() == StandardWatchEventKinds.ENTRY_DELETE ||
+        e.getKind() == StandardWatchEventKinds.ENTRY_MODIFY) {
+      Path name = e.getPath().getFileName();
+      if (name != null) {
+        markDirty(name.toString());
+      }
+    }
+  }
+
+//--------------------- End Interface FileWatchListener ---------------------
+
+  /**
+   * Returns all resources from {@code entries} which may match the specified search options.
+   * Builds or updates the columns of the resource type if needed.
+   * @param entries List of resources of the type defined by the search options.
+   * @param searchOptions The search options.
+   * @return Filtered list of resources. Returns {@code entries} if no covered option is set.
+   */
+  public List<ResourceEntry> filter(List<ResourceEntry> entries, SearchOptions searchOptions)
+  {
+    if (entries == null || searchOptions == null || searchOptions.getResourceType() == null) {
+      return entries;
+    }
+    final String type = searchOptions.getResourceType().toUpperCase(Locale.ENGLISH);
+    final Field[] fields = FIELDS.get(type);
+    if (fields == null) {
+      return entries;
+    }
+
+    // preparing matchers of the selected options
+    final Matcher[] matchers = new Matcher[fields.length];
+    boolean hasMatchers = false;
+    for (int i = 0; i < fields.length; i++) {
+      matchers[i] = fields[i].kind.createMatcher(searchOptions.getOption(fields[i].key));
+      hasMatchers |= (matchers[i] != null);
+    }
+    if (!hasMatchers) {
+      return entries;
+    }
+
+    update(type, fields, entries);
+
+    synchronized (this) {
+      final Table table = tables.get(type);
+      final Table updated = updates.get(type);
+      final boolean[] tableMatches = (table != null) ? table.matches(matchers) : null;
+      final boolean[] updatedMatches = (updated != null) ? updated.matches(matchers) : null;
+      final List<ResourceEntry> retVal = new ArrayList<>();
+      for (final ResourceEntry entry : entries) {
+        if (entry == null) {
+          continue;
+        }
+        final String name = entry.getResourceName().toUpperCase(Locale.ENGLISH);
+        boolean candidate = true;
+        if (!dirty.contains(name)) {
+          Integer row = (updated != null) ? updated.rows.get(name) : null;
+          if (row != null) {
+            candidate = updatedMatches[row];
+          } else if (table != null && (row = table.rows.get(name)) != null) {
+            candidate = tableMatches[row];
+          }
+        }
+        if (candidate) {
+          retVal.add(entry);
+        }
+      }
+      return retVal;
+    }
+  }
+
+  private synchronized void markDirty(String resourceName)
+  {
+    dirty.add(resourceName.toUpperCase(Locale.ENGLISH));
+  }
+
+  // Builds the columns of the specified resource type or extracts modified resources again
+  private void update(String type, Field[] fields, List<ResourceEntry> entries)
+  {
+    final List<ResourceEntry> list = new ArrayList<>();
+    final boolean initial;
+    synchronized (this) {
+      initial = !tables.containsKey(type);
+      if (initial) {
+        for (final ResourceEntry entry : entries) {
+          if (entry != null) {
+            list.add(entry);
+          }
+        }
+        // columns are built from current data
+        dirty.removeIf(name -> name.endsWith('.' + type));
+      } else {
+        for (final String name : dirty) {
+          if (name.endsWith('.' + type)) {
+            final ResourceEntry entry = ResourceFactory.getResourceEntry(name);
+            if (entry != null) {
+              list.add(entry);
+            }
+          }
+        }
+      }
+    }
+    if (list.isEmpty()) {
+      return;
+    }
+
+    final Map<String, Row> rows = new ConcurrentHashMap<>();
+    final boolean cancelled = new Builder(fields, rows).run(list);
+
+    synchronized (this) {
+      if (initial) {
+        tables.put(type, Table.create(fields, rows));
+        if (cancelled) {
+          // remaining resources are always considered as candidates
+          for (final ResourceEntry entry : list) {
+            final String name = entry.getResourceName().toUpperCase(Locale.ENGLISH);
+            if (!rows.containsKey(name)) {
+              dirty.add(name);
+            }
+          }
+        }
+      } else {
+        dirty.removeAll(rows.keySet());
+        updatedRows.putAll(rows);
+        final Map<String, Row> typeRows = new HashMap<>();
+        for (final Map.Entry<String, Row> e : updatedRows.entrySet()) {
+          if (e.getKey().endsWith('.' + type)) {
+            typeRows.put(e.getKey(), e.getValue());
+          }
+        }
+        updates.put(type, Table.create(fields, typeRows));
+      }
+    }
+  }
+
+  // Extracts the covered attributes of the specified resource
+  private static Row extract(ResourceEntry entry, Field[] fields)
+  {
+    final Row row = new Row(fields.length);
+    final Resource resource = ResourceFactory.getResource(entry);
+    if (!(resource instanceof AbstractStruct)) {
+      return row;
+    }
+    final AbstractStruct struct = (AbstractStruct)resource;
+    final Map<Pattern, List<AbstractStruct>> substructs = new HashMap<>();
+    for (int i = 0; i < fields.length; i++) {
+      final Field field = fields[i];
+      final String name = SearchOptions.getResourceName(field.key);
+      if (field.structPattern == null) {
+        row.cells[i] = new Cell[]{ field.kind.createCell(struct.getAttribute(name, false)) };
+      } else {
+        final List<AbstractStruct> list = substructs.computeIfAbsent(field.structPattern, p -> findStructs(struct, p));
+        row.cells[i] = new Cell[list.size()];
+        for (int j = 0; j < list.size(); j++) {
+          row.cells[i][j] = field.kind.createCell(list.get(j).getAttribute(name, false));
+        }
+      }
+    }
+    row.valid = true;
+    return row;
+  }
+
+  // Returns all direct substructures with a name matching the specified pattern
+  private static List<AbstractStruct> findStructs(AbstractStruct struct, Pattern pattern)
+  {
+    final List<AbstractStruct> retVal = new ArrayList<>();
+    for (final StructEntry e : struct.getFields()) {
+      if (e instanceof AbstractStruct && pattern.matcher(e.getName()).matches()) {
+        retVal.add((AbstractStruct)e);
+      }
+    }
+    return retVal;
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Supported types of search options. */
+  private enum Kind
+  {
+    /** Numeric value or range, as evaluated by {@link SearchOptions.Utils#matchNumber}. */
+    NUMBER {
+      @Override
+      Cell createCell(StructEntry e)
+      {
+        if (e == null) {
+          return new Cell(ABSENT);
+        } else if (e instanceof IsNumeric) {
+          final Cell cell = new Cell(VALUE);
+          cell.number = ((IsNumeric)e).getValue();
+          return cell;
+        }
+        return new Cell(OTHER);
+      }
+
+      @Override
+      Matcher createMatcher(Object value)
+      {
+        final int n1, n2;
+        if (value instanceof Integer) {
+          n1 = n2 = (Integer)value;
+        } else if (value instanceof Pair<?> && ((Pair<?>)value).getFirst() instanceof Integer &&
+                   ((Pair<?>)value).getSecond() instanceof Integer) {
+          int v1 = (Integer)((Pair<?>)value).getFirst();
+          int v2 = (Integer)((Pair<?>)value).getSecond();
+          n1 = Math.min(v1, v2);
+          n2 = Math.max(v1, v2);
+        } else {
+          return null;
+        }
+        return (column, cell) -> column.numbers[cell] >= n1 && column.numbers[cell] <= n2;
+      }
+    },
+
+    /** Flag bits, as evaluated by {@link SearchOptions.Utils#matchFlags}. */
+    FLAGS {
+      @Override
+      Cell createCell(StructEntry e)
+      {
+        if (e == null) {
+          return new Cell(ABSENT);
+        } else if (e instanceof Flag) {
+          if (e.getSize() > 4) {
+            return new Cell(UNKNOWN);
+          }
+          final Cell cell = new Cell(VALUE);
+          cell.number = ((Flag)e).getValue();
+          cell.bits = (byte)(e.getSize() << 3);
+          return cell;
+        }
+        return new Cell(OTHER);
+      }
+
+      @Override
+      Matcher createMatcher(Object value)
+      {
+        final int v;
+        final boolean isExact;
+        if (value instanceof Pair<?> && ((Pair<?>)value).getFirst() instanceof Integer &&
+            ((Pair<?>)value).getSecond() instanceof Boolean) {
+          v = (Integer)((Pair<?>)value).getFirst();
+          isExact = (Boolean)((Pair<?>)value).getSecond();
+        } else if (value instanceof Integer) {
+          v = (Integer)value;
+          isExact = false;
+        } else {
+          return null;
+        }
+        return (column, cell) -> {
+          final int bits = column.bits[cell];
+          final int mask = (bits < 32) ? (1 << bits) - 1 : -1;
+          final int flags = column.numbers[cell] & mask;
+          return isExact ? (v & mask) == flags : (v & mask & ~flags) == 0;
+        };
+      }
+    },
+
+    /** Resource reference, as evaluated case-insensitively by {@link SearchOptions.Utils#matchResourceRef}. */
+    RESREF {
+      @Override
+      Cell createCell(StructEntry e)
+      {
+        if (e == null) {
+          return new Cell(ABSENT);
+        } else if (e instanceof ResourceRef) {
+          final Cell cell = new Cell(VALUE);
+          cell.ref = ((ResourceRef)e).getResourceName();
+          return cell;
+        } else if (e instanceof IwdRef) {
+          return new Cell(UNKNOWN);
+        }
+        return new Cell(OTHER);
+      }
+
+      @Override
+      Matcher createMatcher(Object value)
+      {
+        if (!(value instanceof String)) {
+          return null;
+        }
+        final String s1 = (String)value;
+        if (s1.isEmpty() || "NONE".equalsIgnoreCase(s1)) {
+          // special case: matches empty and unresolvable references
+          final Map<String, Boolean> resolved = new HashMap<>();
+          return (column, cell) -> {
+            final String s2 = column.refs[cell];
+            return s2.isEmpty() || "NONE".equalsIgnoreCase(s2) || s1.equalsIgnoreCase(s2) ||
+                   resolved.computeIfAbsent(s2, s -> ResourceFactory.getResourceEntry(s) == null);
+          };
+        }
+        return (column, cell) -> s1.equalsIgnoreCase(column.refs[cell]);
+      }
+    };
+
+    /** Returns the cell representing the specified field. */
+    abstract Cell createCell(StructEntry e);
+
+    /** Returns a matcher for the specified option value, or {@code null} if the value can't be evaluated. */
+    abstract Matcher createMatcher(Object value);
+  }
+
+  /** Evaluates a cell in state {@link #VALUE}. */
+  private interface Matcher
+  {
+    boolean matches(Column column, int cell);
+  }
+
+  /** Definition of a covered search option. */
+  private static final class Field
+  {
+    final String key;
+    final Kind kind;
+    final Pattern structPattern;  // names of substructures, null for top-level fields
+
+    Field(String key, Kind kind, String structKey)
+    {
+      this.key = key;
+      this.kind = kind;
+      if (structKey != null) {
+        final String[] parts = SearchOptions.getResourceName(structKey).split("%d", -1);
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+          if (i > 0) {
+            sb.append("\\d+");
+          }
+          sb.append(Pattern.quote(parts[i]));
+        }
+        this.structPattern = Pattern.compile(sb.toString());
+      } else {
+        this.structPattern = null;
+      }
+    }
+  }
+
+  /** Attribute value of a single field as extracted from a resource. */
+  private static final class Cell
+  {
+    final byte state;
+    int number;
+    byte bits;
+    String ref;
+
+    Cell(byte state)
+    {
+      this.state = state;
+    }
+  }
+
+  /** Attributes of a single resource as extracted from a resource. */
+  private static final class Row
+  {
+    final Cell[][] cells;   // cells by field, top-level fields provide exactly one cell
+    boolean valid;          // whether the resource could be parsed
+
+    Row(int numFields)
+    {
+      this.cells = new Cell[numFields][];
+    }
+  }
+
+  /** Values of a single search option for all rows of a table. */
+  private static final class Column
+  {
+    final int[] offsets;    // cells of row i: [offsets[i], offsets[i+1])
+    final byte[] states;
+    final int[] numbers;    // NUMBER and FLAGS
+    final byte[] bits;      // FLAGS
+    final String[] refs;    // RESREF
+
+    Column(Kind kind, Row[] rows, int fieldIdx)
+    {
+      offsets = new int[rows.length + 1];
+      for (int i = 0; i < rows.length; i++) {
+        final Cell[] cells = rows[i].valid ? rows[i].cells[fieldIdx] : null;
+        offsets[i + 1] = offsets[i] + ((cells != null) ? cells.length : 0);
+      }
+      final int size = offsets[rows.length];
+      states = new byte[size];
+      numbers = (kind != Kind.RESREF) ? new int[size] : null;
+      bits = (kind == Kind.FLAGS) ? new byte[size] : null;
+      refs = (kind == Kind.RESREF) ? new String[size] : null;
+      for (int i = 0; i < rows.length; i++) {
+        for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+          final Cell cell = rows[i].cells[fieldIdx][j - offsets[i]];
+          states[j] = cell.state;
+          if (numbers != null) {
+            numbers[j] = cell.number;
+          }
+          if (bits != null) {
+            bits[j] = cell.bits;
+          }
+          if (refs != null) {
+            refs[j] = cell.ref;
+          }
+        }
+      }
+    }
+
+    /** Returns whether any cell of the specified row matches. */
+    boolean matches(int row, Matcher matcher)
+    {
+      for (int i = offsets[row], end = offsets[row + 1]; i < end; i++) {
+        final byte state = states[i];
+        if (state == UNKNOWN || (state == VALUE && matcher.matches(this, i))) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /** Columns of all covered search options for a set of resources. */
+  private static final class Table
+  {
+    final Map<String, Integer> rows = new HashMap<>();  // row index by upper-cased resource name
+    final boolean[] valid;
+    final Column[] columns;
+
+    static Table create(Field[] fields, Map<String, Row> rowMap)
+    {
+      final Row[] rows = new Row[rowMap.size()];
+      final Table table = new Table(fields.length, rows.length);
+      final Iterator<Map.Entry<String, Row>> iter = rowMap.entrySet().iterator();
+      for (int i = 0; i < rows.length; i++) {
+        final Map.Entry<String, Row> e = iter.next();
+        table.rows.put(e.getKey(), i);
+        rows[i] = e.getValue();
+        table.valid[i] = rows[i].valid;
+      }
+      for (int i = 0; i < fields.length; i++) {
+        table.columns[i] = new Column(fields[i].kind, rows, i);
+      }
+      return table;
+    }
+
+    private Table(int numFields, int numRows)
+    {
+      this.valid = new boolean[numRows];
+      this.columns = new Column[numFields];
+    }
+
+    /**
+     * Returns for every row whether it may match all specified matchers.
+     * Rows of resources which could not be parsed are always considered as candidates.
+     */
+    boolean[] matches(Matcher[] matchers)
+    {
+      final boolean[] retVal = new boolean[valid.length];
+      Arrays.fill(retVal, true);
+      for (int col = 0; col < columns.length; col++) {
+        final Matcher matcher = matchers[col];
+        if (matcher != null) {
+          final Column column = columns[col];
+          for (int row = 0; row < retVal.length; row++) {
+            if (retVal[row] && valid[row]) {
+              retVal[row] = column.matches(row, matcher);
+            }
+          }
+        }
+      }
+      return retVal;
+    }
+  }
+
+  /** Extracts the attributes of a list of resources in parallel. */
+  private static final class Builder extends AbstractSearcher
+  {
+    private final Field[] fields;
+    private final Map<String, Row> rows;
+
+    Builder(Field[] fields, Map<String, Row> rows)
+    {
+      super(CHECK_ONE_TYPE_FORMAT, null);
+      this.fields = fields;
+      this.rows = rows;
+    }
+
+    /** Returns {@code true} if extraction has been cancelled. */
+    boolean run(List<ResourceEntry> entries)
+    {
+      return runSearch("Indexing attributes", entries);
+    }
+
+    @Override
+    protected Runnable newWorker(ResourceEntry entry)
+    {
+      return () -> {
+        Row row;
+        try {
+          row = extract(entry, fields);
+        } catch (Exception e) {
+          row = new Row(fields.length);
+        }
+        rows.put(entry.getResourceName().toUpperCase(Locale.ENGLISH), row);
+        advanceProgress();
+      };
+    }
+  }
+}
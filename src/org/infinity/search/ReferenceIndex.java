@@ -0,0 +1,612 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2019 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.infinity.datatype.ProRef;
+import org.infinity.datatype.ResourceRef;
+import org.infinity.datatype.StringRef;
+import org.infinity.datatype.TextString;
+import org.infinity.resource.AbstractStruct;
+import org.infinity.resource.Profile;
+import org.infinity.resource.Resource;
+import org.infinity.resource.ResourceFactory;
+import org.infinity.resource.StructEntry;
+import org.infinity.resource.bcs.BcsResource;
+import org.infinity.resource.bcs.Compiler;
+import org.infinity.resource.bcs.Decompiler;
+import org.infinity.resource.bcs.ScriptType;
+import org.infinity.resource.dlg.AbstractCode;
+import org.infinity.resource.dlg.Action;
+import org.infinity.resource.key.BIFFResourceEntry;
+import org.infinity.resource.key.ResourceEntry;
+import org.infinity.resource.text.PlainTextResource;
+import org.infinity.util.io.FileEx;
+import org.infinity.util.io.FileWatcher;
+import org.infinity.util.io.FileWatcher.FileWatchEvent;
+import org.infinity.util.io.FileWatcher.FileWatchListener;
+import org.infinity.util.io.StreamUtils;
+
+/**
+ * Persistent index of resource and string references for the current game.
+ * <p>
+ * For each indexed resource the index stores the referenced resource names, words found in
+ * script and text content (as hash values) and string references. Reference searchers use it to
+ * narrow down the list of resources which have to be parsed. The index yields a superset of the
+ * actual matches, so search results are not affected.
+ * <p>
+ * The index is built once on demand and stored in the {@link Profile#getCacheFolder() cache folder}.
+ * It is updated incrementally for resources that have been added, removed or modified.
+ */
+public final class ReferenceIndex implements FileWatchListener
+{
+  private static final String INDEX_FILE    = "references.idx";
+  private static final String INDEX_SIG     = "NIRI";
+  private static final int    INDEX_VERSION = 2;
+
+  /** Resource types covered by the index. Resources of other types are always searched. */
+  private static final Set<String> INDEXED_TYPES = new HashSet<>(Arrays.asList(
+      "2DA", "ARE", "BCS", "BS", "CHR", "CHU", "CRE", "DLG", "EFF", "GAM", "INI", "ITM", "MENU",
+      "PRO", "SPL", "SRC", "STO", "TOH", "VEF", "VVC", "WED", "WMP"));
+
+  /** Indexed resource types containing script code, which is decompiled with the help of IDS files. */
+  private static final Set<String> SCRIPT_TYPES = new HashSet<>(Arrays.asList("BCS", "BS", "DLG"));
+
+  /** Matches words as defined by the word boundary of regular expressions. */
+  private static final Pattern WORD_PATTERN = Pattern.compile("\\w+");
+
+  private static ReferenceIndex instance;
+
+  // Maps upper-cased resource names to the indexed reference data
+  private final Map<String, Record> records = new HashMap<>();
+  // Upper-cased names of resources which need to be (re-)indexed
+  private final Set<String> dirty = new HashSet<>();
+  private final Path indexFile;
+  private long idsStamp;    // combined stamps of all IDS files at the time script code was indexed
+
+  private boolean loaded;
+  private boolean modified;
+
+  /** Returns the reference index of the current game. */
+  public static synchronized ReferenceIndex getInstance()
+  {
+    if (instance == null) {
+      instance = new ReferenceIndex();
+    }
+    return instance;
+  }
+
+  /** Discards the index of the current game from memory. */
+  public static synchronized void clearCache()
+  {
+    if (instance != null) {
+      FileWatcher.getInstance().removeFileWatchListener(instance);
+      instance = null;
+    }
+  }
+
+  /**
+   * Marks the specified resource as modified. It will be re-indexed before the next lookup.
+   * Does nothing if the index has not been used yet.
+   * @param resourceName Name of the resource (including extension).
+   */
+  public static synchronized void invalidate(String resourceName)
+  {
+    if (instance != null && resourceName != null) {
+      instance.markDirty(resourceName);
+    }
+  }
+
+  /**
+   * Marks all resources containing script code as modified, because IDS maps or function signatures
+   * have been reloaded. Does nothing if the index has not been used yet.
+   */
+  public static synchronized void invalidateScripts()
+  {
+    if (instance != null) {
+      instance.markScriptsDirty();
+    }
+  }
+
+  private ReferenceIndex()
+  {
+    Path folder = Profile.getCacheFolder();
+    this.indexFile = (folder != null) ? folder.resolve(INDEX_FILE) : null;
+    FileWatcher.getInstance().addFileWatchListener(this);
+  }
+
+//--------------------- Begin Interface FileWatchListener ---------------------
+
+  @Override
+  public void fileChanged(FileWatchEvent e)
+  {
+    if (e.getKind() == StandardWatchEventKinds.ENTRY_CREATE ||
+        e.getKind() == StandardWatchEventKinds.ENTRY_DELETE ||
+        e.getKind() == StandardWatchEventKinds.ENTRY_MODIFY) {
+      Path name = e.getPath().getFileName();
+      if (name != null) {
+        markDirty(name.toString());
+      }
+    }
+  }
+
+//--------------------- End Interface FileWatchListener ---------------------
+
+  /**
+   * Returns all resources from {@code entries} which may contain references matching the
+   * specified query. Builds or updates the index if needed.
+   * @param entries List of resources to filter.
+   * @param query Keys to look up.
+   * @return Filtered list of resources. Returns {@code entries} if the index is not available.
+   */
+  public List<ResourceEntry> filter(List<ResourceEntry> entries, Query query)
+  {
+    if (entries == null || query == null) {
+      return entries;
+    }
+
+    synchronized (this) {
+      if (!loaded) {
+        load();
+        validate();
+        loaded = true;
+      }
+    }
+    update();
+
+    synchronized (this) {
+      final Map<Integer, Boolean> strrefMatches = new HashMap<>();
+      final List<ResourceEntry> retVal = new ArrayList<>();
+      for (final ResourceEntry entry : entries) {
+        if (entry == null) {
+          continue;
+        }
+        final String ext = entry.getExtension().toUpperCase(Locale.ENGLISH);
+        final String name = entry.getResourceName().toUpperCase(Locale.ENGLISH);
+        final Record record = records.get(name);
+        if (record == null || dirty.contains(name) ||
+            !INDEXED_TYPES.contains(ext) || query.types.contains(ext) ||
+            record.matches(query, strrefMatches)) {
+          retVal.add(entry);
+        }
+      }
+      return retVal;
+    }
+  }
+
+  private synchronized void markDirty(String resourceName)
+  {
+    dirty.add(resourceName.toUpperCase(Locale.ENGLISH));
+  }
+
+  private synchronized void markScriptsDirty()
+  {
+    for (final String name : records.keySet()) {
+      int p = name.lastIndexOf('.');
+      if (p >= 0 && SCRIPT_TYPES.contains(name.substring(p + 1))) {
+        dirty.add(name);
+      }
+    }
+  }
+
+  // Indexes all resources marked as dirty
+  private void update()
+  {
+    final List<ResourceEntry> entries = new ArrayList<>();
+    synchronized (this) {
+      for (final String name : dirty) {
+        if (records.remove(name) != null) {
+          modified = true;
+        }
+        final ResourceEntry entry = ResourceFactory.getResourceEntry(name);
+        if (entry != null && INDEXED_TYPES.contains(entry.getExtension().toUpperCase(Locale.ENGLISH))) {
+          entries.add(entry);
+        }
+      }
+      dirty.clear();
+    }
+
+    if (!entries.isEmpty() && new Builder(this).run(entries)) {
+      // indexing cancelled: process remaining resources next time
+      synchronized (this) {
+        for (final ResourceEntry entry : entries) {
+          final String name = entry.getResourceName().toUpperCase(Locale.ENGLISH);
+          if (!records.containsKey(name)) {
+            dirty.add(name);
+          }
+        }
+      }
+    }
+
+    synchronized (this) {
+      if (modified) {
+        save();
+      }
+    }
+  }
+
+  // Marks all resources as dirty which are new or have been modified since the index was stored
+  private void validate()
+  {
+    final Map<Path, Long> biffStamps = new HashMap<>();
+    final Set<String> available = new HashSet<>();
+    for (final String ext : INDEXED_TYPES) {
+      for (final ResourceEntry entry : ResourceFactory.getResources(ext)) {
+        final String name = entry.getResourceName().toUpperCase(Locale.ENGLISH);
+        available.add(name);
+        final Record record = records.get(name);
+        if (record == null || record.stamp != getStamp(entry, biffStamps)) {
+          dirty.add(name);
+        }
+      }
+    }
+    if (records.keySet().retainAll(available)) {
+      modified = true;
+    }
+
+    // script code is indexed in decompiled form, which depends on the IDS files
+    long stamp = 0L;
+    for (final ResourceEntry entry : ResourceFactory.getResources("IDS")) {
+      stamp = stamp * 31L + hash(entry.getResourceName()) * 17L + getStamp(entry, biffStamps);
+    }
+    if (stamp != idsStamp) {
+      markScriptsDirty();
+      idsStamp = stamp;
+      modified = true;
+    }
+  }
+
+  // Adds the specified resource to the index
+  private void index(ResourceEntry entry)
+  {
+    final Set<Integer> names = new HashSet<>();
+    final Set<Integer> strrefs = new HashSet<>();
+    final Resource resource = ResourceFactory.getResource(entry);
+    if (resource instanceof BcsResource) {
+      final String code = ((BcsResource)resource).getCode();
+      addWords(code, names, strrefs);
+      addDecompiled(code, ScriptType.BCS, names, strrefs);
+    } else if (resource instanceof PlainTextResource) {
+      addWords(((PlainTextResource)resource).getText(), names, strrefs);
+    } else if (resource instanceof AbstractStruct) {
+      addStruct((AbstractStruct)resource, names, strrefs);
+    }
+
+    final Record record = new Record(getStamp(entry, null), toSortedArray(names), toSortedArray(strrefs));
+    synchronized (this) {
+      records.put(entry.getResourceName().toUpperCase(Locale.ENGLISH), record);
+      modified = true;
+    }
+  }
+
+  private void addStruct(AbstractStruct struct, Set<Integer> names, Set<Integer> strrefs)
+  {
+    for (final StructEntry o : struct.getFields()) {
+      if (o instanceof ResourceRef) {
+        names.add(hash(((ResourceRef)o).getResourceName()));
+      }
+      if (o instanceof ProRef) {
+        final ResourceEntry proEntry = ((ProRef)o).getSelectedEntry();
+        if (proEntry != null) {
+          names.add(hash(proEntry.getResourceName()));
+        }
+      }
+      if (o instanceof StringRef) {
+        strrefs.add(((StringRef)o).getValue());
+      }
+      if (o instanceof TextString) {
+        // symbols are looked up by their word parts
+        final String text = ((TextString)o).getText();
+        names.add(hash(text));
+        addWords(text, names, strrefs);
+      }
+      if (o instanceof AbstractCode) {
+        final String code = ((AbstractCode)o).getText();
+        addWords(code, names, strrefs);
+        final ScriptType type = (o instanceof Action) ? ScriptType.ACTION : ScriptType.TRIGGER;
+        try {
+          final Compiler compiler = new Compiler(code, type);
+          final String compiled = compiler.getCode();
+          if (compiler.getErrors().isEmpty()) {
+            addDecompiled(compiled, type, names, strrefs);
+          }
+        } catch (Exception e) {
+        }
+      }
+      if (o instanceof AbstractStruct) {
+        addStruct((AbstractStruct)o, names, strrefs);
+      }
+    }
+  }
+
+  private static void addDecompiled(String code, ScriptType type, Set<Integer> names, Set<Integer> strrefs)
+  {
+    final Decompiler decompiler = new Decompiler(code, type, false);
+    decompiler.setGenerateComments(false);
+    decompiler.setGenerateResourcesUsed(true);
+    try {
+      addWords(decompiler.decompile(), names, strrefs);
+      strrefs.addAll(decompiler.getStringRefsUsed());
+    } catch (Exception e) {
+    }
+  }
+
+  /**
+   * Adds all words of the specified text to {@code names}. Words consisting of digits only
+   * are also added to {@code strrefs}.
+   */
+  private static void addWords(String text, Set<Integer> names, Set<Integer> strrefs)
+  {
+    if (text == null) {
+      return;
+    }
+    final Matcher m = WORD_PATTERN.matcher(text);
+    while (m.find()) {
+      final String word = m.group().toUpperCase(Locale.ENGLISH);
+      names.add(word.hashCode());
+      // symbolic prefixes as used by INI files
+      if (word.startsWith("AP_") || word.startsWith("GA_")) {
+        names.add(word.substring(3).hashCode());
+      }
+      if (Character.isDigit(word.charAt(0))) {
+        try {
+          strrefs.add(Integer.parseInt(word));
+        } catch (NumberFormatException e) {
+        }
+      }
+    }
+  }
+
+  // Returns a value that changes whenever the file containing the resource is modified
+  private static long getStamp(ResourceEntry entry, Map<Path, Long> biffStamps)
+  {
+    Path path;
+    if (entry instanceof BIFFResourceEntry && !entry.hasOverride()) {
+      path = ((BIFFResourceEntry)entry).getBIFFEntry().getPath();
+      if (biffStamps != null && path != null) {
+        return biffStamps.computeIfAbsent(path, ReferenceIndex::getStamp);
+      }
+    } else {
+      path = entry.getActualPath();
+    }
+    return getStamp(path);
+  }
+
+  private static long getStamp(Path path)
+  {
+    if (path != null) {
+      try {
+        final BasicFileAttributes attr = Files.readAttributes(path, BasicFileAttributes.class);
+        return attr.lastModifiedTime().toMillis() * 31L + attr.size();
+      } catch (IOException e) {
+      }
+    }
+    return 0L;
+  }
+
+  private static int hash(String name)
+  {
+    return (name != null) ? name.trim().toUpperCase(Locale.ENGLISH).hashCode() : 0;
+  }
+
+  private static int[] toSortedArray(Set<Integer> set)
+  {
+    final int[] retVal = set.stream().mapToInt(Integer::intValue).toArray();
+    Arrays.sort(retVal);
+    return retVal;
+  }
+
+  private void load()
+  {
+    if (indexFile == null || !FileEx.create(indexFile).isFile()) {
+      return;
+    }
+    try (DataInputStream dis = new DataInputStream(new GZIPInputStream(new BufferedInputStream(
+        StreamUtils.getInputStream(indexFile))))) {
+      if (!INDEX_SIG.equals(dis.readUTF()) || dis.readInt() != INDEX_VERSION) {
+        return;
+      }
+      idsStamp = dis.readLong();
+      final int count = dis.readInt();
+      for (int i = 0; i < count; i++) {
+        final String name = dis.readUTF();
+        final long stamp = dis.readLong();
+        final int[] names = new int[dis.readInt()];
+        for (int j = 0; j < names.length; j++) {
+          names[j] = dis.readInt();
+        }
+        final int[] strrefs = new int[dis.readInt()];
+        for (int j = 0; j < strrefs.length; j++) {
+          strrefs[j] = dis.readInt();
+        }
+        records.put(name, new Record(stamp, names, strrefs));
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+      records.clear();
+    }
+  }
+
+  private void save()
+  {
+    if (indexFile == null) {
+      return;
+    }
+    try {
+      Files.createDirectories(indexFile.getParent());
+      try (DataOutputStream dos = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(
+          StreamUtils.getOutputStream(indexFile, true))))) {
+        dos.writeUTF(INDEX_SIG);
+        dos.writeInt(INDEX_VERSION);
+        dos.writeLong(idsStamp);
+        dos.writeInt(records.size());
+        for (final Map.Entry<String, Record> entry : records.entrySet()) {
+          final Record record = entry.getValue();
+          dos.writeUTF(entry.getKey());
+          dos.writeLong(record.stamp);
+          dos.writeInt(record.names.length);
+          for (final int v : record.names) {
+            dos.writeInt(v);
+          }
+          dos.writeInt(record.strrefs.length);
+          for (final int v : record.strrefs) {
+            dos.writeInt(v);
+          }
+        }
+      }
+      modified = false;
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Defines the keys to look up in the reference index. */
+  public static final class Query
+  {
+    private final Set<Integer> names = new HashSet<>();
+    private final Set<Integer> strrefs = new HashSet<>();
+    private final Set<String> types = new HashSet<>();
+    private IntPredicate strrefFilter;
+
+    /** Adds a full resource name, such as {@code "SW1H01.ITM"}. */
+    public Query addResourceName(String name)
+    {
+      if (name != null && !name.isEmpty()) {
+        names.add(hash(name));
+      }
+      return this;
+    }
+
+    /**
+     * Adds a symbol or resref which is matched as whole word in scripts and text resources.
+     * Symbols containing non-word characters are split into their word parts.
+     */
+    public Query addSymbol(String symbol)
+    {
+      if (symbol != null) {
+        final Matcher m = WORD_PATTERN.matcher(symbol);
+        while (m.find()) {
+          names.add(hash(m.group()));
+        }
+      }
+      return this;
+    }
+
+    /** Adds a string reference. */
+    public Query addStrref(int strref)
+    {
+      strrefs.add(strref);
+      return this;
+    }
+
+    /** Sets a filter that is applied to every string reference of the indexed resources. */
+    public Query setStrrefFilter(IntPredicate filter)
+    {
+      strrefFilter = filter;
+      return this;
+    }
+
+    /** Resources of the specified type are always considered as candidates. */
+    public Query addType(String ext)
+    {
+      if (ext != null) {
+        types.add(ext.toUpperCase(Locale.ENGLISH));
+      }
+      return this;
+    }
+  }
+
+  /** Indexed reference data of a single resource. */
+  private static final class Record
+  {
+    final long stamp;
+    final int[] names;    // sorted hash values of names and words
+    final int[] strrefs;  // sorted string references
+
+    Record(long stamp, int[] names, int[] strrefs)
+    {
+      this.stamp = stamp;
+      this.names = names;
+      this.strrefs = strrefs;
+    }
+
+    boolean matches(Query query, Map<Integer, Boolean> strrefMatches)
+    {
+      for (final Integer name : query.names) {
+        if (Arrays.binarySearch(names, name.intValue()) >= 0) {
+          return true;
+        }
+      }
+      for (final Integer strref : query.strrefs) {
+        if (Arrays.binarySearch(strrefs, strref.intValue()) >= 0) {
+          return true;
+        }
+      }
+      if (query.strrefFilter != null) {
+        for (final int strref : strrefs) {
+          if (strrefMatches.computeIfAbsent(strref, v -> query.strrefFilter.test(v))) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+  }
+
+  /** Indexes a list of resources in parallel. */
+  private static final class Builder extends AbstractSearcher
+  {
+    private final ReferenceIndex index;
+
+    Builder(ReferenceIndex index)
+    {
+      super(CHECK_MULTI_TYPE_FORMAT, null);
+      this.index = index;
+    }
+
+    /** Returns {@code true} if indexing has been cancelled. */
+    boolean run(List<ResourceEntry> entries)
+    {
+      return runSearch("Indexing references", entries);
+    }
+
+    @Override
+    protected Runnable newWorker(ResourceEntry entry)
+    {
+      return () -> {
+        try {
+          index.index(entry);
+        } catch (Exception e) {
+          e.printStackTrace();
+        }
+        advanceProgress();
+      };
+    }
+  }
+}
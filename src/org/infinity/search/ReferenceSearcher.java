@@ -33,6 +33,7 @@
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.resource.other.EffResource;
 import org.infinity.resource.sav.SavResource;
+import org.infinity.resource.spl.Viewer;
 import org.infinity.resource.text.PlainTextResource;
 
 public final class ReferenceSearcher extends AbstractReferenceSearcher
@@ -65,6 +66,19 @@ public ReferenceSearcher(ResourceEntry targetEntry, String[] fileTypes, Componen
     }
   }
 
+  @Override
+  ReferenceIndex.Query getIndexQuery()
+  {
+    final ReferenceIndex.Query query = new ReferenceIndex.Query()
+        .addResourceName(targetEntry.getResourceName())
+        .addSymbol(targetEntry.getResourceRef())
+        .addSymbol(creDeathVar);
+    if (targetEntry.getExtension().equalsIgnoreCase("SPL")) {
+      query.addSymbol(Viewer.getSymbolicName(targetEntry, false));
+    }
+    return query;
+  }
+
   @Override
   protected void search(ResourceEntry entry, Resource resource)
   {
@@ -117,7 +131,7 @@ else if (o instanceof AbstractCode) {
             String symbol = null;
             Pattern regSymbol = null;
             if (targetEntry.getExtension().equalsIgnoreCase("SPL")) {
-              symbol = org.infinity.resource.spl.Viewer.getSymbolicName(targetEntry, false);
+              symbol = Viewer.getSymbolicName(targetEntry, false);
               if (symbol != null && !symbol.isEmpty())
                 regSymbol = Pattern.compile("\\b" + Pattern.quote(symbol) + "\\b");
             }
@@ -178,7 +192,7 @@ private void searchScript(ResourceEntry entry, BcsResource bcsfile)
         // symbolic spell name match
         Pattern regSymbol = null;
         if (targetEntry.getExtension().equalsIgnoreCase("SPL")) {
-          String symbol = org.infinity.resource.spl.Viewer.getSymbolicName(targetEntry, false);
+          String symbol = Viewer.getSymbolicName(targetEntry, false);
           if (symbol != null && !symbol.isEmpty())
             regSymbol = Pattern.compile("\\b" + Pattern.quote(symbol) + "\\b");
         }
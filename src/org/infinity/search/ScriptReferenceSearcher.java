@@ -37,6 +37,14 @@ public ScriptReferenceSearcher(ResourceEntry bcsScript, Component parent)
     super(bcsScript, new String[]{"ARE", "BCS", "CHR", "CRE", "DLG", "INI"}, parent);
   }
 
+  @Override
+  ReferenceIndex.Query getIndexQuery()
+  {
+    return new ReferenceIndex.Query()
+        .addResourceName(targetEntry.getResourceName())
+        .addSymbol(targetEntry.getResourceRef());
+  }
+
   @Override
   protected void search(ResourceEntry entry, Resource resource)
   {
@@ -21,5 +21,17 @@
    * @param nr Index of the matched object
    */
   void hitFound(int nr);
+
+  /**
+   * Returns indices of objects whose text may contain the specified string, ignoring case.
+   * Allows to skip objects which can't match a search for literal text.
+   *
+   * @param text The literal search string
+   * @return Candidate indices in ascending order, or {@code null} if all objects have to be searched
+   */
+  default int[] getCandidates(String text)
+  {
+    return null;
+  }
 }
 
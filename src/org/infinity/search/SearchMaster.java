@@ -13,6 +13,7 @@
 import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.Arrays;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -72,6 +73,17 @@ private static void syncNotify(Object o)
     }
   }
 
+  // Returns the nearest candidate index in search direction, or -1 if not available
+  private static int nextCandidate(int[] candidates, int index, boolean down)
+  {
+    int pos = Arrays.binarySearch(candidates, index);
+    if (pos >= 0) {
+      return index;
+    }
+    pos = down ? -pos - 1 : -pos - 2;
+    return (pos >= 0 && pos < candidates.length) ? candidates[pos] : -1;
+  }
+
   private SearchMaster(SearchClient slave, JFrame container)
   {
     this.slave = slave;
@@ -182,6 +194,8 @@ public void run()
   {
     index = 0;
     String term = tfinput.getText();
+    // literal searches can be limited to candidates provided by the client
+    int[] candidates = cbregex.isSelected() ? null : slave.getCandidates(term);
     if (!cbregex.isSelected()) {
       term = term.replaceAll("(\\W)", "\\\\$1");
     }
@@ -207,6 +221,11 @@ public void run()
     cbcase.setEnabled(false);
     tfinput.setEnabled(false);
     while (true) {
+      if (candidates != null) {
+        index = nextCandidate(candidates, index, rbdown.isSelected());
+        if (index < 0)
+          break;
+      }
       String s = slave.getText(index);
       if (s == null)
         break;
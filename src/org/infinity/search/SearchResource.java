@@ -222,7 +222,7 @@ public void run()
     String type = getCurrentResourceType();
     if (!type.isEmpty()) {
       // initializations
-      List<ResourceEntry> resources = ResourceFactory.getResources(type);
+      List<ResourceEntry> resources = ResourceFactory.getCachedResources(type);
       final Vector<ResourceEntry> found = new Vector<>();
       bSearch.setEnabled(false);
       pbProgress.setMinimum(0);
@@ -239,6 +239,10 @@ public void run()
         if (panel != null) {
           SearchOptions so = panel.getOptions();
 
+          // skipping resources which don't match the options covered by the attribute store
+          resources = AttributeStore.getInstance().filter(resources, so);
+          pbProgress.setMaximum(resources.size());
+
           // using parallel jobs to speed up search
           ThreadPoolExecutor executor = Misc.createThreadPool();
           for (int i = 0; i < resources.size(); i++) {
@@ -249,7 +253,7 @@ public void run()
           // waiting for threads to finish
           executor.shutdown();
           try {
-            executor.awaitTermination(60, TimeUnit.SECONDS);
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
           } catch (InterruptedException e) {
             e.printStackTrace();
           }
@@ -81,6 +81,16 @@ public SongReferenceSearcher(ResourceEntry musPlaylist, Component parent)
     this.songId = songId;
   }
 
+  @Override
+  ReferenceIndex.Query getIndexQuery()
+  {
+    // music commands in scripts and dialogs; area songs are always checked
+    return new ReferenceIndex.Query()
+        .addSymbol("StartMusic")
+        .addSymbol("SetMusic")
+        .addType("ARE");
+  }
+
   @Override
   protected void search(ResourceEntry entry, Resource resource)
   {
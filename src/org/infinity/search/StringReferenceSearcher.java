@@ -58,6 +58,12 @@ public StringReferenceSearcher(int stringRef, Component parent)
     this.searchvalue = stringRef;
   }
 
+  @Override
+  ReferenceIndex.Query getIndexQuery()
+  {
+    return new ReferenceIndex.Query().addStrref(searchvalue);
+  }
+
   @Override
   protected void search(ResourceEntry entry, Resource resource)
   {
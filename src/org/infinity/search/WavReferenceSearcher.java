@@ -24,6 +24,22 @@ public WavReferenceSearcher(ResourceEntry targetEntry, Component parent)
     super(targetEntry, AbstractReferenceSearcher.FILE_TYPES, parent);
   }
 
+  @Override
+  ReferenceIndex.Query getIndexQuery()
+  {
+    final String name = targetEntry.getResourceName();
+    return new ReferenceIndex.Query()
+        .addResourceName(name)
+        .addSymbol(targetEntry.getResourceRef())
+        .setStrrefFilter(strref -> {
+          try {
+            return name.equalsIgnoreCase(StringTable.getSoundResource(strref) + ".WAV");
+          } catch (Exception e) {
+            return true;
+          }
+        });
+  }
+
   @Override
   protected void search(ResourceEntry entry, Resource resource)
   {
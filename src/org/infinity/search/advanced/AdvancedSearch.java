@@ -500,7 +500,7 @@ public void run()
     if (filterOp != null) {
       // initializations
       String resType = cbResourceTypes.getSelectedItem().toString();
-      List<ResourceEntry> resources = ResourceFactory.getResources(resType);
+      List<ResourceEntry> resources = ResourceFactory.getCachedResources(resType);
       final Vector<ReferenceHitFrame.ReferenceHit> found = new Vector<>();
       bSearch.setEnabled(false);
       pbProgress.setMinimum(0);
@@ -514,12 +514,13 @@ public void run()
       try {
         Debugging.timerReset();
         List<SearchOptions> searchOptions = getSearchOptions();
+        QueryPlanner planner = QueryPlanner.create(resType, filterOp, searchOptions);
 
         // using parallel jobs to speed up search
         ThreadPoolExecutor executor = Misc.createThreadPool();
         for (final ResourceEntry entry : resources) {
           Misc.isQueueReady(executor, true, -1);
-          executor.execute(new AdvancedSearchWorker(found, filterOp, searchOptions, entry, pbProgress));
+          executor.execute(new AdvancedSearchWorker(found, filterOp, searchOptions, planner, entry, pbProgress));
         }
 
         // waiting for threads to finish
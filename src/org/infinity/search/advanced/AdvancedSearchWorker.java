@@ -36,6 +36,7 @@ public class AdvancedSearchWorker implements Runnable
   private final List<SearchOptions> searchOptions;
   private final ResourceEntry entry;
   private final JProgressBar progress;
+  private final QueryPlanner planner;
 
   /**
    * @param matched List containing search results.
@@ -44,10 +45,24 @@ public class AdvancedSearchWorker implements Runnable
    */
   public AdvancedSearchWorker(List<ReferenceHitFrame.ReferenceHit> matched, AdvancedSearch.FilterMode filterOp,
                               List<SearchOptions> searchOptions, ResourceEntry entry, JProgressBar progress)
+  {
+    this(matched, filterOp, searchOptions, null, entry, progress);
+  }
+
+  /**
+   * @param matched List containing search results.
+   * @param searchOptions List of search options.
+   * @param planner Optional query planner for rejecting resources without parsing them.
+   * @param entry Resource entry to match.
+   */
+  public AdvancedSearchWorker(List<ReferenceHitFrame.ReferenceHit> matched, AdvancedSearch.FilterMode filterOp,
+                              List<SearchOptions> searchOptions, QueryPlanner planner, ResourceEntry entry,
+                              JProgressBar progress)
   {
     this.matched = matched;
     this.filterOp = (filterOp != null) ? filterOp : AdvancedSearch.FilterMode.MatchAll;
     this.searchOptions = searchOptions;
+    this.planner = planner;
     this.entry = entry;
     this.progress = progress;
   }
@@ -58,7 +73,8 @@ public void run()
     if (matched == null || searchOptions == null || entry == null)
       return;
 
-    Resource res = ResourceFactory.getResource(entry);
+    // resources rejected by the planner are not parsed
+    Resource res = (planner == null || planner.isCandidate(entry)) ? ResourceFactory.getResource(entry) : null;
     if (res instanceof AbstractStruct) {
       AbstractStruct structRoot = (AbstractStruct)res;
       // storage for evaluated matches
@@ -389,7 +405,7 @@ private boolean isMatchResource(StructEntry se, String resref, String ext)
   }
 
   // Match value as bitfield
-  private boolean isMatchBitfield(StructEntry se, int value, SearchOptions.BitFieldMode mode)
+  static boolean isMatchBitfield(StructEntry se, int value, SearchOptions.BitFieldMode mode)
   {
     if (se instanceof Flag) {
       Flag flag = (Flag)se;
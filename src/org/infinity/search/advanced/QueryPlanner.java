@@ -0,0 +1,409 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2020 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.search.advanced;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.infinity.datatype.Bitmap;
+import org.infinity.datatype.Datatype;
+import org.infinity.datatype.DecNumber;
+import org.infinity.datatype.Flag;
+import org.infinity.datatype.HashBitmap;
+import org.infinity.datatype.IsNumeric;
+import org.infinity.datatype.SectionOffset;
+import org.infinity.datatype.StringRef;
+import org.infinity.resource.AbstractStruct;
+import org.infinity.resource.Profile;
+import org.infinity.resource.Resource;
+import org.infinity.resource.ResourceFactory;
+import org.infinity.resource.StructEntry;
+import org.infinity.resource.key.ResourceEntry;
+
+/**
+ * Compiles "Advanced Search" filters into direct reads of resource header fields.
+ * <p>
+ * Numeric and bitfield filters on root level fields are evaluated on the raw resource data, which
+ * allows {@link AdvancedSearchWorker} to reject non-matching resources without building the
+ * structure tree. Field types and offsets are taken from a parsed template resource of the same
+ * signature and version. Header layouts of the supported resource types only depend on signature,
+ * version and game. Resources whose section offsets point into the header are always parsed.
+ * <p>
+ * Filters which can't be evaluated this way, such as text filters or filters on substructures, are
+ * considered as potential matches. Rejected resources are guaranteed to fail the full match.
+ */
+public final class QueryPlanner
+{
+  /** Resource types with fixed header layouts per signature and version. */
+  private static final Set<String> SUPPORTED_TYPES = new HashSet<>(Arrays.asList("CRE", "ITM", "SPL", "STO"));
+
+  /**
+   * Resource types without root level fields outside of the header except for substructures,
+   * unused bytes and a fixed set of fields, which is part of every resource. Name filters are
+   * only evaluated for these types. PSTEE creatures are excluded, since the number and names of
+   * their item slot fields vary per resource.
+   */
+  private static final Set<String> NAME_TYPES = new HashSet<>(Arrays.asList("CRE", "ITM", "SPL"));
+
+  /** Field types which can be read from raw data without side effects. */
+  private static final Set<Class<?>> READABLE_TYPES = new HashSet<>(Arrays.asList(
+      Bitmap.class, DecNumber.class, Flag.class, HashBitmap.class, StringRef.class));
+
+  // Filter evaluation results
+  private static final int FALSE    = 0;
+  private static final int TRUE     = 1;
+  private static final int UNKNOWN  = 2;
+
+  private final String resourceType;
+  private final AdvancedSearch.FilterMode filterOp;
+  private final List<SearchOptions> filters;
+  private final Pattern[] namePatterns;   // field name patterns of filters by name, null otherwise
+  private final boolean[] pushable;       // filters which can be evaluated from raw data
+  // Header layouts by signature and version
+  private final ConcurrentHashMap<String, Layout> layouts = new ConcurrentHashMap<>();
+
+  /**
+   * Returns a query planner for the specified filters, or {@code null} if none of the filters can be
+   * evaluated from raw resource data.
+   * @param resourceType The resource type to search.
+   * @param filterOp How to combine the filter results.
+   * @param filters List of filters.
+   */
+  public static QueryPlanner create(String resourceType, AdvancedSearch.FilterMode filterOp,
+                                    List<SearchOptions> filters)
+  {
+    if (resourceType == null || filterOp == null || filters == null || filters.isEmpty()) {
+      return null;
+    }
+    final String type = resourceType.toUpperCase(Locale.ENGLISH);
+    if (!SUPPORTED_TYPES.contains(type)) {
+      return null;
+    }
+    for (final SearchOptions so : filters) {
+      if (so.isStructureGroup()) {
+        // grouped matches contribute to the match count independently of the filter result
+        return null;
+      }
+    }
+    final QueryPlanner planner = new QueryPlanner(type, filterOp, filters);
+    for (final boolean b : planner.pushable) {
+      if (b) {
+        return planner;
+      }
+    }
+    return null;
+  }
+
+  private QueryPlanner(String resourceType, AdvancedSearch.FilterMode filterOp, List<SearchOptions> filters)
+  {
+    this.resourceType = resourceType;
+    this.filterOp = filterOp;
+    this.filters = new ArrayList<>(filters);
+    this.namePatterns = new Pattern[filters.size()];
+    this.pushable = new boolean[filters.size()];
+    for (int i = 0; i < filters.size(); i++) {
+      final SearchOptions so = filters.get(i);
+      boolean valueSupported = (so.getValueType() == SearchOptions.ValueType.Number ||
+                                so.getValueType() == SearchOptions.ValueType.Bitfield);
+      switch (so.getSearchType()) {
+        case ByName:
+          if (valueSupported && so.getStructure().isEmpty() && !so.isStructureRecursive() &&
+              isNameFilterSupported(resourceType)) {
+            final int flags = so.isSearchNameCaseSensitive() ? 0 : Pattern.CASE_INSENSITIVE;
+            try {
+              namePatterns[i] = Pattern.compile(so.isSearchNameRegex() ? so.getSearchName() :
+                                                Pattern.quote(so.getSearchName()), flags);
+              pushable[i] = true;
+            } catch (Exception e) {
+            }
+          }
+          break;
+        case ByRelativeOffset:
+          pushable[i] = valueSupported && so.getStructure().isEmpty();
+          break;
+        case ByAbsoluteOffset:
+          pushable[i] = valueSupported;
+          break;
+      }
+    }
+  }
+
+  /** Returns the resource type this planner has been created for. */
+  public String getResourceType()
+  {
+    return resourceType;
+  }
+
+  /**
+   * Returns whether the specified resource may match the filters. Returns {@code false} only if the
+   * full match is guaranteed to fail.
+   */
+  public boolean isCandidate(ResourceEntry entry)
+  {
+    try {
+      final ByteBuffer buffer = entry.getResourceView();
+      if (buffer.limit() < 8) {
+        return true;
+      }
+      final byte[] sig = new byte[8];
+      buffer.position(0);
+      buffer.get(sig);
+      final String key = new String(sig, StandardCharsets.ISO_8859_1);
+      Layout layout = layouts.get(key);
+      if (layout == null) {
+        layout = Layout.create(entry);
+        if (layout == null) {
+          return true;
+        }
+        layouts.putIfAbsent(key, layout);
+      }
+      if (!layout.isApplicable(buffer)) {
+        return true;
+      }
+
+      int matched = 0, unknown = 0;
+      for (int i = 0; i < filters.size(); i++) {
+        final int result = pushable[i] ? evaluate(layout, buffer, filters.get(i), namePatterns[i]) : UNKNOWN;
+        if (result == TRUE) {
+          matched++;
+        } else if (result == UNKNOWN) {
+          unknown++;
+        }
+      }
+
+      switch (filterOp) {
+        case MatchAll:
+          return matched + unknown >= filters.size();
+        case MatchAny:
+          return matched + unknown > 0;
+        case MatchOne:
+          return matched <= 1 && matched + unknown >= 1;
+      }
+    } catch (Exception e) {
+    }
+    return true;
+  }
+
+  // Returns whether filters by name can be evaluated for the specified resource type
+  private static boolean isNameFilterSupported(String resourceType)
+  {
+    if ("CRE".equals(resourceType) && Profile.getGame() == Profile.Game.PSTEE) {
+      return false;
+    }
+    return NAME_TYPES.contains(resourceType);
+  }
+
+  // Evaluates a single filter as done by AdvancedSearchWorker.findMatches() for the root structure
+  private int evaluate(Layout layout, ByteBuffer buffer, SearchOptions so, Pattern namePattern)
+  {
+    if (so.getSearchType() == SearchOptions.FieldMode.ByName) {
+      boolean headerMatched = false;
+      for (final StructEntry se : layout.fields) {
+        if (namePattern.matcher(se.getName()).find()) {
+          if (!layout.isHeaderField(se)) {
+            if (so.isInvertMatch() || isTypeMatch(se, so)) {
+              return UNKNOWN;
+            }
+            // substructures and unused bytes never match
+            continue;
+          }
+          headerMatched = true;
+          final int result = isMatch(layout, se, buffer, so);
+          if (result != FALSE) {
+            return result;
+          }
+        }
+      }
+      // inverted filters match on substructures and fields which are not part of the template;
+      // names without a header field may still match root level fields of other resources
+      return (so.isInvertMatch() || !headerMatched) ? UNKNOWN : FALSE;
+    } else {
+      final StructEntry se = layout.getHeaderField(so.getSearchOffset());
+      return (se != null) ? isMatch(layout, se, buffer, so) : UNKNOWN;
+    }
+  }
+
+  // Matches the field value in the raw data as done by AdvancedSearchWorker.isMatch()
+  private int isMatch(Layout layout, StructEntry se, ByteBuffer buffer, SearchOptions so)
+  {
+    boolean retVal = false;
+    if (so.getValueType() == SearchOptions.ValueType.Number) {
+      if (se instanceof IsNumeric) {
+        final IsNumeric number = (IsNumeric)layout.read(se, buffer);
+        if (number == null) {
+          return UNKNOWN;
+        }
+        retVal = number.getValue() >= so.getValueNumberMin() && number.getValue() <= so.getValueNumberMax();
+      }
+    } else if (so.getValueType() == SearchOptions.ValueType.Bitfield) {
+      if (se instanceof Flag) {
+        final Flag flag = (Flag)layout.read(se, buffer);
+        if (flag == null) {
+          return UNKNOWN;
+        }
+        retVal = AdvancedSearchWorker.isMatchBitfield(flag, so.getValueBitfield(), so.getBitfieldMode());
+      }
+    } else {
+      return UNKNOWN;
+    }
+    if (so.isInvertMatch()) {
+      retVal = !retVal;
+    }
+    return retVal ? TRUE : FALSE;
+  }
+
+  // Returns whether the field type is supported by the value type of the filter
+  private static boolean isTypeMatch(StructEntry se, SearchOptions so)
+  {
+    switch (so.getValueType()) {
+      case Number:
+        return se instanceof IsNumeric;
+      case Bitfield:
+        return se instanceof Flag;
+      default:
+        return true;
+    }
+  }
+
+  // Returns whether the value of the template field can be read from raw data
+  private static boolean isReadable(StructEntry se)
+  {
+    try {
+      final Class<?> declaringClass = se.getClass().getMethod("read", ByteBuffer.class, int.class).getDeclaringClass();
+      return READABLE_TYPES.contains(declaringClass);
+    } catch (Exception e) {
+    }
+    return false;
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Root level fields of a template resource. */
+  private static final class Layout
+  {
+    final List<StructEntry> fields;           // all root level fields
+    final List<StructEntry> headerFields;     // fields located before the first section, sorted by offset
+    final Set<StructEntry> headerFieldSet;
+    final Set<StructEntry> readableFieldSet;  // header fields and section offsets supported by read()
+    final List<SectionOffset> sectionOffsets;
+    final int headerSize;
+
+    /** Parses the specified resource as template. Returns {@code null} if the layout can't be determined. */
+    static Layout create(ResourceEntry entry)
+    {
+      final Resource res = ResourceFactory.getResource(entry);
+      if (!(res instanceof AbstractStruct)) {
+        return null;
+      }
+      final List<StructEntry> fields = new ArrayList<>(((AbstractStruct)res).getFields());
+
+      // header ends with the first section
+      final List<SectionOffset> sectionOffsets = new ArrayList<>();
+      int sectionFieldsEnd = 0;
+      for (final StructEntry se : fields) {
+        if (se instanceof SectionOffset) {
+          sectionOffsets.add((SectionOffset)se);
+          sectionFieldsEnd = Math.max(sectionFieldsEnd, se.getOffset() + se.getSize());
+        }
+      }
+      int headerSize = Integer.MAX_VALUE;
+      for (final SectionOffset so : sectionOffsets) {
+        if (so.getValue() >= sectionFieldsEnd) {
+          headerSize = Math.min(headerSize, so.getValue());
+        }
+      }
+      if (headerSize == Integer.MAX_VALUE) {
+        return null;
+      }
+
+      final List<StructEntry> headerFields = new ArrayList<>();
+      for (final StructEntry se : fields) {
+        if (se instanceof Datatype && se.getOffset() + se.getSize() <= headerSize &&
+            !AbstractStruct.COMMON_UNUSED_BYTES.equals(se.getName())) {
+          headerFields.add(se);
+        }
+      }
+      headerFields.sort(null);
+      return new Layout(fields, headerFields, sectionOffsets, headerSize);
+    }
+
+    private Layout(List<StructEntry> fields, List<StructEntry> headerFields,
+                   List<SectionOffset> sectionOffsets, int headerSize)
+    {
+      this.fields = fields;
+      this.headerFields = headerFields;
+      this.headerFieldSet = Collections.newSetFromMap(new IdentityHashMap<>());
+      this.headerFieldSet.addAll(headerFields);
+      this.readableFieldSet = Collections.newSetFromMap(new IdentityHashMap<>());
+      for (final StructEntry se : headerFields) {
+        if (isReadable(se)) {
+          this.readableFieldSet.add(se);
+        }
+      }
+      for (final SectionOffset so : sectionOffsets) {
+        if (isReadable(so)) {
+          this.readableFieldSet.add(so);
+        }
+      }
+      this.sectionOffsets = sectionOffsets;
+      this.headerSize = headerSize;
+    }
+
+    /** Returns a copy of the template field with the value of the raw data, or null if not supported. */
+    StructEntry read(StructEntry se, ByteBuffer buffer)
+    {
+      if (readableFieldSet.contains(se) && se.getOffset() + se.getSize() <= buffer.limit()) {
+        try {
+          final Datatype dt = ((Datatype)se).clone();
+          dt.read(buffer, se.getOffset());
+          return dt;
+        } catch (Exception e) {
+        }
+      }
+      return null;
+    }
+
+    /** Returns whether no section of the resource overlaps the header fields. */
+    boolean isApplicable(ByteBuffer buffer)
+    {
+      if (buffer.limit() < headerSize) {
+        return false;
+      }
+      for (final SectionOffset so : sectionOffsets) {
+        final DecNumber value = (DecNumber)read(so, buffer);
+        if (value == null || value.getValue() < headerSize) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    boolean isHeaderField(StructEntry se)
+    {
+      return headerFieldSet.contains(se);
+    }
+
+    /** Returns the header field containing the specified offset, or {@code null} if not available. */
+    StructEntry getHeaderField(int offset)
+    {
+      for (final StructEntry se : headerFields) {
+        if (offset >= se.getOffset() && offset < se.getOffset() + se.getSize()) {
+          return se;
+        }
+      }
+      return null;
+    }
+  }
+}
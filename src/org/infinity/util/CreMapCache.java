@@ -145,7 +145,7 @@ private static void initialize()
         @Override
         public void run()
         {
-          StatusBar statusBar = NearInfinity.getInstance().getStatusBar();
+          StatusBar statusBar = (NearInfinity.getInstance() != null) ? NearInfinity.getInstance().getStatusBar() : null;
           String message = "Gathering creature and area names ...";
           String oldMessage = null;
           if (statusBar != null) {
@@ -15,6 +15,7 @@
 
 import javax.swing.JOptionPane;
 
+import org.infinity.NearInfinity;
 import org.infinity.resource.bcs.ScriptInfo;
 import org.infinity.resource.bcs.Signatures;
 import org.infinity.resource.key.ResourceEntry;
@@ -127,8 +128,7 @@ private void parse2DA() throws Exception
       try {
         extract2DA(token);
       } catch (NumberFormatException e) {
-        JOptionPane.showMessageDialog(null, "Error interpreting " + entry + ": " + token,
-                                      "Error", JOptionPane.ERROR_MESSAGE);
+        showError("Error interpreting " + entry + ": " + token);
       }
     }
   }
@@ -142,8 +142,7 @@ private void parseIDS() throws Exception
       try {
         extractIDS(token);
       } catch (NumberFormatException e) {
-        JOptionPane.showMessageDialog(null, "Error interpreting " + entry + ": " + token,
-                                      "Error", JOptionPane.ERROR_MESSAGE);
+        showError("Error interpreting " + entry + ": " + token);
       }
     }
 
@@ -159,8 +158,7 @@ private void parseIDS() throws Exception
         try {
           extractIDS(token);
         } catch (NumberFormatException e) {
-          JOptionPane.showMessageDialog(null, "Error interpreting " + entry + ": " + token,
-                                        "Error", JOptionPane.ERROR_MESSAGE);
+          showError("Error interpreting " + entry + ": " + token);
         }
       }
     }
@@ -219,6 +217,16 @@ private void extractIDS(String line)
     }
   }
 
+  // Reports a parse error in a message dialog, or on the console if the GUI is not running (e.g. batch mode)
+  private static void showError(String msg)
+  {
+    if (NearInfinity.getInstance() == null) {
+      System.err.println(msg);
+    } else {
+      JOptionPane.showMessageDialog(null, msg, "Error", JOptionPane.ERROR_MESSAGE);
+    }
+  }
+
   private long normalizedKey(long key)
   {
     return key & 0xffffffffL;
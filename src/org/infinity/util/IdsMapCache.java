@@ -10,9 +10,12 @@
 import java.util.Locale;
 import java.util.Map;
 
+import org.infinity.check.StrrefUsage;
 import org.infinity.resource.ResourceFactory;
+import org.infinity.resource.bcs.DecompilerCache;
 import org.infinity.resource.bcs.ScriptInfo;
 import org.infinity.resource.key.ResourceEntry;
+import org.infinity.search.ReferenceIndex;
 
 public class IdsMapCache
 {
@@ -23,12 +26,19 @@ public static void remove(ResourceEntry entry)
   {
     if (entry != null) {
       CACHE.remove(entry.getResourceName().toUpperCase(Locale.ENGLISH));
+      DecompilerCache.invalidate();
+      ReferenceIndex.invalidateScripts();
+    StrrefUsage.invalidateScripts();
+      StrrefUsage.invalidateScripts();
     }
   }
 
   public static void clearCache()
   {
     CACHE.clear();
+    DecompilerCache.invalidate();
+    ReferenceIndex.invalidateScripts();
+    StrrefUsage.invalidateScripts();
   }
 
   public static synchronized IdsMap get(String name)
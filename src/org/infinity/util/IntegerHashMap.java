@@ -4,33 +4,248 @@
 
 package org.infinity.util;
 
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
 
-public final class IntegerHashMap<V> extends HashMap<Integer, V>
+/**
+ * Hash map with primitive {@code int} keys.
+ * <p>
+ * Keys are stored unboxed in an open-addressing table with linear probing, so that lookups
+ * by primitive key neither allocate nor follow references. Iteration visits entries in
+ * ascending key order. {@code null} keys are not supported.
+ */
+public final class IntegerHashMap<V> extends AbstractMap<Integer, V>
 {
+  private static final int DEFAULT_CAPACITY = 16;
+  private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+  private final float loadFactor;
+  private int[] keys;           // table slots, key 0 marks a free slot
+  private Object[] values;
+  private int mask;
+  private int shift;            // shift applied to hashed keys to get the table slot
+  private int maxFill;          // number of used slots which triggers a resize of the table
+  private int used;             // number of used table slots
+  private boolean hasZeroKey;   // key 0 is stored outside of the table
+  private V zeroValue;
+  private int modCount;
+  private volatile int[] sortedKeys;     // cached keys in ascending order, null if outdated
+  private Set<Map.Entry<Integer, V>> entrySet;
+
   public IntegerHashMap()
   {
-    super();
+    this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
   }
 
   public IntegerHashMap(int initialCapacity)
   {
-    super(initialCapacity);
+    this(initialCapacity, DEFAULT_LOAD_FACTOR);
   }
 
   public IntegerHashMap(int initialCapacity, float loadFactor)
   {
-    super(initialCapacity, loadFactor);
+    if (initialCapacity < 0)
+      throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+    if (loadFactor <= 0.0f || Float.isNaN(loadFactor))
+      throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+
+    this.loadFactor = loadFactor;
+    allocate(tableSize(initialCapacity, loadFactor));
   }
 
   public IntegerHashMap(Map<Integer, ? extends V> m)
   {
-    super(m);
+    this(m.size(), DEFAULT_LOAD_FACTOR);
+    putAll(m);
+  }
+
+  /** Returns {@code true} if this map contains a mapping for the specified key. */
+  public boolean containsKey(int key)
+  {
+    return (key == 0) ? hasZeroKey : (find(key) >= 0);
+  }
+
+  /** Returns the value mapped to the specified key, or {@code null} if the key is not mapped. */
+  @SuppressWarnings("unchecked")
+  public V get(int key)
+  {
+    if (key == 0)
+      return zeroValue;
+
+    final int[] k = keys;
+    int pos = slot(key);
+    int cur;
+    while ((cur = k[pos]) != 0) {
+      if (cur == key)
+        return (V)values[pos];
+      pos = (pos + 1) & mask;
+    }
+    return null;
+  }
+
+  /**
+   * Associates the specified value with the specified key.
+   * @return The previous value associated with the key, or {@code null}.
+   */
+  @SuppressWarnings("unchecked")
+  public V put(int key, V value)
+  {
+    if (key == 0) {
+      final V retVal = zeroValue;
+      zeroValue = value;
+      if (!hasZeroKey) {
+        hasZeroKey = true;
+        structureChanged();
+      }
+      return retVal;
+    }
+
+    int pos = slot(key);
+    int cur;
+    while ((cur = keys[pos]) != 0) {
+      if (cur == key) {
+        final V retVal = (V)values[pos];
+        values[pos] = value;
+        return retVal;
+      }
+      pos = (pos + 1) & mask;
+    }
+    keys[pos] = key;
+    values[pos] = value;
+    if (++used >= maxFill) {
+      rehash(keys.length << 1);
+    }
+    structureChanged();
+    return null;
+  }
+
+  /**
+   * Removes the mapping for the specified key.
+   * @return The value previously associated with the key, or {@code null}.
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(int key)
+  {
+    if (key == 0) {
+      final V retVal = zeroValue;
+      if (hasZeroKey) {
+        hasZeroKey = false;
+        zeroValue = null;
+        structureChanged();
+      }
+      return retVal;
+    }
+
+    final int pos = find(key);
+    if (pos < 0)
+      return null;
+
+    final V retVal = (V)values[pos];
+    shiftKeys(pos);
+    used--;
+    structureChanged();
+    return retVal;
+  }
+
+//--------------------- Begin Interface Map ---------------------
+
+  @Override
+  public int size()
+  {
+    return hasZeroKey ? used + 1 : used;
+  }
+
+  @Override
+  public boolean isEmpty()
+  {
+    return size() == 0;
+  }
+
+  @Override
+  public boolean containsKey(Object key)
+  {
+    return (key instanceof Integer) && containsKey(((Integer)key).intValue());
+  }
+
+  @Override
+  public boolean containsValue(Object value)
+  {
+    if (hasZeroKey && Objects.equals(zeroValue, value))
+      return true;
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != 0 && Objects.equals(values[i], value))
+        return true;
+    }
+    return false;
+  }
+
+  @Override
+  public V get(Object key)
+  {
+    return (key instanceof Integer) ? get(((Integer)key).intValue()) : null;
+  }
+
+  @Override
+  public V put(Integer key, V value)
+  {
+    return put(key.intValue(), value);
+  }
+
+  @Override
+  public V remove(Object key)
+  {
+    return (key instanceof Integer) ? remove(((Integer)key).intValue()) : null;
+  }
+
+  @Override
+  public void clear()
+  {
+    if (!isEmpty()) {
+      Arrays.fill(keys, 0);
+      Arrays.fill(values, null);
+      used = 0;
+      hasZeroKey = false;
+      zeroValue = null;
+      structureChanged();
+    }
+  }
+
+  @Override
+  public Set<Map.Entry<Integer, V>> entrySet()
+  {
+    if (entrySet == null) {
+      entrySet = new AbstractSet<Map.Entry<Integer, V>>() {
+        @Override
+        public Iterator<Map.Entry<Integer, V>> iterator()
+        {
+          return new EntryIterator();
+        }
+
+        @Override
+        public int size()
+        {
+          return IntegerHashMap.this.size();
+        }
+
+        @Override
+        public void clear()
+        {
+          IntegerHashMap.this.clear();
+        }
+      };
+    }
+    return entrySet;
   }
 
+//--------------------- End Interface Map ---------------------
+
   @Override
   public String toString()
   {
@@ -56,4 +271,202 @@ public String toString()
     buf.append('}');
     return buf.toString();
   }
+
+  // Returns the table slot of the specified non-zero key, or -1 if not available
+  private int find(int key)
+  {
+    final int[] k = keys;
+    int pos = slot(key);
+    int cur;
+    while ((cur = k[pos]) != 0) {
+      if (cur == key)
+        return pos;
+      pos = (pos + 1) & mask;
+    }
+    return -1;
+  }
+
+  // Closes the gap at the specified slot by moving subsequent entries of the probe sequence
+  private void shiftKeys(int pos)
+  {
+    while (true) {
+      final int last = pos;
+      pos = (pos + 1) & mask;
+      int cur;
+      while (true) {
+        if ((cur = keys[pos]) == 0) {
+          keys[last] = 0;
+          values[last] = null;
+          return;
+        }
+        final int slot = slot(cur);
+        if (last <= pos ? (last >= slot || slot > pos) : (last >= slot && slot > pos))
+          break;
+        pos = (pos + 1) & mask;
+      }
+      keys[last] = cur;
+      values[last] = values[pos];
+    }
+  }
+
+  private void rehash(int capacity)
+  {
+    final int[] oldKeys = keys;
+    final Object[] oldValues = values;
+    allocate(capacity);
+    for (int i = 0; i < oldKeys.length; i++) {
+      final int key = oldKeys[i];
+      if (key != 0) {
+        int pos = slot(key);
+        while (keys[pos] != 0) {
+          pos = (pos + 1) & mask;
+        }
+        keys[pos] = key;
+        values[pos] = oldValues[i];
+      }
+    }
+  }
+
+  private void allocate(int capacity)
+  {
+    keys = new int[capacity];
+    values = new Object[capacity];
+    mask = capacity - 1;
+    shift = 32 - Integer.numberOfTrailingZeros(capacity);
+    maxFill = Math.min(capacity - 1, (int)Math.ceil(capacity * loadFactor));
+  }
+
+  private void structureChanged()
+  {
+    modCount++;
+    sortedKeys = null;
+  }
+
+  // Lazily built on first iteration, published safely for maps shared read-only between threads
+  private int[] getSortedKeys()
+  {
+    int[] list = sortedKeys;
+    if (list == null) {
+      list = new int[size()];
+      int n = 0;
+      if (hasZeroKey)
+        list[n++] = 0;
+      for (final int key : keys) {
+        if (key != 0)
+          list[n++] = key;
+      }
+      Arrays.sort(list);
+      sortedKeys = list;
+    }
+    return list;
+  }
+
+  // Returns the smallest power of two table size which holds the given number of entries
+  private static int tableSize(int expected, float loadFactor)
+  {
+    final long size = Math.max(2L, (long)Math.ceil(expected / loadFactor) + 1L);
+    if (size > (1 << 30))
+      throw new IllegalArgumentException("Capacity too large: " + expected);
+    return Integer.highestOneBit((int)size - 1) << 1;
+  }
+
+  // Maps the key to a table slot (Fibonacci hashing), which spreads sequential and sparse keys alike
+  private int slot(int key)
+  {
+    return (key * 0x9e3779b9) >>> shift;
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  private final class EntryIterator implements Iterator<Map.Entry<Integer, V>>
+  {
+    private final int[] order = getSortedKeys();
+    private int index;
+    private int expectedModCount = modCount;
+    private boolean canRemove;
+
+    @Override
+    public boolean hasNext()
+    {
+      return index < order.length;
+    }
+
+    @Override
+    public Map.Entry<Integer, V> next()
+    {
+      if (modCount != expectedModCount)
+        throw new ConcurrentModificationException();
+      if (index >= order.length)
+        throw new NoSuchElementException();
+      final int key = order[index++];
+      canRemove = true;
+      return new Entry(key, get(key));
+    }
+
+    @Override
+    public void remove()
+    {
+      if (!canRemove)
+        throw new IllegalStateException();
+      if (modCount != expectedModCount)
+        throw new ConcurrentModificationException();
+      IntegerHashMap.this.remove(order[index - 1]);
+      expectedModCount = modCount;
+      canRemove = false;
+    }
+  }
+
+  private final class Entry implements Map.Entry<Integer, V>
+  {
+    private final int key;
+    private V value;
+
+    private Entry(int key, V value)
+    {
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    public Integer getKey()
+    {
+      return key;
+    }
+
+    @Override
+    public V getValue()
+    {
+      return value;
+    }
+
+    @Override
+    public V setValue(V value)
+    {
+      final V retVal = this.value;
+      this.value = value;
+      put(key, value);
+      return retVal;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+      if (!(o instanceof Map.Entry))
+        return false;
+      final Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+      return Integer.valueOf(key).equals(e.getKey()) && Objects.equals(value, e.getValue());
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return key ^ Objects.hashCode(value);
+    }
+
+    @Override
+    public String toString()
+    {
+      return key + "=" + value;
+    }
+  }
 }
@@ -4,16 +4,310 @@
 
 package org.infinity.util;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.SortedMap;
 
-public final class LongIntegerHashMap<V> extends TreeMap<Long, V>
+/**
+ * Sorted hash map with primitive {@code long} keys.
+ * <p>
+ * Keys are stored unboxed in an open-addressing table with linear probing, so that lookups
+ * by primitive key neither allocate nor follow references. Iteration visits entries in
+ * ascending key order. {@code null} keys are not supported.
+ */
+public final class LongIntegerHashMap<V> extends AbstractMap<Long, V> implements SortedMap<Long, V>
 {
+  private static final int DEFAULT_CAPACITY = 16;
+  private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+  private final float loadFactor;
+  private long[] keys;           // table slots, key 0 marks a free slot
+  private Object[] values;
+  private int mask;
+  private int shift;            // shift applied to hashed keys to get the table slot
+  private int maxFill;          // number of used slots which triggers a resize of the table
+  private int used;             // number of used table slots
+  private boolean hasZeroKey;   // key 0 is stored outside of the table
+  private V zeroValue;
+  private int modCount;
+  private volatile long[] sortedKeys;     // cached keys in ascending order, null if outdated
+  private Set<Map.Entry<Long, V>> entrySet;
+
   public LongIntegerHashMap()
   {
-    super();
+    this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+  }
+
+  public LongIntegerHashMap(int initialCapacity)
+  {
+    this(initialCapacity, DEFAULT_LOAD_FACTOR);
+  }
+
+  public LongIntegerHashMap(int initialCapacity, float loadFactor)
+  {
+    if (initialCapacity < 0)
+      throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+    if (loadFactor <= 0.0f || Float.isNaN(loadFactor))
+      throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+
+    this.loadFactor = loadFactor;
+    allocate(tableSize(initialCapacity, loadFactor));
+  }
+
+  public LongIntegerHashMap(Map<Long, ? extends V> m)
+  {
+    this(m.size(), DEFAULT_LOAD_FACTOR);
+    putAll(m);
+  }
+
+  /** Returns {@code true} if this map contains a mapping for the specified key. */
+  public boolean containsKey(long key)
+  {
+    return (key == 0) ? hasZeroKey : (find(key) >= 0);
+  }
+
+  /** Returns the value mapped to the specified key, or {@code null} if the key is not mapped. */
+  @SuppressWarnings("unchecked")
+  public V get(long key)
+  {
+    if (key == 0)
+      return zeroValue;
+
+    final long[] k = keys;
+    int pos = slot(key);
+    long cur;
+    while ((cur = k[pos]) != 0) {
+      if (cur == key)
+        return (V)values[pos];
+      pos = (pos + 1) & mask;
+    }
+    return null;
+  }
+
+  /**
+   * Associates the specified value with the specified key.
+   * @return The previous value associated with the key, or {@code null}.
+   */
+  @SuppressWarnings("unchecked")
+  public V put(long key, V value)
+  {
+    if (key == 0) {
+      final V retVal = zeroValue;
+      zeroValue = value;
+      if (!hasZeroKey) {
+        hasZeroKey = true;
+        structureChanged();
+      }
+      return retVal;
+    }
+
+    int pos = slot(key);
+    long cur;
+    while ((cur = keys[pos]) != 0) {
+      if (cur == key) {
+        final V retVal = (V)values[pos];
+        values[pos] = value;
+        return retVal;
+      }
+      pos = (pos + 1) & mask;
+    }
+    keys[pos] = key;
+    values[pos] = value;
+    if (++used >= maxFill) {
+      rehash(keys.length << 1);
+    }
+    structureChanged();
+    return null;
+  }
+
+  /**
+   * Removes the mapping for the specified key.
+   * @return The value previously associated with the key, or {@code null}.
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(long key)
+  {
+    if (key == 0) {
+      final V retVal = zeroValue;
+      if (hasZeroKey) {
+        hasZeroKey = false;
+        zeroValue = null;
+        structureChanged();
+      }
+      return retVal;
+    }
+
+    final int pos = find(key);
+    if (pos < 0)
+      return null;
+
+    final V retVal = (V)values[pos];
+    shiftKeys(pos);
+    used--;
+    structureChanged();
+    return retVal;
+  }
+
+//--------------------- Begin Interface Map ---------------------
+
+  @Override
+  public int size()
+  {
+    return hasZeroKey ? used + 1 : used;
+  }
+
+  @Override
+  public boolean isEmpty()
+  {
+    return size() == 0;
+  }
+
+  @Override
+  public boolean containsKey(Object key)
+  {
+    return (key instanceof Long) && containsKey(((Long)key).longValue());
+  }
+
+  @Override
+  public boolean containsValue(Object value)
+  {
+    if (hasZeroKey && Objects.equals(zeroValue, value))
+      return true;
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != 0 && Objects.equals(values[i], value))
+        return true;
+    }
+    return false;
+  }
+
+  @Override
+  public V get(Object key)
+  {
+    return (key instanceof Long) ? get(((Long)key).longValue()) : null;
+  }
+
+  @Override
+  public V put(Long key, V value)
+  {
+    return put(key.longValue(), value);
+  }
+
+  @Override
+  public V remove(Object key)
+  {
+    return (key instanceof Long) ? remove(((Long)key).longValue()) : null;
+  }
+
+  @Override
+  public void clear()
+  {
+    if (!isEmpty()) {
+      Arrays.fill(keys, 0L);
+      Arrays.fill(values, null);
+      used = 0;
+      hasZeroKey = false;
+      zeroValue = null;
+      structureChanged();
+    }
+  }
+
+  @Override
+  public Set<Map.Entry<Long, V>> entrySet()
+  {
+    if (entrySet == null) {
+      entrySet = new AbstractSet<Map.Entry<Long, V>>() {
+        @Override
+        public Iterator<Map.Entry<Long, V>> iterator()
+        {
+          return new EntryIterator();
+        }
+
+        @Override
+        public int size()
+        {
+          return LongIntegerHashMap.this.size();
+        }
+
+        @Override
+        public void clear()
+        {
+          LongIntegerHashMap.this.clear();
+        }
+      };
+    }
+    return entrySet;
+  }
+
+//--------------------- End Interface Map ---------------------
+
+//--------------------- Begin Interface SortedMap ---------------------
+
+  @Override
+  public Comparator<? super Long> comparator()
+  {
+    return null;
+  }
+
+  @Override
+  public Long firstKey()
+  {
+    if (isEmpty())
+      throw new NoSuchElementException();
+    return getSortedKeys()[0];
+  }
+
+  @Override
+  public Long lastKey()
+  {
+    if (isEmpty())
+      throw new NoSuchElementException();
+    final long[] list = getSortedKeys();
+    return list[list.length - 1];
+  }
+
+  /** Returns a copy of the portion of this map whose keys are in the range [fromKey, toKey). */
+  @Override
+  public SortedMap<Long, V> subMap(Long fromKey, Long toKey)
+  {
+    if (fromKey.longValue() > toKey.longValue())
+      throw new IllegalArgumentException("fromKey > toKey");
+    return copyRange(fromKey.longValue(), true, toKey.longValue());
+  }
+
+  /** Returns a copy of the portion of this map whose keys are less than toKey. */
+  @Override
+  public SortedMap<Long, V> headMap(Long toKey)
+  {
+    return copyRange(Long.MIN_VALUE, true, toKey.longValue());
+  }
+
+  /** Returns a copy of the portion of this map whose keys are greater than or equal to fromKey. */
+  @Override
+  public SortedMap<Long, V> tailMap(Long fromKey)
+  {
+    return copyRange(fromKey.longValue(), false, 0L);
+  }
+
+//--------------------- End Interface SortedMap ---------------------
+
+  /** Returns the entry with the lowest key, or {@code null} if the map is empty. */
+  public Map.Entry<Long, V> firstEntry()
+  {
+    return isEmpty() ? null : new AbstractMap.SimpleImmutableEntry<>(firstKey(), get(firstKey().longValue()));
+  }
+
+  /** Returns the entry with the highest key, or {@code null} if the map is empty. */
+  public Map.Entry<Long, V> lastEntry()
+  {
+    return isEmpty() ? null : new AbstractMap.SimpleImmutableEntry<>(lastKey(), get(lastKey().longValue()));
   }
 
   @Override
@@ -41,4 +335,213 @@ public String toString()
     buf.append('}');
     return buf.toString();
   }
+
+  // Returns the table slot of the specified non-zero key, or -1 if not available
+  private int find(long key)
+  {
+    final long[] k = keys;
+    int pos = slot(key);
+    long cur;
+    while ((cur = k[pos]) != 0) {
+      if (cur == key)
+        return pos;
+      pos = (pos + 1) & mask;
+    }
+    return -1;
+  }
+
+  // Closes the gap at the specified slot by moving subsequent entries of the probe sequence
+  private void shiftKeys(int pos)
+  {
+    while (true) {
+      final int last = pos;
+      pos = (pos + 1) & mask;
+      long cur;
+      while (true) {
+        if ((cur = keys[pos]) == 0) {
+          keys[last] = 0;
+          values[last] = null;
+          return;
+        }
+        final int slot = slot(cur);
+        if (last <= pos ? (last >= slot || slot > pos) : (last >= slot && slot > pos))
+          break;
+        pos = (pos + 1) & mask;
+      }
+      keys[last] = cur;
+      values[last] = values[pos];
+    }
+  }
+
+  private void rehash(int capacity)
+  {
+    final long[] oldKeys = keys;
+    final Object[] oldValues = values;
+    allocate(capacity);
+    for (int i = 0; i < oldKeys.length; i++) {
+      final long key = oldKeys[i];
+      if (key != 0) {
+        int pos = slot(key);
+        while (keys[pos] != 0) {
+          pos = (pos + 1) & mask;
+        }
+        keys[pos] = key;
+        values[pos] = oldValues[i];
+      }
+    }
+  }
+
+  private void allocate(int capacity)
+  {
+    keys = new long[capacity];
+    values = new Object[capacity];
+    mask = capacity - 1;
+    shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    maxFill = Math.min(capacity - 1, (int)Math.ceil(capacity * loadFactor));
+  }
+
+  // Returns a new map with all entries in the range [fromKey, toKey), or [fromKey, max] if not bounded
+  private LongIntegerHashMap<V> copyRange(long fromKey, boolean bounded, long toKey)
+  {
+    final LongIntegerHashMap<V> retVal = new LongIntegerHashMap<>();
+    for (final long key : getSortedKeys()) {
+      if (key >= fromKey && (!bounded || key < toKey))
+        retVal.put(key, get(key));
+    }
+    return retVal;
+  }
+
+  private void structureChanged()
+  {
+    modCount++;
+    sortedKeys = null;
+  }
+
+  // Lazily built on first iteration, published safely for maps shared read-only between threads
+  private long[] getSortedKeys()
+  {
+    long[] list = sortedKeys;
+    if (list == null) {
+      list = new long[size()];
+      int n = 0;
+      if (hasZeroKey)
+        list[n++] = 0;
+      for (final long key : keys) {
+        if (key != 0)
+          list[n++] = key;
+      }
+      Arrays.sort(list);
+      sortedKeys = list;
+    }
+    return list;
+  }
+
+  // Returns the smallest power of two table size which holds the given number of entries
+  private static int tableSize(int expected, float loadFactor)
+  {
+    final long size = Math.max(2L, (long)Math.ceil(expected / loadFactor) + 1L);
+    if (size > (1 << 30))
+      throw new IllegalArgumentException("Capacity too large: " + expected);
+    return Integer.highestOneBit((int)size - 1) << 1;
+  }
+
+  // Maps the key to a table slot (Fibonacci hashing), which spreads sequential and sparse keys alike
+  private int slot(long key)
+  {
+    return (int)((key * 0x9e3779b97f4a7c15L) >>> shift);
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  private final class EntryIterator implements Iterator<Map.Entry<Long, V>>
+  {
+    private final long[] order = getSortedKeys();
+    private int index;
+    private int expectedModCount = modCount;
+    private boolean canRemove;
+
+    @Override
+    public boolean hasNext()
+    {
+      return index < order.length;
+    }
+
+    @Override
+    public Map.Entry<Long, V> next()
+    {
+      if (modCount != expectedModCount)
+        throw new ConcurrentModificationException();
+      if (index >= order.length)
+        throw new NoSuchElementException();
+      final long key = order[index++];
+      canRemove = true;
+      return new Entry(key, get(key));
+    }
+
+    @Override
+    public void remove()
+    {
+      if (!canRemove)
+        throw new IllegalStateException();
+      if (modCount != expectedModCount)
+        throw new ConcurrentModificationException();
+      LongIntegerHashMap.this.remove(order[index - 1]);
+      expectedModCount = modCount;
+      canRemove = false;
+    }
+  }
+
+  private final class Entry implements Map.Entry<Long, V>
+  {
+    private final long key;
+    private V value;
+
+    private Entry(long key, V value)
+    {
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    public Long getKey()
+    {
+      return key;
+    }
+
+    @Override
+    public V getValue()
+    {
+      return value;
+    }
+
+    @Override
+    public V setValue(V value)
+    {
+      final V retVal = this.value;
+      this.value = value;
+      put(key, value);
+      return retVal;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+      if (!(o instanceof Map.Entry))
+        return false;
+      final Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+      return Long.valueOf(key).equals(e.getKey()) && Objects.equals(value, e.getValue());
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return Long.hashCode(key) ^ Objects.hashCode(value);
+    }
+
+    @Override
+    public String toString()
+    {
+      return key + "=" + value;
+    }
+  }
 }
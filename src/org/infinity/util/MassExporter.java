@@ -372,7 +372,7 @@ private synchronized void advanceProgress(boolean finished)
 
   private void exportText(ResourceEntry entry, Path output) throws Exception
   {
-    ByteBuffer bb = entry.getResourceBuffer();
+    ByteBuffer bb = entry.getResourceView();
     if (bb.limit() > 0) {
       if (bb.limit() > 1 && bb.getShort(0) == -1) {
         bb = StaticSimpleXorDecryptor.decrypt(bb, 2);
@@ -390,7 +390,7 @@ private void exportDecompiledScript(ResourceEntry entry, Path output) throws Exc
     if (FileEx.create(output).exists() && !cbOverwrite.isSelected()) {
       return;
     }
-    ByteBuffer bb = entry.getResourceBuffer();
+    ByteBuffer bb = entry.getResourceView();
     if (bb.limit() > 0) {
       if (bb.limit() > 1 && bb.getShort(0) == -1) {
         bb = StaticSimpleXorDecryptor.decrypt(bb, 2);
@@ -407,7 +407,7 @@ private void exportDecompiledScript(ResourceEntry entry, Path output) throws Exc
 
   private void decompressBamMos(ResourceEntry entry, Path output) throws Exception
   {
-    ByteBuffer bb = entry.getResourceBuffer();
+    ByteBuffer bb = entry.getResourceView();
     if (bb.limit() > 0) {
       String sig = StreamUtils.readString(bb, 4);
       if (sig.equals("BAMC") || sig.equals("MOSC")) {
@@ -7,6 +7,7 @@
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
@@ -14,8 +15,14 @@
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 import org.infinity.NearInfinity;
 import org.infinity.datatype.DecNumber;
@@ -87,6 +94,9 @@ public String format(String text, int strRef)
 
   private static final EnumMap<Type, StringTable> TLK_TABLE = new EnumMap<>(Type.class);
 
+  /** Max. number of decoded strings cached per string table. */
+  private static final int TEXT_CACHE_SIZE = 8192;
+
   private static Charset charset = null;
   private static Format format = Format.NONE;
   private static Boolean hasFemaleTable = null;
@@ -540,6 +550,20 @@ public static StringEntry getStringEntry(Type type, int index) throws IndexOutOf
     return instance(type)._getEntry(index);
   }
 
+  /**
+   * Returns the indices of all string entries of the specified type which may contain the specified
+   * text, ignoring case. The result may contain entries which don't match, but never misses a matching entry.
+   * (Defaults to {@code Type.MALE} if specified type is not available.)
+   * @param type The string table.
+   * @param text The search string.
+   * @return Candidate indices in ascending order, or {@code null} if candidates can't be narrowed down
+   *         because the full-text index is not yet available or the search string is too short.
+   */
+  public static int[] findCandidates(Type type, String text)
+  {
+    return instance(type)._findCandidates(text);
+  }
+
   /**
    * Returns whether the male string table contains non-saved modifications.
    */
@@ -974,14 +998,27 @@ private static StringTable instance(Type type)
 
   private final ArrayList<StringEntry> entries = new ArrayList<>();
   private final HashMap<Integer, Integer> entriesVirtual = new HashMap<>();
+  // decoded text of string entries which have not been loaded as StringEntry objects
+  private final LinkedHashMap<Integer, String> textCache = new LinkedHashMap<Integer, String>(1024, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest)
+    {
+      return size() > TEXT_CACHE_SIZE;
+    }
+  };
+  // entries with changed text since the full-text index has been built
+  private final Set<StringEntry> changedEntries = Collections.newSetFromMap(new IdentityHashMap<>());
   private final Path tlkPath;
   private final StringTable.Type tlkType;
 
-  // cached TLK header data
-  private int numEntries, ofsStrings;
-  private ByteBuffer headerData;
+  // full-text index of the string entries, null if not (yet) available
+  private volatile TrigramIndex textIndex;
+  private volatile int textIndexGeneration;   // incremented whenever the index has to be rebuilt
+
+  // memory-mapped TLK data and compact index of the string entries, null while not mapped
+  private volatile TlkMapping mapping;
+  private int numEntries;
   private int entriesPending;
-//  private boolean fullyLoaded;
 
   private short langId;
   private boolean initialized;
@@ -1043,8 +1080,10 @@ private int _getTranslatedIndex(int index)
   private String _getStringRef(int index, Format fmt) throws IndexOutOfBoundsException
   {
     index = _getTranslatedIndex(index);
-    StringEntry entry = _getEntry(index);
-    return (fmt == null ? format : fmt).format(entry.getText(), index);
+    final TlkMapping map = mapping;
+    final StringEntry entry = _getLoadedEntry(index, map);
+    final String text = (entry != null) ? entry.getText() : _getText(map, index);
+    return (fmt == null ? format : fmt).format(text, index);
   }
 
   private void _setStringRef(int index, String text) throws IndexOutOfBoundsException
@@ -1054,7 +1093,10 @@ private void _setStringRef(int index, String text) throws IndexOutOfBoundsExcept
 
   private String _getSoundResource(int index) throws IndexOutOfBoundsException
   {
-    return _getEntry(_getTranslatedIndex(index)).getSoundRef();
+    index = _getTranslatedIndex(index);
+    final TlkMapping map = mapping;
+    final StringEntry entry = _getLoadedEntry(index, map);
+    return (entry != null) ? entry.getSoundRef() : StreamUtils.readString(map.data.duplicate(), 18 + index * 26 + 2, 8);
   }
 
   private void _setSoundResource(int index, String resRef) throws IndexOutOfBoundsException
@@ -1064,7 +1106,10 @@ private void _setSoundResource(int index, String resRef) throws IndexOutOfBounds
 
   private short _getFlags(int index) throws IndexOutOfBoundsException
   {
-    return _getEntry(_getTranslatedIndex(index)).getFlags();
+    index = _getTranslatedIndex(index);
+    final TlkMapping map = mapping;
+    final StringEntry entry = _getLoadedEntry(index, map);
+    return (entry != null) ? entry.getFlags() : map.flags[index];
   }
 
   private void _setFlags(int index, short value) throws IndexOutOfBoundsException
@@ -1074,7 +1119,10 @@ private void _setFlags(int index, short value) throws IndexOutOfBoundsException
 
   private int _getVolume(int index) throws IndexOutOfBoundsException
   {
-    return _getEntry(_getTranslatedIndex(index)).getVolume();
+    index = _getTranslatedIndex(index);
+    final TlkMapping map = mapping;
+    final StringEntry entry = _getLoadedEntry(index, map);
+    return (entry != null) ? entry.getVolume() : map.data.getInt(18 + index * 26 + 10);
   }
 
   private void _setVolume(int index, int value) throws IndexOutOfBoundsException
@@ -1084,7 +1132,10 @@ private void _setVolume(int index, int value) throws IndexOutOfBoundsException
 
   private int _getPitch(int index) throws IndexOutOfBoundsException
   {
-    return _getEntry(_getTranslatedIndex(index)).getPitch();
+    index = _getTranslatedIndex(index);
+    final TlkMapping map = mapping;
+    final StringEntry entry = _getLoadedEntry(index, map);
+    return (entry != null) ? entry.getPitch() : map.data.getInt(18 + index * 26 + 14);
   }
 
   private void _setPitch(int index, int value) throws IndexOutOfBoundsException
@@ -1106,27 +1157,105 @@ private StringEntry _getEntry(int index) throws IndexOutOfBoundsException
     return entry;
   }
 
+  // Returns the StringEntry instance if available, the invalid entry for indices out of range,
+  // or null if the entry has to be read from the specified TLK data mapping
+  private StringEntry _getLoadedEntry(int index, TlkMapping map)
+  {
+    if (index >= 0 && index < entries.size()) {
+      final StringEntry entry = entries.get(index);
+      if (entry == null && (map == null || index >= map.flags.length)) {
+        // mapping has been released by a concurrent save or reset operation
+        return _getEntry(index);
+      }
+      return entry;
+    }
+    return StringEntry.getInvalidEntry();
+  }
+
+  // Returns the text of the specified string entry from the mapped TLK data
+  private String _getText(TlkMapping map, int index)
+  {
+    synchronized (textCache) {
+      final String text = textCache.get(index);
+      if (text != null) {
+        return text;
+      }
+    }
+    final String text = _readText(map, index);
+    synchronized (textCache) {
+      if (map == mapping) {
+        textCache.put(index, text);
+      }
+    }
+    return text;
+  }
+
+  // Decodes the text of the specified string entry from the mapped TLK data
+  private String _readText(TlkMapping map, int index)
+  {
+    final int ofsString = map.offsets[index];
+    final int lenString = map.lengths[index];
+    String text = "";
+    if (lenString > 0) {
+      if (ofsString >= 0 && (long)ofsString + lenString <= map.data.limit()) {
+        final byte[] buf = new byte[lenString];
+        final ByteBuffer bb = map.data.duplicate();
+        bb.position(ofsString);
+        bb.get(buf);
+        text = new String(buf, getCharset());
+        if (!CharsetDetector.getLookup().isExcluded(index)) {
+          text = CharsetDetector.getLookup().decodeString(text);
+        }
+      } else {
+        System.err.println("Error: Illegal offset " + ofsString + " for string entry " + index);
+      }
+    }
+    return text;
+  }
+
+  // Maps the TLK file into memory and builds the index of string entries
+  private void _mapFile() throws Exception
+  {
+    final ByteBuffer data;
+    try (FileChannel ch = _open()) {
+      data = ch.map(FileChannel.MapMode.READ_ONLY, 0L, ch.size()).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // parsing header
+    String sig = StreamUtils.readString(data, 0, 8);
+    if (!"TLK V1  ".equals(sig)) {
+      throw new Exception("Invalid TLK signature");
+    }
+    final short lang = data.getShort(8);
+    final int count = data.getInt(10);
+    final int ofsStrings = data.getInt(14);
+    if (count < 0 || 18L + 26L * count > data.limit()) {
+      throw new Exception("Not enough data");
+    }
+
+    final short[] flags = new short[count];
+    final int[] offsets = new int[count];
+    final int[] lengths = new int[count];
+    for (int idx = 0, ofs = 18; idx < count; idx++, ofs += 26) {
+      flags[idx] = data.getShort(ofs);
+      offsets[idx] = ofsStrings + data.getInt(ofs + 18);
+      lengths[idx] = data.getInt(ofs + 22);
+    }
+
+    synchronized (textCache) {
+      textCache.clear();
+      mapping = new TlkMapping(data, flags, offsets, lengths);
+    }
+    langId = lang;
+    numEntries = count;
+  }
+
   private void _init()
   {
     if (!_initialized()) {
       synchronized (entries) {
-        try (FileChannel ch = _open()) {
-          // parsing header
-          String sig = StreamUtils.readString(ch, 8);
-          if (!"TLK V1  ".equals(sig)) {
-            throw new Exception("Invalid TLK signature");
-          }
-
-          langId = StreamUtils.readShort(ch);
-          numEntries = StreamUtils.readInt(ch);
-          ofsStrings = StreamUtils.readInt(ch);
-
-          int bufferSize = 26 * numEntries;
-          headerData = StreamUtils.getByteBuffer(bufferSize);
-          if (ch.read(headerData) < bufferSize) {
-            throw new Exception("Not enough data");
-          }
-          headerData.position(0);
+        try {
+          _mapFile();
 
           // fill cache with placeholder string entries
           entries.ensureCapacity(numEntries + 10);
@@ -1140,6 +1269,110 @@ private void _init()
           e.printStackTrace();
         }
       }
+      if (_initialized()) {
+        _buildIndex();
+      }
+    }
+  }
+
+  // Builds the full-text index of all string entries in the background
+  private void _buildIndex()
+  {
+    final int generation;
+    synchronized (changedEntries) {
+      textIndex = null;
+      changedEntries.clear();
+      generation = ++textIndexGeneration;
+    }
+
+    Thread thread = new Thread(() -> {
+      final TrigramIndex index = new TrigramIndex();
+      try {
+        for (int idx = 0; generation == textIndexGeneration; idx++) {
+          final StringEntry entry;
+          synchronized (entries) {
+            if (idx >= entries.size()) {
+              break;
+            }
+            entry = entries.get(idx);
+          }
+          final TlkMapping map = mapping;
+          if (entry == null && map == null) {
+            return;
+          }
+          index.add(idx, (entry != null) ? entry.getText() : _readText(map, idx));
+        }
+      } catch (Exception e) {
+        // string table has been reset or restructured
+        return;
+      }
+      synchronized (changedEntries) {
+        if (generation == textIndexGeneration) {
+          textIndex = index;
+        }
+      }
+    }, "TLK text index");
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MIN_PRIORITY);
+    thread.start();
+  }
+
+  // Stops a running index worker, an already completed index remains available
+  private void _stopIndex()
+  {
+    synchronized (changedEntries) {
+      textIndexGeneration++;
+    }
+  }
+
+  // Called whenever the text of a string entry has been changed
+  private void _textChanged(StringEntry entry)
+  {
+    synchronized (changedEntries) {
+      changedEntries.add(entry);
+    }
+  }
+
+  // Returns indices of string entries which may contain the specified text, or null if not available
+  private int[] _findCandidates(String text)
+  {
+    final TrigramIndex index = textIndex;
+    final int[] candidates = (index != null) ? index.find(text) : null;
+    if (candidates == null) {
+      return null;
+    }
+
+    final Set<StringEntry> changed;
+    synchronized (changedEntries) {
+      changed = changedEntries.isEmpty() ? null : Collections.newSetFromMap(new IdentityHashMap<>());
+      if (changed != null) {
+        changed.addAll(changedEntries);
+      }
+    }
+    synchronized (entries) {
+      final int num = entries.size();
+      if (changed == null && num == index.getMaxIndex() + 1) {
+        return candidates;
+      }
+
+      // adding entries which have been modified or added since the index has been built
+      final BitSet result = new BitSet(num);
+      for (final int idx : candidates) {
+        if (idx < num) {
+          result.set(idx);
+        }
+      }
+      if (changed != null) {
+        for (int idx = 0; idx < num; idx++) {
+          if (entries.get(idx) != null && changed.contains(entries.get(idx))) {
+            result.set(idx);
+          }
+        }
+      }
+      if (index.getMaxIndex() + 1 < num) {
+        result.set(index.getMaxIndex() + 1, num);
+      }
+      return result.stream().toArray();
     }
   }
 
@@ -1150,10 +1383,14 @@ private boolean _initialized()
 
   private void _reset()
   {
+    _stopIndex();
     synchronized (entries) {
       entries.clear();
-      headerData = null;
-      ofsStrings = numEntries = entriesPending = -1;
+      synchronized (textCache) {
+        textCache.clear();
+        mapping = null;
+      }
+      numEntries = entriesPending = -1;
       initialized = false;
       _resetModified();
     }
@@ -1165,42 +1402,20 @@ private FileChannel _open() throws IOException
     return FileChannel.open(_getPath(), StandardOpenOption.READ);
   }
 
-  private StringEntry _loadEntry(FileChannel ch, int index) throws IOException, IndexOutOfBoundsException,
-                                                            IllegalArgumentException
+  private StringEntry _loadEntry(int index) throws IndexOutOfBoundsException
   {
-    if (index < 0 || index >= _getNumEntries()) {
+    final TlkMapping map = mapping;
+    if (map == null || index < 0 || index >= numEntries || index >= map.flags.length) {
       throw new IndexOutOfBoundsException();
     }
 
-    StringEntry entry = null;
-    if (ch != null) {
-      int ofs = index * 26; // rel. offset entry
-      headerData.position(ofs);
-      short flags = headerData.getShort();
-      String soundRef = StreamUtils.readString(headerData, 8);
-      int volume = headerData.getInt();
-      int pitch = headerData.getInt();
-      int ofsString = ofsStrings + headerData.getInt();
-      int lenString = headerData.getInt();
-      headerData.position(0);
-      String text = null;
-      if (lenString > 0) {
-        try {
-          ch.position(ofsString);
-          text = StreamUtils.readString(ch, lenString, getCharset());
-          if (!CharsetDetector.getLookup().isExcluded(index)) {
-            text = CharsetDetector.getLookup().decodeString(text);
-          }
-        } catch (IllegalArgumentException e) {
-          System.err.println("Error: Illegal offset " + ofsString + " for string entry " + index);
-          text = "";
-        }
-      } else {
-        text = "";
-      }
-      entry = new StringEntry(this, flags, soundRef, volume, pitch, text);
-    }
-    return entry;
+    final int ofs = 18 + index * 26;
+    short flags = map.flags[index];
+    String soundRef = StreamUtils.readString(map.data.duplicate(), ofs + 2, 8);
+    int volume = map.data.getInt(ofs + 10);
+    int pitch = map.data.getInt(ofs + 14);
+    String text = _getText(map, index);
+    return new StringEntry(this, flags, soundRef, volume, pitch, text);
   }
 
   private int _insertEntry(int index) throws IndexOutOfBoundsException
@@ -1221,9 +1436,15 @@ private int _insertEntry(int index, StringEntry newEntry) throws IndexOutOfBound
 
     _ensureFullyLoaded();
     newEntry.setModified();
+    final boolean appended;
     synchronized (entries) {
+      appended = (index == entries.size());
       entries.add(index, newEntry);
     }
+    if (!appended) {
+      // indices of subsequent entries have changed
+      _buildIndex();
+    }
 
     return index;
   }
@@ -1238,22 +1459,18 @@ private void _removeEntry(int index) throws IndexOutOfBoundsException
     synchronized (entries) {
       entries.remove(index);
     }
+    _buildIndex();
   }
 
-  // Loads all remaining string entries from file
+  // Creates StringEntry instances for all remaining string entries
   private void _ensureFullyLoaded()
   {
     if (entriesPending > 0) {
       synchronized (entries) {
-        try (FileChannel ch = _open()) {
+        try {
           for (int idx = 0, num = _getNumEntries(); idx < num; idx++) {
             if (entries.get(idx) == null) {
-              StringEntry entry = _loadEntry(ch, idx);
-              if (entry != null) {
-                entries.set(idx, entry);
-              } else {
-                throw new Exception();
-              }
+              entries.set(idx, _loadEntry(idx));
             }
           }
           entriesPending = 0;
@@ -1264,19 +1481,16 @@ private void _ensureFullyLoaded()
     }
   }
 
-  // Makes sure the specified string entry is loaded into memory
+  // Makes sure a StringEntry instance exists for the specified string entry
   private void _ensureIndexIsLoaded(int index)
   {
     index = _getTranslatedIndex(index);
     if (entriesPending > 0 && index >= 0 && index < _getNumEntries() && entries.get(index) == null) {
       synchronized (entries) {
-        try (FileChannel ch = _open()) {
-          StringEntry entry = _loadEntry(ch, index);
-          if (entry != null) {
-            entries.set(index, entry);
+        try {
+          if (entries.get(index) == null) {
+            entries.set(index, _loadEntry(index));
             entriesPending--;
-          } else {
-            throw new Exception();
           }
         } catch (Exception e) {
           e.printStackTrace();
@@ -1297,6 +1511,7 @@ private void _resetEntries()
         }
         _resetModified();
       }
+      _buildIndex();
     }
   }
 
@@ -1337,9 +1552,15 @@ private void _write(Path tlkPath, ProgressCallback callback) throws IOException
     }
 
     _ensureFullyLoaded();
+    _stopIndex();
     synchronized (entries) {
       boolean success = false;
 
+      // all entries are loaded: release mapped file data
+      synchronized (textCache) {
+        mapping = null;
+      }
+
       // 1. backing up current string table file if needed
       Path pathBackup = null;
       if (FileEx.create(tlkPath).isFile()) {
@@ -1430,13 +1651,29 @@ private void _write(Path tlkPath, ProgressCallback callback) throws IOException
         // 3. removing or restoring backup
         if (pathBackup != null) {
           if (success) {
-            Files.delete(pathBackup);
+            try {
+              Files.delete(pathBackup);
+            } catch (IOException e) {
+              // file may still be mapped
+              FileDeletionHook.getInstance().registerFile(pathBackup);
+            }
           } else {
             Files.move(pathBackup, _getPath(), StandardCopyOption.REPLACE_EXISTING);
           }
         }
 
         if (callback != null) { callback.done(success); }
+
+        // mapping current string table file
+        try {
+          _mapFile();
+        } catch (Exception e) {
+          e.printStackTrace();
+        }
+        if (textIndex == null) {
+          // index worker has been stopped before completion
+          _buildIndex();
+        }
       }
     }
   }
@@ -1480,6 +1717,23 @@ private void _exportText(Path outFile, ProgressCallback callback) throws IOExcep
 
 //-------------------------- INNER CLASSES --------------------------
 
+  // Immutable snapshot of the memory-mapped TLK data and the compact index of its string entries
+  private static final class TlkMapping
+  {
+    private final ByteBuffer data;
+    private final short[] flags;
+    private final int[] offsets;    // absolute offsets of string data
+    private final int[] lengths;
+
+    private TlkMapping(ByteBuffer data, short[] flags, int[] offsets, int[] lengths)
+    {
+      this.data = data;
+      this.flags = flags;
+      this.offsets = offsets;
+      this.lengths = lengths;
+    }
+  }
+
   // Manages a single string entry
   public static class StringEntry extends AbstractStruct implements Cloneable
   {
@@ -1585,6 +1839,9 @@ public void setText(String newText)
       if (!normalizedText(newText).equals(normalizedText(text))) {
         text = newText;
         setModified();
+        if (parent != null) {
+          parent._textChanged(this);
+        }
       }
     }
 
@@ -0,0 +1,201 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2019 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.util;
+
+import java.util.Arrays;
+
+/**
+ * Case-insensitive full-text index over a list of texts, identified by ascending integer indices.
+ * <p>
+ * Each sequence of three characters (trigram) is hashed into one of a fixed number of buckets,
+ * which store the indices of all texts containing a trigram of the bucket as delta-encoded
+ * variable-length integers. {@link #find(String)} returns the indices of all texts which contain every
+ * trigram of the search string. The result may contain false positives, which have to be ruled out
+ * by matching the candidate texts, but never misses a text containing the search string.
+ * <p>
+ * Texts have to be added in ascending index order. The index can be queried by multiple threads
+ * once it has been built.
+ */
+public final class TrigramIndex
+{
+  /** Min. number of characters a search string needs for narrowing down candidates. */
+  public static final int MIN_LENGTH = 3;
+
+  private static final int BUCKET_BITS = 17;
+  private static final int BUCKET_MASK = (1 << BUCKET_BITS) - 1;
+
+  private final byte[][] postings = new byte[1 << BUCKET_BITS][];
+  private final int[] sizes = new int[1 << BUCKET_BITS];        // number of used bytes per bucket
+  private final int[] counts = new int[1 << BUCKET_BITS];       // number of indices per bucket
+  private final int[] lastIndex = new int[1 << BUCKET_BITS];    // last index added to the bucket
+  private int maxIndex = -1;
+
+  public TrigramIndex()
+  {
+    Arrays.fill(lastIndex, -1);
+  }
+
+  /**
+   * Adds the trigrams of the specified text.
+   * @param index Index of the text. Must be greater than the indices of all previously added texts.
+   * @param text The text to index.
+   * @throws IllegalArgumentException if {@code index} is not in ascending order.
+   */
+  public void add(int index, CharSequence text)
+  {
+    if (index <= maxIndex) {
+      throw new IllegalArgumentException("Index not in ascending order: " + index);
+    }
+    maxIndex = index;
+    if (text == null || text.length() < MIN_LENGTH) {
+      return;
+    }
+
+    char c1 = fold(text.charAt(0));
+    char c2 = fold(text.charAt(1));
+    for (int i = 2, len = text.length(); i < len; i++) {
+      char c3 = fold(text.charAt(i));
+      int bucket = bucket(c1, c2, c3);
+      if (lastIndex[bucket] != index) {
+        addPosting(bucket, index);
+      }
+      c1 = c2;
+      c2 = c3;
+    }
+  }
+
+  /** Returns the greatest index added to the index, or -1 if the index is empty. */
+  public int getMaxIndex()
+  {
+    return maxIndex;
+  }
+
+  /**
+   * Returns the indices of all texts which may contain the specified string, ignoring case.
+   * @param text The search string.
+   * @return Candidate indices in ascending order, or {@code null} if the search string is too short
+   *         to narrow down the candidates.
+   */
+  public int[] find(String text)
+  {
+    if (text == null || text.length() < MIN_LENGTH) {
+      return null;
+    }
+
+    // collecting distinct buckets, sorted by number of indices
+    int[] buckets = new int[text.length() - 2];
+    int numBuckets = 0;
+    char c1 = fold(text.charAt(0));
+    char c2 = fold(text.charAt(1));
+    for (int i = 2; i < text.length(); i++) {
+      char c3 = fold(text.charAt(i));
+      int bucket = bucket(c1, c2, c3);
+      boolean found = false;
+      for (int j = 0; j < numBuckets && !found; j++) {
+        found = (buckets[j] == bucket);
+      }
+      if (!found) {
+        buckets[numBuckets++] = bucket;
+      }
+      c1 = c2;
+      c2 = c3;
+    }
+    long[] order = new long[numBuckets];
+    for (int i = 0; i < numBuckets; i++) {
+      order[i] = ((long)counts[buckets[i]] << 32) | buckets[i];
+    }
+    Arrays.sort(order);
+
+    // intersecting indices, starting with the smallest bucket
+    int[] result = decode((int)order[0]);
+    int size = result.length;
+    for (int i = 1; i < order.length && size > 0; i++) {
+      size = intersect(result, size, (int)order[i]);
+    }
+    return (size < result.length) ? Arrays.copyOf(result, size) : result;
+  }
+
+  // Appends the index as delta-encoded variable-length integer to the bucket
+  private void addPosting(int bucket, int index)
+  {
+    int delta = index - lastIndex[bucket];
+    lastIndex[bucket] = index;
+    counts[bucket]++;
+
+    byte[] data = postings[bucket];
+    int size = sizes[bucket];
+    if (data == null) {
+      data = postings[bucket] = new byte[8];
+    } else if (size + 5 > data.length) {
+      data = postings[bucket] = Arrays.copyOf(data, data.length * 2);
+    }
+    while ((delta & ~0x7f) != 0) {
+      data[size++] = (byte)((delta & 0x7f) | 0x80);
+      delta >>>= 7;
+    }
+    data[size++] = (byte)delta;
+    sizes[bucket] = size;
+  }
+
+  // Returns all indices of the bucket
+  private int[] decode(int bucket)
+  {
+    int[] result = new int[counts[bucket]];
+    byte[] data = postings[bucket];
+    for (int i = 0, ofs = 0, index = -1; i < result.length; i++) {
+      int delta = 0;
+      for (int shift = 0; ; shift += 7) {
+        int b = data[ofs++];
+        delta |= (b & 0x7f) << shift;
+        if (b >= 0) {
+          break;
+        }
+      }
+      index += delta;
+      result[i] = index;
+    }
+    return result;
+  }
+
+  // Removes all indices from "indices" which are not contained in the bucket, returns the new number of indices
+  private int intersect(int[] indices, int size, int bucket)
+  {
+    byte[] data = postings[bucket];
+    int limit = sizes[bucket];
+    int ofs = 0, index = -1, newSize = 0;
+    for (int i = 0; i < size; i++) {
+      int value = indices[i];
+      while (index < value && ofs < limit) {
+        int delta = 0;
+        for (int shift = 0; ; shift += 7) {
+          int b = data[ofs++];
+          delta |= (b & 0x7f) << shift;
+          if (b >= 0) {
+            break;
+          }
+        }
+        index += delta;
+      }
+      if (index == value) {
+        indices[newSize++] = value;
+      } else if (index < value) {
+        break;
+      }
+    }
+    return newSize;
+  }
+
+  private static char fold(char c)
+  {
+    return Character.toLowerCase(Character.toUpperCase(c));
+  }
+
+  private static int bucket(char c1, char c2, char c3)
+  {
+    int h = c1 * 0x9e3779b1 ^ c2 * 0x85ebca77 ^ c3 * 0xc2b2ae3d;
+    h ^= h >>> 15;
+    return (h ^ (h >>> BUCKET_BITS)) & BUCKET_MASK;
+  }
+}
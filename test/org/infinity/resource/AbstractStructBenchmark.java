@@ -0,0 +1,92 @@
+package org.infinity.resource;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.infinity.datatype.DecNumber;
+import org.infinity.util.io.StreamUtils;
+
+/**
+ * Compares attribute lookups in large structures using the lookup index with linear scans.
+ * <p>
+ * Usage: {@code AbstractStructBenchmark [numStructs [fieldsPerStruct [numLookups]]]}
+ */
+public class AbstractStructBenchmark
+{
+  private static int numStructs;
+  private static int numFields;
+
+  public static void main(String[] args) throws Exception
+  {
+    numStructs = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+    numFields = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+    int numLookups = (args.length > 2) ? Integer.parseInt(args[2]) : 20000;
+
+    ByteBuffer buffer = StreamUtils.getByteBuffer(numStructs * numFields * 4);
+    TestStruct root = new TestStruct(null, "Root", buffer, 0);
+    System.out.printf("Structure: %d substructures, %d fields%n", numStructs, root.getFlatFields().size());
+
+    Random rnd = new Random(42L);
+    int[] offsets = new int[numLookups];
+    String[] names = new String[numLookups];
+    for (int i = 0; i < numLookups; i++) {
+      offsets[i] = rnd.nextInt(buffer.limit());
+      names[i] = String.format("Field %d-%d", rnd.nextInt(numStructs), rnd.nextInt(numFields));
+    }
+
+    for (int pass = 0; pass < 2; pass++) {
+      long checksum1 = 0L;
+      long start = System.nanoTime();
+      for (int i = 0; i < numLookups; i++) {
+        root.invalidateFieldIndex();  // forces linear scan
+        checksum1 += root.getAttribute(offsets[i]).getOffset();
+        root.invalidateFieldIndex();
+        checksum1 += root.getAttribute(names[i]).getOffset();
+      }
+      long timeLinear = System.nanoTime() - start;
+
+      long checksum2 = 0L;
+      start = System.nanoTime();
+      for (int i = 0; i < numLookups; i++) {
+        checksum2 += root.getAttribute(offsets[i]).getOffset();
+        checksum2 += root.getAttribute(names[i]).getOffset();
+      }
+      long timeIndexed = System.nanoTime() - start;
+
+      if (checksum1 != checksum2) {
+        throw new IllegalStateException("Checksum mismatch");
+      }
+      System.out.printf("Pass %d: linear scan: %d ms, indexed: %d ms%n",
+                        pass + 1, timeLinear / 1000000L, timeIndexed / 1000000L);
+    }
+  }
+
+  // Top-level structure consists of substructures, substructures consist of numeric fields
+  private static class TestStruct extends AbstractStruct
+  {
+    private static final long serialVersionUID = 1L;
+
+    TestStruct(AbstractStruct superStruct, String name, ByteBuffer buffer, int offset) throws Exception
+    {
+      super(superStruct, name, buffer, offset, Math.max(numStructs, numFields));
+    }
+
+    @Override
+    public int read(ByteBuffer buffer, int offset) throws Exception
+    {
+      if (getParent() == null) {
+        for (int i = 0; i < numStructs; i++) {
+          TestStruct struct = new TestStruct(this, Integer.toString(i), buffer, offset);
+          addField(struct);
+          offset = struct.getEndOffset();
+        }
+      } else {
+        for (int i = 0; i < numFields; i++) {
+          addField(new DecNumber(buffer, offset, 4, "Field " + getName() + '-' + i));
+          offset += 4;
+        }
+      }
+      return offset;
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package org.infinity.resource;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.infinity.datatype.DecNumber;
+import org.infinity.util.io.StreamUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AbstractStructTest {
+  private static final int NUM_STRUCTS = 20;
+  private static final int NUM_FIELDS = 18;
+
+  @Test
+  public void testOffsetLookup() throws Exception {
+    TestStruct root = createStruct();
+    for (int ofs = -8; ofs < root.getEndOffset() + 8; ofs++) {
+      assertSameOffsetResults(root, ofs);
+    }
+  }
+
+  @Test
+  public void testNameLookup() throws Exception {
+    TestStruct root = createStruct();
+    for (int i = -1; i <= NUM_STRUCTS; i++) {
+      assertSameNameResults(root, Integer.toString(i));
+      for (int j = 0; j <= NUM_FIELDS; j++) {
+        assertSameNameResults(root, "Field " + i + '-' + j);
+      }
+    }
+    assertSameNameResults(root, "Common");
+    assertSameNameResults(root, "Missing");
+  }
+
+  // Indexed lookups must reflect modifications of the fields
+  @Test
+  public void testModifications() throws Exception {
+    TestStruct root = createStruct();
+    AbstractStruct sub = (AbstractStruct)root.getAttribute("5", false);
+    DecNumber field = (DecNumber)sub.getAttribute("Field 5-3");
+    Assert.assertSame(field, root.getAttribute(field.getOffset()));
+    Assert.assertSame(field, root.getAttribute("Field 5-3"));
+
+    field.setName("Renamed");
+    Assert.assertNull(root.getAttribute("Field 5-3"));
+    Assert.assertSame(field, root.getAttribute("Renamed"));
+    assertSameNameResults(root, "Renamed");
+
+    sub.setName("Sub");
+    Assert.assertNull(root.getAttribute("5", false));
+    Assert.assertSame(sub, root.getAttribute("Sub", false));
+
+    DecNumber removed = (DecNumber)sub.getAttribute("Field 5-4");
+    Assert.assertTrue(sub.removeField(removed));
+    Assert.assertNull(root.getAttribute("Field 5-4"));
+    Assert.assertSame(sub, root.getAttribute(removed.getOffset()));
+    assertSameOffsetResults(root, removed.getOffset());
+
+    DecNumber added = new DecNumber(StreamUtils.getByteBuffer(4), 0, 4, "Added");
+    added.setOffset(removed.getOffset());
+    sub.addField(added);
+    Assert.assertSame(added, root.getAttribute("Added"));
+    Assert.assertSame(added, root.getAttribute(removed.getOffset()));
+    assertSameOffsetResults(root, removed.getOffset());
+  }
+
+  // Structures below the index threshold use linear scans only
+  @Test
+  public void testSmallStruct() throws Exception {
+    ByteBuffer buffer = StreamUtils.getByteBuffer(16);
+    TestStruct root = new TestStruct(null, "Root", buffer, 0);
+    for (int ofs = -1; ofs <= 16; ofs++) {
+      assertSameOffsetResults(root, ofs);
+    }
+    assertSameNameResults(root, "Field 0-2");
+    assertSameNameResults(root, "Common");
+  }
+
+  private static TestStruct createStruct() throws Exception {
+    ByteBuffer buffer = StreamUtils.getByteBuffer(NUM_STRUCTS * NUM_FIELDS * 4);
+    return new TestStruct(null, "Root", buffer, 0);
+  }
+
+  private static void assertSameOffsetResults(AbstractStruct root, int offset) {
+    for (int pass = 0; pass < 2; pass++) {
+      // invalidating the index before every lookup forces a linear scan
+      root.invalidateFieldIndex();
+      StructEntry expected1 = root.getAttribute(offset, true);
+      root.invalidateFieldIndex();
+      StructEntry expected2 = root.getAttribute(offset, false);
+      root.invalidateFieldIndex();
+      AbstractStruct expected3 = root.getAttribute(offset, AbstractStruct.class, true);
+      root.invalidateFieldIndex();
+      DecNumber expected4 = root.getAttribute(offset, DecNumber.class, false);
+
+      Assert.assertSame("offset " + offset, expected1, root.getAttribute(offset, true));
+      Assert.assertSame("offset " + offset, expected2, root.getAttribute(offset, false));
+      Assert.assertSame("offset " + offset, expected3, root.getAttribute(offset, AbstractStruct.class, true));
+      Assert.assertSame("offset " + offset, expected4, root.getAttribute(offset, DecNumber.class, false));
+    }
+  }
+
+  private static void assertSameNameResults(AbstractStruct root, String name) {
+    for (int pass = 0; pass < 2; pass++) {
+      root.invalidateFieldIndex();
+      StructEntry expected1 = root.getAttribute(name, true);
+      root.invalidateFieldIndex();
+      StructEntry expected2 = root.getAttribute(name, false);
+
+      Assert.assertSame(name, expected1, root.getAttribute(name, true));
+      Assert.assertSame(name, expected2, root.getAttribute(name, false));
+    }
+  }
+
+  // Top-level structure consists of substructures and numeric fields; every substructure contains
+  // a field named "Common" and the last one is named "Common" itself. Buffers too small for a
+  // single substructure are read as a flat list of numeric fields.
+  private static class TestStruct extends AbstractStruct
+  {
+    private static final long serialVersionUID = 1L;
+
+    TestStruct(AbstractStruct superStruct, String name, ByteBuffer buffer, int offset) throws Exception
+    {
+      super(superStruct, name, buffer, offset, NUM_FIELDS);
+    }
+
+    @Override
+    public int read(ByteBuffer buffer, int offset) throws Exception
+    {
+      int numStructs = buffer.limit() / (NUM_FIELDS * 4);
+      if (getParent() == null && numStructs > 0) {
+        for (int i = 0; i < numStructs; i++) {
+          if (i % 4 == 3) {
+            addField(new DecNumber(buffer, offset, 4, "Field " + i + "-0"));
+            offset += 4;
+          }
+          String name = (i == numStructs - 1) ? "Common" : Integer.toString(i);
+          TestStruct struct = new TestStruct(this, name, buffer, offset);
+          addField(struct);
+          offset = struct.getEndOffset();
+        }
+      } else {
+        int numFields = (getParent() == null) ? buffer.limit() / 4 : NUM_FIELDS;
+        if (getParent() != null) {
+          // keep the size of substructures preceded by a numeric field
+          List<StructEntry> siblings = getParent().getFields();
+          if (!siblings.isEmpty() && siblings.get(siblings.size() - 1) instanceof DecNumber) {
+            numFields--;
+          }
+        }
+        for (int i = 0; i < numFields; i++) {
+          String name = (i == numFields / 2) ? "Common" : "Field " + getName() + '-' + i;
+          addField(new DecNumber(buffer, offset, 4, name));
+          offset += 4;
+        }
+      }
+      return offset;
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package org.infinity.resource.are.viewer;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.infinity.resource.Profile;
+import org.infinity.resource.ResourceFactory;
+import org.infinity.resource.key.ResourceEntry;
+import org.infinity.resource.wed.WedResource;
+
+/**
+ * Compares full map redraws of {@link TilesetRenderer} with single-threaded and multi-threaded
+ * tile composition.
+ * <p>
+ * Requires game data and a graphics environment (the map is rendered into a {@code VolatileImage}).
+ * Without explicit WED resources the largest WED resources of the game are used.
+ * <p>
+ * Usage: {@code TilesetRendererBenchmark chitin.key [numRedraws [wedName ...]]}
+ */
+public class TilesetRendererBenchmark
+{
+  public static void main(String[] args) throws Exception
+  {
+    if (args.length < 1) {
+      System.out.println("Usage: TilesetRendererBenchmark chitin.key [numRedraws [wedName ...]]");
+      return;
+    }
+    if (!Profile.openGame(Paths.get(args[0]))) {
+      throw new IllegalArgumentException("Could not open game: " + args[0]);
+    }
+    int numRedraws = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+    List<ResourceEntry> weds = new ArrayList<>();
+    for (int i = 2; i < args.length; i++) {
+      ResourceEntry entry = ResourceFactory.getResourceEntry(args[i]);
+      if (entry == null) {
+        throw new IllegalArgumentException("Resource not found: " + args[i]);
+      }
+      weds.add(entry);
+    }
+    if (weds.isEmpty()) {
+      weds.addAll(ResourceFactory.getResources("WED"));
+      weds.sort((e1, e2) -> Long.compare(e2.getResourceSize(), e1.getResourceSize()));
+      weds = weds.subList(0, Math.min(5, weds.size()));
+    }
+
+    System.out.printf("%d processors, %d redraws per map%n", Runtime.getRuntime().availableProcessors(), numRedraws);
+    for (final ResourceEntry entry : weds) {
+      long start = System.nanoTime();
+      TilesetRenderer renderer = new TilesetRenderer(0);
+      if (!renderer.loadMap(0, new WedResource(entry))) {
+        System.out.printf("%s: could not be loaded%n", entry);
+        continue;
+      }
+      long timeLoad = System.nanoTime() - start;
+
+      long[] times = new long[2];
+      for (int pass = 0; pass < 2; pass++) {
+        for (int mode = 0; mode < 2; mode++) {
+          renderer.setMultiThreaded(mode == 1);
+          start = System.nanoTime();
+          for (int i = 0; i < numRedraws; i++) {
+            redrawAll(renderer);
+          }
+          times[mode] = System.nanoTime() - start;
+        }
+      }
+
+      System.out.printf("%s (%d x %d px): load: %d ms, full redraw: single-threaded: %.1f ms, multi-threaded: %.1f ms (x%.2f)%n",
+                        entry, renderer.getMapWidth(false), renderer.getMapHeight(false), timeLoad / 1000000L,
+                        times[0] / 1e6 / numRedraws, times[1] / 1e6 / numRedraws,
+                        (double)times[0] / Math.max(1L, times[1]));
+      renderer.clear();
+    }
+  }
+
+  // Discards cached tile graphics and draws the whole map
+  private static void redrawAll(TilesetRenderer renderer)
+  {
+    renderer.setOverlaysEnabled(!renderer.isOverlaysEnabled());
+    renderer.setOverlaysEnabled(!renderer.isOverlaysEnabled());
+    renderer.reload(true);
+    renderer.updateTiles();
+  }
+}
@@ -0,0 +1,96 @@
+package org.infinity.resource.graphics;
+
+import java.util.Random;
+
+/**
+ * Compares palette lookups of {@link ColorConvert.NearestColorIndex} with the linear scan of
+ * {@link ColorConvert#nearestColorRGB(int, int[], boolean)} and verifies that both return identical results.
+ * <p>
+ * Source colors: uniformly distributed random colors and a smooth gradient image with noise, which
+ * resembles the pixel data of converted BAM, MOS and TIS graphics.
+ * <p>
+ * Usage: {@code ColorConvertBenchmark [numColors [numPalettes]]}
+ */
+public class ColorConvertBenchmark
+{
+  public static void main(String[] args) throws Exception
+  {
+    int numColors = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+    int numPalettes = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+
+    Random rnd = new Random(42L);
+    int[] randomColors = new int[numColors];
+    for (int i = 0; i < numColors; i++) {
+      randomColors[i] = rnd.nextInt();
+    }
+    int[] imageColors = createImage(rnd, numColors);
+
+    for (int type = 0; type < 4; type++) {
+      boolean ignoreAlpha = (type & 1) != 0;
+      boolean quantized = (type & 2) != 0;
+      long timeLinear = 0L, timeIndex = 0L, timeBuild = 0L;
+      for (int p = 0; p < numPalettes; p++) {
+        int[] palette = quantized ? ColorConvert.medianCut(imageColors, 256, ignoreAlpha) : createPalette(rnd, 256);
+        for (final int[] colors : new int[][] { randomColors, imageColors }) {
+          int[] result1 = new int[colors.length];
+          long start = System.nanoTime();
+          for (int i = 0; i < colors.length; i++) {
+            result1[i] = ColorConvert.nearestColorRGB(colors[i], palette, ignoreAlpha);
+          }
+          timeLinear += System.nanoTime() - start;
+
+          int[] result2 = new int[colors.length];
+          start = System.nanoTime();
+          ColorConvert.NearestColorIndex index = new ColorConvert.NearestColorIndex(palette, ignoreAlpha);
+          timeBuild += System.nanoTime() - start;
+          for (int i = 0; i < colors.length; i++) {
+            result2[i] = index.nearest(colors[i]);
+          }
+          timeIndex += System.nanoTime() - start;
+
+          for (int i = 0; i < colors.length; i++) {
+            if (result1[i] != result2[i]) {
+              throw new IllegalStateException(String.format("Mismatch for color %08x: %d != %d",
+                                                            colors[i], result1[i], result2[i]));
+            }
+          }
+        }
+      }
+      long lookups = 2L * numPalettes * numColors;
+      System.out.printf("%s palettes, ignoreAlpha=%b: linear scan: %,d lookups/s, index: %,d lookups/s (build: %d us/palette)%n",
+                        quantized ? "quantized" : "random", ignoreAlpha,
+                        (long)(lookups * 1e9 / timeLinear), (long)(lookups * 1e9 / timeIndex),
+                        timeBuild / 1000L / (2 * numPalettes));
+    }
+  }
+
+  // Palette of opaque random colors with a few transparent and semi-transparent entries
+  private static int[] createPalette(Random rnd, int size)
+  {
+    int[] palette = new int[size];
+    for (int i = 0; i < size; i++) {
+      int alpha = (i % 64 == 63) ? rnd.nextInt(256) : 0xff;
+      palette[i] = (alpha << 24) | rnd.nextInt(0x1000000);
+    }
+    return palette;
+  }
+
+  // Gradients with noise and a transparent background
+  private static int[] createImage(Random rnd, int size)
+  {
+    int[] pixels = new int[size];
+    int width = 256;
+    for (int i = 0; i < size; i++) {
+      int x = i % width, y = (i / width) % 256;
+      if ((x - 128) * (x - 128) + (y - 128) * (y - 128) > 120 * 120) {
+        pixels[i] = 0;
+      } else {
+        int r = Math.min(255, x + rnd.nextInt(8));
+        int g = Math.min(255, y + rnd.nextInt(8));
+        int b = Math.min(255, ((x + y) >> 1) + rnd.nextInt(8));
+        pixels[i] = 0xff000000 | (r << 16) | (g << 8) | b;
+      }
+    }
+    return pixels;
+  }
+}
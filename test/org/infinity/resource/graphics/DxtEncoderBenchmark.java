@@ -0,0 +1,129 @@
+package org.infinity.resource.graphics;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares the throughput of DXT encoding of 1024x1024 textures block by block with
+ * {@link DxtEncoder#encodeBlock(int[], byte[], DxtEncoder.DxtType)}, serially and concurrently with
+ * {@link DxtEncoder#encodeImage(int[], int, int, byte[], DxtEncoder.DxtType, boolean)}, and verifies that
+ * all variants produce identical output.
+ * <p>
+ * Textures: smooth gradients with noise, uniformly distributed random colors, and sprites with
+ * transparent background and semi-transparent shadows, which resemble PVRZ pages of BAM and TIS graphics.
+ * <p>
+ * Usage: {@code DxtEncoderBenchmark [numPasses [size]]}
+ */
+public class DxtEncoderBenchmark
+{
+  public static void main(String[] args) throws Exception
+  {
+    int numPasses = (args.length > 0) ? Integer.parseInt(args[0]) : 3;
+    int size = (args.length > 1) ? Integer.parseInt(args[1]) : 1024;
+
+    Random rnd = new Random(42L);
+    int[][] textures = { createGradient(rnd, size), createNoise(rnd, size), createSprites(rnd, size) };
+    String[] names = { "gradient", "noise", "sprites" };
+    System.out.printf("%dx%d textures, %d threads%n", size, size, ForkJoinPool.getCommonPoolParallelism());
+
+    for (final DxtEncoder.DxtType dxtType : new DxtEncoder.DxtType[] { DxtEncoder.DxtType.DXT1, DxtEncoder.DxtType.DXT5 }) {
+      for (int t = 0; t < textures.length; t++) {
+        int[] pixels = textures[t];
+        int outSize = DxtEncoder.calcImageSize(size, size, dxtType);
+        long timeBlock = Long.MAX_VALUE, timeSerial = Long.MAX_VALUE, timeParallel = Long.MAX_VALUE;
+        for (int pass = 0; pass < numPasses; pass++) {
+          byte[] output1 = new byte[outSize];
+          long start = System.nanoTime();
+          encodeByBlock(pixels, size, output1, dxtType);
+          timeBlock = Math.min(timeBlock, System.nanoTime() - start);
+
+          byte[] output2 = new byte[outSize];
+          start = System.nanoTime();
+          DxtEncoder.encodeImage(pixels, size, size, output2, dxtType, false);
+          timeSerial = Math.min(timeSerial, System.nanoTime() - start);
+
+          byte[] output3 = new byte[outSize];
+          start = System.nanoTime();
+          DxtEncoder.encodeImage(pixels, size, size, output3, dxtType, true);
+          timeParallel = Math.min(timeParallel, System.nanoTime() - start);
+
+          if (!Arrays.equals(output1, output2) || !Arrays.equals(output1, output3)) {
+            throw new IllegalStateException(String.format("Output mismatch: %s, %s", dxtType, names[t]));
+          }
+        }
+        System.out.printf("%s %-8s: block by block: %d ms, serial: %d ms, parallel: %d ms (%.1fx)%n",
+                          dxtType, names[t], timeBlock / 1000000L, timeSerial / 1000000L,
+                          timeParallel / 1000000L, (double)timeBlock / timeParallel);
+      }
+    }
+  }
+
+  // Encodes the image by individual calls of encodeBlock()
+  private static void encodeByBlock(int[] pixels, int size, byte[] output, DxtEncoder.DxtType dxtType) throws Exception
+  {
+    int[] inBlock = new int[16];
+    byte[] outBlock = new byte[DxtEncoder.calcBlockSize(dxtType)];
+    int outOfs = 0;
+    for (int y = 0; y < size; y += 4) {
+      for (int x = 0; x < size; x += 4) {
+        for (int i = 0; i < 4; i++) {
+          System.arraycopy(pixels, (y + i) * size + x, inBlock, i * 4, 4);
+        }
+        DxtEncoder.encodeBlock(inBlock, outBlock, dxtType);
+        System.arraycopy(outBlock, 0, output, outOfs, outBlock.length);
+        outOfs += outBlock.length;
+      }
+    }
+  }
+
+  private static int[] createGradient(Random rnd, int size)
+  {
+    int[] pixels = new int[size * size];
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        int r = Math.min(255, x * 256 / size + rnd.nextInt(8));
+        int g = Math.min(255, y * 256 / size + rnd.nextInt(8));
+        int b = (int)(127.5 + 127.5 * Math.sin((x + y) * 0.02));
+        pixels[y * size + x] = 0xff000000 | (r << 16) | (g << 8) | b;
+      }
+    }
+    return pixels;
+  }
+
+  private static int[] createNoise(Random rnd, int size)
+  {
+    int[] pixels = new int[size * size];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = rnd.nextInt();
+    }
+    return pixels;
+  }
+
+  // Opaque ellipses with semi-transparent shadows on a transparent background
+  private static int[] createSprites(Random rnd, int size)
+  {
+    int[] pixels = new int[size * size];
+    for (int n = 0; n < 64; n++) {
+      int cx = rnd.nextInt(size), cy = rnd.nextInt(size);
+      int rx = 8 + rnd.nextInt(48), ry = 8 + rnd.nextInt(64);
+      int color = rnd.nextInt(0x1000000);
+      for (int y = Math.max(0, cy - ry); y < Math.min(size, cy + ry + 8); y++) {
+        for (int x = Math.max(0, cx - rx); x < Math.min(size, cx + rx + 8); x++) {
+          double dx = (double)(x - cx) / rx, dy = (double)(y - cy) / ry;
+          double sx = (double)(x - cx - 8) / rx, sy = (double)(y - cy - 8) / ry;
+          if (dx * dx + dy * dy <= 1.0) {
+            int shade = (int)(64 * dy);
+            int r = Math.max(0, Math.min(255, ((color >> 16) & 0xff) - shade));
+            int g = Math.max(0, Math.min(255, ((color >> 8) & 0xff) - shade));
+            int b = Math.max(0, Math.min(255, (color & 0xff) - shade));
+            pixels[y * size + x] = 0xff000000 | (r << 16) | (g << 8) | b;
+          } else if (sx * sx + sy * sy <= 1.0 && pixels[y * size + x] == 0) {
+            pixels[y * size + x] = 0x80000000;
+          }
+        }
+      }
+    }
+    return pixels;
+  }
+}
@@ -0,0 +1,109 @@
+package org.infinity.resource.graphics;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DxtEncoderTest {
+  @Test
+  public void testDxt1() throws Exception {
+    assertSameResults(DxtEncoder.DxtType.DXT1);
+  }
+
+  @Test
+  public void testDxt3() throws Exception {
+    assertSameResults(DxtEncoder.DxtType.DXT3);
+  }
+
+  @Test
+  public void testDxt5() throws Exception {
+    assertSameResults(DxtEncoder.DxtType.DXT5);
+  }
+
+  @Test
+  public void testBlockRows() throws Exception {
+    int width = 64, height = 64;
+    int[] pixels = createImage(width, height, new Random(4L));
+    for (final DxtEncoder.DxtType type : DxtEncoder.DxtType.values()) {
+      byte[] expected = DxtEncoder.encodeImage(pixels, width, height, type);
+      byte[] output = new byte[expected.length];
+      for (int row = height / 4 - 1; row >= 0; row -= 3) {
+        DxtEncoder.encodeBlockRows(pixels, width, height, Math.max(0, row - 2), Math.min(3, row + 1), output, type, false);
+      }
+      Assert.assertArrayEquals(type.toString(), expected, output);
+    }
+  }
+
+  @Test(expected = Exception.class)
+  public void testInvalidBlockRows() throws Exception {
+    int[] pixels = new int[16*16];
+    byte[] output = new byte[DxtEncoder.calcImageSize(16, 16, DxtEncoder.DxtType.DXT1)];
+    DxtEncoder.encodeBlockRows(pixels, 16, 16, 2, 3, output, DxtEncoder.DxtType.DXT1, false);
+  }
+
+  @Test
+  public void testImageSize() {
+    Assert.assertEquals(8, DxtEncoder.calcImageSize(1, 1, DxtEncoder.DxtType.DXT1));
+    Assert.assertEquals(16, DxtEncoder.calcImageSize(4, 4, DxtEncoder.DxtType.DXT5));
+    Assert.assertEquals(4*2*16, DxtEncoder.calcImageSize(13, 5, DxtEncoder.DxtType.DXT3));
+    Assert.assertEquals(0, DxtEncoder.calcImageSize(0, 4, DxtEncoder.DxtType.DXT1));
+    Assert.assertEquals(0, DxtEncoder.calcImageSize(4, 4, null));
+  }
+
+  // Concurrent, sequential and block by block encoding must produce identical output
+  private static void assertSameResults(DxtEncoder.DxtType type) throws Exception {
+    int width = 256, height = 192;
+    int[] pixels = createImage(width, height, new Random(type.ordinal() + 1L));
+    int blockSize = DxtEncoder.calcBlockSize(type);
+
+    byte[] parallel = new byte[DxtEncoder.calcImageSize(width, height, type)];
+    DxtEncoder.encodeImage(pixels, width, height, parallel, type, true);
+    byte[] sequential = new byte[parallel.length];
+    DxtEncoder.encodeImage(pixels, width, height, sequential, type, false);
+    Assert.assertArrayEquals(sequential, parallel);
+
+    int[] blockPixels = new int[16];
+    byte[] block = new byte[blockSize];
+    int ofs = 0;
+    for (int y = 0; y < height; y += 4) {
+      for (int x = 0; x < width; x += 4) {
+        for (int i = 0; i < 4; i++) {
+          System.arraycopy(pixels, (y + i) * width + x, blockPixels, i * 4, 4);
+        }
+        DxtEncoder.encodeBlock(blockPixels, block, type);
+        for (int i = 0; i < blockSize; i++, ofs++) {
+          if (block[i] != parallel[ofs]) {
+            Assert.fail(String.format("%s: block (%d,%d) differs at byte %d", type, x / 4, y / 4, i));
+          }
+        }
+      }
+    }
+    Assert.assertEquals(parallel.length, ofs);
+  }
+
+  // Mixture of gradients, solid areas, noise and varying alpha
+  private static int[] createImage(int width, int height, Random rnd) {
+    int[] pixels = new int[width*height];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int color;
+        switch ((x / 32 + y / 32) % 4) {
+          case 0:
+            color = 0xff000000 | ((x & 0xff) << 16) | ((y & 0xff) << 8) | ((x + y) & 0xff);
+            break;
+          case 1:
+            color = 0xff336699;
+            break;
+          case 2:
+            color = rnd.nextInt();
+            break;
+          default:
+            color = ((x * 8) & 0xff) << 24 | (rnd.nextInt(0x1000000));
+        }
+        pixels[y*width + x] = color;
+      }
+    }
+    return pixels;
+  }
+}
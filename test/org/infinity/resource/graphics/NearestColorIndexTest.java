@@ -0,0 +1,81 @@
+package org.infinity.resource.graphics;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NearestColorIndexTest {
+  @Test
+  public void testEmptyPalette() {
+    Assert.assertEquals(-1, new ColorConvert.NearestColorIndex(new int[0], false).nearest(0xff123456));
+    Assert.assertEquals(-1, new ColorConvert.NearestColorIndex(null, true).nearest(0xff123456));
+  }
+
+  @Test
+  public void testOpaquePalette() {
+    Random rnd = new Random(1L);
+    int[] palette = new int[256];
+    for (int i = 0; i < palette.length; i++) {
+      palette[i] = 0xff000000 | rnd.nextInt(0x1000000);
+    }
+    palette[0] = 0xff00ff00;  // transparent color index of BAM palettes
+    assertSameResults(palette, rnd);
+  }
+
+  @Test
+  public void testPaletteWithAlpha() {
+    Random rnd = new Random(2L);
+    int[] palette = new int[256];
+    for (int i = 0; i < palette.length; i++) {
+      palette[i] = rnd.nextInt();
+    }
+    palette[17] = 0x00abcdef;
+    assertSameResults(palette, rnd);
+  }
+
+  // Many equally near entries: the first one has to be returned
+  @Test
+  public void testDuplicateAndGrayEntries() {
+    Random rnd = new Random(3L);
+    int[] palette = new int[64];
+    for (int i = 0; i < palette.length; i++) {
+      int v = (i / 2) * 8;
+      palette[i] = 0xff000000 | (v << 16) | (v << 8) | v;
+    }
+    assertSameResults(palette, rnd);
+  }
+
+  @Test
+  public void testSmallPalettes() {
+    Random rnd = new Random(4L);
+    for (int size = 1; size <= 4; size++) {
+      int[] palette = new int[size];
+      for (int i = 0; i < size; i++) {
+        palette[i] = 0xff000000 | rnd.nextInt(0x1000000);
+      }
+      assertSameResults(palette, rnd);
+    }
+  }
+
+  private static void assertSameResults(int[] palette, Random rnd) {
+    for (boolean ignoreAlpha : new boolean[] { false, true }) {
+      ColorConvert.NearestColorIndex index = new ColorConvert.NearestColorIndex(palette, ignoreAlpha);
+      Assert.assertEquals(palette.length, index.size());
+      for (int i = 0; i < 20000; i++) {
+        int color;
+        switch (i % 4) {
+          case 0:  color = rnd.nextInt(); break;
+          case 1:  color = 0xff000000 | rnd.nextInt(0x1000000); break;
+          case 2:  color = rnd.nextInt(0x1000000); break;                       // fully transparent
+          default: color = palette[rnd.nextInt(palette.length)] ^ rnd.nextInt(8);  // near palette entries
+        }
+        // repeated lookups are served from memorized results
+        for (int pass = 0; pass < 2; pass++) {
+          Assert.assertEquals(String.format("color %08x, ignoreAlpha %b", color, ignoreAlpha),
+                              ColorConvert.nearestColorRGB(color, palette, ignoreAlpha), index.nearest(color));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package org.infinity.resource.key;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+
+import org.infinity.util.io.StreamUtils;
+
+/**
+ * Compares random access performance of {@link BIFReader} using the decompressed spill file
+ * with sequential decompression from the start of the archive.
+ * <p>
+ * Usage: {@code BIFReaderBenchmark [numFiles [maxFileSize]]}
+ */
+public class BIFReaderBenchmark
+{
+  public static void main(String[] args) throws Exception
+  {
+    int numFiles = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+    int maxSize = (args.length > 1) ? Integer.parseInt(args[1]) : 32768;
+
+    Path file = createBif(numFiles, maxSize, new Random(42L));
+    try {
+      BIFReader reader = new BIFReader(file);
+      List<Integer> locators = new ArrayList<>();
+      for (int i = 0; i < numFiles; i++) {
+        locators.add(i);
+      }
+      Collections.shuffle(locators, new Random(17L));
+
+      long checksum1 = 0L;
+      long start = System.nanoTime();
+      for (final int locator: locators) {
+        AbstractBIFFReader.Entry entry = reader.getEntry(locator);
+        ByteBuffer bb = StreamUtils.getByteBuffer(entry.size);
+        reader.readSequential(entry, bb);
+        checksum1 += bb.get(0);
+      }
+      long timeSequential = System.nanoTime() - start;
+
+      long checksum2 = 0L;
+      start = System.nanoTime();
+      for (final int locator: locators) {
+        checksum2 += reader.getResourceBuffer(locator).get(0);
+      }
+      long timeSpill = System.nanoTime() - start;
+
+      if (checksum1 != checksum2) {
+        throw new IllegalStateException("Checksum mismatch");
+      }
+
+      System.out.printf("BIF size: %d bytes, %d files%n", reader.getBIFFSize(), numFiles);
+      System.out.printf("Sequential decompression: %d ms%n", timeSequential / 1000000L);
+      System.out.printf("Spill file (incl. setup): %d ms%n", timeSpill / 1000000L);
+      reader.close();  // releases spill file
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  // Creates a temporary file-compressed BIF V1.0 archive with random content
+  private static Path createBif(int numFiles, int maxSize, Random rnd) throws Exception
+  {
+    int entryOfs = 0x14;
+    int dataOfs = entryOfs + numFiles * 0x10;
+    int[] sizes = new int[numFiles];
+    int totalSize = dataOfs;
+    for (int i = 0; i < numFiles; i++) {
+      sizes[i] = 1 + rnd.nextInt(maxSize);
+      totalSize += sizes[i];
+    }
+
+    ByteBuffer biff = StreamUtils.getByteBuffer(totalSize);
+    biff.put("BIFFV1  ".getBytes());
+    biff.putInt(numFiles);
+    biff.putInt(0);
+    biff.putInt(entryOfs);
+    int ofs = dataOfs;
+    for (int i = 0; i < numFiles; i++) {
+      biff.putInt(i);
+      biff.putInt(ofs);
+      biff.putInt(sizes[i]);
+      biff.putShort((short)Keyfile.TYPE_BMP);
+      biff.putShort((short)0);
+      ofs += sizes[i];
+    }
+    byte[] data = new byte[totalSize - dataOfs];
+    rnd.nextBytes(data);
+    biff.put(data);
+
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (DeflaterOutputStream dos = new DeflaterOutputStream(compressed)) {
+      dos.write(biff.array());
+    }
+
+    Path file = Files.createTempFile("benchmark-", ".bif");
+    try (OutputStream os = StreamUtils.getOutputStream(file, true)) {
+      byte[] name = "benchmark.bif\0".getBytes();
+      StreamUtils.writeString(os, "BIF V1.0", 8);
+      StreamUtils.writeInt(os, name.length);
+      StreamUtils.writeBytes(os, name);
+      StreamUtils.writeInt(os, totalSize);
+      StreamUtils.writeInt(os, compressed.size());
+      StreamUtils.writeBytes(os, compressed.toByteArray());
+    }
+    return file;
+  }
+}
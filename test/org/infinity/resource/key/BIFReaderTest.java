@@ -0,0 +1,126 @@
+package org.infinity.resource.key;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+
+import org.infinity.util.io.StreamUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BIFReaderTest {
+  private static final int NUM_FILES = 200;
+
+  // Random access through the spill file must return the same data as sequential decompression
+  @Test
+  public void testResourceData() throws Exception {
+    Random rnd = new Random(1L);
+    byte[][] data = new byte[NUM_FILES][];
+    Path file = createBif(data, rnd);
+    try {
+      BIFReader reader = new BIFReader(file);
+      try {
+        Assert.assertEquals(NUM_FILES, reader.getFileCount());
+        List<Integer> locators = new ArrayList<>();
+        for (int i = 0; i < NUM_FILES; i++) {
+          locators.add(i);
+        }
+        Collections.shuffle(locators, rnd);
+
+        for (final int locator : locators) {
+          ByteBuffer bb = reader.getResourceBuffer(locator);
+          Assert.assertEquals(0, bb.position());
+          Assert.assertArrayEquals("locator " + locator, data[locator], StreamUtils.toArray(bb));
+        }
+
+        for (final int locator : locators.subList(0, 20)) {
+          AbstractBIFFReader.Entry entry = reader.getEntry(locator);
+          ByteBuffer bb = StreamUtils.getByteBuffer(entry.size);
+          reader.readSequential(entry, bb);
+          bb.position(0);
+          Assert.assertArrayEquals("locator " + locator, data[locator], StreamUtils.toArray(bb));
+        }
+      } finally {
+        reader.close();
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  // Resources must still be available after the spill file has been released
+  @Test
+  public void testReopen() throws Exception {
+    byte[][] data = new byte[NUM_FILES][];
+    Path file = createBif(data, new Random(2L));
+    try {
+      BIFReader reader = new BIFReader(file);
+      try {
+        Assert.assertArrayEquals(data[7], StreamUtils.toArray(reader.getResourceBuffer(7)));
+        reader.close();
+        Assert.assertFalse(reader.isOpen());
+        reader.open();
+        Assert.assertArrayEquals(data[NUM_FILES - 1], StreamUtils.toArray(reader.getResourceBuffer(NUM_FILES - 1)));
+        Assert.assertArrayEquals(data[7], StreamUtils.toArray(reader.getResourceBuffer(7)));
+      } finally {
+        reader.close();
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  // Creates a temporary file-compressed BIF V1.0 archive with random content
+  private static Path createBif(byte[][] data, Random rnd) throws Exception {
+    int entryOfs = 0x14;
+    int dataOfs = entryOfs + data.length * 0x10;
+    int totalSize = dataOfs;
+    for (int i = 0; i < data.length; i++) {
+      data[i] = new byte[1 + rnd.nextInt(8192)];
+      rnd.nextBytes(data[i]);
+      totalSize += data[i].length;
+    }
+
+    ByteBuffer biff = StreamUtils.getByteBuffer(totalSize);
+    biff.put("BIFFV1  ".getBytes());
+    biff.putInt(data.length);
+    biff.putInt(0);
+    biff.putInt(entryOfs);
+    int ofs = dataOfs;
+    for (int i = 0; i < data.length; i++) {
+      biff.putInt(i);
+      biff.putInt(ofs);
+      biff.putInt(data[i].length);
+      biff.putShort((short)Keyfile.TYPE_BMP);
+      biff.putShort((short)0);
+      ofs += data[i].length;
+    }
+    for (final byte[] buf : data) {
+      biff.put(buf);
+    }
+
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (DeflaterOutputStream dos = new DeflaterOutputStream(compressed)) {
+      dos.write(biff.array());
+    }
+
+    Path file = Files.createTempFile("test-", ".bif");
+    try (OutputStream os = StreamUtils.getOutputStream(file, true)) {
+      byte[] name = "test.bif\0".getBytes();
+      StreamUtils.writeString(os, "BIF V1.0", 8);
+      StreamUtils.writeInt(os, name.length);
+      StreamUtils.writeBytes(os, name);
+      StreamUtils.writeInt(os, totalSize);
+      StreamUtils.writeInt(os, compressed.size());
+      StreamUtils.writeBytes(os, compressed.toByteArray());
+    }
+    return file;
+  }
+}
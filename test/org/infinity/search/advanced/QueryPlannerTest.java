@@ -0,0 +1,227 @@
+package org.infinity.search.advanced;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.infinity.resource.Profile;
+import org.infinity.resource.key.FileResourceEntry;
+import org.infinity.resource.key.ResourceEntry;
+import org.infinity.search.ReferenceHitFrame;
+import org.infinity.util.io.StreamUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class QueryPlannerTest {
+  private static final int NUM_RESOURCES = 40;
+
+  private static Path gameDir;
+  private static List<ResourceEntry> items;
+  private static List<ResourceEntry> creatures;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    // minimal game without BIFF archives and strings
+    gameDir = Files.createTempDirectory("planner-");
+    ByteBuffer key = StreamUtils.getByteBuffer(24);
+    key.put("KEY V1  ".getBytes()).putInt(0).putInt(0).putInt(24).putInt(24);
+    Files.write(gameDir.resolve("chitin.key"), key.array());
+    ByteBuffer tlk = StreamUtils.getByteBuffer(18);
+    tlk.put("TLK V1  ".getBytes()).putShort((short)0).putInt(0).putInt(18);
+    Files.write(gameDir.resolve("dialog.tlk"), tlk.array());
+    // required for PST:EE color field names
+    Files.createDirectory(gameDir.resolve("override"));
+    Files.write(gameDir.resolve("override").resolve("CLOWNRGE.IDS"), "IDS V1.0\n0 NONE\n".getBytes());
+
+    Random rnd = new Random(1L);
+    Path resDir = Files.createDirectory(gameDir.resolve("resources"));
+    items = new ArrayList<>();
+    creatures = new ArrayList<>();
+    for (int i = 0; i < NUM_RESOURCES; i++) {
+      items.add(createResource(resDir.resolve(String.format("TEST%04d.ITM", i)), createItem(rnd)));
+      // every other creature has the additional item slots of registered characters
+      creatures.add(createResource(resDir.resolve(String.format("TEST%04d.CRE", i)),
+                                   createCreaturePstee(rnd, (i & 1) != 0)));
+    }
+  }
+
+  @AfterClass
+  public static void tearDown() throws Exception {
+    try (Stream<Path> paths = Files.walk(gameDir)) {
+      for (final Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.deleteIfExists(path);
+      }
+    }
+  }
+
+  @Test
+  public void testOffsetFilters() throws Exception {
+    openGame(Profile.Game.BG2EE);
+    SearchOptions price = new SearchOptions();
+    price.setSearchOffsetAbsolute(0x34);
+    price.setValueNumber(0, 500);
+    SearchOptions weight = new SearchOptions();
+    weight.setSearchOffsetRelative(0x4c);
+    weight.setValueNumber(2, 5);
+    SearchOptions flags = new SearchOptions();
+    flags.setSearchOffsetAbsolute(0x18);
+    flags.setValueBitfield(0x05, SearchOptions.BitFieldMode.And);
+    SearchOptions lore = new SearchOptions();
+    lore.setSearchOffsetAbsolute(0x42);
+    lore.setValueNumber(10, 40);
+    lore.setInvertMatch(true);
+
+    assertSameResults("ITM", items, Arrays.asList(price), true);
+    assertSameResults("ITM", items, Arrays.asList(price, weight), true);
+    assertSameResults("ITM", items, Arrays.asList(flags, lore), true);
+    assertSameResults("ITM", items, Arrays.asList(price, weight, flags, lore), false);
+  }
+
+  @Test
+  public void testNameFilters() throws Exception {
+    openGame(Profile.Game.BG2EE);
+    SearchOptions price = new SearchOptions();
+    price.setSearchName("Price", true, false);
+    price.setValueNumber(0, 500);
+    SearchOptions level = new SearchOptions();
+    level.setSearchName("^minimum (level|strength)$", false, true);
+    level.setValueNumber(3, 5);
+    SearchOptions flags = new SearchOptions();
+    flags.setSearchName("Flags", true, false);
+    flags.setValueBitfield(0x05, SearchOptions.BitFieldMode.Or);
+    flags.setInvertMatch(true);
+    // not a field of the template resource
+    SearchOptions missing = new SearchOptions();
+    missing.setSearchName("Missing field", true, false);
+    missing.setValueNumber(0, 100);
+    // substructure
+    SearchOptions ability = new SearchOptions();
+    ability.setSearchName("Item ability", true, false);
+    ability.setValueNumber(0, 100);
+
+    assertSameResults("ITM", items, Arrays.asList(price), true);
+    assertSameResults("ITM", items, Arrays.asList(price, level), true);
+    assertSameResults("ITM", items, Arrays.asList(level, flags), false);
+    assertSameResults("ITM", items, Arrays.asList(missing), false);
+    assertSameResults("ITM", items, Arrays.asList(price, missing), false);
+    assertSameResults("ITM", items, Arrays.asList(ability, level), false);
+  }
+
+  // Root level fields of PST:EE creatures vary per resource
+  @Test
+  public void testVariableFields() throws Exception {
+    openGame(Profile.Game.PSTEE);
+    SearchOptions hp = new SearchOptions();
+    hp.setSearchOffsetAbsolute(0x24);
+    hp.setValueNumber(0, 10);
+    SearchOptions quickItem = new SearchOptions();
+    quickItem.setSearchName("Quick item 4", true, false);
+    quickItem.setValueNumber(0, 100);
+    SearchOptions unused = new SearchOptions();
+    unused.setSearchName("Unused", true, false);
+    unused.setValueNumber(0, 0);
+
+    assertSameResults("CRE", creatures, Arrays.asList(hp), true);
+    assertSameResults("CRE", creatures, Arrays.asList(hp, quickItem), false);
+    assertSameResults("CRE", creatures, Arrays.asList(hp, unused), false);
+  }
+
+  private static void openGame(Profile.Game game) throws Exception {
+    Assert.assertTrue(Profile.openGame(gameDir.resolve("chitin.key"), null, game));
+  }
+
+  private static ResourceEntry createResource(Path file, ByteBuffer data) throws Exception {
+    try (OutputStream os = StreamUtils.getOutputStream(file, true)) {
+      os.write(data.array());
+    }
+    return new FileResourceEntry(file);
+  }
+
+  // Searches with and without planner must produce identical results for all filter modes
+  private static void assertSameResults(String type, List<ResourceEntry> entries, List<SearchOptions> filters,
+                                        boolean expectRejects) {
+    for (final SearchOptions so : filters) {
+      so.setStructureGroup(false);
+    }
+    for (final AdvancedSearch.FilterMode mode : AdvancedSearch.FilterMode.values()) {
+      QueryPlanner planner = QueryPlanner.create(type, mode, filters);
+      Assert.assertNotNull(planner);
+      int rejected = 0;
+      for (final ResourceEntry entry : entries) {
+        List<ReferenceHitFrame.ReferenceHit> expected = new ArrayList<>();
+        new AdvancedSearchWorker(expected, mode, filters, entry, null).run();
+        List<ReferenceHitFrame.ReferenceHit> actual = new ArrayList<>();
+        new AdvancedSearchWorker(actual, mode, filters, planner, entry, null).run();
+
+        String msg = mode + ", " + filters + ": " + entry;
+        Assert.assertEquals(msg, toStrings(expected), toStrings(actual));
+        if (!planner.isCandidate(entry)) {
+          Assert.assertTrue(msg, expected.isEmpty());
+          rejected++;
+        }
+      }
+      if (expectRejects && mode == AdvancedSearch.FilterMode.MatchAll) {
+        Assert.assertTrue(filters.toString(), rejected > 0);
+      }
+    }
+  }
+
+  private static List<String> toStrings(List<ReferenceHitFrame.ReferenceHit> hits) {
+    List<String> list = new ArrayList<>();
+    for (final ReferenceHitFrame.ReferenceHit hit : hits) {
+      list.add(hit.getObjectAt(0) + "|" + hit.getObjectAt(2));
+    }
+    return list;
+  }
+
+  // Creates an ITM V1 resource with random header values and a single ability
+  private static ByteBuffer createItem(Random rnd) {
+    int headerSize = 0x72, abilitySize = 0x38;
+    ByteBuffer buf = StreamUtils.getByteBuffer(headerSize + abilitySize);
+    buf.put("ITM V1  ".getBytes());
+    buf.putInt(0x08, -1);
+    buf.putInt(0x0c, -1);
+    buf.putInt(0x18, rnd.nextInt(16));
+    buf.putShort(0x1c, (short)rnd.nextInt(30));
+    buf.putShort(0x24, (short)rnd.nextInt(8));
+    buf.putShort(0x26, (short)rnd.nextInt(8));
+    buf.putInt(0x34, rnd.nextInt(1000));
+    buf.putShort(0x38, (short)1);
+    buf.putShort(0x42, (short)rnd.nextInt(50));
+    buf.putInt(0x4c, rnd.nextInt(10));
+    buf.putInt(0x50, -1);
+    buf.putInt(0x54, -1);
+    buf.putInt(0x64, headerSize);
+    buf.putShort(0x68, (short)1);
+    buf.putInt(0x6a, headerSize + abilitySize);
+    buf.put(headerSize, (byte)1);
+    buf.put(headerSize + 2, (byte)1);
+    return buf;
+  }
+
+  // Creates a PST:EE CRE V1.0 resource with random hit points and empty item slots
+  private static ByteBuffer createCreaturePstee(Random rnd, boolean registered) {
+    int headerSize = 0x2d4, slotsSize = registered ? 102 : 80;
+    ByteBuffer buf = StreamUtils.getByteBuffer(headerSize + slotsSize);
+    buf.put("CRE V1.0".getBytes());
+    buf.putInt(0x08, -1);
+    buf.putInt(0x0c, -1);
+    buf.putShort(0x24, (short)rnd.nextInt(20));
+    buf.put(0x7c, (byte)(registered ? 50 : 0));   // number of item slots
+    for (final int ofs : new int[] { 0x2a0, 0x2a8, 0x2b0, 0x2bc, 0x2c4 }) {
+      buf.putInt(ofs, headerSize + slotsSize);      // empty sections
+    }
+    buf.putInt(0x2b8, headerSize);                  // item slots
+    return buf;
+  }
+}
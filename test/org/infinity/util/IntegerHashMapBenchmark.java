@@ -0,0 +1,193 @@
+package org.infinity.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.IntToLongFunction;
+import java.util.function.Supplier;
+
+import org.infinity.resource.key.Keyfile;
+
+/**
+ * Compares lookup throughput and memory usage of {@link IntegerHashMap} and
+ * {@link LongIntegerHashMap} with the boxed {@link HashMap} and {@link TreeMap} classes
+ * they replace.
+ * <p>
+ * Key sets: resource type codes of the {@link Keyfile}, sequential IDS values (e.g. STATS.IDS),
+ * sparse IDS values (e.g. SPELL.IDS) and bit flag IDS values (e.g. STATE.IDS).
+ * <p>
+ * Usage: {@code IntegerHashMapBenchmark [numLookups [numMaps]]}
+ */
+public class IntegerHashMapBenchmark
+{
+  public static void main(String[] args) throws Exception
+  {
+    int numLookups = (args.length > 0) ? Integer.parseInt(args[0]) : 20000000;
+    int numMaps = (args.length > 1) ? Integer.parseInt(args[1]) : 2000;
+
+    Map<String, long[]> keySets = new TreeMap<>();
+    keySets.put("1 key types", getKeyTypes());
+    keySets.put("2 sequential IDS", createKeys(i -> i, 200));
+    keySets.put("3 sparse IDS", createSparseKeys(new Random(42L), 1101, 4999, 600));
+    keySets.put("4 flag IDS", createKeys(i -> 1L << i, 32));
+
+    for (final Map.Entry<String, long[]> e : keySets.entrySet()) {
+      long[] keys = e.getValue();
+      System.out.printf("%s (%d keys)%n", e.getKey().substring(2), keys.length);
+
+      // lookup keys: 90% hits, 10% misses
+      Random rnd = new Random(17L);
+      long[] lookups = new long[4096];
+      for (int i = 0; i < lookups.length; i++) {
+        lookups[i] = (rnd.nextInt(10) == 0) ? rnd.nextInt(0x10000) : keys[rnd.nextInt(keys.length)];
+      }
+
+      HashMap<Integer, String> hashMap = new HashMap<>();
+      IntegerHashMap<String> intMap = new IntegerHashMap<>();
+      TreeMap<Long, String> treeMap = new TreeMap<>();
+      LongIntegerHashMap<String> longMap = new LongIntegerHashMap<>();
+      for (final long key : keys) {
+        String value = Long.toString(key);
+        hashMap.put(Integer.valueOf((int)key), value);
+        intMap.put((int)key, value);
+        treeMap.put(Long.valueOf(key), value);
+        longMap.put(key, value);
+      }
+
+      for (int pass = 0; pass < 2; pass++) {
+        long start = System.nanoTime();
+        long checksum1 = 0L;
+        for (int i = 0; i < numLookups; i++) {
+          String s = hashMap.get((int)lookups[i & 4095]);
+          checksum1 += (s != null) ? s.length() : 0;
+        }
+        long timeHashMap = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long checksum2 = 0L;
+        for (int i = 0; i < numLookups; i++) {
+          String s = intMap.get((int)lookups[i & 4095]);
+          checksum2 += (s != null) ? s.length() : 0;
+        }
+        long timeIntMap = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long checksum3 = 0L;
+        for (int i = 0; i < numLookups; i++) {
+          String s = treeMap.get(lookups[i & 4095]);
+          checksum3 += (s != null) ? s.length() : 0;
+        }
+        long timeTreeMap = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long checksum4 = 0L;
+        for (int i = 0; i < numLookups; i++) {
+          String s = longMap.get(lookups[i & 4095]);
+          checksum4 += (s != null) ? s.length() : 0;
+        }
+        long timeLongMap = System.nanoTime() - start;
+
+        if (checksum1 != checksum2 || checksum3 != checksum4) {
+          throw new IllegalStateException("Checksum mismatch");
+        }
+        if (pass > 0) {
+          System.out.printf("  lookups/s: HashMap<Integer>: %,d, IntegerHashMap: %,d%n",
+                            perSecond(numLookups, timeHashMap), perSecond(numLookups, timeIntMap));
+          System.out.printf("  lookups/s: TreeMap<Long>: %,d, LongIntegerHashMap: %,d%n",
+                            perSecond(numLookups, timeTreeMap), perSecond(numLookups, timeLongMap));
+        }
+      }
+
+      String value = "";
+      System.out.printf("  bytes/entry: HashMap<Integer>: %.1f, IntegerHashMap: %.1f%n",
+                        bytesPerEntry(numMaps, keys.length, () -> {
+                          HashMap<Integer, String> map = new HashMap<>();
+                          for (final long key : keys) { map.put(Integer.valueOf((int)key), value); }
+                          return map;
+                        }),
+                        bytesPerEntry(numMaps, keys.length, () -> {
+                          IntegerHashMap<String> map = new IntegerHashMap<>();
+                          for (final long key : keys) { map.put((int)key, value); }
+                          return map;
+                        }));
+      System.out.printf("  bytes/entry: TreeMap<Long>: %.1f, LongIntegerHashMap: %.1f%n",
+                        bytesPerEntry(numMaps, keys.length, () -> {
+                          TreeMap<Long, String> map = new TreeMap<>();
+                          for (final long key : keys) { map.put(Long.valueOf(key), value); }
+                          return map;
+                        }),
+                        bytesPerEntry(numMaps, keys.length, () -> {
+                          LongIntegerHashMap<String> map = new LongIntegerHashMap<>();
+                          for (final long key : keys) { map.put(key, value); }
+                          return map;
+                        }));
+    }
+  }
+
+  private static long perSecond(int count, long nanos)
+  {
+    return (long)(count * 1e9 / Math.max(1L, nanos));
+  }
+
+  // Returns the average heap size occupied by a map entry (values are shared)
+  private static double bytesPerEntry(int numMaps, int numKeys, Supplier<Object> factory)
+  {
+    List<Object> maps = new ArrayList<>(numMaps);
+    long before = usedMemory();
+    for (int i = 0; i < numMaps; i++) {
+      maps.add(factory.get());
+    }
+    long after = usedMemory();
+    if (maps.size() != numMaps) {
+      throw new IllegalStateException();
+    }
+    return (double)(after - before) / ((long)numMaps * numKeys);
+  }
+
+  private static long usedMemory()
+  {
+    Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 4; i++) {
+      System.gc();
+      try {
+        Thread.sleep(50L);
+      } catch (InterruptedException e) {
+      }
+    }
+    return rt.totalMemory() - rt.freeMemory();
+  }
+
+  private static long[] getKeyTypes() throws Exception
+  {
+    List<Long> list = new ArrayList<>();
+    for (final Field f : Keyfile.class.getFields()) {
+      if (f.getName().startsWith("TYPE_") && f.getType() == int.class && Modifier.isStatic(f.getModifiers())) {
+        list.add((long)f.getInt(null));
+      }
+    }
+    long[] retVal = new long[list.size()];
+    for (int i = 0; i < retVal.length; i++) {
+      retVal[i] = list.get(i);
+    }
+    return retVal;
+  }
+
+  private static long[] createKeys(IntToLongFunction generator, int count)
+  {
+    long[] retVal = new long[count];
+    for (int i = 0; i < count; i++) {
+      retVal[i] = generator.applyAsLong(i);
+    }
+    return retVal;
+  }
+
+  private static long[] createSparseKeys(Random rnd, int min, int max, int count)
+  {
+    return rnd.longs(min, max + 1).distinct().limit(count).toArray();
+  }
+}
@@ -0,0 +1,156 @@
+package org.infinity.util;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IntegerHashMapTest {
+  @Test
+  public void testPutGetRemove() {
+    IntegerHashMap<String> map = new IntegerHashMap<>();
+    Assert.assertNull(map.put(5, "a"));
+    Assert.assertEquals("a", map.put(5, "b"));
+    Assert.assertEquals("b", map.get(5));
+    Assert.assertTrue(map.containsKey(5));
+    Assert.assertEquals(1, map.size());
+    Assert.assertEquals("b", map.remove(5));
+    Assert.assertNull(map.remove(5));
+    Assert.assertFalse(map.containsKey(5));
+    Assert.assertTrue(map.isEmpty());
+  }
+
+  @Test
+  public void testSpecialKeys() {
+    IntegerHashMap<String> map = new IntegerHashMap<>();
+    int[] keys = {0, -1, 1, Integer.MIN_VALUE, Integer.MAX_VALUE};
+    for (int key : keys) {
+      map.put(key, Integer.toString(key));
+    }
+    Assert.assertEquals(keys.length, map.size());
+    for (int key : keys) {
+      Assert.assertEquals(Integer.toString(key), map.get(key));
+    }
+    Assert.assertEquals("0", map.remove(0));
+    Assert.assertFalse(map.containsKey(0));
+    Assert.assertEquals(keys.length - 1, map.size());
+  }
+
+  @Test
+  public void testNullValue() {
+    IntegerHashMap<String> map = new IntegerHashMap<>();
+    map.put(3, null);
+    Assert.assertTrue(map.containsKey(3));
+    Assert.assertTrue(map.containsValue(null));
+    Assert.assertNull(map.get(3));
+    Assert.assertEquals(1, map.size());
+  }
+
+  @Test
+  public void testBoxedAccess() {
+    IntegerHashMap<String> map = new IntegerHashMap<>();
+    map.put(Integer.valueOf(7), "x");
+    Assert.assertEquals("x", map.get(Integer.valueOf(7)));
+    Assert.assertNull(map.get("7"));
+    Assert.assertFalse(map.containsKey(Long.valueOf(7L)));
+    Assert.assertEquals("x", map.remove(Integer.valueOf(7)));
+  }
+
+  // Small tables with dense and sparse keys force long probe sequences and deletions within them
+  @Test
+  public void testCollisionsAgainstHashMap() {
+    Random rnd = new Random(1L);
+    IntegerHashMap<Integer> map = new IntegerHashMap<>(0, 0.9f);
+    Map<Integer, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 200000; i++) {
+      int key = (i % 3 == 0) ? rnd.nextInt(64) : (rnd.nextInt(256) << 16);
+      if (rnd.nextInt(3) == 0) {
+        Assert.assertEquals(expected.remove(key), map.remove(key));
+      } else {
+        Assert.assertEquals(expected.put(key, i), map.put(key, Integer.valueOf(i)));
+      }
+      if (i % 997 == 0) {
+        Assert.assertEquals(expected, map);
+      }
+    }
+    Assert.assertEquals(expected.size(), map.size());
+    for (Map.Entry<Integer, Integer> e : expected.entrySet()) {
+      Assert.assertEquals(e.getValue(), map.get(e.getKey().intValue()));
+    }
+  }
+
+  @Test
+  public void testIterationOrder() {
+    Random rnd = new Random(2L);
+    IntegerHashMap<Integer> map = new IntegerHashMap<>();
+    TreeMap<Integer, Integer> expected = new TreeMap<>();
+    for (int i = 0; i < 5000; i++) {
+      int key = rnd.nextInt();
+      map.put(key, Integer.valueOf(i));
+      expected.put(key, i);
+    }
+    Assert.assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(map.entrySet()));
+    Assert.assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(map.keySet()));
+  }
+
+  @Test
+  public void testIteratorRemove() {
+    IntegerHashMap<Integer> map = new IntegerHashMap<>();
+    TreeMap<Integer, Integer> expected = new TreeMap<>();
+    for (int i = -500; i < 500; i++) {
+      map.put(i * 7, Integer.valueOf(i));
+      expected.put(i * 7, i);
+    }
+    for (Iterator<Map.Entry<Integer, Integer>> iter = map.entrySet().iterator(); iter.hasNext(); ) {
+      if ((iter.next().getValue() & 1) == 0) {
+        iter.remove();
+      }
+    }
+    expected.values().removeIf(v -> (v & 1) == 0);
+    Assert.assertEquals(expected, map);
+    List<Integer> keys = new ArrayList<>(map.keySet());
+    Assert.assertEquals(new ArrayList<>(expected.keySet()), keys);
+  }
+
+  @Test
+  public void testSetValue() {
+    IntegerHashMap<String> map = new IntegerHashMap<>();
+    map.put(1, "a");
+    map.entrySet().iterator().next().setValue("b");
+    Assert.assertEquals("b", map.get(1));
+  }
+
+  @Test(expected=ConcurrentModificationException.class)
+  public void testConcurrentModification() {
+    IntegerHashMap<String> map = new IntegerHashMap<>();
+    map.put(1, "a");
+    map.put(2, "b");
+    Iterator<Integer> iter = map.keySet().iterator();
+    iter.next();
+    map.put(3, "c");
+    iter.next();
+  }
+
+  @Test
+  public void testClearAndEquality() {
+    IntegerHashMap<String> map = new IntegerHashMap<>();
+    for (int i = 0; i < 100; i++) {
+      map.put(i, "v" + i);
+    }
+    Map<Integer, String> copy = new HashMap<>(map);
+    Assert.assertEquals(copy, map);
+    Assert.assertEquals(copy.hashCode(), map.hashCode());
+    Assert.assertEquals(map, new IntegerHashMap<>(copy));
+    map.clear();
+    Assert.assertTrue(map.isEmpty());
+    Assert.assertFalse(map.containsKey(0));
+    Assert.assertNull(map.get(50));
+  }
+}
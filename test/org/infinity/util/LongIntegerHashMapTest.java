@@ -0,0 +1,127 @@
+package org.infinity.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LongIntegerHashMapTest {
+  @Test
+  public void testPutGetRemove() {
+    LongIntegerHashMap<String> map = new LongIntegerHashMap<>();
+    Assert.assertNull(map.put(1L << 40, "a"));
+    Assert.assertEquals("a", map.put(1L << 40, "b"));
+    Assert.assertEquals("b", map.get(1L << 40));
+    Assert.assertNull(map.get(0L));
+    Assert.assertEquals("b", map.remove(1L << 40));
+    Assert.assertTrue(map.isEmpty());
+  }
+
+  @Test
+  public void testSpecialKeys() {
+    LongIntegerHashMap<String> map = new LongIntegerHashMap<>();
+    long[] keys = {0L, -1L, 1L, Long.MIN_VALUE, Long.MAX_VALUE, 0xffffffffL, 1L << 32};
+    for (long key : keys) {
+      map.put(key, Long.toString(key));
+    }
+    Assert.assertEquals(keys.length, map.size());
+    for (long key : keys) {
+      Assert.assertEquals(Long.toString(key), map.get(key));
+    }
+    Assert.assertEquals(Long.valueOf(Long.MIN_VALUE), map.firstKey());
+    Assert.assertEquals(Long.valueOf(Long.MAX_VALUE), map.lastKey());
+    Assert.assertEquals("0", map.remove(0L));
+    Assert.assertFalse(map.containsKey(0L));
+  }
+
+  // Keys differing in the upper or lower half only must not be confused
+  @Test
+  public void testCollisionsAgainstHashMap() {
+    Random rnd = new Random(3L);
+    LongIntegerHashMap<Integer> map = new LongIntegerHashMap<>(0, 0.9f);
+    Map<Long, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 200000; i++) {
+      long key;
+      switch (i % 3) {
+        case 0:  key = rnd.nextInt(64); break;
+        case 1:  key = (long)rnd.nextInt(64) << 32; break;
+        default: key = ((long)rnd.nextInt(16) << 32) | rnd.nextInt(16);
+      }
+      if (rnd.nextInt(3) == 0) {
+        Assert.assertEquals(expected.remove(key), map.remove(key));
+      } else {
+        Assert.assertEquals(expected.put(key, i), map.put(key, Integer.valueOf(i)));
+      }
+      if (i % 997 == 0) {
+        Assert.assertEquals(expected, map);
+      }
+    }
+    Assert.assertEquals(expected, map);
+  }
+
+  @Test
+  public void testSortedMapAgainstTreeMap() {
+    Random rnd = new Random(4L);
+    LongIntegerHashMap<Integer> map = new LongIntegerHashMap<>();
+    TreeMap<Long, Integer> expected = new TreeMap<>();
+    for (int i = 0; i < 5000; i++) {
+      long key = rnd.nextLong() >> rnd.nextInt(64);
+      map.put(key, Integer.valueOf(i));
+      expected.put(key, i);
+    }
+    Assert.assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(map.entrySet()));
+    Assert.assertEquals(expected.firstKey(), map.firstKey());
+    Assert.assertEquals(expected.lastKey(), map.lastKey());
+    Assert.assertEquals(expected.firstEntry(), map.firstEntry());
+    Assert.assertEquals(expected.lastEntry(), map.lastEntry());
+
+    long from = rnd.nextLong() >> 8, to = from + (1L << 56);
+    Assert.assertEquals(new ArrayList<>(expected.subMap(from, to).entrySet()),
+                        new ArrayList<>(map.subMap(from, to).entrySet()));
+    Assert.assertEquals(new ArrayList<>(expected.headMap(from).entrySet()),
+                        new ArrayList<>(map.headMap(from).entrySet()));
+    Assert.assertEquals(new ArrayList<>(expected.tailMap(from).entrySet()),
+                        new ArrayList<>(map.tailMap(from).entrySet()));
+  }
+
+  @Test
+  public void testIteratorRemove() {
+    LongIntegerHashMap<Integer> map = new LongIntegerHashMap<>();
+    TreeMap<Long, Integer> expected = new TreeMap<>();
+    for (int i = 0; i < 1000; i++) {
+      map.put((long)i << 20, Integer.valueOf(i));
+      expected.put((long)i << 20, i);
+    }
+    for (Iterator<Long> iter = map.keySet().iterator(); iter.hasNext(); ) {
+      if (((iter.next() >> 20) % 3) == 0) {
+        iter.remove();
+      }
+    }
+    expected.keySet().removeIf(k -> ((k >> 20) % 3) == 0);
+    Assert.assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(map.entrySet()));
+  }
+
+  @Test
+  public void testEmptyMap() {
+    LongIntegerHashMap<String> map = new LongIntegerHashMap<>();
+    Assert.assertNull(map.firstEntry());
+    Assert.assertNull(map.lastEntry());
+    Assert.assertTrue(map.headMap(0L).isEmpty());
+  }
+
+  @Test(expected=NoSuchElementException.class)
+  public void testFirstKeyOfEmptyMap() {
+    new LongIntegerHashMap<String>().firstKey();
+  }
+
+  @Test(expected=IllegalArgumentException.class)
+  public void testSubMapWithInvalidRange() {
+    new LongIntegerHashMap<String>().subMap(2L, 1L);
+  }
+}
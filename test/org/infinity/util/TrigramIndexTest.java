@@ -0,0 +1,74 @@
+package org.infinity.util;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TrigramIndexTest {
+  private static final String[] TEXTS = {
+      "You must gather your party before venturing forth.",
+      "Imoen",
+      "",
+      "Go for the eyes, Boo! GO FOR THE EYES!",
+      "Ah, a visitor. Welcome to Candlekeep.",
+      "Minsc and Boo stand ready!",
+  };
+
+  private static TrigramIndex createIndex() {
+    TrigramIndex index = new TrigramIndex();
+    for (int i = 0; i < TEXTS.length; i++) {
+      index.add(i * 2, TEXTS[i]);
+    }
+    return index;
+  }
+
+  @Test
+  public void testFindIgnoresCase() {
+    int[] result = createIndex().find("bOO");
+    Assert.assertTrue(Arrays.binarySearch(result, 6) >= 0);
+    Assert.assertTrue(Arrays.binarySearch(result, 10) >= 0);
+  }
+
+  @Test
+  public void testFindWithShortTextReturnsNull() {
+    Assert.assertNull(createIndex().find("Bo"));
+  }
+
+  @Test(expected=IllegalArgumentException.class)
+  public void testAddWithDescendingIndex() {
+    createIndex().add(3, "text");
+  }
+
+  @Test
+  public void testFindNeverMissesMatches() {
+    Random rnd = new Random(7L);
+    String[] texts = new String[5000];
+    TrigramIndex index = new TrigramIndex();
+    for (int i = 0; i < texts.length; i++) {
+      char[] buf = new char[rnd.nextInt(40)];
+      for (int j = 0; j < buf.length; j++) {
+        buf[j] = "abcdeABCDE \u00e4\u00c4".charAt(rnd.nextInt(13));
+      }
+      texts[i] = new String(buf);
+      index.add(i, texts[i]);
+    }
+    for (int n = 0; n < 200; n++) {
+      String query = texts[rnd.nextInt(texts.length)];
+      if (query.length() < 3) {
+        continue;
+      }
+      int start = rnd.nextInt(query.length() - 2);
+      query = query.substring(start, start + 3 + rnd.nextInt(query.length() - start - 2));
+      int[] result = index.find(query);
+      String lower = query.toLowerCase(Locale.ROOT);
+      for (int i = 0; i < texts.length; i++) {
+        if (texts[i].toLowerCase(Locale.ROOT).contains(lower)) {
+          Assert.assertTrue(query, Arrays.binarySearch(result, i) >= 0);
+        }
+      }
+    }
+  }
+}